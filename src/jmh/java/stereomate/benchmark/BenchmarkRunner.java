@@ -0,0 +1,32 @@
+package stereomate.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of benchmarks.jar - runs the benchmarks selected by the standard JMH command line options
+ * (all benchmarks by default), with the GC profiler added so the allocation rate (gc.alloc.rate and
+ * gc.alloc.rate.norm) is reported alongside the voxels/sec of each benchmark.
+ *
+ * @author stevenwest
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+		Options options = new OptionsBuilder()
+				.parent( new CommandLineOptions(args) )
+				.addProfiler(GCProfiler.class)
+				.build();
+
+		new Runner(options).run();
+
+	}
+
+}
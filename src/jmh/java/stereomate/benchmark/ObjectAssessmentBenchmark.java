@@ -0,0 +1,69 @@
+package stereomate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+
+import stereomate.data.DatasetWrapper;
+import stereomate.data.ObjectDataContainer;
+import stereomate.data.ObjectFeatureSet;
+
+/**
+ * Benchmark of assessing every object in the stack with ImageHandler.extractObjData2(), as Object Manager
+ * does when an image is first loaded.  The measures computed are set with features, and the number of
+ * assessment threads with assessmentThreads.  Reports the stack voxels processed per second in the voxels
+ * counter.
+ *
+ * @author stevenwest
+ *
+ */
+public class ObjectAssessmentBenchmark extends SyntheticStackBenchmark {
+
+	static final int OBJ_VAL = 255, SET_VAL = 254;
+
+	/**
+	 * Measures computed - "all", or a single tier name from ObjectFeatureSet.
+	 */
+	@Param({"all", "basic"})
+	public String features;
+
+	@Param({"1"})
+	public int assessmentThreads;
+
+	DatasetWrapper dataset;
+
+
+	@Override
+	int objVal() {
+		return OBJ_VAL;
+	}
+
+	@Override
+	void setupBenchmark() {
+		if(features.equalsIgnoreCase("all") == false) {
+			imageHandler.setFeatureSet( new ObjectFeatureSet(features) );
+		}
+		imageHandler.setAssessmentThreads(assessmentThreads);
+
+		dataset = new DatasetWrapper("benchmark", ObjectDataContainer.returnObjectMeasuresAttributes() );
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		imageHandler.setAssessmentThreads(1);
+	}
+
+	/**
+	 * Assess every object in the stack - the dataset is emptied by extractObjData2() on each invocation.
+	 * @param counter
+	 * @return
+	 */
+	@Benchmark
+	public DatasetWrapper assessObjects(VoxelCounter counter) {
+		imageHandler.extractObjData2(dataset, OBJ_VAL, SET_VAL, true);
+		counter.voxels += stack.getVoxelCount();
+		return dataset;
+	}
+
+}
@@ -0,0 +1,118 @@
+package stereomate.benchmark;
+
+import java.util.ArrayList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import ij.gui.Roi;
+import stereomate.data.DatasetWrapper;
+import stereomate.data.ObjectDataContainer;
+import stereomate.roi.RoiAssessmentHandler;
+import stereomate.roi.RoiAssessmentHandler.Points;
+
+/**
+ * Benchmarks of the ROI analysis methods, on a grid of rectangular ROIs tiling the stack:  border point
+ * processing - sorting the objects on each ROI border into IN or OUT of the ROI and resetting them - and
+ * whole-object ROI analysis with RoiAssessmentHandler.analyseRoisWholeObjects(), and by ROI membership
+ * with analyseRoisWholeObjectsByMembership(), as StereoMate Analyser runs it.  Each benchmark reports the
+ * stack voxels processed per second in the voxels counter.
+ *
+ * @author stevenwest
+ *
+ */
+public class RoiAnalysisBenchmark extends SyntheticStackBenchmark {
+
+	/**
+	 * Pixel values of objects, and objects IN and OUT of the current ROI - as in StereoMate Analyser.
+	 */
+	static final int OBJ_VAL = 100, IN_VAL = 101, OUT_VAL = 102;
+
+	/**
+	 * Number of ROIs along each side of the stack - the stack is tiled with roiGrid * roiGrid ROIs.
+	 */
+	@Param({"1", "3"})
+	public int roiGrid;
+
+	RoiAssessmentHandler roiHandler;
+
+	ArrayList<DatasetWrapper> roiDatasets;
+
+
+	@Override
+	int objVal() {
+		return OBJ_VAL;
+	}
+
+	@Override
+	void setupBenchmark() {
+		ArrayList<Roi> rois = new ArrayList<Roi>();
+		int roiSize = sizeXY / roiGrid;
+		for(int y=0; y<roiGrid; y++) {
+			for(int x=0; x<roiGrid; x++) {
+				rois.add( new Roi(x * roiSize, y * roiSize, roiSize, roiSize) );
+			}
+		}
+
+		roiDatasets = new ArrayList<DatasetWrapper>();
+		for(int a=0; a<rois.size(); a++) {
+			roiDatasets.add( new DatasetWrapper("benchmark",
+								ObjectDataContainer.returnObjectMeasuresAndClassifierClassAttributes() ) );
+		}
+
+		// exclusion zone of one object diameter in XY and Z:
+		roiHandler = new RoiAssessmentHandler(rois, roiDatasets, 0, 0, sizeXY, sizeXY,
+												2 * radius + 1, 2 * radius + 1);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearRoiDatasets() {
+		for(int a=0; a<roiDatasets.size(); a++) {
+			roiDatasets.get(a).delete();
+		}
+	}
+
+	/**
+	 * Sort the objects on each ROI border into IN or OUT of the ROI, and reset the OUT objects.
+	 * @param counter
+	 */
+	@Benchmark
+	public void processBorderPoints(VoxelCounter counter) {
+		ArrayList<Points> borderPoints = roiHandler.getRoiBoundaries();
+		ArrayList<Roi> rois = roiHandler.getRois();
+		for(int a=0; a<borderPoints.size(); a++) {
+			imageHandler.processBorderPoints(borderPoints.get(a), sizeZ, IN_VAL, OUT_VAL, OBJ_VAL, rois.get(a));
+			imageHandler.setBorderPoints(borderPoints.get(a), sizeZ, OUT_VAL, OBJ_VAL);
+		}
+		counter.voxels += stack.getVoxelCount();
+	}
+
+	/**
+	 * Assess the whole objects in each ROI, with the XY and Z exclusion zones applied.
+	 * @param counter
+	 * @return
+	 */
+	@Benchmark
+	public ArrayList<DatasetWrapper> analyseRoisWholeObjects(VoxelCounter counter) {
+		roiHandler.analyseRoisWholeObjects(imageHandler, null, null, null, OBJ_VAL, IN_VAL, OUT_VAL,
+				ObjectDataContainer.FEATUREATR, true, true);
+		counter.voxels += stack.getVoxelCount();
+		return roiDatasets;
+	}
+
+	/**
+	 * Assess the whole objects in each ROI by ROI membership - the stack is not modified.
+	 * @param counter
+	 * @return
+	 */
+	@Benchmark
+	public ArrayList<DatasetWrapper> analyseRoisWholeObjectsByMembership(VoxelCounter counter) {
+		roiHandler.analyseRoisWholeObjectsByMembership(imageHandler, null, null, new int[] {OBJ_VAL},
+				new String[] {ObjectDataContainer.FEATUREATR}, true, true);
+		counter.voxels += stack.getVoxelCount();
+		return roiDatasets;
+	}
+
+}
@@ -0,0 +1,242 @@
+package stereomate.benchmark;
+
+import java.util.Random;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ShortProcessor;
+
+/**
+ * A synthetic thresholded stack of spherical objects, with a matching 16-bit intensity stack, for
+ * benchmarking the voxel processing methods.
+ * <p>
+ * The stack is divided into cubic cells of side 2 * radius + 3, and a sphere of the given radius is placed
+ * in the centre of each selected cell - the spheres are always separated by at least 2 background voxels.
+ * Cells are selected at random so the fraction of voxels in objects is close to density, up to the maximum
+ * the cells can hold (about 0.52 * (2r+1)^3 / (2r+3)^3).
+ * <p>
+ * Connectivity is controlled by bridges:  the fraction of objects joined to the next object in x by a
+ * two-voxel bridge, whose voxels only touch each other and the spheres at their corners.  The bridged
+ * objects are therefore one object with 26-connectivity, but separate objects (plus bridge fragments) with
+ * 6 or 18 connectivity.
+ * <p>
+ * The stack is generated from a seed, so is identical across benchmark runs.  The thresholded pixels are
+ * held, so any thresholdImp built by this class can be restored after it has been modified.
+ *
+ * @author stevenwest
+ *
+ */
+public class SyntheticStack {
+
+	int sizeX, sizeY, sizeZ;
+
+	/**
+	 * Pixel value of the objects in the thresholded stack - background is 0.
+	 */
+	int objVal;
+
+	/**
+	 * The thresholded and intensity pixels, indexed [z][y * sizeX + x].
+	 */
+	byte[][] thresholdPixels;
+	short[][] intensityPixels;
+
+	/**
+	 * Number of spheres placed, and voxels set to objVal.
+	 */
+	int sphereCount;
+	long objectVoxels;
+
+
+	/**
+	 * Generates the synthetic stack.
+	 * @param sizeX
+	 * @param sizeY
+	 * @param sizeZ
+	 * @param objVal Pixel value of objects, 1 to 255.
+	 * @param density Fraction of voxels to place in objects, 0 to 1.
+	 * @param radius Radius of each sphere, in voxels.
+	 * @param bridges Fraction of objects bridged to the next object in x, 0 to 1.
+	 * @param seed
+	 */
+	public SyntheticStack(int sizeX, int sizeY, int sizeZ, int objVal,
+							double density, int radius, double bridges, long seed) {
+
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+		this.objVal = objVal;
+
+		thresholdPixels = new byte[sizeZ][sizeX * sizeY];
+		intensityPixels = new short[sizeZ][sizeX * sizeY];
+
+		Random random = new Random(seed);
+
+		// cells which hold a sphere and 2 background voxels between each sphere:
+		int cell = 2 * radius + 3;
+		int cellsX = sizeX / cell;
+		int cellsY = sizeY / cell;
+		int cellsZ = Math.max(1, sizeZ / cell);
+
+		// voxels of one sphere:
+		int sphereVoxels = 0;
+		int r2 = radius * radius;
+		for(int zz=-radius; zz<=radius; zz++) {
+			for(int yy=-radius; yy<=radius; yy++) {
+				for(int xx=-radius; xx<=radius; xx++) {
+					if(xx*xx + yy*yy + zz*zz <= r2) {
+						sphereVoxels++;
+					}
+				}
+			}
+		}
+
+		// probability of each cell holding a sphere:
+		double cellProbability = density * ( (double)sizeX * sizeY * sizeZ ) /
+											( (double)cellsX * cellsY * cellsZ * sphereVoxels );
+		cellProbability = Math.min(1.0, cellProbability);
+
+		boolean[][][] selected = new boolean[cellsZ][cellsY][cellsX];
+		for(int cz=0; cz<cellsZ; cz++) {
+			for(int cy=0; cy<cellsY; cy++) {
+				for(int cx=0; cx<cellsX; cx++) {
+					selected[cz][cy][cx] = random.nextDouble() < cellProbability;
+				}
+			}
+		}
+
+		for(int cz=0; cz<cellsZ; cz++) {
+			for(int cy=0; cy<cellsY; cy++) {
+				for(int cx=0; cx<cellsX; cx++) {
+
+					if(selected[cz][cy][cx] == false) {
+						continue;
+					}
+
+					// sphere centre - if the stack is thinner than a cell in z, centre it in z:
+					int x = cx * cell + radius + 1;
+					int y = cy * cell + radius + 1;
+					int z = sizeZ < cell ? sizeZ / 2 : cz * cell + radius + 1;
+
+					addSphere(x, y, z, radius);
+					sphereCount++;
+
+					// bridge to the next sphere in x - the next sphere starts at x + radius + 3:
+					if(cx + 1 < cellsX && selected[cz][cy][cx+1] && random.nextDouble() < bridges) {
+						setObjectVoxel(x + radius + 1, y + 1, z + 1 < sizeZ ? z + 1 : z - 1);
+						setObjectVoxel(x + radius + 2, y, z);
+					}
+				}
+			}
+		}
+
+		// intensity - objects are brighter than the background:
+		for(int z=0; z<sizeZ; z++) {
+			for(int xy=0; xy<sizeX * sizeY; xy++) {
+				if(thresholdPixels[z][xy] != 0) {
+					intensityPixels[z][xy] = (short)( 1000 + random.nextInt(1000) );
+				}
+				else {
+					intensityPixels[z][xy] = (short)random.nextInt(100);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Set all voxels within radius of x,y,z to objVal - the sphere must lie within the stack in x and y.
+	 */
+	private void addSphere(int x, int y, int z, int radius) {
+		int r2 = radius * radius;
+		for(int zz=-radius; zz<=radius; zz++) {
+			if(z + zz < 0 || z + zz >= sizeZ) {
+				continue;
+			}
+			for(int yy=-radius; yy<=radius; yy++) {
+				for(int xx=-radius; xx<=radius; xx++) {
+					if(xx*xx + yy*yy + zz*zz <= r2) {
+						setObjectVoxel(x + xx, y + yy, z + zz);
+					}
+				}
+			}
+		}
+	}
+
+	private void setObjectVoxel(int x, int y, int z) {
+		if(thresholdPixels[z][y * sizeX + x] == 0) {
+			thresholdPixels[z][y * sizeX + x] = (byte)objVal;
+			objectVoxels++;
+		}
+	}
+
+	/**
+	 * Returns a new 8-bit ImagePlus holding a copy of the thresholded stack.
+	 * @return
+	 */
+	public ImagePlus getThresholdImp() {
+		ImageStack stack = new ImageStack(sizeX, sizeY);
+		for(int z=0; z<sizeZ; z++) {
+			stack.addSlice( new ByteProcessor(sizeX, sizeY, thresholdPixels[z].clone()) );
+		}
+		return new ImagePlus("synthetic threshold", stack);
+	}
+
+	/**
+	 * Returns a new 16-bit ImagePlus holding a copy of the intensity stack.
+	 * @return
+	 */
+	public ImagePlus getIntensityImp() {
+		ImageStack stack = new ImageStack(sizeX, sizeY);
+		for(int z=0; z<sizeZ; z++) {
+			stack.addSlice( new ShortProcessor(sizeX, sizeY, intensityPixels[z].clone(), null) );
+		}
+		return new ImagePlus("synthetic intensity", stack);
+	}
+
+	/**
+	 * Restores the pixels of a thresholdImp returned by getThresholdImp() to the generated stack.  The pixel
+	 * arrays are copied into, not replaced, so any ImageInt wrapping thresholdImp remains valid.
+	 * @param thresholdImp
+	 */
+	public void restore(ImagePlus thresholdImp) {
+		ImageStack stack = thresholdImp.getStack();
+		for(int z=0; z<sizeZ; z++) {
+			System.arraycopy(thresholdPixels[z], 0, (byte[])stack.getPixels(z+1), 0, sizeX * sizeY);
+		}
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getSizeZ() {
+		return sizeZ;
+	}
+
+	/**
+	 * Total number of voxels in the stack.
+	 * @return
+	 */
+	public long getVoxelCount() {
+		return (long)sizeX * sizeY * sizeZ;
+	}
+
+	/**
+	 * Number of voxels set to objVal - sphere and bridge voxels.
+	 * @return
+	 */
+	public long getObjectVoxelCount() {
+		return objectVoxels;
+	}
+
+	public int getSphereCount() {
+		return sphereCount;
+	}
+
+}
@@ -0,0 +1,98 @@
+package stereomate.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ij.ImagePlus;
+import stereomate.image.ImageHandler;
+
+/**
+ * Base state of the benchmarks run on a SyntheticStack.  Object density, size and connectivity are set
+ * with the density, radius and bridges parameters, and the connectivity used to process the objects with
+ * objConnectivity.  An ImageHandler is built on the thresholded and intensity stacks.
+ * <p>
+ * Most benchmarks modify the thresholded stack, so it is restored before each invocation - each invocation
+ * processes the whole stack, so this setup does not distort the timing.
+ *
+ * @author stevenwest
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class SyntheticStackBenchmark {
+
+	@Param({"256"})
+	public int sizeXY;
+
+	@Param({"32"})
+	public int sizeZ;
+
+	/**
+	 * Fraction of voxels in objects.
+	 */
+	@Param({"0.05", "0.25"})
+	public double density;
+
+	/**
+	 * Object radius, in voxels.
+	 */
+	@Param({"2", "6"})
+	public int radius;
+
+	/**
+	 * Fraction of objects bridged to a neighbour - bridged objects are only connected with 26 connectivity.
+	 */
+	@Param({"0.0", "0.5"})
+	public double bridges;
+
+	@Param({"6-connected", "26-connected"})
+	public String objConnectivity;
+
+	SyntheticStack stack;
+
+	ImagePlus thresholdImp;
+
+	ImageHandler imageHandler;
+
+
+	/**
+	 * Pixel value of the objects in the thresholded stack.
+	 * @return
+	 */
+	abstract int objVal();
+
+	@Setup(Level.Trial)
+	public void setupStack() {
+		stack = new SyntheticStack(sizeXY, sizeXY, sizeZ, objVal(), density, radius, bridges, 42L);
+		thresholdImp = stack.getThresholdImp();
+		imageHandler = new ImageHandler(thresholdImp, stack.getIntensityImp(), objConnectivity);
+		setupBenchmark();
+	}
+
+	/**
+	 * Setup of each benchmark class, called once the stack and imageHandler are built.
+	 */
+	void setupBenchmark() {
+	}
+
+	@Setup(Level.Invocation)
+	public void restoreStack() {
+		stack.restore(thresholdImp);
+	}
+
+}
@@ -0,0 +1,31 @@
+package stereomate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH auxiliary counter of the voxels processed by a benchmark.  Each benchmark method adds the number of
+ * voxels it processed to voxels, and JMH reports this as a rate - voxels/sec - alongside the primary
+ * ops/sec score.
+ *
+ * @author stevenwest
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class VoxelCounter {
+
+	/**
+	 * Voxels processed in this iteration.
+	 */
+	public long voxels;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		voxels = 0;
+	}
+
+}
@@ -0,0 +1,82 @@
+package stereomate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import ij.ImageStack;
+import stereomate.object.ConnectedComponentLabeller;
+import stereomate.object.FloodFill3D;
+import stereomate.object.ObjectLabels;
+
+/**
+ * Benchmarks of the whole-stack object traversal methods:  flood filling every object, and connected
+ * component labelling.  Each benchmark reports the stack voxels processed per second in the voxels counter.
+ *
+ * @author stevenwest
+ *
+ */
+public class VoxelProcessingBenchmark extends SyntheticStackBenchmark {
+
+	static final int OBJ_VAL = 255, SET_VAL = 254;
+
+	FloodFill3D floodFill;
+
+	ConnectedComponentLabeller labeller;
+
+	/**
+	 * The stack pixel arrays, for the flood fill.
+	 */
+	byte[][] thresholdPixels;
+
+
+	@Override
+	int objVal() {
+		return OBJ_VAL;
+	}
+
+	@Override
+	void setupBenchmark() {
+		floodFill = new FloodFill3D( FloodFill3D.resolveConnectivity(objConnectivity) );
+		labeller = new ConnectedComponentLabeller(objConnectivity);
+
+		ImageStack is = thresholdImp.getStack();
+		thresholdPixels = new byte[sizeZ][];
+		for(int z=0; z<sizeZ; z++) {
+			thresholdPixels[z] = (byte[])is.getPixels(z+1);
+		}
+	}
+
+	/**
+	 * Flood fill every object in the stack from OBJ_VAL to SET_VAL.
+	 * @param counter
+	 * @return
+	 */
+	@Benchmark
+	public int floodFill(VoxelCounter counter) {
+		int filled = 0;
+		int sizeX = stack.getSizeX();
+		int sizeY = stack.getSizeY();
+		for(int z=0; z<sizeZ; z++) {
+			for(int xy=0; xy<sizeX * sizeY; xy++) {
+				if(thresholdPixels[z][xy] == (byte)OBJ_VAL) {
+					filled += floodFill.fill(thresholdPixels, sizeX, sizeY, sizeZ,
+							xy % sizeX, xy / sizeX, z, (byte)OBJ_VAL, (byte)SET_VAL);
+				}
+			}
+		}
+		counter.voxels += stack.getVoxelCount();
+		return filled;
+	}
+
+	/**
+	 * Label every object in the stack - the stack is not modified.
+	 * @param counter
+	 * @return
+	 */
+	@Benchmark
+	public ObjectLabels labelObjects(VoxelCounter counter) {
+		ObjectLabels labels = labeller.label(imageHandler.thresholdImgInt, OBJ_VAL);
+		counter.voxels += stack.getVoxelCount();
+		return labels;
+	}
+
+}
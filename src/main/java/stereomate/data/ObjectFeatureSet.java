@@ -0,0 +1,184 @@
+package stereomate.data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import weka.core.Instances;
+
+/**
+ * Specifies which of the ObjectDataContainer measures are computed when an object is assessed in
+ * ObjectVoxelProcessing.  Measures which are not in the set are skipped, and written to the
+ * ObjectDataContainer as missing values (weka Utils.missingValue()), not zero.
+ * <p>
+ * The location, volume, area, bounding box, centre, volume to box ratio, and mean, sd, max and min
+ * intensity measures are ALWAYS computed - these are accumulated from the object voxels at negligible
+ * cost, and the first voxel and object number are needed to map objects to dataset rows.
+ * <p>
+ * The remaining measures are organised into tiers:
+ * <p>
+ * BASIC - adds the median intensity.
+ * <p>
+ * SHAPE - compactness, sphericity, elongations, and ellipsoid volume measures.
+ * <p>
+ * CONVEX - convex hull volume and surface, solidity and convexity.
+ * <p>
+ * INVARIANTS - homogeneous and geometric moment invariants, and the biocat moments.
+ * <p>
+ * A set can be built from tiers, or from a list of attributes - such as those used by an ObjectClassifier
+ * - in which case only the measures those attributes need are computed.  The default set contains all
+ * measures.
+ *
+ * @author stevenwest
+ *
+ */
+public class ObjectFeatureSet {
+
+	/**
+	 * Tier names.
+	 */
+	public static final String BASIC = "basic", SHAPE = "shape", CONVEX = "convex", INVARIANTS = "invariants";
+
+	/**
+	 * Titles of the measures which are always computed.
+	 */
+	public static final String[] ALWAYS_TITLES = new String[] {
+			ObjectDataContainer.X1, ObjectDataContainer.Y1, ObjectDataContainer.Z1, ObjectDataContainer.OBJNO,
+			ObjectDataContainer.VOLVOXELS, ObjectDataContainer.AREAVOXELS,
+			ObjectDataContainer.XMIN, ObjectDataContainer.YMIN, ObjectDataContainer.ZMIN,
+			ObjectDataContainer.XLENGTH, ObjectDataContainer.YLENGTH, ObjectDataContainer.ZLENGTH,
+			ObjectDataContainer.CENTREX, ObjectDataContainer.CENTREY, ObjectDataContainer.CENTREZ,
+			ObjectDataContainer.VOLTOVOLBOX,
+			ObjectDataContainer.MEANPIX, ObjectDataContainer.SDPIX, ObjectDataContainer.MAXPIX,
+			ObjectDataContainer.MINPIX };
+
+	/**
+	 * Titles of the measures in each tier.
+	 */
+	public static final String[] BASIC_TITLES = new String[] { ObjectDataContainer.MEDIANPIX };
+
+	public static final String[] SHAPE_TITLES = new String[] {
+			ObjectDataContainer.COMPACTNESS, ObjectDataContainer.SPHERICITY,
+			ObjectDataContainer.MAINELONG, ObjectDataContainer.MEDIANELONG,
+			ObjectDataContainer.VOLELLIPSE, ObjectDataContainer.VOLTOVOLELLIPSE };
+
+	public static final String[] CONVEX_TITLES = new String[] {
+			ObjectDataContainer.VOLCONVEX, ObjectDataContainer.SURFCONVEX,
+			ObjectDataContainer.SOLIDITY3D, ObjectDataContainer.CONVEXITY3D };
+
+	public static final String[] INVARIANTS_TITLES = new String[] {
+			ObjectDataContainer.HOMINV1, ObjectDataContainer.HOMINV2, ObjectDataContainer.HOMINV3,
+			ObjectDataContainer.HOMINV4, ObjectDataContainer.HOMINV5,
+			ObjectDataContainer.GEOINV1, ObjectDataContainer.GEOINV2, ObjectDataContainer.GEOINV3,
+			ObjectDataContainer.GEOINV4, ObjectDataContainer.GEOINV5, ObjectDataContainer.GEOINV6,
+			ObjectDataContainer.BIOCATJ1, ObjectDataContainer.BIOCATJ2, ObjectDataContainer.BIOCATJ3,
+			ObjectDataContainer.BIOCATI1, ObjectDataContainer.BIOCATI2 };
+
+	/**
+	 * Titles of the measures in this set.
+	 */
+	HashSet<String> titles;
+
+
+	/**
+	 * Constructs an ObjectFeatureSet containing all measures.
+	 */
+	public ObjectFeatureSet() {
+		this(BASIC, SHAPE, CONVEX, INVARIANTS);
+	}
+
+	/**
+	 * Constructs an ObjectFeatureSet containing the measures which are always computed, plus the measures
+	 * in the named tiers:  BASIC, SHAPE, CONVEX or INVARIANTS.  Unknown tier names are ignored.
+	 * @param tiers
+	 */
+	public ObjectFeatureSet(String... tiers) {
+		titles = new HashSet<String>( Arrays.asList(ALWAYS_TITLES) );
+		for(String tier : tiers) {
+			addTier(tier);
+		}
+	}
+
+	/**
+	 * Returns an ObjectFeatureSet containing the measures which are always computed, plus the measures of
+	 * each Attribute in attributes - for example, the attributes returned by
+	 * ObjectClassifier.getClassifierAttributes().  Attributes which are not measures (such as the class
+	 * attributes) are ignored.
+	 * @param attributes
+	 * @return
+	 */
+	public static ObjectFeatureSet fromAttributes(Instances attributes) {
+		ObjectFeatureSet featureSet = new ObjectFeatureSet( new String[0] );
+		for(int a=0; a<attributes.numAttributes(); a++) {
+			featureSet.addAttribute( attributes.attribute(a).name() );
+		}
+		return featureSet;
+	}
+
+	/**
+	 * Add all the measures in the named tier to this set.
+	 * @param tier
+	 */
+	public void addTier(String tier) {
+		if( tier.equalsIgnoreCase(BASIC) ) {
+			titles.addAll( Arrays.asList(BASIC_TITLES) );
+		}
+		else if( tier.equalsIgnoreCase(SHAPE) ) {
+			titles.addAll( Arrays.asList(SHAPE_TITLES) );
+		}
+		else if( tier.equalsIgnoreCase(CONVEX) ) {
+			titles.addAll( Arrays.asList(CONVEX_TITLES) );
+		}
+		else if( tier.equalsIgnoreCase(INVARIANTS) ) {
+			titles.addAll( Arrays.asList(INVARIANTS_TITLES) );
+		}
+	}
+
+	/**
+	 * Add the measure with the given attribute title to this set.  Titles which are not measures in
+	 * ObjectDataContainer are ignored.
+	 * @param attributeTitle
+	 */
+	public void addAttribute(String attributeTitle) {
+		if( ObjectDataContainer.dataTitlesContains(attributeTitle) ) {
+			titles.add(attributeTitle);
+		}
+	}
+
+	/**
+	 * Returns true if the measure with the given title is in this set.
+	 * @param attributeTitle
+	 * @return
+	 */
+	public boolean contains(String attributeTitle) {
+		return titles.contains(attributeTitle);
+	}
+
+	/**
+	 * Returns true if any of the measures with the given titles are in this set.
+	 * @param attributeTitles
+	 * @return
+	 */
+	public boolean containsAny(String... attributeTitles) {
+		for(String title : attributeTitles) {
+			if( titles.contains(title) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if this set contains any measure which is computed on an mcib3d Object3DVoxels - the
+	 * compactness and sphericity, which use the mcib3d corrected surface area, and the INVARIANTS measures,
+	 * which use moments above the second order.  The elongations and ellipsoid measures are computed from the
+	 * second moments in ObjectFeatureAccumulator, and the BASIC and CONVEX measures from the object voxels by
+	 * ObjectFeatureAccumulator and ConvexHull3D.  If false, no Object3DVoxels needs to be built to assess an
+	 * object.
+	 * @return
+	 */
+	public boolean requiresObject3D() {
+		return containsAny(ObjectDataContainer.COMPACTNESS, ObjectDataContainer.SPHERICITY) || 
+				containsAny(INVARIANTS_TITLES);
+	}
+
+}
@@ -0,0 +1,137 @@
+package stereomate.image;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * An ImageStack which is a view of one channel of a multi-channel ImageStack:  each slice REFERENCES the
+ * pixel array of the channel slice in the source stack - no pixels are copied when the view is made, as
+ * ImageWindowWithPanel.filterImageStackNoDup().
+ * <p>
+ * The view is copy-on-write:  before any pixels of the view are modified, copyOnWrite() must be called, which
+ * copies each slice still shared with the source stack into a new pixel array - so the source channel is never
+ * modified.  The image processing procedure stacks call copyOnWrite(ImagePlus) before running each command, so
+ * the channel is only copied if a command actually runs on it.
+ * <p>
+ * Shared slices are tracked by pixel array identity, so slices added, removed or replaced on the view (for
+ * example by an ImageJ command which sets new pixels) are handled correctly.
+ *
+ * @author stevenwest
+ *
+ */
+public class ChannelStack extends ImageStack {
+
+	/**
+	 * The pixel arrays of the source stack which the view still references.
+	 */
+	Set<Object> sharedPixels;
+
+
+	/**
+	 * Constructs a view of channel channelNumber (1-based) of is, which holds totalNumberOfChannels channels -
+	 * the slices channelNumber, channelNumber + totalNumberOfChannels, and so on.
+	 * @param is
+	 * @param channelNumber
+	 * @param totalNumberOfChannels
+	 */
+	public ChannelStack(ImageStack is, int channelNumber, int totalNumberOfChannels) {
+
+		super( is.getWidth(), is.getHeight() );
+
+		sharedPixels = Collections.newSetFromMap( new IdentityHashMap<Object, Boolean>() );
+
+		Object pixels;
+		for(int a=channelNumber; a<=is.getSize(); a=a+totalNumberOfChannels) {
+			pixels = is.getPixels(a);
+			sharedPixels.add(pixels);
+			addSlice( is.getSliceLabel(a), pixels );
+		}
+
+	}
+
+	/**
+	 * Returns true if any slice of this view still references the pixels of the source stack.
+	 * @return
+	 */
+	public synchronized boolean isShared() {
+		for(int n=1; n<=getSize(); n++) {
+			if( sharedPixels.contains( getPixels(n) ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copies every slice which still references the pixels of the source stack into a new pixel array, so the
+	 * view can be modified without modifying the source.  Returns true if any slice was copied.
+	 * @return
+	 */
+	public synchronized boolean copyOnWrite() {
+
+		boolean copied = false;
+		Object pixels;
+
+		for(int n=1; n<=getSize(); n++) {
+			pixels = getPixels(n);
+			if( sharedPixels.contains(pixels) ) {
+				setPixels( copyPixels(pixels), n );
+				copied = true;
+			}
+		}
+
+		sharedPixels.clear();
+
+		return copied;
+	}
+
+	/**
+	 * Calls copyOnWrite() on the stack of imp if it is a ChannelStack - to be called before the pixels of imp
+	 * are modified.  Returns true if any slice was copied - any other stack referencing the slices of imp (such
+	 * as the merged stack of an ImageWindowWithPanel) must then be updated.  The processor of imp is set to the
+	 * copied pixels of its current slice, so commands run on the processor modify the copy, not the source.
+	 * @param imp
+	 * @return
+	 */
+	public static boolean copyOnWrite(ImagePlus imp) {
+		ImageStack stack = imp.getStack();
+		if(stack instanceof ChannelStack && ((ChannelStack)stack).copyOnWrite() ) {
+			imp.getProcessor().setPixels( stack.getPixels( imp.getCurrentSlice() ) );
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets stack - such as a copy-on-write view - as the stack of imp, and sets the processor of imp to the
+	 * pixels of its current slice in stack, so a command run on the processor reads and writes the pixels of
+	 * stack rather than those of the previous stack of imp.
+	 * @param imp
+	 * @param stack
+	 */
+	public static void setStack(ImagePlus imp, ImageStack stack) {
+		imp.setStack(stack);
+		imp.getProcessor().setPixels( stack.getPixels( imp.getCurrentSlice() ) );
+	}
+
+	/**
+	 * Returns a copy of a byte, short, float or int pixel array.
+	 */
+	private static Object copyPixels(Object pixels) {
+		if(pixels instanceof byte[]) {
+			return ((byte[])pixels).clone();
+		}
+		else if(pixels instanceof short[]) {
+			return ((short[])pixels).clone();
+		}
+		else if(pixels instanceof float[]) {
+			return ((float[])pixels).clone();
+		}
+		return ((int[])pixels).clone();
+	}
+
+}
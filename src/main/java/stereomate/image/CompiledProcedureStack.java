@@ -0,0 +1,727 @@
+package stereomate.image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.Prefs;
+import ij.plugin.Filters3D;
+import ij.plugin.GaussianBlur3D;
+import ij.plugin.filter.BackgroundSubtracter;
+import ij.process.AutoThresholder;
+import stereomate.image.SliceParallelExecutor.RangeTask;
+import stereomate.image.SliceParallelExecutor.SliceTask;
+
+/**
+ * A procedure stack compiled for running:  the command title and options String of each step which is
+ * toggled on are parsed ONCE into a typed Step, which runs the command in-process - calling the ImageJ
+ * filter and threshold classes directly, or working on the stack pixel arrays - rather than dispatching
+ * the command String through IJ.run(), which parses the macro options and looks up the command on every run.
+ * <p>
+ * The steps compiled are those the procedure stacks use:  Gaussian Blur 3D, Median, Mean, Minimum, Maximum and
+ * Variance 3D, Subtract Background, Auto Threshold and Fill Holes.  Every other command, any options a step does
+ * not recognise, and any image a step cannot process exactly as the ImageJ command would (for example a
+ * 16-bit image for Auto Threshold, or an inverted LUT for Fill Holes) fall back to IJ.run() with the original
+ * command title and options.
+ * <p>
+ * Steps which modify the pixels in place call ChannelStack.copyOnWrite() first, and the 3D filters, which
+ * return a new stack, leave a channel view uncopied.
+ * <p>
+ * The compiled steps run slice-parallel on the executor set with setSliceThreads():  slice independent (2D)
+ * steps process their slices across the pool, and the 3D filters process ranges of slices with a halo as
+ * deep as the filter reaches in Z, so the result is identical to a serial run.
+ * <p>
+ * Each step also gives the halo it reads around a voxel in XY and Z, from its kernel radius - so the steps
+ * can be run on tiles of the stack by TiledProcedureStack.
+ *
+ * @author stevenwest
+ *
+ */
+public class CompiledProcedureStack {
+
+	/**
+	 * The compiled steps - only the steps toggled on in the procedure stack, in order.
+	 */
+	ArrayList<Step> steps;
+
+	/**
+	 * Copies of the command titles, options and toggles the steps were compiled from.
+	 */
+	ArrayList<String> commandTitles, commandOptions, toggleProperties;
+
+	/**
+	 * Executor the compiled steps run on - one thread per processor by default.
+	 */
+	static SliceParallelExecutor executor = new SliceParallelExecutor( Runtime.getRuntime().availableProcessors() );
+
+
+	/**
+	 * Compiles every step of procedureStack which is toggled on.
+	 * @param procedureStack
+	 */
+	public CompiledProcedureStack(ImageProcessingProcedureStack3 procedureStack) {
+		commandTitles = new ArrayList<String>(procedureStack.commandTitles);
+		commandOptions = new ArrayList<String>(procedureStack.commandOptions);
+		toggleProperties = new ArrayList<String>(procedureStack.toggleProperties);
+		steps = new ArrayList<Step>();
+		for(int a=0; a<procedureStack.commandTitles.size(); a++) {
+			if(procedureStack.getToggle(a) ) {
+				steps.add( compile( procedureStack.getCommand(a), procedureStack.getOptions(a) ) );
+			}
+		}
+	}
+
+	/**
+	 * Returns true if this was compiled from the current commands of procedureStack - so it need not be
+	 * compiled again.
+	 * @param procedureStack
+	 * @return
+	 */
+	public boolean isCompiledFrom(ImageProcessingProcedureStack3 procedureStack) {
+		return commandTitles.equals(procedureStack.commandTitles) 
+				&& commandOptions.equals(procedureStack.commandOptions)
+				&& toggleProperties.equals(procedureStack.toggleProperties);
+	}
+
+	/**
+	 * Set the number of threads the compiled steps of all procedure stacks run on.  If threads is 1 or less,
+	 * steps run serially.  The result is identical in either case.
+	 * @param threads
+	 */
+	public static synchronized void setSliceThreads(int threads) {
+		executor.shutdown();
+		executor = new SliceParallelExecutor(threads);
+	}
+
+	public static int getSliceThreads() {
+		return executor.getThreads();
+	}
+
+	public int size() {
+		return steps.size();
+	}
+
+	public Step getStep(int index) {
+		return steps.get(index);
+	}
+
+	/**
+	 * Runs every step on imp, in order.
+	 * @param imp
+	 */
+	public void run(ImagePlus imp) {
+		for(int a=0; a<steps.size(); a++) {
+			steps.get(a).run(imp);
+		}
+	}
+
+	/**
+	 * Compiles one command - returns the typed Step for commandTitle, or a Step which runs the command with
+	 * IJ.run() if it is not compiled, or its options are not recognised.
+	 * @param commandTitle
+	 * @param commandOptions
+	 * @return
+	 */
+	public static Step compile(String commandTitle, String commandOptions) {
+
+		StepOptions options = new StepOptions(commandOptions);
+
+		try {
+			if(commandTitle.equals("Gaussian Blur 3D...") && options.only("x", "y", "z") ) {
+				return new GaussianBlur3DStep(commandTitle, commandOptions,
+						options.getDouble("x"), options.getDouble("y"), options.getDouble("z") );
+			}
+			else if(commandTitle.equals("Median 3D...") && options.only("x", "y", "z") ) {
+				return new Filter3DStep(commandTitle, commandOptions, Filters3D.MEDIAN, options);
+			}
+			else if(commandTitle.equals("Mean 3D...") && options.only("x", "y", "z") ) {
+				return new Filter3DStep(commandTitle, commandOptions, Filters3D.MEAN, options);
+			}
+			else if(commandTitle.equals("Minimum 3D...") && options.only("x", "y", "z") ) {
+				return new Filter3DStep(commandTitle, commandOptions, Filters3D.MIN, options);
+			}
+			else if(commandTitle.equals("Maximum 3D...") && options.only("x", "y", "z") ) {
+				return new Filter3DStep(commandTitle, commandOptions, Filters3D.MAX, options);
+			}
+			else if(commandTitle.equals("Variance 3D...") && options.only("x", "y", "z") ) {
+				return new Filter3DStep(commandTitle, commandOptions, Filters3D.VAR, options);
+			}
+			else if(commandTitle.equals("Subtract Background...")
+					&& options.only("rolling", "light", "sliding", "disable", "stack") ) {
+				return new SubtractBackgroundStep(commandTitle, commandOptions, options);
+			}
+			else if(commandTitle.equals("Auto Threshold")
+					&& options.only("method", "white", "stack", "use_stack_histogram") ) {
+				AutoThresholder.Method method = thresholdMethod( options.get("method") );
+				if(method != null) {
+					return new AutoThresholdStep(commandTitle, commandOptions, method, options);
+				}
+			}
+			else if(commandTitle.equals("Fill Holes") && options.only("stack") ) {
+				return new FillHolesStep(commandTitle, commandOptions, options.has("stack") );
+			}
+			else if(isRankFilter2D(commandTitle) && options.only("radius", "stack") && options.has("stack") ) {
+				// run with IJ.run(), but each slice only reads the pixels within the kernel radius of a pixel:
+				Step step = new Step(commandTitle, commandOptions);
+				step.haloXY = rankFilterReach( options.getDouble("radius") );
+				step.haloZ = 0;
+				return step;
+			}
+		}
+		catch(NumberFormatException e) {
+			// an option value is not a number - run the command with IJ.run(), which reports the error:
+		}
+
+		return new Step(commandTitle, commandOptions);
+	}
+
+	/**
+	 * Returns true if commandTitle is an ImageJ 2D rank filter - run slice by slice with the "stack" option.
+	 */
+	private static boolean isRankFilter2D(String commandTitle) {
+		return commandTitle.equals("Median...") || commandTitle.equals("Mean...") || commandTitle.equals("Minimum...")
+				|| commandTitle.equals("Maximum...") || commandTitle.equals("Variance...");
+	}
+
+	/**
+	 * Returns the pixels an ImageJ rank filter kernel of radius reaches from its centre - the kernel holds the
+	 * pixels within sqrt(radius^2 + 1).
+	 */
+	private static int rankFilterReach(double radius) {
+		return (int)Math.ceil( Math.sqrt(radius * radius + 1) );
+	}
+
+	/**
+	 * Returns the pixels a Gaussian blur of sigma reaches from its centre - wider than the kernel of any
+	 * accuracy ImageJ blurs with - or Step.WHOLE if ImageJ blurs sigma on a downscaled grid, which depends on
+	 * where the image starts, so the blur can only be run on the whole extent.
+	 */
+	private static int gaussianReach(double sigma) {
+		if(sigma > MAX_KERNEL_SIGMA) {
+			return Step.WHOLE;
+		}
+		return (int)Math.ceil(sigma * 5) + 1;
+	}
+
+	/**
+	 * Largest sigma ImageJ blurs with the full kernel, rather than on a downscaled image.
+	 */
+	static final double MAX_KERNEL_SIGMA = 4.5;
+
+	/**
+	 * Returns the AutoThresholder method of an Auto Threshold method option - the option without any bracketed
+	 * suffix, so "MinError(I)" is MinError - or null if it is not a method of AutoThresholder.
+	 */
+	private static AutoThresholder.Method thresholdMethod(String method) {
+		if(method == null) {
+			return null;
+		}
+		if(method.indexOf("(") >= 0) {
+			method = method.substring(0, method.indexOf("(") );
+		}
+		for(AutoThresholder.Method m : AutoThresholder.Method.values() ) {
+			if(m.name().equals(method) ) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the stack of imp is 8-bit, with a normal LUT, and ImageJ is set to black background -
+	 * so the binary commands treat 255 as foreground, as the compiled steps do.
+	 */
+	private static boolean isBlackBackground8bit(ImagePlus imp) {
+		return imp.getBitDepth() == 8 && Prefs.blackBackground && imp.getProcessor().isInvertedLut() == false;
+	}
+
+
+	/**
+	 * The options String of a command parsed into its values (key=value, where value may be enclosed in
+	 * '[' and ']') and its flags (a key with no value).
+	 */
+	static class StepOptions {
+
+		HashMap<String, String> values;
+		HashSet<String> flags;
+
+		StepOptions(String options) {
+			values = new HashMap<String, String>();
+			flags = new HashSet<String>();
+
+			int a = 0, length = options.length(), start, eq;
+			while(a < length) {
+				// skip spaces between options:
+				while(a < length && options.charAt(a) == ' ') {
+					a++;
+				}
+				if(a >= length) {
+					break;
+				}
+				start = a;
+				eq = -1;
+				while(a < length && options.charAt(a) != ' ') {
+					if(options.charAt(a) == '=' && eq == -1) {
+						eq = a;
+						if(a + 1 < length && options.charAt(a+1) == '[') {
+							// a bracketed value runs to the closing ']', and may contain spaces:
+							int close = options.indexOf(']', a + 1);
+							a = close == -1 ? length : close;
+						}
+					}
+					a++;
+				}
+				if(eq == -1) {
+					flags.add( options.substring(start, a) );
+				}
+				else {
+					String value = options.substring(eq + 1, a);
+					if(value.startsWith("[") && value.endsWith("]") ) {
+						value = value.substring(1, value.length() - 1);
+					}
+					values.put( options.substring(start, eq), value );
+				}
+			}
+		}
+
+		/**
+		 * Returns true if every value and flag has one of the keys - so no option is ignored by a compiled step.
+		 */
+		boolean only(String... keys) {
+			HashSet<String> known = new HashSet<String>();
+			for(String key : keys) {
+				known.add(key);
+			}
+			return known.containsAll( values.keySet() ) && known.containsAll(flags);
+		}
+
+		boolean has(String flag) {
+			return flags.contains(flag);
+		}
+
+		String get(String key) {
+			return values.get(key);
+		}
+
+		double getDouble(String key) {
+			if(values.get(key) == null) {
+				throw new NumberFormatException("missing option: " + key);
+			}
+			return Double.parseDouble( values.get(key) );
+		}
+
+	}
+
+
+	/**
+	 * A compiled step of a procedure stack.  This base class runs the command with IJ.run() - subclasses run
+	 * the command in-process in runNative(), and only fall back to IJ.run() if they cannot process the image.
+	 */
+	public static class Step {
+
+		String commandTitle, commandOptions;
+
+		/**
+		 * True if the step modifies the pixels of the image in place - so a channel view must be copied first.
+		 */
+		boolean inPlace;
+
+		/**
+		 * Pixels in XY, and slices in Z, the step reads either side of a voxel to compute it - or WHOLE if the
+		 * step needs the whole extent of the image on that axis (such as a threshold from the slice histogram).
+		 * A command run with IJ.run() is assumed to need the whole image, unless its kernel is known.
+		 */
+		int haloXY = WHOLE, haloZ = WHOLE;
+
+		public static final int WHOLE = -1;
+
+		Step(String commandTitle, String commandOptions) {
+			this(commandTitle, commandOptions, true);
+		}
+
+		Step(String commandTitle, String commandOptions, boolean inPlace) {
+			this.commandTitle = commandTitle;
+			this.commandOptions = commandOptions;
+			this.inPlace = inPlace;
+		}
+
+		public String getCommandTitle() {
+			return commandTitle;
+		}
+
+		public String getCommandOptions() {
+			return commandOptions;
+		}
+
+		/**
+		 * Returns true if the command is run in-process, rather than with IJ.run().
+		 * @return
+		 */
+		public boolean isCompiled() {
+			return getClass() != Step.class;
+		}
+
+		/**
+		 * Returns true if the step processes each slice on its own, without reading its neighbours.
+		 * @return
+		 */
+		public boolean isSliceIndependent() {
+			return haloZ == 0;
+		}
+
+		/**
+		 * Returns the pixels the step reads either side of a voxel in X and Y, or WHOLE if it needs whole slices.
+		 * @return
+		 */
+		public int getHaloXY() {
+			return haloXY;
+		}
+
+		/**
+		 * Returns the slices the step reads either side of a voxel in Z, or WHOLE if it needs the whole stack.
+		 * @return
+		 */
+		public int getHaloZ() {
+			return haloZ;
+		}
+
+		/**
+		 * Runs the step on imp - in-process if it can, otherwise with IJ.run().  Returns true if the pixels
+		 * of the stack of imp were copied or replaced - any other stack which references its slices (such as
+		 * the merged stack of an ImageWindowWithPanel) must then be updated.
+		 * @param imp
+		 * @return
+		 */
+		public boolean run(ImagePlus imp) {
+
+			ImageStack stack = imp.getStack();
+			boolean copied = false;
+
+			if(inPlace) {
+				copied = ChannelStack.copyOnWrite(imp);
+			}
+
+			if(runNative(imp) == false) {
+				copied = ChannelStack.copyOnWrite(imp) || copied;
+				IJ.run(imp, commandTitle, commandOptions);
+			}
+
+			return copied || imp.getStack() != stack;
+		}
+
+		/**
+		 * Runs the command in-process on imp, returning false - without modifying imp - if it cannot.
+		 * @param imp
+		 * @return
+		 */
+		boolean runNative(ImagePlus imp) {
+			return false;
+		}
+
+	}
+
+
+	/**
+	 * Gaussian Blur 3D... - x, y and z are the sigma in pixels.
+	 */
+	static class GaussianBlur3DStep extends Step {
+
+		double sigmaX, sigmaY, sigmaZ;
+
+		GaussianBlur3DStep(String commandTitle, String commandOptions, double sigmaX, double sigmaY, double sigmaZ) {
+			super(commandTitle, commandOptions);
+			this.sigmaX = sigmaX;
+			this.sigmaY = sigmaY;
+			this.sigmaZ = sigmaZ;
+			int reachX = gaussianReach(sigmaX), reachY = gaussianReach(sigmaY);
+			haloXY = reachX == WHOLE || reachY == WHOLE ? WHOLE : Math.max(reachX, reachY);
+			haloZ = gaussianReach(sigmaZ);
+		}
+
+		@Override
+		boolean runNative(ImagePlus imp) {
+
+			// a sigmaZ ImageJ blurs on a downscaled grid cannot be split into slice ranges:
+			if(haloZ == WHOLE) {
+				GaussianBlur3D.blur(imp, sigmaX, sigmaY, sigmaZ);
+				return true;
+			}
+
+			executor.processRangesInPlace(imp.getStack(), haloZ, new RangeTask() {
+				@Override
+				public ImageStack process(ImageStack range) {
+					GaussianBlur3D.blur( new ImagePlus("", range), sigmaX, sigmaY, sigmaZ);
+					return range;
+				}
+			});
+			return true;
+		}
+
+	}
+
+
+	/**
+	 * Median, Mean, Minimum, Maximum or Variance 3D... - x, y and z are the radii in pixels.  The filter
+	 * returns a new stack, which is set on the image, so the source pixels are only read.
+	 */
+	static class Filter3DStep extends Step {
+
+		int filter;
+		float radiusX, radiusY, radiusZ;
+
+		Filter3DStep(String commandTitle, String commandOptions, int filter, StepOptions options) {
+			super(commandTitle, commandOptions, false);
+			this.filter = filter;
+			radiusX = (float)options.getDouble("x");
+			radiusY = (float)options.getDouble("y");
+			radiusZ = (float)options.getDouble("z");
+			haloXY = (int)Math.ceil( Math.max(radiusX, radiusY) );
+			haloZ = (int)Math.ceil(radiusZ);
+		}
+
+		@Override
+		boolean runNative(ImagePlus imp) {
+			imp.setStack( executor.filterRanges(imp.getStack(), haloZ, new RangeTask() {
+				@Override
+				public ImageStack process(ImageStack range) {
+					return Filters3D.filter(range, filter, radiusX, radiusY, radiusZ);
+				}
+			}) );
+			return true;
+		}
+
+	}
+
+
+	/**
+	 * Subtract Background... - the rolling ball (or sliding paraboloid) background of each slice is
+	 * subtracted in place.
+	 */
+	static class SubtractBackgroundStep extends Step {
+
+		double radius;
+		boolean light, sliding, presmooth, stack;
+
+		SubtractBackgroundStep(String commandTitle, String commandOptions, StepOptions options) {
+			super(commandTitle, commandOptions);
+			radius = options.getDouble("rolling");
+			light = options.has("light");
+			sliding = options.has("sliding");
+			presmooth = options.has("disable") == false;
+			stack = options.has("stack");
+			// the ball is rolled over a shrunken slice, whose grid depends on where the slice starts - without
+				// "stack", ImageJ only processes the current slice of a stack, so the step needs the whole stack:
+			haloZ = stack ? 0 : WHOLE;
+		}
+
+		@Override
+		boolean runNative(ImagePlus imp) {
+
+			ImageStack is = imp.getStack();
+
+			// RGB images are processed by channel in ImageJ, and a single slice of a stack is the current slice -
+				// ImageJ also inverts light background for an inverted LUT, so these are left to the command:
+			if(imp.getBitDepth() == 24 || (stack == false && is.getSize() > 1) 
+					|| imp.getProcessor().isInvertedLut() == true) {
+				return false;
+			}
+
+			executor.runSlices(is, new SliceTask() {
+				@Override
+				public void process(ImageStack stack, int n) {
+					new BackgroundSubtracter().rollingBallBackground(stack.getProcessor(n), radius, false, 
+															light, sliding, presmooth, true);
+				}
+			});
+			return true;
+		}
+
+	}
+
+
+	/**
+	 * Auto Threshold - each slice of an 8-bit stack is thresholded with the AutoThresholder method, on its
+	 * own histogram or the histogram of the whole stack (use_stack_histogram).  Voxels above the threshold
+	 * are set to 255 (with white) or 0, and all others to the opposite value.
+	 */
+	static class AutoThresholdStep extends Step {
+
+		AutoThresholder.Method method;
+		boolean white, stack, useStackHistogram;
+
+		AutoThresholdStep(String commandTitle, String commandOptions, AutoThresholder.Method method,
+							StepOptions options) {
+			super(commandTitle, commandOptions);
+			this.method = method;
+			white = options.has("white");
+			stack = options.has("stack");
+			useStackHistogram = options.has("use_stack_histogram");
+			// the threshold is found from the histogram of the whole slice, or the whole stack - without "stack",
+				// ImageJ only thresholds the current slice of a stack, so the step needs the whole stack:
+			haloZ = useStackHistogram || stack == false ? WHOLE : 0;
+		}
+
+		@Override
+		boolean runNative(ImagePlus imp) {
+
+			ImageStack is = imp.getStack();
+
+			if(isBlackBackground8bit(imp) == false || (stack == false && is.getSize() > 1) ) {
+				return false;
+			}
+
+			final int[] thresholds = new int[is.getSize()];
+
+			if(useStackHistogram) {
+				int[] histogram = new int[256];
+				for(int n=1; n<=is.getSize(); n++) {
+					addHistogram( (byte[])is.getPixels(n), histogram);
+				}
+				Arrays.fill(thresholds, new AutoThresholder().getThreshold(method, histogram) );
+			}
+			else {
+				executor.runSlices(is, new SliceTask() {
+					@Override
+					public void process(ImageStack stack, int n) {
+						int[] histogram = new int[256];
+						addHistogram( (byte[])stack.getPixels(n), histogram);
+						thresholds[n-1] = new AutoThresholder().getThreshold(method, histogram);
+					}
+				});
+			}
+
+			// a method which finds no threshold is left to the ImageJ command:
+			for(int n=0; n<thresholds.length; n++) {
+				if(thresholds[n] < 0) {
+					return false;
+				}
+			}
+
+			final byte foreground = white ? (byte)255 : (byte)0;
+			final byte background = white ? (byte)0 : (byte)255;
+			executor.runSlices(is, new SliceTask() {
+				@Override
+				public void process(ImageStack stack, int n) {
+					byte[] pixels = (byte[])stack.getPixels(n);
+					for(int i=0; i<pixels.length; i++) {
+						pixels[i] = (pixels[i] & 0xff) > thresholds[n-1] ? foreground : background;
+					}
+				}
+			});
+			return true;
+		}
+
+		private static void addHistogram(byte[] pixels, int[] histogram) {
+			for(int i=0; i<pixels.length; i++) {
+				histogram[pixels[i] & 0xff]++;
+			}
+		}
+
+	}
+
+
+	/**
+	 * Fill Holes - in each slice of a binary 8-bit stack, every background (0) region which is not
+	 * 4-connected to the slice edge is set to foreground (255).
+	 */
+	static class FillHolesStep extends Step {
+
+		boolean stack;
+
+		FillHolesStep(String commandTitle, String commandOptions, boolean stack) {
+			super(commandTitle, commandOptions);
+			this.stack = stack;
+			// holes are found from the edge of the whole slice - without "stack", ImageJ only fills the current
+				// slice of a stack, so the step needs the whole stack:
+			haloZ = stack ? 0 : WHOLE;
+		}
+
+		@Override
+		boolean runNative(ImagePlus imp) {
+
+			ImageStack is = imp.getStack();
+
+			if(isBlackBackground8bit(imp) == false || (stack == false && is.getSize() > 1) ) {
+				return false;
+			}
+
+			// ImageJ requires a binary image - any other image is left to the command, which reports it:
+			for(int n=1; n<=is.getSize(); n++) {
+				byte[] pixels = (byte[])is.getPixels(n);
+				for(int i=0; i<pixels.length; i++) {
+					if(pixels[i] != 0 && pixels[i] != (byte)255) {
+						return false;
+					}
+				}
+			}
+
+			final int width = is.getWidth(), height = is.getHeight();
+			executor.runSlices(is, new SliceTask() {
+				@Override
+				public void process(ImageStack stack, int n) {
+					fillHoles( (byte[])stack.getPixels(n), width, height, new int[width * height]);
+				}
+			});
+			return true;
+		}
+
+		/**
+		 * Marks the background 4-connected to the edge of the slice, then sets all other background to 255.
+		 */
+		private static void fillHoles(byte[] pixels, int width, int height, int[] queue) {
+
+			final byte EDGE = (byte)127;
+			int head = 0, tail = 0;
+
+			// seed the queue with the background on the slice edge:
+			for(int x=0; x<width; x++) {
+				tail = seed(pixels, x, queue, tail, EDGE);
+				tail = seed(pixels, (height - 1) * width + x, queue, tail, EDGE);
+			}
+			for(int y=1; y<height-1; y++) {
+				tail = seed(pixels, y * width, queue, tail, EDGE);
+				tail = seed(pixels, y * width + width - 1, queue, tail, EDGE);
+			}
+
+			int i, x, y;
+			while(head < tail) {
+				i = queue[head++];
+				x = i % width;
+				y = i / width;
+				if(x > 0) {
+					tail = seed(pixels, i - 1, queue, tail, EDGE);
+				}
+				if(x < width - 1) {
+					tail = seed(pixels, i + 1, queue, tail, EDGE);
+				}
+				if(y > 0) {
+					tail = seed(pixels, i - width, queue, tail, EDGE);
+				}
+				if(y < height - 1) {
+					tail = seed(pixels, i + width, queue, tail, EDGE);
+				}
+			}
+
+			for(i=0; i<pixels.length; i++) {
+				pixels[i] = pixels[i] == EDGE ? 0 : (byte)255;
+			}
+		}
+
+		/**
+		 * Marks pixel i and adds it to the queue if it is background.
+		 */
+		private static int seed(byte[] pixels, int i, int[] queue, int tail, byte mark) {
+			if(pixels[i] == 0) {
+				pixels[i] = mark;
+				queue[tail++] = i;
+			}
+			return tail;
+		}
+
+	}
+
+}
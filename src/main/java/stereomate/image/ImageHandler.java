@@ -5,24 +5,36 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.gui.Roi;
 import ij.measure.Calibration;
-import ij.process.ImageProcessor;
 import ij.process.LUT;
 import mcib3d.image3d.ImageByte;
 import mcib3d.image3d.ImageInt;
+import mcib3d.image3d.ImageShort;
 import mcib3d.image3d.processing.Flood3D;
 import stereomate.data.DatasetWrapper;
 import stereomate.data.ObjectDataContainer;
 import stereomate.data.ObjectDatasetMap;
+import stereomate.data.ObjectFeatureSet;
+import stereomate.object.ConnectedComponentLabeller;
+import stereomate.object.FloodFill3D;
+import stereomate.object.ObjectFeatureAccumulator;
+import stereomate.object.ObjectLabelImage;
+import stereomate.object.ObjectLabels;
+import stereomate.object.ObjectVoxelIndex;
 import stereomate.object.ObjectVoxelProcessing;
 import stereomate.object.SelectedObject;
 import stereomate.roi.RoiAssessmentHandler;
 import stereomate.roi.RoiAssessmentHandler.Points;
+import stereomate.roi.RoiMembership;
+import stereomate.roi.RoiSpans;
+import stereomate.roi.RoiView;
 import weka.core.Instances;
 
 /**
@@ -49,6 +61,14 @@ public class ImageHandler {
 	 * The procedure stack title - used to save the procedure stack to the output DIR OM_MetaData.
 	 */
 	String procedureStackTitle;
+	
+	/**
+	 * Fraction of the maximum heap the thresholded channel may occupy for the procedure stack to be run on the
+	 * whole channel - a larger channel is run on tiles of TILE_XY x TILE_XY pixels by TILE_Z slices, as each
+	 * step run on the whole channel may make a full copy of it.
+	 */
+	public static final double TILING_HEAP_FRACTION = 0.125;
+	public static final int TILE_XY = 512, TILE_Z = 64;
 
 	/**
 	 * Reference to the stack of ImageProcessors into one IMP, which is the output of applying the 
@@ -87,6 +107,51 @@ public class ImageHandler {
 	 */
 	ObjectVoxelProcessing borderObjPixProcessing3D;
 	
+	/**
+	 * Labels all objects in thresholdImgInt in a single pass - used to find every object in
+	 * assessThresholdImgIntObj(), instead of scanning for and flood filling each object in turn.
+	 */
+	ConnectedComponentLabeller labeller;
+	
+	/**
+	 * Labels objects 26-connected for computeRoiMembership() - the ROI border flood was always 26-connected,
+	 * whatever the object connectivity.  Made when first needed, if labeller is not 26-connected.
+	 */
+	ConnectedComponentLabeller membershipLabeller;
+	
+	/**
+	 * The labelling of thresholdImgInt made at the start of the assessThresholdImgIntObj() loop, and the
+	 * label of the last object returned.  objectLabels is kept after the loop, so the objects can be re-coloured
+	 * directly in setObjValue().  It is set to null when objects in thresholdImgInt are removed or split.
+	 */
+	ObjectLabels objectLabels;
+	int objectLabel;
+	
+	/**
+	 * 32-bit label image of the objects assessed from the image origin in assessThresholdImgIntObj() - maps
+	 * every voxel to its object's objNo and identity flag in O(1), for any number of objects.  The flags are
+	 * kept in step with the pixel values set in setObjValue(), fillObject() and fillThresholdImgIntObj().  It
+	 * is set to null when objects in thresholdImgInt are removed or split.
+	 */
+	ObjectLabelImage labelImage;
+	
+	/**
+	 * Index of the voxels of every object assessed in the assessThresholdImgIntObj() loop, as runs per objNo -
+	 * so objects are re-coloured in setObjValue() by writing to their voxels, rather than flood filling them.
+	 * It is set to null when objects in thresholdImgInt are removed or split.  If voxelIndexOffHeap is true, 
+	 * the voxel runs are held in a direct buffer.
+	 */
+	ObjectVoxelIndex voxelIndex;
+	boolean voxelIndexOffHeap;
+	
+	/**
+	 * Pool used to assess objects in parallel - if null, objects are assessed serially.  When set, all
+	 * labelled objects are assessed on the first call to assessThresholdImgIntObj() into assessedObjects,
+	 * and each call returns the next of these in objNo order.
+	 */
+	ForkJoinPool assessmentPool;
+	ObjectDataContainer[] assessedObjects;
+	
 	/**
 	 * The coordinates which are incremented in returnNextCoord(), and used to assess objects in the thresholdImgInt.
 	 */
@@ -124,6 +189,7 @@ public class ImageHandler {
 		
 		//For dealing with Border Voxel Processing:
 		borderObjPixProcessing3D = new ObjectVoxelProcessing(objConnectivity);
+		labeller = new ConnectedComponentLabeller(objConnectivity);
 		
 		runProcedureStack();
 		
@@ -141,6 +207,7 @@ public class ImageHandler {
 			
 			//For dealing with Border Voxel Processing:
 			borderObjPixProcessing3D = new ObjectVoxelProcessing(objConnectivity);
+			labeller = new ConnectedComponentLabeller(objConnectivity);
 			
 			runProcedureStack();
 			
@@ -156,6 +223,7 @@ public class ImageHandler {
 		
 			//For dealing with Border Voxel Processing:
 			borderObjPixProcessing3D = new ObjectVoxelProcessing(objConnectivity);
+			labeller = new ConnectedComponentLabeller(objConnectivity);
 			
 			thresholdImp = IJ.openImage(thresholdPath);
 			
@@ -174,9 +242,38 @@ public class ImageHandler {
 	}
 	
 	/**
-	 * Run the procedureStack in this class on the imp's activeChannel.  The method will generate a copy of the active
-	 * channel stack in imp, which is put into thresholdImp.  The thresholdImp is then converted to the correct
-	 * bit depth, and the threshold procedure stack is then run on it.
+	 * Constructs an ImageHandler on an image which is already thresholded, without running a procedure stack:
+	 * thresholdImp holds the thresholded objects, and activeChannel the greyscale data the object intensities
+	 * are measured on.  Both must have the same dimensions.  Useful where the thresholded image has been
+	 * generated elsewhere - for example synthetic stacks for benchmarking the object assessment methods.
+	 * @param thresholdImp
+	 * @param activeChannel
+	 * @param objConnectivity
+	 */
+	public ImageHandler(ImagePlus thresholdImp, ImagePlus activeChannel, String objConnectivity) {
+		
+		// no procedure stack - the thresholdImp is used as the original imp:
+		this.imp = thresholdImp;
+		this.thresholdImp = thresholdImp;
+		this.activeChannel = activeChannel;
+		
+		//For dealing with Border Voxel Processing:
+		borderObjPixProcessing3D = new ObjectVoxelProcessing(objConnectivity);
+		labeller = new ConnectedComponentLabeller(objConnectivity);
+		
+		wrapImageInts();
+		
+	}
+	
+	/**
+	 * Run the procedureStack in this class on the imp's activeChannel.  The method will generate a copy-on-write
+	 * view of the active channel stack in imp, which is put into thresholdImp.  The thresholdImp is then converted
+	 * to the correct bit depth, and the threshold procedure stack is then run on it - the channel is only copied
+	 * if the bit depth conversion or a procedure does not already make new pixels.
+	 * <p>
+	 * If the procedure stack is set to run on tiles (ImageProcessingProcedureStack3.setTiling()), or the channel
+	 * occupies more than TILING_HEAP_FRACTION of the maximum heap, the steps only hold a tile of the channel at
+	 * once, and the thresholded output is stitched from the tile interiors.
 	 */
 	public void runProcedureStack() {
 		
@@ -190,14 +287,48 @@ public class ImageHandler {
 		//SECOND -> Convert to correct bit depth, if necessary:				
 		ImageWindowWithPanel.convertBitDepth(thresholdImp, procedureStack.bitDepth);
 				
-		//THIRD -> Apply the ProcedureStack to the thresholdedImp:
-		procedureStack.runProcedureStack(thresholdImp);
+		//THIRD -> Apply the ProcedureStack to the thresholdedImp - on tiles if the channel is too large for the
+			//steps to copy it whole:
+		boolean tiled = procedureStack.isTiled();
+		if(tiled == false && exceedsTilingHeap(thresholdImp) ) {
+			procedureStack.setTiling(TILE_XY, TILE_Z);
+		}
+		try {
+			procedureStack.runProcedureStack(thresholdImp);
+		}
+		finally {
+			// tiling is only enabled for this image - the next may be small enough to run whole:
+			if(tiled == false) {
+				procedureStack.setTiling(0, 0);
+			}
+		}
 		
+		// thresholdImgInt is modified by the object methods - so must not share the pixels of imp:
+		ChannelStack.copyOnWrite(thresholdImp);
+		
+	}
+	
+	/**
+	 * Returns true if the stack of imp occupies more than TILING_HEAP_FRACTION of the maximum heap.
+	 * @param imp
+	 * @return
+	 */
+	public static boolean exceedsTilingHeap(ImagePlus imp) {
+		long bytesPerVoxel = imp.getBitDepth() == 24 ? 4 : Math.max(imp.getBitDepth() / 8, 1);
+		long stackBytes = (long)imp.getWidth() * imp.getHeight() * imp.getStackSize() * bytesPerVoxel;
+		return stackBytes > Runtime.getRuntime().maxMemory() * TILING_HEAP_FRACTION;
 	}
 	
+	/**
+	 * Returns an ImagePlus of channel of imp, as a copy-on-write ChannelStack view:  the channel pixels are only
+	 * copied when ChannelStack.copyOnWrite() is called before they are modified.
+	 * @param imp
+	 * @param channel
+	 * @return
+	 */
 	public static ImagePlus duplicateChannel(ImagePlus imp, int channel) {
-		//Duplicate the correct channel from the imp:
-		ImageStack is = ImageWindowWithPanel.filterImageStack( imp.getStack(), channel, imp.getNChannels() );		
+		//View the correct channel from the imp:
+		ImageStack is = new ChannelStack( imp.getStack(), channel, imp.getNChannels() );
 		return new ImagePlus(imp.getTitle(), is);
 	}
 	
@@ -219,6 +350,11 @@ public class ImageHandler {
 	 * Wrap the thresholdImp, activeChannel into ImageInt objects
 	 */
 	public void wrapImageInts() {
+		// any labelling is of the previous thresholdImgInt:
+		objectLabels = null;
+		labelImage = null;
+		voxelIndex = null;
+		
 		//Get calibration from original imp:
 		Calibration cal = thresholdImp.getCalibration();
 	
@@ -270,8 +406,7 @@ public class ImageHandler {
 	 * @param selectedObj
 	 */
 	public void setObjValue(SelectedObject selectedObj) {
-		borderObjPixProcessing3D.selectObj3d(thresholdImgInt, selectedObj.x, selectedObj.y, 
-				selectedObj.z, selectedObj.getUnselectedPixelValue(), 0 );
+		selectObj(selectedObj.x, selectedObj.y, selectedObj.z, selectedObj.getUnselectedPixelValue(), 0 );
 	}
 	
 	/**
@@ -280,8 +415,7 @@ public class ImageHandler {
 	 * @param newObjVal
 	 */
 	public void setObjValue(SelectedObject selectedObj, int newObjVal) {
-		borderObjPixProcessing3D.selectObj3d(thresholdImgInt, selectedObj.x, selectedObj.y, 
-				selectedObj.z, newObjVal, 0);
+		selectObj(selectedObj.x, selectedObj.y, selectedObj.z, newObjVal, 0);
 	}
 	
 	/**
@@ -290,8 +424,7 @@ public class ImageHandler {
 	 * @param newObjVal
 	 */
 	public void setObjValue(SelectedObject selectedObj, int newObjVal, int newObjValueUnselected) {
-		borderObjPixProcessing3D.selectObj3d(thresholdImgInt, selectedObj.x, selectedObj.y, 
-				selectedObj.z, newObjVal, newObjValueUnselected);
+		selectObj(selectedObj.x, selectedObj.y, selectedObj.z, newObjVal, newObjValueUnselected);
 	}
 	
 	/**
@@ -305,7 +438,7 @@ public class ImageHandler {
 	 */
 	public void setObjValue(int x, int y, int z, int newObjValue) {
 		if(newObjValue != getPixelValueThresholded(x,y,z) ) {
-			borderObjPixProcessing3D.selectObj3d(thresholdImgInt, x, y, z, newObjValue, 0);
+			selectObj(x, y, z, newObjValue, 0);
 		}
 	}
 	
@@ -320,11 +453,92 @@ public class ImageHandler {
 	 */
 	public SelectedObject setObjValue(int x, int y, int z, int newObjValue, int newObjValueUnselected) {
 		if(newObjValue != getPixelValueThresholded(x,y,z) ) {
-			return borderObjPixProcessing3D.selectObj3d(thresholdImgInt, x, y, z, newObjValue, newObjValueUnselected);
+			return selectObj(x, y, z, newObjValue, newObjValueUnselected);
 		}
 		return null;
 	}
 	
+	/**
+	 * Set the object in thresholdImgInt found at pixel (X,Y,Z) to newObjValue.  If the object was assessed
+	 * in assessThresholdImgIntObj(), and is found in voxelIndex - by the FirstPixel of its label in the label
+	 * image, or as its FirstPixel - its indexed voxels are set directly, otherwise the object is flood filled from (X,Y,Z).  
+	 * Returns the SelectedObject with the FirstPixel of the object.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param newObjValue
+	 * @param newObjValueUnselected
+	 * @return
+	 */
+	private SelectedObject selectObj(int x, int y, int z, int newObjValue, int newObjValueUnselected) {
+		if(labelImage != null && labelImage.getLabel(x, y, z) > 0) {
+			labelImage.setFlag(labelImage.getLabel(x, y, z), newObjValue);
+		}
+		if(voxelIndex != null) {
+			int pos = -1;
+			int label = labelImage != null ? labelImage.getLabel(x, y, z) : 0;
+			if(label > 0) {
+				pos = voxelIndex.findFirstVoxel( labelImage.getObjectLabels().getFirstVoxelIndex(label) );
+			}
+			else {
+				pos = voxelIndex.findFirstVoxel( (z * thresholdImgInt.sizeY + y) * thresholdImgInt.sizeX + x );
+			}
+			// only use the index if it holds (X,Y,Z), and the object is still uniform - its first voxel has
+			// the same value as (X,Y,Z):
+			if(pos != -1 && voxelIndex.contains(pos, x, y, z) ) {
+				int firstVoxel = voxelIndex.getFirstVoxelIndex(pos);
+				if( thresholdImgInt.getPixelInt(voxelIndex.getX(firstVoxel), voxelIndex.getY(firstVoxel), 
+						voxelIndex.getZ(firstVoxel)) == thresholdImgInt.getPixelInt(x, y, z) ) {
+					return borderObjPixProcessing3D.selectObj3d(thresholdImgInt, voxelIndex, pos, 
+													newObjValue, newObjValueUnselected);
+				}
+			}
+		}
+		return borderObjPixProcessing3D.selectObj3d(thresholdImgInt, x, y, z, newObjValue, newObjValueUnselected);
+	}
+	
+	/**
+	 * Set whether the voxel index built in the assessThresholdImgIntObj() loop holds its voxel runs in a 
+	 * direct buffer, off the JVM heap - applies to the next loop.
+	 * @param offHeap
+	 */
+	public void setVoxelIndexOffHeap(boolean offHeap) {
+		voxelIndexOffHeap = offHeap;
+	}
+	
+	/**
+	 * Returns the index of the voxels of the objects assessed in assessThresholdImgIntObj(), or null if the
+	 * objects have not been assessed, or have since been removed or split.
+	 * @return
+	 */
+	public ObjectVoxelIndex getVoxelIndex() {
+		return voxelIndex;
+	}
+	
+	/**
+	 * Returns the label image of the objects assessed from the image origin in assessThresholdImgIntObj(),
+	 * or null if the objects have not been assessed this way, or have since been removed or split.
+	 * @return
+	 */
+	public ObjectLabelImage getLabelImage() {
+		return labelImage;
+	}
+	
+	/**
+	 * Returns the objNo of the object at pixel (X,Y,Z) from the label image - or 0 if there is no label
+	 * image, or (X,Y,Z) is not in an object.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public int getObjNo(int x, int y, int z) {
+		if(labelImage == null) {
+			return 0;
+		}
+		return labelImage.getObjNo(x, y, z);
+	}
+	
 	/**
 	 * Returns the pixel value in the thresholded image, using 0-based reference.
 	 * @param x
@@ -368,60 +582,117 @@ public class ImageHandler {
 	 * Remove all thresholded objects from thresholdImgInt/thresholdImp which touch any image edge, if
 	 * remove is true.
 	 * @param remove
+	 * @return The number of objects removed.
 	 */
-	public void removeEdgeObjects(boolean remove) {
+	public int removeEdgeObjects(boolean remove) {
+		return removeEdgeObjects(remove, true);
+	}
+	
+	/**
+	 * Remove all thresholded objects from thresholdImgInt/thresholdImp which touch any XY image edge - and 
+	 * the first or last slice, if zFaces is true - if remove is true.
+	 * @param remove
+	 * @param zFaces
+	 * @return The number of objects removed.
+	 */
+	public int removeEdgeObjects(boolean remove, boolean zFaces) {
 		if(remove) {
-			removeEdgeObjects();
+			return sweepEdgeObjects(zFaces);
 		}
+		return 0;
 	}
 	
 	/**
 	 * Remove all thresholded objects from thresholdImgInt/thresholdImp which touch any image edge.
+	 * @return The number of objects removed.
+	 */
+	public int removeEdgeObjects() {
+		return sweepEdgeObjects(true);
+	}
+	
+	/**
+	 * Remove all thresholded objects from thresholdImgInt/thresholdImp which touch any XY image edge, and the
+	 * first or last slice if zFaces is true.
+	 * <p>
+	 * Only the voxels on the image faces are swept - the four XY faces of every slice, and the first and last
+	 * slices if zFaces is true - and each object found is flood filled (26-connected) to 0.  Filled voxels are
+	 * 0, so each object is only filled once, and the interior of the image is only visited by the fills.
+	 * @param zFaces
+	 * @return The number of objects removed.
 	 */
-	public void removeEdgeObjects() {
+	private int sweepEdgeObjects(boolean zFaces) {
 		
 		IJ.showStatus("Object Manager: Assessing Objects - removing edge obj.");
-
-		//loop through the thresholdImgInt image:
-		for(int x=0; x<thresholdImgInt.sizeX; x++) {
-			IJ.showProgress( x, thresholdImgInt.sizeX );
-			for(int y=0; y<thresholdImgInt.sizeY; y++) {
-				for(int z=0; z<thresholdImgInt.sizeZ; z++) {
-
-					//DELETE TOP:
-					if( (z==0) && (thresholdImgInt.getPixelInt(x, y, z) > 0) ) {
-						Flood3D.flood3d26(thresholdImgInt, x, y, z, 0);
-					}
-
-					//DELETE BOTTOM:
-					if( (z==(thresholdImgInt.sizeZ-1)) && (thresholdImgInt.getPixelInt(x, y, z) > 0) ) {
-						Flood3D.flood3d26(thresholdImgInt, x, y, z, 0);
-					}
-
-					//DELETE LEFT:
-					if( (x==0) && (thresholdImgInt.getPixel(x,y,z) > 0) ) {
-						Flood3D.flood3d26(thresholdImgInt, x, y, z, 0);
-					}
-
-					//DELETE RIGHT:
-					if( (x==(thresholdImgInt.sizeX-1) ) && (thresholdImgInt.getPixel(x,y,z) > 0) ) {
-						Flood3D.flood3d26(thresholdImgInt, x, y, z, 0);
-					}
-
-					//DELETE HIGH:
-					if( (y==0) && (thresholdImgInt.getPixel(x,y,z) > 0) ) {
-						Flood3D.flood3d26(thresholdImgInt, x, y, z, 0);
-					}
-
-					//DELETE LOW:
-					if( (y==(thresholdImgInt.sizeY-1) ) && (thresholdImgInt.getPixel(x,y,z) > 0) ) {
-						Flood3D.flood3d26(thresholdImgInt, x, y, z, 0);
+		
+		// objects are removed - any labelling is no longer valid:
+		objectLabels = null;
+		labelImage = null;
+		voxelIndex = null;
+		
+		FloodFill3D edgeFill = new FloodFill3D(FloodFill3D.CONNECTED26);
+		
+		int sizeX = thresholdImgInt.sizeX;
+		int sizeY = thresholdImgInt.sizeY;
+		int sizeZ = thresholdImgInt.sizeZ;
+		
+		int removed = 0;
+		
+		for(int z=0; z<sizeZ; z++) {
+			IJ.showProgress( z, sizeZ );
+			
+			if( zFaces && (z == 0 || z == sizeZ - 1) ) {
+				//DELETE TOP & BOTTOM - the whole slice is a face:
+				for(int y=0; y<sizeY; y++) {
+					for(int x=0; x<sizeX; x++) {
+						removed = removed + removeEdgeObject(edgeFill, x, y, z);
 					}
-
-				} // end z	
-			} // end y
-		} //end x
+				}
+				continue;
+			}
+			
+			//DELETE HIGH & LOW:
+			for(int x=0; x<sizeX; x++) {
+				removed = removed + removeEdgeObject(edgeFill, x, 0, z);
+				removed = removed + removeEdgeObject(edgeFill, x, sizeY - 1, z);
+			}
+			
+			//DELETE LEFT & RIGHT:
+			for(int y=1; y<sizeY-1; y++) {
+				removed = removed + removeEdgeObject(edgeFill, 0, y, z);
+				removed = removed + removeEdgeObject(edgeFill, sizeX - 1, y, z);
+			}
+			
+		}
+		
+		IJ.showStatus("Object Manager: Assessing Objects - removed " + removed + " edge obj.");
+		
+		return removed;
+		
+	}
+	
+	/**
+	 * Fills the object at x,y,z in thresholdImgInt to 0 with edgeFill, returning 1 if an object was removed,
+	 * or 0 if x,y,z is background.
+	 */
+	private int removeEdgeObject(FloodFill3D edgeFill, int x, int y, int z) {
+		
+		if(thresholdImgInt.getPixelInt(x, y, z) == 0) {
+			return 0;
+		}
+		
+		if(thresholdImgInt instanceof ImageByte) {
+			edgeFill.fill( ((ImageByte)thresholdImgInt).pixels, thresholdImgInt.sizeX, thresholdImgInt.sizeY, 
+							thresholdImgInt.sizeZ, x, y, z, (byte)0 );
+		}
+		else if(thresholdImgInt instanceof ImageShort) {
+			edgeFill.fill( ((ImageShort)thresholdImgInt).pixels, thresholdImgInt.sizeX, thresholdImgInt.sizeY, 
+							thresholdImgInt.sizeZ, x, y, z, (short)0 );
+		}
+		else {
+			Flood3D.flood3d26(thresholdImgInt, x, y, z, 0);
+		}
 		
+		return 1;
 	}
 	
 	/**
@@ -467,18 +738,34 @@ public class ImageHandler {
 		
 		this.objCounter = objCounter;
 		
+		// the image is labelled on the first call to assessThresholdImgIntObj():
+		objectLabels = null;
+		objectLabel = 0;
+		
+		// the voxels of each object are indexed as it is assessed:
+		voxelIndex = new ObjectVoxelIndex(thresholdImgInt.sizeX, thresholdImgInt.sizeY, thresholdImgInt.sizeZ, 
+											voxelIndexOffHeap);
+		
 	}
 	
 	/**
 	 * Loops through the thresholdImgInt, starting at xStart, yStart, zStart.  If an object is found,
 	 * returns an ObjectDataContainer object holding all measured attributes. If no object is found,
 	 * this method returns NULL.
+	 * <p>
+	 * When the loop starts at the image origin, all objects of readPixVal are labelled in one pass on the
+	 * first call, and each call returns the next labelled object.  Labels are numbered in the same XYZ order
+	 * as the pixel loop, so objects receive the same objCounter either way.
 	 * @param readPixVal
 	 * @param setPixVal
 	 * @return
 	 */
 	public ObjectDataContainer assessThresholdImgIntObj(int readPixVal, int setPixVal, boolean convexMeasures) {
 		
+		if(xStart == 0 && yStart == 0 && zStart == 0) {
+			return assessLabelledObj(readPixVal, setPixVal, convexMeasures);
+		}
+		
 		while( returnNextCoord() ) {
 			
 			if(thresholdImgInt.getPixelInt(x, y, z) == readPixVal) {
@@ -497,8 +784,15 @@ public class ImageHandler {
 				//Method will set the obj voxels to the LAST value specified - here, to MuFpCn 
 				// (Manual-unclassified, Filter-nonPassed, Classifier-nonFeature)
 				//Data is returned as a MCIB_SM_DataObj object:
-				return borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, x, y, z, 
-						objCounter, setPixVal, convexMeasures );
+				ObjectDataContainer dataObj = borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, 
+						activeChannelInt, x, y, z, objCounter, setPixVal, convexMeasures );
+				
+				// index the voxels just filled, so the object can be re-coloured without a flood fill:
+				if(voxelIndex != null) {
+					voxelIndex.add(objCounter, borderObjPixProcessing3D.getFloodFill() );
+				}
+				
+				return dataObj;
 				
 			}
 			
@@ -508,6 +802,76 @@ public class ImageHandler {
 		
 	}
 	
+	/**
+	 * Returns the data of the next labelled object in thresholdImgInt, labelling all objects of readPixVal
+	 * on the first call.  The object is set to setPixVal.  Returns NULL when all objects have been assessed.
+	 * @param readPixVal
+	 * @param setPixVal
+	 * @param convexMeasures
+	 * @return
+	 */
+	private ObjectDataContainer assessLabelledObj(int readPixVal, int setPixVal, boolean convexMeasures) {
+		
+		if(objectLabels == null) {
+			objectLabels = labeller.label(thresholdImgInt, readPixVal);
+			objectLabel = 0;
+			// label n is objNo objCounter + n, and every object is set to setPixVal as it is assessed:
+			labelImage = new ObjectLabelImage(objectLabels, objCounter, setPixVal);
+			voxelIndex = new ObjectVoxelIndex(objectLabels, objCounter, voxelIndexOffHeap);
+			assessedObjects = null;
+			if(assessmentPool != null) {
+				// assess all objects in parallel now - objNo continues from objCounter:
+				assessedObjects = borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, 
+						objectLabels, objCounter, setPixVal, convexMeasures, assessmentPool );
+			}
+		}
+		
+		if(objectLabel >= objectLabels.getLabelCount() ) {
+			assessedObjects = null;
+			return null;
+		}
+		
+		objectLabel = objectLabel + 1;
+		
+		// Add 1 to objCounter, to count this obj:
+		objCounter = objCounter + 1;
+		
+		if(assessedObjects != null) {
+			return assessedObjects[objectLabel - 1];
+		}
+		
+		return borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, objectLabels, 
+				objectLabel, objCounter, setPixVal, convexMeasures );
+		
+	}
+	
+	/**
+	 * Set the measures computed when objects are assessed - measures not in featureSet are returned as
+	 * missing values.
+	 * @param featureSet
+	 */
+	public void setFeatureSet(ObjectFeatureSet featureSet) {
+		borderObjPixProcessing3D.setFeatureSet(featureSet);
+	}
+	
+	/**
+	 * Set the number of threads used to assess objects in assessThresholdImgIntObj() and processRoiObjects().
+	 * If threads is 1 or less, objects are assessed serially.  The data returned is identical, and in the same
+	 * order, in either case.
+	 * @param threads
+	 */
+	public void setAssessmentThreads(int threads) {
+		if(assessmentPool != null) {
+			assessmentPool.shutdown();
+		}
+		if(threads > 1) {
+			assessmentPool = new ForkJoinPool(threads);
+		}
+		else {
+			assessmentPool = null;
+		}
+	}
+	
 	public boolean returnNextCoord() {
 		
 		z = z+1;
@@ -544,6 +908,10 @@ public class ImageHandler {
 			//ObjectVoxelProcessing.flood3d26( thresholdImgInt, x, y, z, setPixVal );
 			borderObjPixProcessing3D.flood3d( thresholdImgInt, x, y, z, setPixVal );
 			
+			if(labelImage != null && labelImage.getLabel(x, y, z) > 0) {
+				labelImage.setFlag(labelImage.getLabel(x, y, z), setPixVal);
+			}
+			
 		}
 	}
 	
@@ -551,58 +919,28 @@ public class ImageHandler {
 		
 		IJ.showStatus("Object Manager: Labelling Objects");
 		
-		//loop through the res image:
-		for(int x=0; x<thresholdImgInt.sizeX; x++) {
-			IJ.showProgress( x, thresholdImgInt.sizeX );
-			for(int y=0; y<thresholdImgInt.sizeY; y++) {
-				for(int z=0; z<thresholdImgInt.sizeZ; z++) {
-
-					if(thresholdImgInt.getPixelInt(x, y, z) == readPixVal) {
-
-						//if the pixel is 255, want to map the object & get the attributes data from it:
-
-						// Add 1 to objCounter, to count this obj:
-						//objCounter = objCounter + 1;
-
-						//Analyse obj -> also pass object counter:
-						//Method will set the obj voxels to the LAST value specified - here, to MuFpCn 
-						// (Manual-unclassified, Filter-nonPassed, Classifier-nonFeature)
-						//Data is returned as a MCIB_SM_DataObj object:
-						//dataObj = borderObjPixProcessing3D.objAssessment3d26( thresholdImgInt, imgInt, x, y, z, 
-						//													objCounter, MuFpCn );
-						// FirstPixel firstPixelObj = borderObjPixProcessing3D.selectObj3d26( thresholdImgInt, x, y, z, MuFpCn );
-
-
-						// Not all objects will be manually UNCLASSIFIED
-						// and not all objects will be unfiltered or have no Classifier applied.
-						// However, getting all the objects to the standard pixel value MuFpCn allows each
-						// objects pixel value to be modified effectively in setPixVals() below:
-						// ObjectVoxelProcessing.flood3d26( thresholdImgInt, x, y, z, setPixVal );
-						borderObjPixProcessing3D.flood3d( thresholdImgInt, x, y, z, setPixVal );
-
-						// IJ.showStatus("Object Manager: Labelling Objects");
-
-
-						// And finally, put the objCounter number & the firstPixel reference into the HashMap:
-						// This allows fast recall of the obj index in arff (which is the objNumber!)
-						// The pixel is based on the FIRST VOXEL -> this is searched using a static method in
-						// MCIB_SM_BorderObjPixCount3D -> getFirstVoxel(Object3DVoxels)
-
-						//ArrayList<Integer> list = new ArrayList<Integer>();
-						//list.add(firstPixelObj.x);
-						//list.add(firstPixelObj.y);
-						//list.add(firstPixelObj.z);
-
-						//firstPixObjNoMap.put(list, objCounter);
-
-						// This is now done in loadArffData() method!
-
-
-					} // end if obj pix is 255
-
-				} // end z	
-			} // end y
-		} //end x
+		// Not all objects will be manually UNCLASSIFIED
+		// and not all objects will be unfiltered or have no Classifier applied.
+		// However, getting all the objects to the standard pixel value MuFpCn allows each
+		// objects pixel value to be modified effectively in setPixVals() below:
+		// Every object of readPixVal is filled to setPixVal, so this is done in one pass over the
+		// image, rather than flood filling each object in turn:
+		for(int z=0; z<thresholdImgInt.sizeZ; z++) {
+			IJ.showProgress( z, thresholdImgInt.sizeZ );
+			for(int xy=0; xy<thresholdImgInt.sizeXY; xy++) {
+				if(thresholdImgInt.getPixelInt(xy, z) == readPixVal) {
+					thresholdImgInt.setPixel(xy, z, setPixVal);
+				}
+			}
+		}
+		
+		if(labelImage != null) {
+			for(int label=1; label<=labelImage.getObjectCount(); label++) {
+				if(labelImage.getFlag(label) == readPixVal) {
+					labelImage.setFlag(label, setPixVal);
+				}
+			}
+		}
 		
 	}
 	
@@ -613,39 +951,26 @@ public class ImageHandler {
 	 * @param originalImgInt
 	 * @param roi
 	 * @return
+	 * @deprecated copies the ROI bounds x full Z - use getRoiView() to read the ROI in place.
 	 */
+	@Deprecated
 	public ImageInt isolateRoi(ImageInt originalImgInt, Roi roi) {
 		
-		// For ExclRoi Pixels - Get the mask and the bounds of this ROI:
-		ImageProcessor mask = roi.getMask();
-		Rectangle r = roi.getBounds();
-
-		// plus 2 to add 1 pixel border:
-		ImageInt imgInt = new ImageByte("roi", r.width, r.height, originalImgInt.sizeZ);
+		return isolateRoi(originalImgInt, new RoiSpans(roi, originalImgInt.sizeX, originalImgInt.sizeY) );
 		
-		for(int z=0; z<originalImgInt.sizeZ; z++) {
-			
-			for(int y=0; y<mask.getHeight(); y++) {
-				
-				for(int x=0; x<mask.getWidth(); x++) {
-			
-					if(mask.getPixel(x, y) > 0) {
-						
-						int pixel = originalImgInt.getPixelInt(x+r.x, y+r.y, z);
-						
-						if(pixel > 0) {
-																				
-							imgInt.setPixel(x, y, z, 255);
-						
-						}
-						
-					}
-					
-				}
-			}
-		}
+	}
+	
+	/**
+	 * Isolates the rasterised ROI roiSpans from the originalImgInt - see isolateRoi(ImageInt, Roi).
+	 * @param originalImgInt
+	 * @param roiSpans
+	 * @return
+	 * @deprecated copies the ROI bounds x full Z - use getRoiView() to read the ROI in place.
+	 */
+	@Deprecated
+	public ImageInt isolateRoi(ImageInt originalImgInt, RoiSpans roiSpans) {
 		
-		return imgInt;
+		return copyRoi(originalImgInt, roiSpans, 0);
 		
 	}
 	
@@ -657,65 +982,196 @@ public class ImageHandler {
 	 * @param originalImgInt
 	 * @param roi
 	 * @return
+	 * @deprecated copies the ROI bounds x full Z - use getRoiView() with RoiView.BORDER_BACKGROUND to read 
+	 * the ROI in place.
 	 */
+	@Deprecated
 	public ImageInt isolateRoiWithBorder(ImageInt originalImgInt, Roi roi) {
 		
-		// For ExclRoi Pixels - Get the mask and the bounds of this ROI:
-		ImageProcessor mask = roi.getMask();
-		Rectangle r = roi.getBounds();
-
-		// plus 2 to add 1 pixel border:
-		ImageInt imgInt = new ImageByte("roi", r.width+2, r.height+2, originalImgInt.sizeZ+2);
+		return isolateRoiWithBorder(originalImgInt, 
+									new RoiSpans(roi, originalImgInt.sizeX, originalImgInt.sizeY) );
 		
-		for(int z=0; z<originalImgInt.sizeZ; z++) {
-			
-			for(int y=0; y<mask.getHeight(); y++) {
-				
-				for(int x=0; x<mask.getWidth(); x++) {
-			
-					if(mask.getPixel(x, y) > 0) {
-						
-						int pixel = originalImgInt.getPixelInt(x+r.x, y+r.y, z);
-						
-						if(pixel > 0) {
-																				
-							imgInt.setPixel(x+1, y+1, z+1, 255);
-						
-						}
-						
-					}
-					
-				}
-			}
-		}
+	}
+	
+	/**
+	 * Isolates the rasterised ROI roiSpans from the originalImgInt, with a blank 1 pixel border all around - 
+	 * see isolateRoiWithBorder(ImageInt, Roi).
+	 * @param originalImgInt
+	 * @param roiSpans
+	 * @return
+	 * @deprecated copies the ROI bounds x full Z - use getRoiView() with RoiView.BORDER_BACKGROUND to read 
+	 * the ROI in place.
+	 */
+	@Deprecated
+	public ImageInt isolateRoiWithBorder(ImageInt originalImgInt, RoiSpans roiSpans) {
 		
-		return imgInt;
+		return copyRoi(originalImgInt, roiSpans, 1);
 		
 	}
-
+	
 	/**
-	 * 
-	 * @param pts
-	 * @param sizeZ
-	 * @param inVal
-	 * @param outVal
-	 * @param maxVal
-	 * @param roi
+	 * Returns a zero-copy view of the rasterised ROI roiSpans in thresholdImgInt, down to zMax Z depth.  With
+	 * RoiView.BORDER_BACKGROUND, voxels outside the ROI read as background - as in isolateRoiWithBorder() - 
+	 * without copying the ROI.
+	 * @param roiSpans
+	 * @param zMax
+	 * @param borderPolicy RoiView.BORDER_BACKGROUND or RoiView.BORDER_PARENT.
+	 * @return
 	 */
-	public void processBorderPoints(Points pts, int sizeZ, int inVal, int outVal, 
+	public RoiView getRoiView(RoiSpans roiSpans, int zMax, int borderPolicy) {
+		
+		return new RoiView(thresholdImgInt, roiSpans, zMax, borderPolicy);
+		
+	}
+	
+	/**
+	 * Returns a new ImageByte of the ROI bounds and the depth of originalImgInt, plus a blank border of
+	 * border pixels all around, with every pixel above 0 in the ROI set to 255.  The ROI is copied span by
+	 * span, directly between the pixel arrays.
+	 * @param originalImgInt
+	 * @param roiSpans
+	 * @param border
+	 * @return
+	 */
+	private ImageInt copyRoi(ImageInt originalImgInt, RoiSpans roiSpans, int border) {
+		
+		Rectangle r = roiSpans.getBounds();
+		
+		ImageByte imgInt = new ImageByte("roi", r.width + 2*border, r.height + 2*border, 
+											originalImgInt.sizeZ + 2*border);
+		int roiSizeX = r.width + 2*border;
+		
+		for(int z=0; z<originalImgInt.sizeZ; z++) {
+			
+			byte[] bytes = byteSlice(originalImgInt, z);
+			short[] shorts = shortSlice(originalImgInt, z);
+			byte[] roiPixels = imgInt.pixels[z + border];
+			
+			for(int s=0; s<roiSpans.getSpanCount(); s++) {
+				
+				int xy = roiSpans.getOffset(s);
+				int roiXY = (roiSpans.getY(s) - r.y + border) * roiSizeX + (roiSpans.getXStart(s) - r.x + border);
+				
+				for(int a=0; a<roiSpans.getLength(s); a++) {
+					if(pixelValue(originalImgInt, bytes, shorts, xy + a, z) > 0) {
+						roiPixels[roiXY + a] = (byte)255;
+					}
+				}
+			}
+		}
+		
+		return imgInt;
+		
+	}
+	
+	/**
+	 * Returns slice z of img if it is an ImageByte, otherwise null.  Used with shortSlice() and pixelValue() to
+	 * read ROI spans directly from the pixel arrays.
+	 * @param img
+	 * @param z
+	 * @return
+	 */
+	private static byte[] byteSlice(ImageInt img, int z) {
+		return img instanceof ImageByte ? ((ImageByte)img).pixels[z] : null;
+	}
+	
+	/**
+	 * Returns slice z of img if it is an ImageShort, otherwise null.
+	 * @param img
+	 * @param z
+	 * @return
+	 */
+	private static short[] shortSlice(ImageInt img, int z) {
+		return img instanceof ImageShort ? ((ImageShort)img).pixels[z] : null;
+	}
+	
+	/**
+	 * Returns the value of pixel xy in slice z of img - read from bytes or shorts, the slice returned by
+	 * byteSlice() or shortSlice(), if either is not null.
+	 * @param img
+	 * @param bytes
+	 * @param shorts
+	 * @param xy
+	 * @param z
+	 * @return
+	 */
+	private static int pixelValue(ImageInt img, byte[] bytes, short[] shorts, int xy, int z) {
+		if(bytes != null) {
+			return bytes[xy] & 0xff;
+		}
+		if(shorts != null) {
+			return shorts[xy] & 0xffff;
+		}
+		return img.getPixelInt(xy, z);
+	}
+	
+	/**
+	 * Sets pixel xy in slice z of img to value - in bytes or shorts, the slice returned by byteSlice() or 
+	 * shortSlice(), if either is not null.
+	 * @param img
+	 * @param bytes
+	 * @param shorts
+	 * @param xy
+	 * @param z
+	 * @param value
+	 */
+	private static void setPixelValue(ImageInt img, byte[] bytes, short[] shorts, int xy, int z, int value) {
+		if(bytes != null) {
+			bytes[xy] = (byte)value;
+		}
+		else if(shorts != null) {
+			shorts[xy] = (short)value;
+		}
+		else {
+			img.setPixel(xy, z, value);
+		}
+	}
+
+	/**
+	 * 
+	 * @param pts
+	 * @param sizeZ
+	 * @param inVal
+	 * @param outVal
+	 * @param maxVal
+	 * @param roi
+	 */
+	public void processBorderPoints(Points pts, int sizeZ, int inVal, int outVal, 
 																int maxVal, Roi roi) {
 		
+		processBorderPoints(pts, sizeZ, new int[] {inVal}, new int[] {outVal}, new int[] {maxVal}, roi);
+		
+	}
+	
+	/**
+	 * Process the border points of roi for a set of object classes in one pass:  each object of class c
+	 * (pixel value maxVals[c]) on the border is set to inVals[c] if it is 50%+ IN the roi, or outVals[c]
+	 * otherwise.  The pixel values of all classes must be distinct.
+	 * @param pts
+	 * @param sizeZ
+	 * @param inVals
+	 * @param outVals
+	 * @param maxVals
+	 * @param roi
+	 */
+	public void processBorderPoints(Points pts, int sizeZ, int[] inVals, int[] outVals, 
+																int[] maxVals, Roi roi) {
+		
+		int c;
+		
 		for(int z = 0; z < sizeZ; z++) {
 			for(int p=0; p< pts.size(); p++) {	
 				
 				int x = pts.get(p).x;			
 				int y = pts.get(p).y;
 
-				//only process pixels with pixelValue of maxVal:
-				if(  thresholdImgInt.getPixelInt( x, y, z ) == maxVal) {
+				//only process pixels with pixelValue of a maxVal:
+				c = classIndex( maxVals, thresholdImgInt.getPixelInt( x, y, z ) );
+				
+				if(  c >= 0 ) {
 
 					// Label obj depending whether it is in or out of the current ROI:
-					borderObjPixProcessing3D.borderObjFilter3d( thresholdImgInt, x, y, z, roi, inVal, outVal );
+					borderObjPixProcessing3D.borderObjFilter3d( thresholdImgInt, x, y, z, roi, inVals[c], outVals[c] );
 
 				} //end if pixelValue > 0
 			} //end p
@@ -723,6 +1179,21 @@ public class ImageHandler {
 		
 	}
 	
+	/**
+	 * Returns the index of pixelVal in classVals, or -1 if pixelVal is not in classVals.
+	 * @param classVals
+	 * @param pixelVal
+	 * @return
+	 */
+	private static int classIndex(int[] classVals, int pixelVal) {
+		for(int c=0; c<classVals.length; c++) {
+			if(classVals[c] == pixelVal) {
+				return c;
+			}
+		}
+		return -1;
+	}
+	
 	/**
 	 * This method will assess every object in the passed roiExcl, down to zMax Z depth, and extract
 	 * the data to put into roiData.  The method returns the number of voxels in the passed ROI which
@@ -739,58 +1210,642 @@ public class ImageHandler {
 									ObjectDatasetMap firstPixObjNoMap, DatasetWrapper datasetHandler, 
 									DatasetWrapper roiData, String ClassifierAttribute) {
 
-		// For ExclRoi Pixels - Get the mask and the bounds of this ROI:
-		ImageProcessor mask = roiExcl.getMask();	
-		Rectangle r = roiExcl.getBounds();
+		return processRoiObjects(roiExcl, new int[] {inVal}, new int[] {objVal}, zMax, 
+									roiData, new String[] {ClassifierAttribute} );
+
+	}
+	
+	/**
+	 * This method will assess every object of a set of object classes in the passed roiExcl, down to zMax Z
+	 * depth, in one traversal of the ROI.  The objects of class c have pixel value inVals[c] or objVals[c],
+	 * and their data is put into roiData with ClassifierClass classifierAttributes[c].  The rows of each class
+	 * are added in class order, and each class has its own object numbering - so roiData is identical to
+	 * assessing each class with a separate call.
+	 * @param roiExcl
+	 * @param inVals
+	 * @param objVals
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return The number of pixels inside the 3D ROI assessed in this method (roiExcl x zMax).
+	 */
+	public int processRoiObjects(Roi roiExcl, int[] inVals, int[] objVals, int zMax, 
+									DatasetWrapper roiData, String[] classifierAttributes) {
+
+		return processRoiObjects( new RoiSpans(roiExcl, thresholdImgInt.sizeX, thresholdImgInt.sizeY), 
+									inVals, objVals, zMax, roiData, classifierAttributes );
+	}
+	
+	/**
+	 * As processRoiObjects(Roi, int[], int[], int, DatasetWrapper, String[]), on the rasterised ROI roiSpans:
+	 * the ROI is traversed span by span, reading thresholdImgInt directly from its pixel arrays.
+	 * @param roiSpans
+	 * @param inVals
+	 * @param objVals
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return The number of pixels inside the 3D ROI assessed in this method (roiSpans x zMax).
+	 */
+	public int processRoiObjects(RoiSpans roiSpans, int[] inVals, int[] objVals, int zMax, 
+									DatasetWrapper roiData, String[] classifierAttributes) {
+
+		return processRoiObjects(roiSpans, inVals, objVals, null, zMax, roiData, classifierAttributes);
+
+	}
+	
+	/**
+	 * As processRoiObjects(RoiSpans, int[], int[], int, DatasetWrapper, String[]), with the objects of each
+	 * class labelled once per image by labelRoiObjects() - so the parallel assessment does not label the 
+	 * image again for every ROI.  roiLabels may be null, when the objects are labelled in this call.
+	 * @param roiSpans
+	 * @param inVals
+	 * @param objVals
+	 * @param roiLabels
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return The number of pixels inside the 3D ROI assessed in this method (roiSpans x zMax).
+	 */
+	public int processRoiObjects(RoiSpans roiSpans, int[] inVals, int[] objVals, ObjectLabels[] roiLabels, 
+									int zMax, DatasetWrapper roiData, String[] classifierAttributes) {
+
+		if(assessmentPool != null) {
+			return processRoiObjectsParallel(roiSpans, inVals, objVals, roiLabels, zMax, roiData, 
+												classifierAttributes);
+		}
+		
+		// the ROI objects are removed from the image - any labelling is no longer valid:
+		objectLabels = null;
+		labelImage = null;
+		voxelIndex = null;
+
+		// the data of each class, added to roiData once the ROI is traversed:
+		ArrayList<ArrayList<ObjectDataContainer>> classData = new ArrayList<ArrayList<ObjectDataContainer>>();
+		for(int c=0; c<objVals.length; c++) {
+			classData.add( new ArrayList<ObjectDataContainer>() );
+		}
+
+		// ROI size (in pixels) - the span area over zMax slices:
+		int roiSize = roiSpans.getVolume(zMax);
+		int pixelVal, c, xy;
+
+		for(int z = 0; z <  zMax; z++) {
+			
+			// pixels are read live - each assessed object is removed from the image:
+			byte[] bytes = byteSlice(thresholdImgInt, z);
+			short[] shorts = shortSlice(thresholdImgInt, z);
+			
+			for(int s=0; s<roiSpans.getSpanCount(); s++) {
+				
+				int y = roiSpans.getY(s);
+				xy = roiSpans.getOffset(s);
+				
+				for(int x=roiSpans.getXStart(s); x<roiSpans.getXEnd(s); x++, xy++) {
+
+					pixelVal = pixelValue(thresholdImgInt, bytes, shorts, xy, z);
+
+					c = classIndex(inVals, pixelVal);
+					if(c < 0) {
+						c = classIndex(objVals, pixelVal);
+					}
+
+					if( c >= 0 ) {
+
+						// obj counter of this class:
+						int objCounter = classData.get(c).size() + 1;
+
+						classData.get(c).add( 
+								borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, 
+										x, y, z, objCounter, 0, true )  //true, running convex measures!
+								);
+
+					}
+				}
+			}
+		}
+		
+		for(c=0; c<classData.size(); c++) {
+			for(int a=0; a<classData.get(c).size(); a++) {
+				addRoiData( roiData, classData.get(c).get(a), classifierAttributes[c] );
+			}
+		}
+
+		return roiSize;
+
+	}
+	
+	/**
+	 * Labels the objects of each class (pixel value objVals[c]) for processRoiObjects() - before any ROI border
+	 * is processed, so every object still has its objVal.  Processing a ROI border sets whole objects to their
+	 * inVal or outVal, and assessing an object removes it, so the labels of the objects left in the image stay
+	 * valid for every ROI.  Returns null if objects are not assessed in parallel, as the serial assessment
+	 * does not use the labels.
+	 * @param objVals
+	 * @return
+	 */
+	public ObjectLabels[] labelRoiObjects(int[] objVals) {
+		if(assessmentPool == null) {
+			return null;
+		}
+		ObjectLabels[] roiLabels = new ObjectLabels[objVals.length];
+		for(int c=0; c<objVals.length; c++) {
+			roiLabels[c] = labeller.label(thresholdImgInt, objVals[c]);
+		}
+		return roiLabels;
+	}
+	
+	/**
+	 * Computes the membership of the objects of each class (pixel value objVals[c]) in each of rois, for all
+	 * rois at once and without modifying thresholdImgInt.  The objects of each class are labelled, and each
+	 * object is a member of the rois it is 50%+ IN - as decided by processBorderPoints().  rois should be 
+	 * the contiguous ROIs of the RoiAssessmentHandler.
+	 * <p>
+	 * As in processBorderPoints(), which floods 26-connected, the IN/OUT decision is made on the 26-connected
+	 * objects:  with 6- or 18-connectivity, each object is a member of the rois of the 26-connected object
+	 * containing it, and the objects themselves are still labelled with the object connectivity.
+	 * @param rois
+	 * @param objVals
+	 * @return
+	 */
+	public RoiMembership[] computeRoiMembership(ArrayList<Roi> rois, int[] objVals) {
+		
+		// the ROI border is only counted as IN for 16-bit images, as in borderObjFilter3d():
+		boolean includeBorder = thresholdImgInt instanceof ImageShort;
+		
+		if(labeller.getConnectivity() != FloodFill3D.CONNECTED26 && membershipLabeller == null) {
+			membershipLabeller = new ConnectedComponentLabeller(FloodFill3D.CONNECTED26);
+		}
+		
+		RoiMembership[] memberships = new RoiMembership[objVals.length];
+		for(int c=0; c<objVals.length; c++) {
+			ObjectLabels objLabels = labeller.label(thresholdImgInt, objVals[c]);
+			ObjectLabels membershipLabels = objLabels;
+			if(labeller.getConnectivity() != FloodFill3D.CONNECTED26) {
+				membershipLabels = membershipLabeller.label(thresholdImgInt, objVals[c]);
+			}
+			memberships[c] = new RoiMembership( objLabels, membershipLabels, objVals[c], rois, includeBorder );
+		}
+		return memberships;
+		
+	}
+	
+	/**
+	 * Assess every object which is a member of the ROI at roiIndex in memberships, and has a voxel in the
+	 * passed roiExcl down to zMax Z depth.  The data of the objects of class c is put into roiData with
+	 * ClassifierClass classifierAttributes[c], in class order and in the order the objects are found in 
+	 * roiExcl - as in processRoiObjects().  thresholdImgInt is NOT modified:  instead each assessed object
+	 * is marked as assessed in its membership, so it is not assessed again in a later ROI.
+	 * @param memberships
+	 * @param roiIndex
+	 * @param roiExcl
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return The number of pixels inside the 3D ROI assessed in this method (roiExcl x zMax).
+	 */
+	public int processRoiMembers(RoiMembership[] memberships, int roiIndex, Roi roiExcl, int zMax, 
+									DatasetWrapper roiData, String[] classifierAttributes) {
+		
+		return processRoiMembers(memberships, roiIndex, 
+								new RoiSpans(roiExcl, thresholdImgInt.sizeX, thresholdImgInt.sizeY), zMax, 
+								roiData, classifierAttributes);
+		
+	}
+	
+	/**
+	 * As processRoiMembers(RoiMembership[], int, Roi, int, DatasetWrapper, String[]), on the rasterised ROI
+	 * roiSpans.
+	 * @param memberships
+	 * @param roiIndex
+	 * @param roiSpans
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return The number of pixels inside the 3D ROI assessed in this method (roiSpans x zMax).
+	 */
+	public int processRoiMembers(RoiMembership[] memberships, int roiIndex, RoiSpans roiSpans, int zMax, 
+									DatasetWrapper roiData, String[] classifierAttributes) {
+		
+		int classes = memberships.length;
+		int[] objVals = new int[classes];
+		
+		// the member objects of each class in the ROI, in the order they are found:
+		ArrayList<ArrayList<Integer>> labels = new ArrayList<ArrayList<Integer>>();
+		for(int c=0; c<classes; c++) {
+			objVals[c] = memberships[c].getObjVal();
+			labels.add( new ArrayList<Integer>() );
+		}
+		
+		int roiSize = roiSpans.getVolume(zMax);
+		int label, c, xy;
+
+		for(int z = 0; z <  zMax; z++) {
+			
+			byte[] bytes = byteSlice(thresholdImgInt, z);
+			short[] shorts = shortSlice(thresholdImgInt, z);
+			
+			for(int s=0; s<roiSpans.getSpanCount(); s++) {
+				
+				int y = roiSpans.getY(s);
+				xy = roiSpans.getOffset(s);
+				
+				for(int x=roiSpans.getXStart(s); x<roiSpans.getXEnd(s); x++, xy++) {
+
+					c = classIndex( objVals, pixelValue(thresholdImgInt, bytes, shorts, xy, z) );
+
+					if(c >= 0) {
+						label = memberships[c].getObjectLabels().getLabel(x, y, z);
+						if( memberships[c].isAssessed(label) == false && memberships[c].isMember(roiIndex, label) ) {
+							memberships[c].setAssessed(label);
+							labels.get(c).add(label);
+						}
+					}
+				}
+			}
+		}
+		
+		for(c=0; c<classes; c++) {
+			
+			ObjectLabels objLabels = memberships[c].getObjectLabels();
+			
+			if(assessmentPool != null) {
+				
+				ObjectLabels[] labelSets = new ObjectLabels[labels.get(c).size()];
+				int[] labelArray = new int[labelSets.length];
+				for(int a=0; a<labelArray.length; a++) {
+					labelSets[a] = objLabels;
+					labelArray[a] = labels.get(c).get(a);
+				}
+				
+				//true, running convex measures!
+				ObjectDataContainer[] objData = borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, 
+						activeChannelInt, labelSets, labelArray, 0, ObjectVoxelProcessing.KEEP_PIX_VALUE, true, 
+						assessmentPool );
+				
+				for(int a=0; a<objData.length; a++) {
+					addRoiData( roiData, objData[a], classifierAttributes[c] );
+				}
+			}
+			else {
+				for(int a=0; a<labels.get(c).size(); a++) {
+					//true, running convex measures!
+					ObjectDataContainer objData = borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, 
+							activeChannelInt, objLabels, labels.get(c).get(a), (a+1), 
+							ObjectVoxelProcessing.KEEP_PIX_VALUE, true );
+					addRoiData( roiData, objData, classifierAttributes[c] );
+				}
+			}
+		}
+
+		return roiSize;
+		
+	}
+	
+	/**
+	 * Concurrent version of calling processRoiMembers() on each ROI in turn:  every ROI in roisExcl is 
+	 * analysed, and the data of ROI a is put into roiDatasets.get(a).  The returned data is identical to the
+	 * sequential loop.
+	 * <p>
+	 * As thresholdImgInt is not modified, the ROIs are processed in three phases on the assessmentPool:
+	 * <p>
+	 * 1. Each ROI is scanned concurrently for its member objects of each class, in the order they are found,
+	 * and its size.
+	 * <p>
+	 * 2. In ROI order, each object is kept only by the first ROI it was found in - as the assessed flags do 
+	 * in the sequential loop.
+	 * <p>
+	 * 3. The objects of all ROIs are assessed across the pool in one call, numbered from 1 in each ROI and 
+	 * class, and each ROI dataset is then filled concurrently - each is a separate Instances object.
+	 * <p>
+	 * If objects are assessed serially (setAssessmentThreads() of 1 or less), the ROIs are processed in turn 
+	 * with processRoiMembers().
+	 * @param memberships
+	 * @param roisExcl
+	 * @param zMax
+	 * @param roiDatasets
+	 * @param classifierAttributes
+	 * @return The number of pixels inside each 3D ROI (roiExcl x zMax).
+	 */
+	public int[] processRoiMembersConcurrent(RoiMembership[] memberships, ArrayList<RoiSpans> roisExcl, int zMax, 
+									ArrayList<DatasetWrapper> roiDatasets, String[] classifierAttributes) {
+		
+		int rois = roisExcl.size();
+		int classes = memberships.length;
+		int[] roiSizes = new int[rois];
+		
+		if(assessmentPool == null) {
+			for(int a=0; a<rois; a++) {
+				roiSizes[a] = processRoiMembers(memberships, a, roisExcl.get(a), zMax, roiDatasets.get(a), 
+													classifierAttributes);
+			}
+			return roiSizes;
+		}
+		
+		// 1. Scan each ROI for its member objects:
+		RoiMemberScan[] scans = new RoiMemberScan[rois];
+		for(int a=0; a<rois; a++) {
+			scans[a] = new RoiMemberScan(memberships, a, roisExcl.get(a), zMax);
+		}
+		assessmentPool.invoke( new RoiTasks(scans) );
+		
+		// 2. Keep each object in the first ROI it was found in, and number the kept objects of each ROI and class:
+		ArrayList<ObjectLabels> labelSets = new ArrayList<ObjectLabels>();
+		ArrayList<Integer> labels = new ArrayList<Integer>();
+		ArrayList<Integer> objNos = new ArrayList<Integer>();
+		
+		// the objects of ROI a and class c are at [ roiClassStart[a][c], roiClassStart[a][c+1] ) in these lists:
+		int[][] roiClassStart = new int[rois][classes + 1];
+		
+		for(int a=0; a<rois; a++) {
+			roiSizes[a] = scans[a].roiSize;
+			for(int c=0; c<classes; c++) {
+				roiClassStart[a][c] = labels.size();
+				int objNo = 0;
+				for(int label : scans[a].labels.get(c) ) {
+					if(memberships[c].isAssessed(label) == false) {
+						memberships[c].setAssessed(label);
+						objNo = objNo + 1;
+						labelSets.add( memberships[c].getObjectLabels() );
+						labels.add(label);
+						objNos.add(objNo);
+					}
+				}
+			}
+			roiClassStart[a][classes] = labels.size();
+		}
+		
+		// 3. Assess all kept objects in one call, then fill each ROI dataset:
+		int[] labelArray = new int[labels.size()];
+		int[] objNoArray = new int[labels.size()];
+		for(int a=0; a<labelArray.length; a++) {
+			labelArray[a] = labels.get(a);
+			objNoArray[a] = objNos.get(a);
+		}
+		
+		//true, running convex measures!
+		ObjectDataContainer[] objData = borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, 
+				labelSets.toArray(new ObjectLabels[labelArray.length]), labelArray, objNoArray, 
+				ObjectVoxelProcessing.KEEP_PIX_VALUE, true, assessmentPool );
+		
+		RoiDataFill[] fills = new RoiDataFill[rois];
+		for(int a=0; a<rois; a++) {
+			fills[a] = new RoiDataFill(roiDatasets.get(a), objData, roiClassStart[a], classifierAttributes);
+		}
+		assessmentPool.invoke( new RoiTasks(fills) );
+		
+		return roiSizes;
+		
+	}
+	
+	/**
+	 * Runs a set of per-ROI tasks concurrently.
+	 * 
+	 * @author stevenwest
+	 *
+	 */
+	private static class RoiTasks extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		RecursiveAction[] tasks;
+		
+		RoiTasks(RecursiveAction[] tasks) {
+			this.tasks = tasks;
+		}
+		
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+		
+	}
+	
+	/**
+	 * Scans one ROI, down to zMax, for the objects of each class which are members of it, in the order they
+	 * are found - as in processRoiMembers() - and counts the ROI size.  Only reads thresholdImgInt and the
+	 * memberships, so any number of scans can run concurrently.
+	 * 
+	 * @author stevenwest
+	 *
+	 */
+	private class RoiMemberScan extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		RoiMembership[] memberships;
+		int roiIndex;
+		RoiSpans roiSpans;
+		int zMax;
+		
+		/**
+		 * The member objects of each class found in the ROI, and the ROI size.
+		 */
+		ArrayList<ArrayList<Integer>> labels;
+		int roiSize;
+		
+		RoiMemberScan(RoiMembership[] memberships, int roiIndex, RoiSpans roiSpans, int zMax) {
+			this.memberships = memberships;
+			this.roiIndex = roiIndex;
+			this.roiSpans = roiSpans;
+			this.zMax = zMax;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			int classes = memberships.length;
+			int[] objVals = new int[classes];
+			boolean[][] found = new boolean[classes][];
+			labels = new ArrayList<ArrayList<Integer>>();
+			for(int c=0; c<classes; c++) {
+				objVals[c] = memberships[c].getObjVal();
+				found[c] = new boolean[memberships[c].getObjectLabels().getLabelCount() + 1];
+				labels.add( new ArrayList<Integer>() );
+			}
+			
+			int label, c, xy;
+			roiSize = roiSpans.getVolume(zMax);
+			
+			for(int z = 0; z <  zMax; z++) {
+				
+				byte[] bytes = byteSlice(thresholdImgInt, z);
+				short[] shorts = shortSlice(thresholdImgInt, z);
+				
+				for(int s=0; s<roiSpans.getSpanCount(); s++) {
+					
+					int y = roiSpans.getY(s);
+					xy = roiSpans.getOffset(s);
+					
+					for(int x=roiSpans.getXStart(s); x<roiSpans.getXEnd(s); x++, xy++) {
+
+						c = classIndex( objVals, pixelValue(thresholdImgInt, bytes, shorts, xy, z) );
 
-		// Int for ROI size (in pixels):		Int for obj counter:
-		int roiSize = 0;						int objCounter = 0;
+						if(c >= 0) {
+							label = memberships[c].getObjectLabels().getLabel(x, y, z);
+							if( found[c][label] == false && memberships[c].isMember(roiIndex, label) ) {
+								found[c][label] = true;
+								labels.get(c).add(label);
+							}
+						}
+					}
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Adds the assessed objects of one ROI to its dataset:  the objects of class c are objData at
+	 * [ classStart[c], classStart[c+1] ), and are given ClassifierClass classifierAttributes[c].
+	 * 
+	 * @author stevenwest
+	 *
+	 */
+	private class RoiDataFill extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		DatasetWrapper roiData;
+		ObjectDataContainer[] objData;
+		int[] classStart;
+		String[] classifierAttributes;
+		
+		RoiDataFill(DatasetWrapper roiData, ObjectDataContainer[] objData, int[] classStart, 
+						String[] classifierAttributes) {
+			this.roiData = roiData;
+			this.objData = objData;
+			this.classStart = classStart;
+			this.classifierAttributes = classifierAttributes;
+		}
+		
+		@Override
+		protected void compute() {
+			for(int c=0; c<classifierAttributes.length; c++) {
+				for(int a=classStart[c]; a<classStart[c+1]; a++) {
+					addRoiData( roiData, objData[a], classifierAttributes[c] );
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Add the data in objData to roiData, and set its ClassifierClass to ClassifierAttribute.
+	 * @param roiData
+	 * @param objData
+	 * @param ClassifierAttribute
+	 */
+	private void addRoiData(DatasetWrapper roiData, ObjectDataContainer objData, String ClassifierAttribute) {
+		
+		roiData.addData( objData.returnData(), objData.returnDataTitles() );
+		
+		// add ClassifierAttribute to the Classifier Column:
+		// By default it will be UNCLASSIFIED, but need to set to ClassifierAttribute:
+		roiData.setValue( 
+				(roiData.data.size()-1), // -1 as obj ref is -1 from obj no 
+				(double)ObjectDataContainer.getValueIndex(ObjectDataContainer.CLASSIFIERCLASS, ClassifierAttribute),
+				ObjectDataContainer.CLASSIFIERCLASS,
+				false
+				);
+	}
+	
+	/**
+	 * Parallel version of processRoiObjects().  The inVals and objVals objects are labelled - unless they were
+	 * labelled once for the image in roiLabels - and the ROI is looped through in the same order as processRoiObjects() to find the objects of each class in it, in the
+	 * order they would be assessed.  The objects of each class are then assessed across the assessmentPool, and
+	 * their data is added to roiData in this order, so roiData is identical to the serial method.
+	 * @return The number of pixels inside the 3D ROI assessed in this method (roiExcl x zMax).
+	 */
+	private int processRoiObjectsParallel(RoiSpans roiSpans, int[] inVals, int[] objVals, ObjectLabels[] roiLabels, 
+									int zMax, DatasetWrapper roiData, String[] classifierAttributes) {
+		
+		// the ROI objects are removed from the image - any labelling is no longer valid:
+		objectLabels = null;
+		labelImage = null;
+		voxelIndex = null;
+		
+		int classes = objVals.length;
+		ObjectLabels[] inLabels = new ObjectLabels[classes];
+		ObjectLabels[] objLabels = new ObjectLabels[classes];
+		boolean[][] inFound = new boolean[classes][];
+		boolean[][] objFound = new boolean[classes][];
+		
+		// the objects of each class in the ROI, in the order they are found:
+		ArrayList<ArrayList<ObjectLabels>> labelSets = new ArrayList<ArrayList<ObjectLabels>>();
+		ArrayList<ArrayList<Integer>> labels = new ArrayList<ArrayList<Integer>>();
+		
+		for(int c=0; c<classes; c++) {
+			if(roiLabels != null) {
+				// each object is wholly inVal or objVal, so is found by its label in the objVal labelling:
+				inLabels[c] = roiLabels[c];
+				objLabels[c] = roiLabels[c];
+			}
+			else {
+				inLabels[c] = labeller.label(thresholdImgInt, inVals[c]);
+				objLabels[c] = inVals[c] == objVals[c] ? inLabels[c] : labeller.label(thresholdImgInt, objVals[c]);
+			}
+			inFound[c] = new boolean[inLabels[c].getLabelCount() + 1];
+			objFound[c] = objLabels[c] == inLabels[c] ? inFound[c] : new boolean[objLabels[c].getLabelCount() + 1];
+			labelSets.add( new ArrayList<ObjectLabels>() );
+			labels.add( new ArrayList<Integer>() );
+		}
+
+		int roiSize = roiSpans.getVolume(zMax);
+		int pixelVal, label, c, xy;
 
 		for(int z = 0; z <  zMax; z++) {
-			for(int y=0; y<mask.getHeight(); y++) {
-				for(int x=0; x<mask.getWidth(); x++) {
-
-					if(mask.getPixel(x, y) > 0) {
-
-						roiSize = roiSize + 1;
-
-						if( thresholdImgInt.getPixelInt(x+r.x,y+r.y,z) == inVal
-								|| thresholdImgInt.getPixelInt(x+r.x,y+r.y,z) == objVal  ) {
-							
-							objCounter = objCounter + 1;
-																				
-							ObjectDataContainer objData =
-									borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, 
-											x+r.x, y+r.y, z, objCounter, 0, true );  //true, running convex measures!
-							
-							roiData.addData( objData.returnData(), objData.returnDataTitles() );
-							
-							//IJ.log("objCounter: "+objCounter);
-							
-							// add ClassifierAttribute to the Classifier Column:
-							// need to set Classifier Attribute value across the whole datset to ClassifierAttribute
-							// By default it will be UNCLASSIFIED, but need to set to ClassifierAttribute:
-							//roiData.instance((objCounter-1)).setValue(
-									
-								//	ObjectDataContainer.returnAttribute(ObjectDataContainer.CLASSIFIERCLASS), 
-										
-								//	(double)ObjectDataContainer.getValueIndex(
-								//							ObjectDataContainer.CLASSIFIERCLASS, 
-								//							ClassifierAttribute )
-								//	);
-														
-							roiData.setValue( 
-									(roiData.data.size()-1), // -1 as obj ref is -1 from obj no 
-									(double)ObjectDataContainer.getValueIndex(ObjectDataContainer.CLASSIFIERCLASS, ClassifierAttribute),
-									ObjectDataContainer.CLASSIFIERCLASS,
-									false
-									);
+			
+			byte[] bytes = byteSlice(thresholdImgInt, z);
+			short[] shorts = shortSlice(thresholdImgInt, z);
+			
+			for(int s=0; s<roiSpans.getSpanCount(); s++) {
+				
+				int y = roiSpans.getY(s);
+				xy = roiSpans.getOffset(s);
+				
+				for(int x=roiSpans.getXStart(s); x<roiSpans.getXEnd(s); x++, xy++) {
 
+					pixelVal = pixelValue(thresholdImgInt, bytes, shorts, xy, z);
+
+					c = classIndex(inVals, pixelVal);
+					if(c >= 0) {
+						label = inLabels[c].getLabel(x, y, z);
+						if(inFound[c][label] == false) {
+							inFound[c][label] = true;
+							labelSets.get(c).add(inLabels[c]);
+							labels.get(c).add(label);
+						}
+						continue;
+					}
+					c = classIndex(objVals, pixelVal);
+					if(c >= 0) {
+						label = objLabels[c].getLabel(x, y, z);
+						if(objFound[c][label] == false) {
+							objFound[c][label] = true;
+							labelSets.get(c).add(objLabels[c]);
+							labels.get(c).add(label);
 						}
 					}
 				}
 			}
 		}
+		
+		for(c=0; c<classes; c++) {
+			
+			int[] labelArray = new int[labels.get(c).size()];
+			for(int a=0; a<labelArray.length; a++) {
+				labelArray[a] = labels.get(c).get(a);
+			}
+			
+			//true, running convex measures!
+			ObjectDataContainer[] objData = borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, 
+					labelSets.get(c).toArray(new ObjectLabels[labelArray.length]), labelArray, 0, 0, true, assessmentPool );
+			
+			for(int a=0; a<objData.length; a++) {
+				addRoiData( roiData, objData[a], classifierAttributes[c] );
+			}
+		}
 
 		return roiSize;
 
@@ -821,16 +1876,155 @@ public class ImageHandler {
 	public int processRoiObjectsFragments(Roi roi, int objVal, int zMax, 
 											DatasetWrapper roiData, String ClassifierAttribute) {
 		
-		// adjust all pixel values in ROI above 0 by adding 1 to them:
-		int roiSize = labelRoi(thresholdImgInt, roi, objVal, zMax);
+		return processRoiObjectsFragments(roi, new int[] {objVal}, zMax, roiData, new String[] {ClassifierAttribute} );
+
+	}
+	
+	/**
+	 * Assesses all object fragments of a set of object classes which sit within the passed roi, in one 
+	 * traversal of the ROI to label the fragments, and one to assess them.  The objects of class c have pixel 
+	 * value objVals[c], and their data is put into roiData with ClassifierClass classifierAttributes[c] - in 
+	 * class order, so roiData is identical to assessing each class with a separate call.  The pixel values 
+	 * objVals[c] and objVals[c] + 1 of all classes must be distinct.
+	 * @param roi
+	 * @param objVals
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return Roi Pixel Volume which was assessed in this method.
+	 */
+	public int processRoiObjectsFragments(Roi roi, int[] objVals, int zMax, 
+											DatasetWrapper roiData, String[] classifierAttributes) {
+		
+		return processRoiObjectsFragments( new RoiSpans(roi, thresholdImgInt.sizeX, thresholdImgInt.sizeY), 
+											objVals, zMax, roiData, classifierAttributes );
+		
+	}
+	
+	/**
+	 * As processRoiObjectsFragments(Roi, int[], int, DatasetWrapper, String[]), on the rasterised ROI roiSpans.
+	 * @param roiSpans
+	 * @param objVals
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return Roi Pixel Volume which was assessed in this method.
+	 */
+	public int processRoiObjectsFragments(RoiSpans roiSpans, int[] objVals, int zMax, 
+											DatasetWrapper roiData, String[] classifierAttributes) {
+		
+		// adjust all pixel values of each class in ROI by adding 1 to them:
+		int roiSize = labelRoi(thresholdImgInt, roiSpans, objVals, zMax);
 		
 		// assess each object in ROI which has pixel value (objVal+1) - labelRoi set each objVal to objVal+1
-		assessRoiObj(thresholdImgInt, roi, (objVal+1), 0, zMax, roiData, ClassifierAttribute, false);
+		int[] labelVals = new int[objVals.length];
+		for(int c=0; c<objVals.length; c++) {
+			labelVals[c] = objVals[c] + 1;
+		}
+		assessRoiObj(thresholdImgInt, roiSpans, labelVals, 0, zMax, roiData, classifierAttributes, false);
 
 		return roiSize;
 
 	}
 	
+	/**
+	 * Assesses all object fragments of a set of object classes which sit within roiSpans, WITHOUT modifying
+	 * thresholdImgInt.  The fragments are the connected components of each class inside fragmentSpans, down 
+	 * to zMax:  they are flood filled on a RoiView with a background border, which marks them as visited
+	 * instead of relabelling the ROI and setting each fragment to 0.  The data of class c is put straight
+	 * into roiData with ClassifierClass classifierAttributes[c], in class order.
+	 * <p>
+	 * fragmentSpans should be roiSpans minus the pixels of any ROI analysed before it - see 
+	 * RoiAssessmentHandler.getFragmentSpans() - as relabelling an earlier ROI removed the fragment voxels in
+	 * the overlap from later ROIs.  The data is then identical to processRoiObjectsFragments(roiSpans, ...).
+	 * @param roiSpans
+	 * @param fragmentSpans
+	 * @param objVals
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @return Roi Pixel Volume which was assessed in this method (roiSpans x zMax).
+	 */
+	public int processRoiObjectsFragments(RoiSpans roiSpans, RoiSpans fragmentSpans, int[] objVals, int zMax, 
+											DatasetWrapper roiData, String[] classifierAttributes) {
+		
+		assessRoiObj( getRoiView(fragmentSpans, zMax, RoiView.BORDER_BACKGROUND), objVals, roiData, 
+						classifierAttributes, false );
+		
+		return roiSpans.getVolume(zMax);
+		
+	}
+	
+	/**
+	 * Concurrent version of calling processRoiObjectsFragments(roiSpans, fragmentSpans, ...) on each ROI in 
+	 * turn:  fragment analysis does not modify thresholdImgInt, so each ROI is assessed on its own task on the
+	 * assessmentPool, with its own flood fill and accumulator, and its data is put straight into
+	 * roiDatasets.get(a).  The data is identical to the sequential loop.  If objects are assessed serially
+	 * (setAssessmentThreads() of 1 or less), the ROIs are processed in turn.
+	 * @param roiSpans
+	 * @param fragmentSpans
+	 * @param objVals
+	 * @param zMax
+	 * @param roiDatasets
+	 * @param classifierAttributes
+	 * @return Roi Pixel Volume of each ROI (roiSpans x zMax).
+	 */
+	public int[] processRoiObjectsFragmentsConcurrent(ArrayList<RoiSpans> roiSpans, ArrayList<RoiSpans> fragmentSpans, 
+			int[] objVals, int zMax, ArrayList<DatasetWrapper> roiDatasets, String[] classifierAttributes) {
+		
+		int rois = roiSpans.size();
+		int[] roiSizes = new int[rois];
+		
+		if(assessmentPool == null) {
+			for(int a=0; a<rois; a++) {
+				roiSizes[a] = processRoiObjectsFragments(roiSpans.get(a), fragmentSpans.get(a), objVals, zMax, 
+											roiDatasets.get(a), classifierAttributes);
+			}
+			return roiSizes;
+		}
+		
+		RoiFragmentTask[] tasks = new RoiFragmentTask[rois];
+		for(int a=0; a<rois; a++) {
+			tasks[a] = new RoiFragmentTask( getRoiView(fragmentSpans.get(a), zMax, RoiView.BORDER_BACKGROUND), 
+											objVals, roiDatasets.get(a), classifierAttributes );
+			roiSizes[a] = roiSpans.get(a).getVolume(zMax);
+		}
+		assessmentPool.invoke( new RoiTasks(tasks) );
+		
+		return roiSizes;
+		
+	}
+	
+	/**
+	 * Assesses the object fragments of one ROI view into its dataset, with its own flood fill and accumulator.
+	 * 
+	 * @author stevenwest
+	 *
+	 */
+	private class RoiFragmentTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		RoiView view;
+		int[] objVals;
+		DatasetWrapper roiData;
+		String[] classifierAttributes;
+		
+		RoiFragmentTask(RoiView view, int[] objVals, DatasetWrapper roiData, String[] classifierAttributes) {
+			this.view = view;
+			this.objVals = objVals;
+			this.roiData = roiData;
+			this.classifierAttributes = classifierAttributes;
+		}
+		
+		@Override
+		protected void compute() {
+			assessRoiView(view, objVals, roiData, classifierAttributes, false, 
+							borderObjPixProcessing3D.createFloodFill(), new ObjectFeatureAccumulator() );
+		}
+		
+	}
+	
 	/**
 	 * Takes every pixel value above 0 in originalImgInt that is inside roi, and raises its value
 	 * by 1.  Note, if the pixel value is 255, it is NOT CHANGED!
@@ -844,35 +2038,67 @@ public class ImageHandler {
 	 */
 	public int labelRoi(ImageInt originalImgInt, Roi roi, int objVal, int zMax) {
 		
-		// For ExclRoi Pixels - Get the mask and the bounds of this ROI:
-		ImageProcessor mask = roi.getMask();
-		Rectangle r = roi.getBounds();
+		return labelRoi(originalImgInt, roi, new int[] {objVal}, zMax);
+	}
+	
+	/**
+	 * Takes every pixel in originalImgInt that is inside roi and has one of the pixel values in objVals, and 
+	 * raises its value by 1.
+	 * <p>
+	 * Returns the size of the ROI.
+	 * @param originalImgInt
+	 * @param roi
+	 * @param objVals
+	 * @param zMax
+	 * @return
+	 */
+	public int labelRoi(ImageInt originalImgInt, Roi roi, int[] objVals, int zMax) {
 		
-		int roiSize = 0;
+		return labelRoi(originalImgInt, new RoiSpans(roi, originalImgInt.sizeX, originalImgInt.sizeY), 
+						objVals, zMax);
+	}
+	
+	/**
+	 * As labelRoi(ImageInt, Roi, int[], int), on the rasterised ROI roiSpans:  each span is read and written
+	 * directly in the pixel arrays of originalImgInt.
+	 * @param originalImgInt
+	 * @param roiSpans
+	 * @param objVals
+	 * @param zMax
+	 * @return
+	 */
+	public int labelRoi(ImageInt originalImgInt, RoiSpans roiSpans, int[] objVals, int zMax) {
 		
-		int objValPlusOne = objVal + 1;
+		// objects are split into fragments - any labelling is no longer valid:
+		objectLabels = null;
+		labelImage = null;
+		voxelIndex = null;
+		
+		int pixelVal, xy;
 		
 		for(int z=0; z<zMax; z++) {
-			for(int y=0; y<mask.getHeight(); y++) {
-				for(int x=0; x<mask.getWidth(); x++) {
-					
-					if(mask.getPixel(x, y) > 0) {
+			
+			byte[] bytes = byteSlice(originalImgInt, z);
+			short[] shorts = shortSlice(originalImgInt, z);
+			
+			for(int s=0; s<roiSpans.getSpanCount(); s++) {
+				
+				xy = roiSpans.getOffset(s);
+				
+				for(int a=0; a<roiSpans.getLength(s); a++, xy++) {
 
-						roiSize = roiSize + 1;
-						
-						int pixelVal = originalImgInt.getPixelInt(x+r.x, y+r.y, z);
-						
-						if(pixelVal == objVal ) {
+					pixelVal = pixelValue(originalImgInt, bytes, shorts, xy, z);
+
+					if( classIndex(objVals, pixelVal) >= 0 ) {
+
+						setPixelValue(originalImgInt, bytes, shorts, xy, z, pixelVal + 1);
 
-							originalImgInt.setPixel(x+r.x, y+r.y, z, objValPlusOne);
-							
-						}
 					}
 				}
 			}
 		}
 		
-		return roiSize;
+		return roiSpans.getVolume(zMax);
 	}
 	
 	/**
@@ -889,60 +2115,191 @@ public class ImageHandler {
 	public void assessRoiObj(ImageInt originalImgInt, Roi roi, int objVal, int setPixVal, int zMax, 
 			DatasetWrapper roiData, String ClassifierAttribute, boolean convexMeasures) {
 
-		// For ExclRoi Pixels - Get the mask and the bounds of this ROI:
-		ImageProcessor mask = roi.getMask();
-		Rectangle r = roi.getBounds();
+		assessRoiObj(originalImgInt, roi, new int[] {objVal}, setPixVal, zMax, roiData, 
+						new String[] {ClassifierAttribute}, convexMeasures);
+	}
+	
+	/**
+	 * Loops through the roi on thresholdImgInt once, and assesses each object of a set of object classes:  
+	 * objects of class c have pixel value objVals[c], and are set to setPixVal.  The data of each class is put
+	 * into roiData with ClassifierClass classifierAttributes[c], in class order.
+	 * @param originalImgInt
+	 * @param roi
+	 * @param objVals
+	 * @param setPixVal
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @param convexMeasures
+	 */
+	public void assessRoiObj(ImageInt originalImgInt, Roi roi, int[] objVals, int setPixVal, int zMax, 
+			DatasetWrapper roiData, String[] classifierAttributes, boolean convexMeasures) {
 		
-		// Int for obj counter:
-		int objCounter = 0;
+		assessRoiObj(originalImgInt, new RoiSpans(roi, originalImgInt.sizeX, originalImgInt.sizeY), objVals, 
+						setPixVal, zMax, roiData, classifierAttributes, convexMeasures);
+	}
+	
+	/**
+	 * As assessRoiObj(ImageInt, Roi, int[], int, int, DatasetWrapper, String[], boolean), on the rasterised
+	 * ROI roiSpans.
+	 * @param originalImgInt
+	 * @param roiSpans
+	 * @param objVals
+	 * @param setPixVal
+	 * @param zMax
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @param convexMeasures
+	 */
+	public void assessRoiObj(ImageInt originalImgInt, RoiSpans roiSpans, int[] objVals, int setPixVal, int zMax, 
+			DatasetWrapper roiData, String[] classifierAttributes, boolean convexMeasures) {
+
+		// the ROI objects are set to setPixVal - any labelling is no longer valid:
+		objectLabels = null;
+		labelImage = null;
+		voxelIndex = null;
+		
+		// the data of each class, added to roiData once the ROI is traversed:
+		ArrayList<ArrayList<ObjectDataContainer>> classData = new ArrayList<ArrayList<ObjectDataContainer>>();
+		for(int c=0; c<objVals.length; c++) {
+			classData.add( new ArrayList<ObjectDataContainer>() );
+		}
+		
+		int c, xy;
 
 		for(int z=0; z<zMax; z++) {
-			for(int y=0; y<mask.getHeight(); y++) {
-				for(int x=0; x<mask.getWidth(); x++) {
-					
-					if(mask.getPixel(x, y) > 0) {
-
-						if( originalImgInt.getPixelInt(x+r.x, y+r.y, z) == objVal ) {
-
-							objCounter = objCounter + 1;
-
-							ObjectDataContainer dataObj = 
-									borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, 
-											x+r.x, y+r.y, z, objCounter, setPixVal, convexMeasures );
-
-							roiData.addData( dataObj.returnData(), dataObj.returnDataTitles() );
-							
-							// add ClassifierAttribute to the Classifier Column:
-							// need to set Classifier Attribute value across the whole datset to ClassifierAttribute
-							// By default it will be UNCLASSIFIED, but need to set to ClassifierAttribute:
-							//roiData.instance((objCounter-1)).setValue(
-									
-								//	ObjectDataContainer.returnAttribute(ObjectDataContainer.CLASSIFIERCLASS), 
-										
-								//	(double)ObjectDataContainer.getValueIndex(
-								//							ObjectDataContainer.CLASSIFIERCLASS, 
-								//							ClassifierAttribute )
-								//	);
-														
-							roiData.setValue( 
-									(roiData.data.size()-1), // -1 as obj ref is -1 from obj no 
-									(double)ObjectDataContainer.getValueIndex(ObjectDataContainer.CLASSIFIERCLASS, ClassifierAttribute),
-									ObjectDataContainer.CLASSIFIERCLASS,
-									false
-									);
-							
-						} // end if originalImgInt
-					} //end if mask
-					
+			
+			// pixels are read live - each assessed object is set to setPixVal:
+			byte[] bytes = byteSlice(originalImgInt, z);
+			short[] shorts = shortSlice(originalImgInt, z);
+			
+			for(int s=0; s<roiSpans.getSpanCount(); s++) {
+				
+				int y = roiSpans.getY(s);
+				xy = roiSpans.getOffset(s);
+				
+				for(int x=roiSpans.getXStart(s); x<roiSpans.getXEnd(s); x++, xy++) {
+
+					c = classIndex( objVals, pixelValue(originalImgInt, bytes, shorts, xy, z) );
+
+					if( c >= 0 ) {
+
+						// obj counter of this class:
+						int objCounter = classData.get(c).size() + 1;
+
+						classData.get(c).add( 
+								borderObjPixProcessing3D.objAssessment3d( thresholdImgInt, activeChannelInt, 
+										x, y, z, objCounter, setPixVal, convexMeasures )
+								);
+
+					} // end if originalImgInt
+
 				}// end for x
-			} // end for y
+			} // end for spans
 		} // end for z
+		
+		for(c=0; c<classData.size(); c++) {
+			for(int a=0; a<classData.get(c).size(); a++) {
+				addRoiData( roiData, classData.get(c).get(a), classifierAttributes[c] );
+			}
+		}
+	}
+	
+	
+	/**
+	 * Loops through the ROI of view once, and assesses each object of a set of object classes as seen through
+	 * the view:  objects of class c have pixel value objVals[c].  For a RoiView.BORDER_BACKGROUND view, each 
+	 * object is the fragment of an object inside the ROI.  The data of each class is put into roiData with
+	 * ClassifierClass classifierAttributes[c], in class order, and each class is numbered from 1 in the order
+	 * its objects are found - as in assessRoiObj().
+	 * <p>
+	 * Objects are flood filled on the view, which marks them as visited, so thresholdImgInt is NOT modified.
+	 * @param view
+	 * @param objVals
+	 * @param roiData
+	 * @param classifierAttributes
+	 * @param convexMeasures
+	 */
+	public void assessRoiObj(RoiView view, int[] objVals, DatasetWrapper roiData, String[] classifierAttributes, 
+			boolean convexMeasures) {
+		
+		assessRoiView(view, objVals, roiData, classifierAttributes, convexMeasures, 
+						borderObjPixProcessing3D.createFloodFill(), new ObjectFeatureAccumulator() );
+		
+	}
+	
+	/**
+	 * Assess the objects of view, as in assessRoiObj(RoiView, ...), flooding and measuring them with fill and
+	 * acc.  The rows of the first class are added straight to roiData as each object is assessed - only the
+	 * rows of later classes are held until the ROI is traversed, to keep roiData in class order.
+	 */
+	private void assessRoiView(RoiView view, int[] objVals, DatasetWrapper roiData, String[] classifierAttributes, 
+			boolean convexMeasures, FloodFill3D fill, ObjectFeatureAccumulator acc) {
+		
+		RoiSpans roiSpans = view.getRoiSpans();
+		
+		// objects found of each class, and the data of the later classes:
+		int[] objCounters = new int[objVals.length];
+		ArrayList<ArrayList<ObjectDataContainer>> classData = new ArrayList<ArrayList<ObjectDataContainer>>();
+		for(int c=0; c<objVals.length; c++) {
+			classData.add( new ArrayList<ObjectDataContainer>() );
+		}
+		
+		int c;
+		
+		for(int z=0; z<view.getZMax(); z++) {
+			for(int s=0; s<roiSpans.getSpanCount(); s++) {
+				
+				int y = roiSpans.getY(s);
+				
+				for(int x=roiSpans.getXStart(s); x<roiSpans.getXEnd(s); x++) {
+					
+					c = classIndex( objVals, view.getPixelInt(x, y, z) );
+					
+					if( c >= 0 && view.isVisited(x, y, z) == false ) {
+						
+						// obj counter of this class:
+						objCounters[c] = objCounters[c] + 1;
+						
+						ObjectDataContainer objData = borderObjPixProcessing3D.objAssessment3d( view, 
+								activeChannelInt, x, y, z, objCounters[c], convexMeasures, fill, acc );
+						
+						if(c == 0) {
+							addRoiData( roiData, objData, classifierAttributes[c] );
+						}
+						else {
+							classData.get(c).add(objData);
+						}
+					}
+				}
+			}
+		}
+		
+		for(c=1; c<classData.size(); c++) {
+			for(int a=0; a<classData.get(c).size(); a++) {
+				addRoiData( roiData, classData.get(c).get(a), classifierAttributes[c] );
+			}
+		}
 	}
 	
 	
 	public void setBorderPoints(Points pts, int sizeZ, int outVal, int maxVal) {
+		
+		setBorderPoints(pts, sizeZ, new int[] {outVal}, new int[] {maxVal});
+		
+	}
+	
+	/**
+	 * Set the OUT objects of a set of object classes on the border points back to their default pixel value, 
+	 * in one pass:  objects with pixel value outVals[c] are set to maxVals[c].
+	 * @param pts
+	 * @param sizeZ
+	 * @param outVals
+	 * @param maxVals
+	 */
+	public void setBorderPoints(Points pts, int sizeZ, int[] outVals, int[] maxVals) {
 
-		int pixelValue;
+		int c;
 		
 		//loop through all of z slices:
 		for(int z = 0; z < sizeZ; z++) {
@@ -952,14 +2309,14 @@ public class ImageHandler {
 
 				int x = pts.get(p).x;			int y = pts.get(p).y;
 
-				//First, get pixel value for the current borderPoints pixel from res image:
-				pixelValue =  thresholdImgInt.getPixelInt(x, y, z);
+				//First, get class of the current borderPoints pixel value from res image:
+				c = classIndex( outVals, thresholdImgInt.getPixelInt(x, y, z) );
 
-				// if object pixel value is outVal, set it back to maxVal:
-				if(  pixelValue == outVal ) {
+				// if object pixel value is an outVal, set it back to its maxVal:
+				if(  c >= 0 ) {
 
 					// convert the objects pixel value back to maxVal:
-					borderObjPixProcessing3D.selectObj3d(thresholdImgInt, x, y, z, maxVal, maxVal);
+					borderObjPixProcessing3D.selectObj3d(thresholdImgInt, x, y, z, maxVals[c], maxVals[c]);
 
 				} //end if pixelValue == outVal
 			} //end p
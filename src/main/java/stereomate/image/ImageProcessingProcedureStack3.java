@@ -74,6 +74,17 @@ public class ImageProcessingProcedureStack3 {
 	
 	protected ArrayList<String> toggleProperties;
 	
+	/**
+	 * The commands compiled for running - compiled again when the commands are edited.
+	 */
+	protected CompiledProcedureStack compiledStack;
+	
+	/**
+	 * Tile size in XY and Z when the stack is run in tiled mode by runProcedureStack(imp) - 0 if the stack is run
+	 * on the whole image.  Not saved with the stack.
+	 */
+	protected int tileXY, tileZ;
+	
 	
 	/**
 	 * This represents a JTextArea where text can be put to update the status of the procedure stack's run.
@@ -428,6 +439,37 @@ public class ImageProcessingProcedureStack3 {
 	}
 	
 	
+	/**
+	 * Returns the procedure stack compiled for running - the steps which are toggled on, with their options 
+	 * parsed once into typed steps.  The compiled stack is kept until the commands are edited.
+	 * @return
+	 */
+	public CompiledProcedureStack compile() {
+		if(compiledStack == null || compiledStack.isCompiledFrom(this) == false) {
+			compiledStack = new CompiledProcedureStack(this);
+		}
+		return compiledStack;
+	}
+	
+	
+	/**
+	 * Set runProcedureStack(imp) to run the stack on tiles of tileXY x tileXY pixels by tileZ slices, each with
+	 * a halo from the kernel radius of the steps, so the memory used by the steps is bounded by the tile size -
+	 * see TiledProcedureStack.  The output is identical to running the stack on the whole image.  If tileXY is
+	 * 0 or less, the stack is run on the whole image.  ImageHandler enables tiling for channels larger than
+	 * ImageHandler.TILING_HEAP_FRACTION of the heap.
+	 * @param tileXY
+	 * @param tileZ
+	 */
+	public void setTiling(int tileXY, int tileZ) {
+		this.tileXY = Math.max(tileXY, 0);
+		this.tileZ = tileZ;
+	}
+	
+	public boolean isTiled() {
+		return tileXY > 0;
+	}
+	
 	public boolean isAnyToggleOn() {
 		
 		boolean togOn = false;
@@ -452,32 +494,34 @@ public class ImageProcessingProcedureStack3 {
 	 */
 	public boolean runProcedureStack(ImagePlus imp, ImageWindowWithPanel IWP) {
 		boolean cmdRan = false;
+		
+		// only the procedures with toggle property 1 are compiled:
+		CompiledProcedureStack compiled = compile();
 					
-		for(int a=0; a<commandTitles.size(); a++) {
-			if(toggleProperties.get(a).equals("1") ) {
-				
-				//only run the procedure IF the toggle property is 1 for this item in the stack:
-				if(status != null) {
-					status.setText("Running: "+commandTitles.get(a) );
-				}
-				
-				IJ.run( imp, commandTitles.get(a), commandOptions.get(a) );
-				
-				//The IWP Ref to the third channel may now be in-correct (if a new imagestack is put into activeImp
-					//during the running of this command - will lose the ip refs in IWP to the activeImp channel!)
-				//Therefore, update IWP last channel with activeImp and its new stack ref!!
-				
-				//SO - **REPLACE** the current extra channel in IWP with this new extracted channel:
-				
-				IWP.getOriginalImagePlus().setStack( IWP.replaceStacks( IWP.getOriginalImagePlus().getStack(), 
-																		imp.getStack() ), 
-																	IWP.getOriginalImagePlus().getNChannels(), 
-																	IWP.getOriginalImagePlus().getNSlices(), 
-																	IWP.getOriginalImagePlus().getNFrames() );
-				
-				//if command is run, set cmdRan to true:
-				cmdRan = true;
+		for(int a=0; a<compiled.size(); a++) {
+			
+			if(status != null) {
+				status.setText("Running: "+compiled.getStep(a).getCommandTitle() );
 			}
+			
+			// run in-process if the step is compiled, else with IJ.run() - copying a channel view before
+				// its pixels are modified:
+			compiled.getStep(a).run(imp);
+			
+			//The IWP Ref to the third channel may now be in-correct (if a new imagestack is put into activeImp
+				//during the running of this command - will lose the ip refs in IWP to the activeImp channel!)
+			//Therefore, update IWP last channel with activeImp and its new stack ref!!
+			
+			//SO - **REPLACE** the current extra channel in IWP with this new extracted channel:
+			
+			IWP.getOriginalImagePlus().setStack( IWP.replaceStacks( IWP.getOriginalImagePlus().getStack(), 
+																	imp.getStack() ), 
+																IWP.getOriginalImagePlus().getNChannels(), 
+																IWP.getOriginalImagePlus().getNSlices(), 
+																IWP.getOriginalImagePlus().getNFrames() );
+			
+			//if command is run, set cmdRan to true:
+			cmdRan = true;
 		}
 		
 		return cmdRan;
@@ -491,17 +535,27 @@ public class ImageProcessingProcedureStack3 {
 	 * @param imp The ActiveImp from the IWP which is being processed.
 	 */
 	public void runProcedureStack(ImagePlus imp) {
+		
+		// only the procedures with toggle property 1 are compiled:
+		CompiledProcedureStack compiled = compile();
+		
+		if(isTiled() ) {
+			if(status != null) {
+				status.setText("Running procedure stack on tiles");
+			}
+			new TiledProcedureStack(compiled, tileXY, tileZ).run(imp);
+			return;
+		}
 					
-		for(int a=0; a<commandTitles.size(); a++) {
-			if(toggleProperties.get(a).equals("1") ) {
-				
-				//only run the procedure IF the toggle property is 1 for this item in the stack:
-				if(status != null) {
-					status.setText("Running: "+commandTitles.get(a) );
-				}
+		for(int a=0; a<compiled.size(); a++) {
 				
-				IJ.run( imp, commandTitles.get(a), commandOptions.get(a) );
+			if(status != null) {
+				status.setText("Running: "+compiled.getStep(a).getCommandTitle() );
 			}
+			
+			// run in-process if the step is compiled, else with IJ.run() - copying a channel view before
+				// its pixels are modified:
+			compiled.getStep(a).run(imp);
 		}
 		
 		
@@ -524,8 +578,9 @@ public class ImageProcessingProcedureStack3 {
 			status.setText("Running: "+cmd );
 		}
 		
-		//run the method:
-		IJ.run(imp, cmd, options);
+		//run the method - in-process if the command is compiled, else with IJ.run(), copying a channel view
+			// before its pixels are modified:
+		CompiledProcedureStack.compile(cmd, options).run(imp);
 				
 		//The IWP Ref to the third channel may now be in-correct (if a new imagestack is put into activeImp
 			//during the running of this command - will lose the ip refs in IWP to the activeImp channel!)
@@ -954,9 +1009,9 @@ public class ImageProcessingProcedureStack3 {
 		//use variables from procedureStack to get the correct channel, convert to correct bit depth, and to
 			//apply the full procedureStack to get a thresholded image.
 		
-		//FIRST -> Duplicate the correct channel from the imp:
+		//FIRST -> View the correct channel from the imp - copied only when the pixels are first modified:
 		
-		ImageStack is = ImageWindowWithPanel.filterImageStack( imp.getStack(), procedureStack.activeChannel, imp.getNChannels() );
+		ImageStack is = new ChannelStack( imp.getStack(), procedureStack.activeChannel, imp.getNChannels() );
 		
 		ImagePlus thresholdedImp = new ImagePlus(imp.getTitle(), is);
 		
@@ -975,6 +1030,9 @@ public class ImageProcessingProcedureStack3 {
 		
 		procedureStack.runProcedureStack(thresholdedImp);
 		
+		// the imp must not share the pixels of the original imp, even if no procedure was run:
+		ChannelStack.copyOnWrite(thresholdedImp);
+		
 		//Return the imp - it is now of the correct channel, correct bit depth, and thresholded according to
 			//the procedure stack:
 		
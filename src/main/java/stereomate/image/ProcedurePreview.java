@@ -0,0 +1,367 @@
+package stereomate.image;
+
+import java.awt.Rectangle;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.measure.Calibration;
+
+/**
+ * A reduced preview of a procedure stack:  the steps are run on a DOWNSAMPLED copy of the image - each slice
+ * averaged over factor x factor pixel blocks, with the XY kernel sizes in the step options divided by factor -
+ * or on a SUB-REGION of the image - the voxels in a rectangle in XY, through all slices, with a halo as wide as
+ * the steps read.  The result is expanded back to the size of the image for display.
+ * <p>
+ * Only the options RUN on the preview are scaled - the options of the procedure stack itself, and so the stack
+ * saved to XML, are never modified.
+ *
+ * @author stevenwest
+ *
+ */
+public class ProcedurePreview {
+
+	/**
+	 * Downsample factor in XY - 1 for a sub-region preview.
+	 */
+	int factor;
+
+	/**
+	 * The sub-region in XY, or null for a downsampled preview.
+	 */
+	Rectangle region;
+
+	/**
+	 * Bounds of the last reduced image within the full image - the sub-region with its halo, clipped to the
+	 * image.
+	 */
+	Rectangle reducedBounds;
+
+	/**
+	 * Command titles, and the option keys of each, which are XY kernel sizes in pixels - scaled by 1 / factor
+	 * in a downsampled preview.
+	 */
+	static final String[][] XY_KERNEL_OPTIONS = new String[][] {
+		{ "Gaussian Blur 3D...", "x", "y" }, { "Median 3D...", "x", "y" }, { "Mean 3D...", "x", "y" },
+		{ "Minimum 3D...", "x", "y" }, { "Maximum 3D...", "x", "y" }, { "Variance 3D...", "x", "y" },
+		{ "Gaussian Blur...", "sigma" }, { "Median...", "radius" }, { "Mean...", "radius" },
+		{ "Minimum...", "radius" }, { "Maximum...", "radius" }, { "Variance...", "radius" },
+		{ "Unsharp Mask...", "radius" }, { "Subtract Background...", "rolling" }
+	};
+
+
+	private ProcedurePreview(int factor, Rectangle region) {
+		this.factor = factor;
+		this.region = region;
+	}
+
+	/**
+	 * Returns a preview on the image downsampled by factor in X and Y.
+	 * @param factor
+	 * @return
+	 */
+	public static ProcedurePreview downsampled(int factor) {
+		return new ProcedurePreview( Math.max(factor, 1), null );
+	}
+
+	/**
+	 * Returns a preview on the voxels inside region, through all slices.
+	 * @param region
+	 * @return
+	 */
+	public static ProcedurePreview region(Rectangle region) {
+		return new ProcedurePreview( 1, new Rectangle(region) );
+	}
+
+	public int getFactor() {
+		return factor;
+	}
+
+	public Rectangle getRegion() {
+		return region;
+	}
+
+	/**
+	 * Returns a short description of the preview, for the status.
+	 * @return
+	 */
+	public String getDescription() {
+		if(region != null) {
+			return "region " + region.width + "x" + region.height + " at " + region.x + "," + region.y;
+		}
+		return "1/" + factor + " XY";
+	}
+
+	/**
+	 * Returns the reduced image the steps are run on:  a downsampled copy of imp, or a copy of the sub-region of
+	 * imp with haloXY pixels around it.  The calibration is scaled to the downsampled pixel size.
+	 * @param imp
+	 * @param haloXY
+	 * @return
+	 */
+	public ImagePlus reduce(ImagePlus imp, int haloXY) {
+
+		ImageStack stack = imp.getStack();
+		ImageStack reduced;
+
+		if(region != null) {
+			Rectangle bounds = new Rectangle(region.x - haloXY, region.y - haloXY,
+									region.width + 2 * haloXY, region.height + 2 * haloXY);
+			reducedBounds = bounds.intersection( new Rectangle(0, 0, stack.getWidth(), stack.getHeight() ) );
+			reduced = crop(stack, reducedBounds);
+		}
+		else {
+			reducedBounds = new Rectangle(0, 0, stack.getWidth(), stack.getHeight() );
+			reduced = downsample(stack, factor);
+		}
+		reduced.setColorModel( stack.getColorModel() );
+
+		ImagePlus reducedImp = new ImagePlus(imp.getTitle(), reduced);
+
+		Calibration cal = imp.getCalibration();
+		if(cal != null) {
+			cal = cal.copy();
+			cal.pixelWidth = cal.pixelWidth * factor;
+			cal.pixelHeight = cal.pixelHeight * factor;
+			reducedImp.setCalibration(cal);
+		}
+
+		return reducedImp;
+	}
+
+	/**
+	 * Returns the result of the steps run on the last reduced image, expanded to a stack of width x height:  each
+	 * downsampled pixel is repeated over its block, or the sub-region - without its halo - is set in a blank stack.
+	 * @param result
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public ImageStack expand(ImageStack result, int width, int height) {
+
+		ImageStack expanded = new ImageStack(width, height);
+		int resultWidth = result.getWidth();
+
+		for(int n=1; n<=result.getSize(); n++) {
+			Object pixels = result.getPixels(n);
+			Object out = newPixels(pixels, width * height);
+
+			if(region != null) {
+				// the region clipped to the image, offset into the reduced image:
+				Rectangle r = region.intersection( new Rectangle(0, 0, width, height) );
+				for(int y=r.y; y<r.y+r.height; y++) {
+					System.arraycopy(pixels, (y - reducedBounds.y) * resultWidth + (r.x - reducedBounds.x),
+										out, y * width + r.x, r.width);
+				}
+			}
+			else {
+				// repeat each row of downsampled pixels over its block, then copy the row to the rows of its block:
+				for(int y=0; y<height; y++) {
+					if(y % factor == 0) {
+						expandRow(pixels, (y / factor) * resultWidth, out, y * width, width, factor);
+					}
+					else {
+						System.arraycopy(out, (y - 1) * width, out, y * width, width);
+					}
+				}
+			}
+
+			expanded.addSlice(result.getSliceLabel(n), out);
+		}
+		expanded.setColorModel( result.getColorModel() );
+
+		return expanded;
+	}
+
+	/**
+	 * Returns the options of commandTitle to run on the reduced image:  the XY kernel sizes divided by factor in a
+	 * downsampled preview - so a filter covers the same area of the image - or the options unchanged.
+	 * @param commandTitle
+	 * @param commandOptions
+	 * @return
+	 */
+	public String scaleOptions(String commandTitle, String commandOptions) {
+
+		// scaled options are in calibrated units - the calibration of the reduced image is already scaled:
+		if(factor == 1 || Pattern.compile("(^|\\s)scaled(\\s|$)").matcher(commandOptions).find() ) {
+			return commandOptions;
+		}
+
+		for(int a=0; a<XY_KERNEL_OPTIONS.length; a++) {
+			if(XY_KERNEL_OPTIONS[a][0].equals(commandTitle) ) {
+				for(int k=1; k<XY_KERNEL_OPTIONS[a].length; k++) {
+					commandOptions = scaleOption(commandOptions, XY_KERNEL_OPTIONS[a][k]);
+				}
+			}
+		}
+
+		return commandOptions;
+	}
+
+	/**
+	 * Divides the numeric value of key in options by factor.
+	 */
+	private String scaleOption(String options, String key) {
+		Matcher m = Pattern.compile("(^|\\s)" + Pattern.quote(key) + "=([0-9.]+)").matcher(options);
+		if(m.find() == false) {
+			return options;
+		}
+		double value;
+		try {
+			value = Double.parseDouble( m.group(2) );
+		}
+		catch(NumberFormatException e) {
+			return options;
+		}
+		// round to 3 decimal places, to keep the options string short:
+		double scaled = Math.round(value / factor * 1000) / 1000.0;
+		String scaledString = scaled == Math.floor(scaled) ? String.valueOf( (long)scaled ) : String.valueOf(scaled);
+		return options.substring(0, m.start(2) ) + scaledString + options.substring( m.end(2) );
+	}
+
+	/**
+	 * Returns a copy of the voxels of stack inside bounds, through all slices.
+	 */
+	private static ImageStack crop(ImageStack stack, Rectangle bounds) {
+		int width = stack.getWidth();
+		ImageStack cropped = new ImageStack(bounds.width, bounds.height);
+		for(int n=1; n<=stack.getSize(); n++) {
+			Object pixels = stack.getPixels(n);
+			Object out = newPixels(pixels, bounds.width * bounds.height);
+			for(int y=0; y<bounds.height; y++) {
+				System.arraycopy(pixels, (bounds.y + y) * width + bounds.x, out, y * bounds.width, bounds.width);
+			}
+			cropped.addSlice(stack.getSliceLabel(n), out);
+		}
+		return cropped;
+	}
+
+	/**
+	 * Returns stack downsampled by factor in X and Y - each pixel the mean of a factor x factor block, or of the
+	 * part of the block inside the image at its right and bottom edges.  The red, green and blue channels of an
+	 * RGB stack are each averaged.
+	 */
+	private static ImageStack downsample(ImageStack stack, int factor) {
+
+		int width = stack.getWidth(), height = stack.getHeight();
+		int dWidth = (width + factor - 1) / factor, dHeight = (height + factor - 1) / factor;
+		ImageStack downsampled = new ImageStack(dWidth, dHeight);
+		double[] sums = new double[dWidth * dHeight];
+		int[] counts = new int[dWidth * dHeight];
+
+		for(int n=1; n<=stack.getSize(); n++) {
+			Object pixels = stack.getPixels(n);
+			if(pixels instanceof int[]) {
+				downsampled.addSlice(stack.getSliceLabel(n), 
+										downsampleRGB( (int[])pixels, width, height, factor, dWidth, dHeight) );
+				continue;
+			}
+			java.util.Arrays.fill(sums, 0);
+			java.util.Arrays.fill(counts, 0);
+
+			for(int y=0; y<height; y++) {
+				int row = (y / factor) * dWidth;
+				for(int x=0; x<width; x++) {
+					sums[row + x / factor] += value(pixels, y * width + x);
+					counts[row + x / factor]++;
+				}
+			}
+
+			Object out = newPixels(pixels, dWidth * dHeight);
+			for(int i=0; i<sums.length; i++) {
+				setValue(out, i, sums[i] / counts[i]);
+			}
+			downsampled.addSlice(stack.getSliceLabel(n), out);
+		}
+
+		return downsampled;
+	}
+
+	/**
+	 * Returns the RGB slice pixels downsampled by factor in X and Y, averaging each channel over its block.
+	 */
+	private static int[] downsampleRGB(int[] pixels, int width, int height, int factor, int dWidth, int dHeight) {
+
+		double[] red = new double[dWidth * dHeight], green = new double[dWidth * dHeight];
+		double[] blue = new double[dWidth * dHeight];
+		int[] counts = new int[dWidth * dHeight];
+
+		int c, i;
+		for(int y=0; y<height; y++) {
+			int row = (y / factor) * dWidth;
+			for(int x=0; x<width; x++) {
+				c = pixels[y * width + x];
+				i = row + x / factor;
+				red[i] += (c >> 16) & 0xff;
+				green[i] += (c >> 8) & 0xff;
+				blue[i] += c & 0xff;
+				counts[i]++;
+			}
+		}
+
+		int[] out = new int[dWidth * dHeight];
+		for(i=0; i<out.length; i++) {
+			out[i] = 0xff000000 | ( (int)(red[i] / counts[i] + 0.5) << 16 ) 
+						| ( (int)(green[i] / counts[i] + 0.5) << 8 ) | (int)(blue[i] / counts[i] + 0.5);
+		}
+		return out;
+	}
+
+	/**
+	 * Sets width pixels of out from offset to the pixels of pixels from row, each repeated factor times.
+	 */
+	private static void expandRow(Object pixels, int row, Object out, int offset, int width, int factor) {
+		if(pixels instanceof byte[]) {
+			byte[] p = (byte[])pixels, o = (byte[])out;
+			for(int x=0; x<width; x++) {
+				o[offset + x] = p[row + x / factor];
+			}
+		}
+		else if(pixels instanceof short[]) {
+			short[] p = (short[])pixels, o = (short[])out;
+			for(int x=0; x<width; x++) {
+				o[offset + x] = p[row + x / factor];
+			}
+		}
+		else if(pixels instanceof float[]) {
+			float[] p = (float[])pixels, o = (float[])out;
+			for(int x=0; x<width; x++) {
+				o[offset + x] = p[row + x / factor];
+			}
+		}
+		else {
+			int[] p = (int[])pixels, o = (int[])out;
+			for(int x=0; x<width; x++) {
+				o[offset + x] = p[row + x / factor];
+			}
+		}
+	}
+
+	private static Object newPixels(Object pixels, int length) {
+		return java.lang.reflect.Array.newInstance( pixels.getClass().getComponentType(), length );
+	}
+
+	private static double value(Object pixels, int i) {
+		if(pixels instanceof byte[]) {
+			return ((byte[])pixels)[i] & 0xff;
+		}
+		else if(pixels instanceof short[]) {
+			return ((short[])pixels)[i] & 0xffff;
+		}
+		return ((float[])pixels)[i];
+	}
+
+	private static void setValue(Object pixels, int i, double value) {
+		if(pixels instanceof byte[]) {
+			((byte[])pixels)[i] = (byte)(int)(value + 0.5);
+		}
+		else if(pixels instanceof short[]) {
+			((short[])pixels)[i] = (short)(int)(value + 0.5);
+		}
+		else {
+			((float[])pixels)[i] = (float)value;
+		}
+	}
+
+}
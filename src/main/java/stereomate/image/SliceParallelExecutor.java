@@ -0,0 +1,317 @@
+package stereomate.image;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ij.ImageStack;
+
+/**
+ * Runs the steps of a procedure stack on an ImageStack in parallel, over contiguous ranges of slices.
+ * <p>
+ * Slice independent (2D) steps process each slice on its own, so the slices are simply split into ranges
+ * across the pool - see runSlices().  True 3D steps read the neighbouring slices of each slice they compute,
+ * so each range is processed together with a HALO of the slices either side of it, and only the slices of
+ * the range itself are kept - see filterRanges() and processRangesInPlace().  With a halo at least as deep as
+ * the filter reaches in Z, the result is identical to processing the whole stack at once.
+ * <p>
+ * If threads is 1 or less, or the stack is too shallow to split, every method runs serially on the calling
+ * thread.
+ *
+ * @author stevenwest
+ *
+ */
+public class SliceParallelExecutor {
+
+	/**
+	 * Processes one slice of a stack.  Tasks for different slices run concurrently, so a task may only
+	 * modify the pixels of its own slice.
+	 */
+	public static abstract class SliceTask {
+
+		/**
+		 * Processes slice n (1-based) of stack.
+		 * @param stack
+		 * @param n
+		 */
+		public abstract void process(ImageStack stack, int n);
+
+	}
+
+	/**
+	 * Processes a range of slices of a stack, with its halo, as a stack of its own.
+	 */
+	public static abstract class RangeTask {
+
+		/**
+		 * Processes the stack range, and returns the processed stack - which may be range itself if it was
+		 * processed in place.  The result must have the same number of slices as range.
+		 * @param range
+		 * @return
+		 */
+		public abstract ImageStack process(ImageStack range);
+
+	}
+
+	/**
+	 * Pool the ranges are processed in - if null, ranges are processed serially.
+	 */
+	ForkJoinPool pool;
+	int threads;
+
+
+	/**
+	 * Constructs an executor running on threads threads - if threads is 1 or less, all steps run serially.
+	 * @param threads
+	 */
+	public SliceParallelExecutor(int threads) {
+		this.threads = Math.max(threads, 1);
+		if(threads > 1) {
+			pool = new ForkJoinPool(threads);
+		}
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Shuts down the pool - the executor must not be used after this is called.
+	 */
+	public void shutdown() {
+		if(pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs task on every slice of stack - the slices are split into one contiguous range per thread.
+	 * @param stack
+	 * @param task
+	 */
+	public void runSlices(ImageStack stack, SliceTask task) {
+
+		int ranges = Math.min(threads, stack.getSize() );
+
+		if(pool == null || ranges <= 1) {
+			for(int n=1; n<=stack.getSize(); n++) {
+				task.process(stack, n);
+			}
+			return;
+		}
+
+		SliceRange[] tasks = new SliceRange[ranges];
+		for(int r=0; r<ranges; r++) {
+			tasks[r] = new SliceRange(stack, task, rangeStart(stack.getSize(), ranges, r),
+										rangeStart(stack.getSize(), ranges, r+1) );
+		}
+		pool.invoke( new RangeTasks(tasks) );
+	}
+
+	/**
+	 * Runs task on ranges of slices of stack, each with halo slices either side of it, and returns a new stack
+	 * of the processed slices of each range.  The ranges REFERENCE the slices of stack, so task must not
+	 * modify the pixels of the stack it is passed - it must return a new stack, as the 3D filters do.
+	 * @param stack
+	 * @param halo
+	 * @param task
+	 * @return
+	 */
+	public ImageStack filterRanges(ImageStack stack, int halo, RangeTask task) {
+
+		int ranges = haloRanges(stack.getSize(), halo);
+
+		if(ranges <= 1) {
+			return task.process(stack);
+		}
+
+		HaloRange[] tasks = runHaloRanges(stack, halo, ranges, task, false);
+
+		ImageStack filtered = null;
+		for(int r=0; r<ranges; r++) {
+			ImageStack result = tasks[r].result;
+			if(filtered == null) {
+				filtered = new ImageStack( result.getWidth(), result.getHeight() );
+			}
+			for(int n=tasks[r].from; n<tasks[r].to; n++) {
+				filtered.addSlice( stack.getSliceLabel(n), result.getPixels(n - tasks[r].haloFrom + 1) );
+			}
+		}
+		return filtered;
+	}
+
+	/**
+	 * Runs task on ranges of slices of stack, each with halo slices either side of it, and writes the processed
+	 * slices of each range back into the pixel arrays of stack.  Each range is a COPY of its slices, so task
+	 * may modify the pixels of the stack it is passed, as an in-place filter does, without modifying the halo
+	 * read by the other ranges.  stack keeps its pixel arrays, so any other stack referencing them sees the
+	 * processed pixels.
+	 * @param stack
+	 * @param halo
+	 * @param task
+	 */
+	public void processRangesInPlace(ImageStack stack, int halo, RangeTask task) {
+
+		int ranges = haloRanges(stack.getSize(), halo);
+
+		if(ranges <= 1) {
+			ImageStack result = task.process(stack);
+			if(result != stack) {
+				copySlices(result, 1, stack, 1, stack.getSize() );
+			}
+			return;
+		}
+
+		HaloRange[] tasks = runHaloRanges(stack, halo, ranges, task, true);
+
+		for(int r=0; r<ranges; r++) {
+			copySlices(tasks[r].result, tasks[r].from - tasks[r].haloFrom + 1, stack, tasks[r].from,
+						tasks[r].to - tasks[r].from);
+		}
+	}
+
+	/**
+	 * Returns the number of ranges to split size slices into with the given halo - at most one per thread, and
+	 * no more than leaves each range at least as deep as the halo, so no more than half of the slices processed
+	 * by a range are halo.
+	 */
+	private int haloRanges(int size, int halo) {
+		if(pool == null) {
+			return 1;
+		}
+		return Math.max( Math.min(threads, size / Math.max(halo, 1) ), 1);
+	}
+
+	/**
+	 * Runs task on each range of slices with its halo, and returns the completed ranges.
+	 */
+	private HaloRange[] runHaloRanges(ImageStack stack, int halo, int ranges, RangeTask task, boolean copy) {
+		HaloRange[] tasks = new HaloRange[ranges];
+		for(int r=0; r<ranges; r++) {
+			tasks[r] = new HaloRange(stack, task, rangeStart(stack.getSize(), ranges, r),
+										rangeStart(stack.getSize(), ranges, r+1), halo, copy);
+		}
+		pool.invoke( new RangeTasks(tasks) );
+		return tasks;
+	}
+
+	/**
+	 * Returns the first slice (1-based) of range r of ranges ranges over size slices - range r runs to the first
+	 * slice of range r + 1.
+	 */
+	private static int rangeStart(int size, int ranges, int r) {
+		return (int)( (long)size * r / ranges ) + 1;
+	}
+
+	/**
+	 * Copies count slices of source, from slice sourceFrom, into the pixel arrays of target, from slice
+	 * targetFrom.
+	 */
+	private static void copySlices(ImageStack source, int sourceFrom, ImageStack target, int targetFrom, int count) {
+		Object pixels;
+		for(int a=0; a<count; a++) {
+			pixels = target.getPixels(targetFrom + a);
+			System.arraycopy( source.getPixels(sourceFrom + a), 0, pixels, 0, java.lang.reflect.Array.getLength(pixels) );
+		}
+	}
+
+	/**
+	 * Returns a copy of a byte, short, float or int pixel array.
+	 */
+	private static Object copyPixels(Object pixels) {
+		if(pixels instanceof byte[]) {
+			return ((byte[])pixels).clone();
+		}
+		else if(pixels instanceof short[]) {
+			return ((short[])pixels).clone();
+		}
+		else if(pixels instanceof float[]) {
+			return ((float[])pixels).clone();
+		}
+		return ((int[])pixels).clone();
+	}
+
+
+	/**
+	 * Runs a set of range tasks concurrently.
+	 */
+	private static class RangeTasks extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		RecursiveAction[] tasks;
+
+		RangeTasks(RecursiveAction[] tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+
+	}
+
+	/**
+	 * Runs a SliceTask on slices from to to - 1.
+	 */
+	private static class SliceRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		ImageStack stack;
+		SliceTask task;
+		int from, to;
+
+		SliceRange(ImageStack stack, SliceTask task, int from, int to) {
+			this.stack = stack;
+			this.task = task;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			for(int n=from; n<to; n++) {
+				task.process(stack, n);
+			}
+		}
+
+	}
+
+	/**
+	 * Runs a RangeTask on slices from to to - 1, with halo slices either side - clipped to the stack - as a
+	 * stack of its own, which references or copies (if copy) the slices of stack.
+	 */
+	private static class HaloRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		ImageStack stack;
+		RangeTask task;
+		int from, to, haloFrom, haloTo;
+		boolean copy;
+
+		ImageStack result;
+
+		HaloRange(ImageStack stack, RangeTask task, int from, int to, int halo, boolean copy) {
+			this.stack = stack;
+			this.task = task;
+			this.from = from;
+			this.to = to;
+			this.haloFrom = Math.max(from - halo, 1);
+			this.haloTo = Math.min(to + halo, stack.getSize() + 1);
+			this.copy = copy;
+		}
+
+		@Override
+		protected void compute() {
+			ImageStack range = new ImageStack( stack.getWidth(), stack.getHeight() );
+			for(int n=haloFrom; n<haloTo; n++) {
+				range.addSlice( stack.getSliceLabel(n), copy ? copyPixels( stack.getPixels(n) ) : stack.getPixels(n) );
+			}
+			result = task.process(range);
+		}
+
+	}
+
+}
@@ -0,0 +1,369 @@
+package stereomate.image;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ij.ImageStack;
+
+/**
+ * A memory-bounded cache of the results of procedure stack steps, so a procedure stack can be re-run from
+ * the first step whose result is not cached - editing, toggling or moving step k only re-runs steps k to n.
+ * <p>
+ * Each result is keyed by the hash of the input stack followed by the command title and options of every
+ * step up to and including it (see inputKey() and stepKey()), so a result is only found again for the same
+ * input and the same step prefix.  Results hold the slice pixel arrays of the stack they were put from - not
+ * copies - and are returned as copy-on-write ChannelStack views, so the cached pixels are never modified by
+ * the steps run on them.  A view must be set on an ImagePlus with ChannelStack.setStack(), so the processor
+ * of the ImagePlus is on the view too - a processor left on a cached array would modify it in place, and the
+ * cached result would no longer match its key.
+ * <p>
+ * Results are evicted least recently used first when more than maxBytes of pixels are held.  If a spill
+ * directory is set, evicted results are written to it, up to maxSpillBytes, and read back when next used.
+ *
+ * @author stevenwest
+ *
+ */
+public class StepResultCache {
+
+	/**
+	 * A cached result - the dimensions and slice pixel arrays of a stack.
+	 */
+	static class Result {
+		int width, height;
+		Object[] pixels;
+		long bytes;
+
+		Result(int width, int height, Object[] pixels) {
+			this.width = width;
+			this.height = height;
+			this.pixels = pixels;
+			for(int n=0; n<pixels.length; n++) {
+				bytes = bytes + sliceBytes(pixels[n]);
+			}
+		}
+	}
+
+	long maxBytes, maxSpillBytes;
+	File spillDirectory;
+
+	/**
+	 * The results held in memory, and the files of spilled results, in access order.
+	 */
+	LinkedHashMap<Long, Result> resident;
+	LinkedHashMap<Long, File> spilled;
+	long residentBytes, spilledBytes;
+
+
+	/**
+	 * Constructs a cache holding at most maxBytes of results in memory, with no spill to disk.
+	 * @param maxBytes
+	 */
+	public StepResultCache(long maxBytes) {
+		this(maxBytes, null, 0);
+	}
+
+	/**
+	 * Constructs a cache holding at most maxBytes of results in memory.  Results evicted from memory are
+	 * written to spillDirectory, up to maxSpillBytes - if spillDirectory is null, they are discarded.
+	 * @param maxBytes
+	 * @param spillDirectory
+	 * @param maxSpillBytes
+	 */
+	public StepResultCache(long maxBytes, File spillDirectory, long maxSpillBytes) {
+		this.maxBytes = maxBytes;
+		this.spillDirectory = spillDirectory;
+		this.maxSpillBytes = maxSpillBytes;
+		resident = new LinkedHashMap<Long, Result>(16, 0.75f, true);
+		spilled = new LinkedHashMap<Long, File>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the key of an input stack:  a 64-bit hash of its dimensions, bit depth and pixel values.  The
+	 * pixels are hashed on every call, as the input may have been modified in place since the last.
+	 * @param stack
+	 * @return
+	 */
+	public synchronized long inputKey(ImageStack stack) {
+
+		long hash = FNV_OFFSET;
+		hash = mix(hash, stack.getWidth() );
+		hash = mix(hash, stack.getHeight() );
+		hash = mix(hash, stack.getSize() );
+		for(int n=1; n<=stack.getSize(); n++) {
+			hash = hashPixels(hash, stack.getPixels(n) );
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns the key of the result of a step run on the result keyed by previousKey.
+	 * @param previousKey
+	 * @param commandTitle
+	 * @param commandOptions
+	 * @return
+	 */
+	public static long stepKey(long previousKey, String commandTitle, String commandOptions) {
+		long hash = mix(previousKey, commandTitle.length() );
+		for(int a=0; a<commandTitle.length(); a++) {
+			hash = mix(hash, commandTitle.charAt(a) );
+		}
+		hash = mix(hash, commandOptions.length() );
+		for(int a=0; a<commandOptions.length(); a++) {
+			hash = mix(hash, commandOptions.charAt(a) );
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns a copy-on-write view of the result keyed by key - reading it back from the spill directory if it
+	 * was spilled - or null if it is not cached.
+	 * @param key
+	 * @return
+	 */
+	public synchronized ImageStack get(long key) {
+
+		Result result = resident.get(key);
+
+		if(result == null) {
+			File file = spilled.remove(key);
+			if(file == null) {
+				return null;
+			}
+			spilledBytes = spilledBytes - file.length();
+			result = readResult(file);
+			file.delete();
+			if(result == null) {
+				return null;
+			}
+			hold(key, result);
+		}
+
+		return view(result);
+	}
+
+	/**
+	 * Caches the pixels of stack as the result keyed by key, and returns a copy-on-write view of them - the
+	 * stack processing continues on, so the cached pixels are not modified.
+	 * @param key
+	 * @param stack
+	 * @return
+	 */
+	public synchronized ImageStack put(long key, ImageStack stack) {
+
+		Object[] pixels = new Object[stack.getSize()];
+		for(int n=0; n<pixels.length; n++) {
+			pixels[n] = stack.getPixels(n+1);
+		}
+		Result result = new Result(stack.getWidth(), stack.getHeight(), pixels);
+
+		remove(key);
+		hold(key, result);
+
+		return view(result);
+	}
+
+	/**
+	 * Removes all results, deleting any spilled files.
+	 */
+	public synchronized void clear() {
+		resident.clear();
+		residentBytes = 0;
+		for(File file : spilled.values() ) {
+			file.delete();
+		}
+		spilled.clear();
+		spilledBytes = 0;
+	}
+
+	public synchronized int getResidentCount() {
+		return resident.size();
+	}
+
+	public synchronized long getResidentBytes() {
+		return residentBytes;
+	}
+
+	public synchronized int getSpilledCount() {
+		return spilled.size();
+	}
+
+	/**
+	 * Removes the result keyed by key from memory and the spill directory.
+	 */
+	private void remove(long key) {
+		Result result = resident.remove(key);
+		if(result != null) {
+			residentBytes = residentBytes - result.bytes;
+		}
+		File file = spilled.remove(key);
+		if(file != null) {
+			spilledBytes = spilledBytes - file.length();
+			file.delete();
+		}
+	}
+
+	/**
+	 * Holds result in memory, evicting the least recently used results until at most maxBytes are held.  A
+	 * result larger than maxBytes is spilled directly.
+	 */
+	private void hold(long key, Result result) {
+
+		if(result.bytes > maxBytes) {
+			spill(key, result);
+			return;
+		}
+
+		resident.put(key, result);
+		residentBytes = residentBytes + result.bytes;
+
+		Iterator<Map.Entry<Long, Result>> it = resident.entrySet().iterator();
+		while(residentBytes > maxBytes && it.hasNext() ) {
+			Map.Entry<Long, Result> eldest = it.next();
+			it.remove();
+			residentBytes = residentBytes - eldest.getValue().bytes;
+			spill(eldest.getKey(), eldest.getValue() );
+		}
+	}
+
+	/**
+	 * Writes result to the spill directory - if one is set - deleting the least recently used spilled results
+	 * until at most maxSpillBytes are held.
+	 */
+	private void spill(long key, Result result) {
+
+		if(spillDirectory == null || result.bytes > maxSpillBytes) {
+			return;
+		}
+
+		File file;
+		try {
+			file = File.createTempFile("stepResult", ".cache", spillDirectory);
+			file.deleteOnExit();
+			ObjectOutputStream out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream(file) ) );
+			try {
+				out.writeInt(result.width);
+				out.writeInt(result.height);
+				out.writeObject(result.pixels);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch(IOException e) {
+			// the result cannot be spilled - it is discarded, and will be recomputed:
+			return;
+		}
+
+		spilled.put(key, file);
+		spilledBytes = spilledBytes + file.length();
+
+		Iterator<Map.Entry<Long, File>> it = spilled.entrySet().iterator();
+		while(spilledBytes > maxSpillBytes && it.hasNext() ) {
+			File eldest = it.next().getValue();
+			it.remove();
+			spilledBytes = spilledBytes - eldest.length();
+			eldest.delete();
+		}
+	}
+
+	/**
+	 * Reads a spilled result from file, or returns null if it cannot be read.
+	 */
+	private static Result readResult(File file) {
+		try {
+			ObjectInputStream in = new ObjectInputStream( new BufferedInputStream( new FileInputStream(file) ) );
+			try {
+				int width = in.readInt();
+				int height = in.readInt();
+				return new Result(width, height, (Object[])in.readObject() );
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch(IOException e) {
+			return null;
+		}
+		catch(ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a copy-on-write view of the pixels of result.
+	 */
+	private static ImageStack view(Result result) {
+		ImageStack stack = new ImageStack(result.width, result.height);
+		for(int n=0; n<result.pixels.length; n++) {
+			stack.addSlice(null, result.pixels[n]);
+		}
+		return new ChannelStack(stack, 1, 1);
+	}
+
+	private static long sliceBytes(Object pixels) {
+		if(pixels instanceof byte[]) {
+			return ((byte[])pixels).length;
+		}
+		else if(pixels instanceof short[]) {
+			return ((short[])pixels).length * 2L;
+		}
+		else if(pixels instanceof float[]) {
+			return ((float[])pixels).length * 4L;
+		}
+		return ((int[])pixels).length * 4L;
+	}
+
+	static final long FNV_OFFSET = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Mixes value into the FNV-1a hash.
+	 */
+	private static long mix(long hash, int value) {
+		return (hash ^ value) * FNV_PRIME;
+	}
+
+	/**
+	 * Mixes the type and values of a byte, short, float or int pixel array into hash.
+	 */
+	private static long hashPixels(long hash, Object pixels) {
+		if(pixels instanceof byte[]) {
+			byte[] p = (byte[])pixels;
+			hash = mix(hash, 8);
+			for(int i=0; i<p.length; i++) {
+				hash = mix(hash, p[i]);
+			}
+		}
+		else if(pixels instanceof short[]) {
+			short[] p = (short[])pixels;
+			hash = mix(hash, 16);
+			for(int i=0; i<p.length; i++) {
+				hash = mix(hash, p[i]);
+			}
+		}
+		else if(pixels instanceof float[]) {
+			float[] p = (float[])pixels;
+			hash = mix(hash, 32);
+			for(int i=0; i<p.length; i++) {
+				hash = mix(hash, Float.floatToIntBits(p[i]) );
+			}
+		}
+		else {
+			int[] p = (int[])pixels;
+			hash = mix(hash, 24);
+			for(int i=0; i<p.length; i++) {
+				hash = mix(hash, p[i]);
+			}
+		}
+		return hash;
+	}
+
+}
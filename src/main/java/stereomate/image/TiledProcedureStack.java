@@ -0,0 +1,215 @@
+package stereomate.image;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import stereomate.image.CompiledProcedureStack.Step;
+
+/**
+ * Runs a compiled procedure stack on tiles of an image, so the working memory of the STEPS is bounded by the
+ * tile size rather than the stack size:  each step of the stack may make new pixels (a bit depth conversion,
+ * or the new stack a 3D filter returns), which for the whole stack is a full copy of the channel per step.
+ * The source stack and the stitched output of each segment are still held whole, so a tiled run holds about
+ * two copies of the channel, rather than one per step - it does not run stacks larger than the heap.
+ * <p>
+ * Each tile is tileXY x tileXY pixels by tileZ slices, padded with a HALO - the sum of the halos of the steps
+ * run on it (see Step.getHaloXY() and getHaloZ()), each read from the kernel radius in the step options - and
+ * COPIED from the image into a stack of its own.  The steps are run on the tile, and only its interior is
+ * stitched into the output.  As each step reads no further than its halo, the output is identical to running
+ * the steps on the whole image.
+ * <p>
+ * Steps which need the whole extent of the image on an axis (Step.WHOLE - for example Auto Threshold, which
+ * thresholds the histogram of each slice) are run on tiles spanning that axis, and a step which needs the
+ * whole image on both axes, or any command whose kernel is not known, is run on the whole stitched image.
+ * The steps are therefore run in SEGMENTS:  each run of consecutive steps which can be tiled is run tile by
+ * tile, and stitched into a new stack which the next segment is run on.
+ *
+ * @author stevenwest
+ *
+ */
+public class TiledProcedureStack {
+
+	CompiledProcedureStack compiledStack;
+
+	/**
+	 * Interior size of each tile in XY and Z.
+	 */
+	int tileXY, tileZ;
+
+
+	/**
+	 * Constructs a tiled run of compiledStack, on tiles of tileXY x tileXY pixels by tileZ slices - plus the
+	 * halo of the steps.
+	 * @param compiledStack
+	 * @param tileXY
+	 * @param tileZ
+	 */
+	public TiledProcedureStack(CompiledProcedureStack compiledStack, int tileXY, int tileZ) {
+		this.compiledStack = compiledStack;
+		this.tileXY = Math.max(tileXY, 1);
+		this.tileZ = Math.max(tileZ, 1);
+	}
+
+	/**
+	 * Runs every step on imp, tile by tile - the stack of imp is replaced by the stitched output of the steps.
+	 * The source stack is only read, so a channel view of imp is never copied.
+	 * @param imp
+	 */
+	public void run(ImagePlus imp) {
+
+		ArrayList<Step> segment = new ArrayList<Step>();
+
+		for(int a=0; a<compiledStack.size(); a++) {
+			Step step = compiledStack.getStep(a);
+			if(step.getHaloXY() == Step.WHOLE && step.getHaloZ() == Step.WHOLE) {
+				// run the steps before on tiles, then this step on the whole image:
+				runSegment(imp, segment);
+				segment.clear();
+				step.run(imp);
+			}
+			else {
+				segment.add(step);
+			}
+		}
+
+		runSegment(imp, segment);
+	}
+
+	/**
+	 * Runs the steps of segment on tiles of imp, and sets the stitched output as the stack of imp.
+	 */
+	private void runSegment(ImagePlus imp, ArrayList<Step> segment) {
+
+		if(segment.size() == 0) {
+			return;
+		}
+
+		// tile geometry:  the halo of the segment is the sum of the halos of its steps, and an axis any step
+			// needs whole is not tiled:
+		boolean wholeXY = false, wholeZ = false;
+		int haloXY = 0, haloZ = 0;
+		for(Step step : segment) {
+			if(step.getHaloXY() == Step.WHOLE) {
+				wholeXY = true;
+			}
+			else {
+				haloXY = haloXY + step.getHaloXY();
+			}
+			if(step.getHaloZ() == Step.WHOLE) {
+				wholeZ = true;
+			}
+			else {
+				haloZ = haloZ + step.getHaloZ();
+			}
+		}
+
+		ImageStack source = imp.getStack();
+		int width = source.getWidth(), height = source.getHeight(), depth = source.getSize();
+		int sizeXY = wholeXY ? Math.max(width, height) : tileXY;
+		int sizeZ = wholeZ ? depth : tileZ;
+
+		// a single tile is the whole image - run the steps directly:
+		if(sizeXY >= width && sizeXY >= height && sizeZ >= depth) {
+			runSteps(imp, segment);
+			return;
+		}
+
+		ImageStack output = null;
+
+		for(int z0=0; z0<depth; z0=z0+sizeZ) {
+			for(int y0=0; y0<height; y0=y0+sizeXY) {
+				for(int x0=0; x0<width; x0=x0+sizeXY) {
+
+					// the tile interior, and the tile with its halo clipped to the image:
+					int x1 = Math.min(x0 + sizeXY, width), y1 = Math.min(y0 + sizeXY, height);
+					int z1 = Math.min(z0 + sizeZ, depth);
+					int hx0 = Math.max(x0 - haloXY, 0), hy0 = Math.max(y0 - haloXY, 0), hz0 = Math.max(z0 - haloZ, 0);
+					int hx1 = Math.min(x1 + haloXY, width), hy1 = Math.min(y1 + haloXY, height);
+					int hz1 = Math.min(z1 + haloZ, depth);
+
+					ImagePlus tile = new ImagePlus( imp.getTitle(), cropStack(source, hx0, hy0, hz0, hx1, hy1, hz1) );
+					tile.setCalibration( imp.getCalibration() );
+					runSteps(tile, segment);
+
+					ImageStack result = tile.getStack();
+					if(result.getWidth() != hx1 - hx0 || result.getHeight() != hy1 - hy0 || result.getSize() != hz1 - hz0) {
+						// a step changed the size of the tile - so the tiles cannot be stitched, run the steps on
+							// the whole image, which has not been modified:
+						runSteps(imp, segment);
+						return;
+					}
+
+					if(output == null) {
+						output = newStack(source, result.getPixels(1) );
+					}
+
+					stitchTile(result, hx0, hy0, hz0, output, x0, y0, z0, x1, y1, z1);
+				}
+			}
+		}
+
+		imp.setStack(output);
+	}
+
+	/**
+	 * Runs each step in segment on imp, in order.
+	 */
+	private static void runSteps(ImagePlus imp, ArrayList<Step> segment) {
+		for(Step step : segment) {
+			step.run(imp);
+		}
+	}
+
+	/**
+	 * Returns a copy of the voxels x0 to x1 - 1, y0 to y1 - 1 and z0 to z1 - 1 of stack, as a new stack with the
+	 * colour model of stack.
+	 */
+	private static ImageStack cropStack(ImageStack stack, int x0, int y0, int z0, int x1, int y1, int z1) {
+		int width = stack.getWidth(), tileWidth = x1 - x0, tileHeight = y1 - y0;
+		ImageStack tile = new ImageStack(tileWidth, tileHeight);
+		for(int z=z0; z<z1; z++) {
+			Object pixels = stack.getPixels(z+1);
+			Object tilePixels = Array.newInstance( pixels.getClass().getComponentType(), tileWidth * tileHeight );
+			for(int y=y0; y<y1; y++) {
+				System.arraycopy(pixels, y * width + x0, tilePixels, (y - y0) * tileWidth, tileWidth);
+			}
+			tile.addSlice( stack.getSliceLabel(z+1), tilePixels );
+		}
+		tile.setColorModel( stack.getColorModel() );
+		return tile;
+	}
+
+	/**
+	 * Returns a new stack of the dimensions and slice labels of source, with blank pixel arrays of the type of
+	 * pixels.
+	 */
+	private static ImageStack newStack(ImageStack source, Object pixels) {
+		int width = source.getWidth(), height = source.getHeight();
+		ImageStack stack = new ImageStack(width, height);
+		for(int n=1; n<=source.getSize(); n++) {
+			stack.addSlice( source.getSliceLabel(n), Array.newInstance( pixels.getClass().getComponentType(), width * height ) );
+		}
+		return stack;
+	}
+
+	/**
+	 * Copies the interior x0 to x1 - 1, y0 to y1 - 1, z0 to z1 - 1 of result - a tile whose first voxel is at
+	 * hx0, hy0, hz0 in output - into output.
+	 */
+	private static void stitchTile(ImageStack result, int hx0, int hy0, int hz0,
+									ImageStack output, int x0, int y0, int z0, int x1, int y1, int z1) {
+		int width = output.getWidth(), tileWidth = result.getWidth();
+		for(int z=z0; z<z1; z++) {
+			Object tilePixels = result.getPixels(z - hz0 + 1);
+			Object pixels = output.getPixels(z+1);
+			for(int y=y0; y<y1; y++) {
+				System.arraycopy(tilePixels, (y - hy0) * tileWidth + (x0 - hx0), pixels, y * width + x0, x1 - x0);
+			}
+		}
+		// the tiles of the last slices set the colour model - such as the LUT of a threshold:
+		output.setColorModel( result.getColorModel() );
+	}
+
+}
@@ -0,0 +1,288 @@
+package stereomate.object;
+
+import java.util.Arrays;
+
+import mcib3d.image3d.ImageByte;
+import mcib3d.image3d.ImageInt;
+import mcib3d.image3d.ImageShort;
+
+/**
+ * Labels all objects in a thresholded image in a single raster pass, using union-find over the
+ * provisional labels, instead of discovering each object by scanning for a seed and flood filling it.
+ * <p>
+ * An object is a connected set of voxels which all have the value readPixVal - the same definition used
+ * by the flood fill in ObjectVoxelProcessing.  Connectivity is 6, 18 or 26 as set at construction.
+ * <p>
+ * The algorithm:
+ * <p>
+ * 1. Raster scan (z, y, x) - each object voxel is united with its already scanned (backward) neighbours,
+ * or given a new provisional label if it has none.
+ * <p>
+ * 2. Each provisional label is resolved to its root, and the voxel count and discovery key of each root
+ * are found.  The discovery key is the position of the voxel in the x-major (x outer, y, z inner) scan
+ * order used by ImageHandler, so final labels follow the previous objNo order.
+ * <p>
+ * 3. Roots are sorted by discovery key and given final labels 1..n, and the voxels of each object are
+ * collected into an ObjectLabels.
+ * <p>
+ * A ConnectedComponentLabeller is not thread-safe - each thread must use its own instance.
+ *
+ * @author stevenwest
+ *
+ */
+public class ConnectedComponentLabeller {
+
+	/**
+	 * Connectivity - 6, 18 or 26.
+	 */
+	int connectivity;
+
+	/**
+	 * Offset table of the backward neighbours - neighbours which precede the central voxel in the raster
+	 * scan - and its z offsets, in-slice deltas and boundary masks.
+	 */
+	NeighbourOffsets offsets;
+	int[] dz, dxy, mask;
+
+	/**
+	 * Union-find parent of each provisional label - parent[0] is unused.
+	 */
+	int[] parent;
+
+
+	/**
+	 * Constructs a ConnectedComponentLabeller with the connectivity given by the OM_ProcedureSettings
+	 * objConnectivity String:  CONNECTED6, CONNECTED18 or CONNECTED26.
+	 * @param objConnectivity
+	 */
+	public ConnectedComponentLabeller(String objConnectivity) {
+		this( FloodFill3D.resolveConnectivity(objConnectivity) );
+	}
+
+	/**
+	 * Constructs a ConnectedComponentLabeller with the given connectivity:  6, 18 or 26.  Any other value
+	 * is treated as 26.
+	 * @param connectivity
+	 */
+	public ConnectedComponentLabeller(int connectivity) {
+		if(connectivity != FloodFill3D.CONNECTED6 && connectivity != FloodFill3D.CONNECTED18) {
+			connectivity = FloodFill3D.CONNECTED26;
+		}
+		this.connectivity = connectivity;
+		offsets = new NeighbourOffsets(connectivity, true);
+		dz = offsets.dz;
+		mask = offsets.mask;
+		parent = new int[1024];
+	}
+
+	public int getConnectivity() {
+		return connectivity;
+	}
+
+
+	/**
+	 * Labels every object of value readPixVal in img.  img is not modified.  img must have at most
+	 * FloodFill3D.MAX_VOXELS voxels, as the voxels are held as packed int indexes.
+	 * @param img
+	 * @param readPixVal
+	 * @return
+	 */
+	public ObjectLabels label(ImageInt img, int readPixVal) {
+
+		int sizeX = img.sizeX;
+		int sizeY = img.sizeY;
+		int sizeZ = img.sizeZ;
+		int sizeXY = sizeX * sizeY;
+
+		// packed indexes and discovery keys are ints - reject images they would overflow in:
+		FloodFill3D.checkPackedSize(sizeX, sizeY, sizeZ);
+
+		// labels[z][xy] is -1 for object voxels not yet labelled, and 0 for background:
+		int[][] labels = new int[sizeZ][sizeXY];
+		int objectVoxels = markObjectVoxels(img, readPixVal, labels);
+
+		// 1. Raster scan - assign provisional labels and unite with backward neighbours:
+		dxy = offsets.xyDeltas(sizeX);
+		int provisional = 0;
+		int xy, boundary, nLabel, label;
+		for(int z=0; z<sizeZ; z++) {
+			int[] slice = labels[z];
+			for(int y=0; y<sizeY; y++) {
+				for(int x=0; x<sizeX; x++) {
+					xy = y*sizeX + x;
+					if(slice[xy] == 0) {
+						continue;
+					}
+					boundary = NeighbourOffsets.boundary(x, y, z, sizeX, sizeY, sizeZ);
+					label = 0;
+					for(int a=0; a<dxy.length; a++) {
+						if( (mask[a] & boundary) != 0 ) {
+							continue; // neighbour is outside the image
+						}
+						nLabel = labels[z + dz[a]][xy + dxy[a]];
+						if(nLabel <= 0) {
+							continue;
+						}
+						if(label == 0) {
+							label = nLabel;
+						}
+						else {
+							label = union(label, nLabel);
+						}
+					}
+					if(label == 0) {
+						provisional++;
+						if(provisional == parent.length) {
+							parent = Arrays.copyOf(parent, parent.length << 1);
+						}
+						parent[provisional] = provisional;
+						label = provisional;
+					}
+					slice[xy] = label;
+				}
+			}
+		}
+
+		// 2. Resolve roots, and find the voxel count and x-major discovery key of each root:
+		int[] count = new int[provisional + 1];
+		int[] key = new int[provisional + 1];
+		Arrays.fill(key, Integer.MAX_VALUE);
+		int roots = 0;
+		int k;
+		for(int z=0; z<sizeZ; z++) {
+			int[] slice = labels[z];
+			for(int y=0; y<sizeY; y++) {
+				for(int x=0; x<sizeX; x++) {
+					label = slice[y*sizeX + x];
+					if(label == 0) {
+						continue;
+					}
+					label = find(label);
+					slice[y*sizeX + x] = label;
+					if(count[label] == 0) {
+						roots++;
+					}
+					count[label]++;
+					k = (x * sizeY + y) * sizeZ + z;
+					if(k < key[label]) {
+						key[label] = k;
+					}
+				}
+			}
+		}
+
+		// 3. Sort roots by discovery key, and assign final labels 1..n:
+		long[] order = new long[roots];
+		int r = 0;
+		for(int a=1; a<=provisional; a++) {
+			if(count[a] > 0) {
+				order[r++] = ( (long)key[a] << 32 ) | a;
+			}
+		}
+		Arrays.sort(order);
+
+		int[] finalLabel = new int[provisional + 1];
+		int[] voxelStart = new int[roots + 2];
+		for(int a=0; a<roots; a++) {
+			int root = (int)(order[a] & 0xffffffffL);
+			finalLabel[root] = a + 1;
+			voxelStart[a + 2] = voxelStart[a + 1] + count[root];
+		}
+
+		// collect the voxels of each label - the raster scan gives ascending index order, so the first
+		// voxel of each label is the one with lowest z, then y, then x:
+		int[] voxels = new int[objectVoxels];
+		int[] firstVoxel = new int[roots + 1];
+		Arrays.fill(firstVoxel, -1);
+		int[] next = Arrays.copyOf(voxelStart, roots + 1);
+		int index;
+		for(int z=0; z<sizeZ; z++) {
+			int[] slice = labels[z];
+			for(xy=0; xy<sizeXY; xy++) {
+				label = slice[xy];
+				if(label == 0) {
+					continue;
+				}
+				label = finalLabel[label];
+				slice[xy] = label;
+				index = z * sizeXY + xy;
+				if(firstVoxel[label] == -1) {
+					firstVoxel[label] = index;
+				}
+				voxels[ next[label]++ ] = index;
+			}
+		}
+
+		return new ObjectLabels(sizeX, sizeY, sizeZ, labels, roots, firstVoxel, voxelStart, voxels);
+	}
+
+	/**
+	 * Sets labels to -1 at every voxel of value readPixVal in img, and returns the number of these voxels.
+	 * Byte and short images are read directly from their pixel arrays.
+	 */
+	private int markObjectVoxels(ImageInt img, int readPixVal, int[][] labels) {
+		int objectVoxels = 0;
+		if(img instanceof ImageByte) {
+			byte[][] pixels = ((ImageByte)img).pixels;
+			for(int z=0; z<labels.length; z++) {
+				for(int xy=0; xy<labels[z].length; xy++) {
+					if( (pixels[z][xy] & 0xff) == readPixVal) {
+						labels[z][xy] = -1;
+						objectVoxels++;
+					}
+				}
+			}
+		}
+		else if(img instanceof ImageShort) {
+			short[][] pixels = ((ImageShort)img).pixels;
+			for(int z=0; z<labels.length; z++) {
+				for(int xy=0; xy<labels[z].length; xy++) {
+					if( (pixels[z][xy] & 0xffff) == readPixVal) {
+						labels[z][xy] = -1;
+						objectVoxels++;
+					}
+				}
+			}
+		}
+		else {
+			for(int z=0; z<labels.length; z++) {
+				for(int xy=0; xy<labels[z].length; xy++) {
+					if(img.getPixelInt(xy, z) == readPixVal) {
+						labels[z][xy] = -1;
+						objectVoxels++;
+					}
+				}
+			}
+		}
+		return objectVoxels;
+	}
+
+	/**
+	 * Returns the root of label, halving the path to the root as it goes.
+	 */
+	private int find(int label) {
+		while(parent[label] != label) {
+			parent[label] = parent[ parent[label] ];
+			label = parent[label];
+		}
+		return label;
+	}
+
+	/**
+	 * Unites the sets of labels a and b, and returns the root of the united set - always the smaller root.
+	 */
+	private int union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if(a == b) {
+			return a;
+		}
+		if(a < b) {
+			parent[b] = a;
+			return a;
+		}
+		parent[a] = b;
+		return b;
+	}
+
+}
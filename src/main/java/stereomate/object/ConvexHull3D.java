@@ -0,0 +1,664 @@
+package stereomate.object;
+
+import java.util.Arrays;
+
+/**
+ * Computes the convex hull of a set of voxels, and the volume and surface of the voxelised hull, without
+ * building any mcib3d objects or throwing on degenerate input.
+ * <p>
+ * The hull is built by Quickhull over voxel coordinates held in primitive int arrays - normally only the
+ * surface voxels of an object, as these have the same hull as the whole object.  As voxel coordinates are
+ * integers, every orientation test is computed exactly in long arithmetic, so coplanar and collinear
+ * points cannot give inconsistent results.
+ * <p>
+ * Degenerate inputs are detected when the initial simplex is found, and handled explicitly:
+ * <p>
+ * - A single point (dimension 0) - the convex object is that voxel.
+ * <p>
+ * - Collinear points (dimension 1) - the convex object is the voxels on the segment between the extreme
+ * points.
+ * <p>
+ * - Coplanar points (dimension 2) - a 2D hull is built in the plane, and the convex object is the voxels
+ * of the plane inside this polygon.  This includes objects in a single slice, the common case in thin
+ * sections.
+ * <p>
+ * The convex volume is the number of voxels inside or on the hull, and the convex surface is the number
+ * of these voxels with a 6-connected neighbour outside the hull - the same voxel measures as the
+ * Object3DVoxels returned by mcib3d getConvexObject().
+ * <p>
+ * A ConvexHull3D is re-usable, but not thread-safe - each thread must use its own instance.
+ *
+ * @author stevenwest
+ *
+ */
+public class ConvexHull3D {
+
+	/**
+	 * Dimension of the last hull computed:  0 point, 1 segment, 2 polygon, 3 polyhedron - or -1 if no
+	 * points were given.
+	 */
+	int dimension;
+
+	/**
+	 * Voxel count and surface voxel count of the voxelised hull.
+	 */
+	int convexVolume, convexSurface;
+
+	/**
+	 * The points of the last hull computed.
+	 */
+	int[] px, py, pz;
+	int pointCount;
+
+	/**
+	 * Faces - fv holds the 3 vertices of each face, counter-clockwise seen from outside.  fnb holds the
+	 * neighbouring face across each edge:  fnb[3f] across edge a->b, fnb[3f+1] across b->c, and fnb[3f+2]
+	 * across c->a.
+	 */
+	int faceCount;
+	int[] fv, fnb;
+
+	/**
+	 * Outward normal (not normalised) and offset of each face plane - a point p is inside or on the
+	 * face plane if normal.p <= offset.
+	 */
+	long[] fnx, fny, fnz, fd;
+
+	boolean[] alive;
+
+	/**
+	 * Outside (conflict) points of each face, as linked lists:  conflictHead[f] is the first point of
+	 * face f, or -1, and conflictNext[p] is the point after p.
+	 */
+	int[] conflictHead, conflictNext;
+
+	/**
+	 * Visit marks for finding the faces visible from a point, and the new face starting at each horizon
+	 * vertex.
+	 */
+	int[] visibleMark, seenMark, startFace;
+	int stamp;
+
+	/**
+	 * Work arrays for visible faces, and horizon edges (start, end and outside face).
+	 */
+	int[] visible, horizon;
+
+
+	public ConvexHull3D() {
+		int capacity = 64;
+		fv = new int[3 * capacity];
+		fnb = new int[3 * capacity];
+		fnx = new long[capacity];
+		fny = new long[capacity];
+		fnz = new long[capacity];
+		fd = new long[capacity];
+		alive = new boolean[capacity];
+		conflictHead = new int[capacity];
+		visibleMark = new int[capacity];
+		seenMark = new int[capacity];
+		visible = new int[capacity];
+		horizon = new int[3 * capacity];
+		conflictNext = new int[0];
+		startFace = new int[0];
+	}
+
+
+	/**
+	 * Computes the convex hull of the first n voxels in x, y and z, and the volume and surface of the
+	 * voxelised hull.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param n
+	 */
+	public void compute(int[] x, int[] y, int[] z, int n) {
+
+		px = x;
+		py = y;
+		pz = z;
+		pointCount = n;
+		faceCount = 0;
+		convexVolume = 0;
+		convexSurface = 0;
+
+		if(n == 0) {
+			dimension = -1;
+			return;
+		}
+
+		// p0 - the lowest point in x, then y, then z - an extreme point, and an end point of collinear input:
+		int i0 = 0;
+		for(int a=1; a<n; a++) {
+			if( x[a] < x[i0] || (x[a] == x[i0] && (y[a] < y[i0] || (y[a] == y[i0] && z[a] < z[i0]) ) ) ) {
+				i0 = a;
+			}
+		}
+
+		// p1 - the point furthest from p0:
+		int i1 = i0;
+		long best = 0, dist;
+		for(int a=0; a<n; a++) {
+			dist = sq(x[a] - x[i0]) + sq(y[a] - y[i0]) + sq(z[a] - z[i0]);
+			if(dist > best) {
+				best = dist;
+				i1 = a;
+			}
+		}
+		if(best == 0) {
+			// all points are the same voxel:
+			dimension = 0;
+			convexVolume = 1;
+			convexSurface = 1;
+			return;
+		}
+
+		// p2 - the point furthest from the line p0 p1:
+		long ux = x[i1] - x[i0], uy = y[i1] - y[i0], uz = z[i1] - z[i0];
+		int i2 = i0;
+		best = 0;
+		long cx, cy, cz;
+		for(int a=0; a<n; a++) {
+			long vx = x[a] - x[i0], vy = y[a] - y[i0], vz = z[a] - z[i0];
+			cx = uy * vz - uz * vy;
+			cy = uz * vx - ux * vz;
+			cz = ux * vy - uy * vx;
+			dist = cx * cx + cy * cy + cz * cz;
+			if(dist > best) {
+				best = dist;
+				i2 = a;
+			}
+		}
+		if(best == 0) {
+			dimension = 1;
+			computeSegment(i0, i1);
+			return;
+		}
+
+		// p3 - the point furthest from the plane p0 p1 p2:
+		long vx = x[i2] - x[i0], vy = y[i2] - y[i0], vz = z[i2] - z[i0];
+		long nx = uy * vz - uz * vy;
+		long ny = uz * vx - ux * vz;
+		long nz = ux * vy - uy * vx;
+		long d = nx * x[i0] + ny * y[i0] + nz * z[i0];
+		int i3 = i0;
+		best = 0;
+		for(int a=0; a<n; a++) {
+			dist = Math.abs( nx * x[a] + ny * y[a] + nz * z[a] - d );
+			if(dist > best) {
+				best = dist;
+				i3 = a;
+			}
+		}
+		if(best == 0) {
+			dimension = 2;
+			computePolygon(nx, ny, nz, d);
+			return;
+		}
+
+		dimension = 3;
+		computePolyhedron(i0, i1, i2, i3);
+	}
+
+	private static long sq(long v) {
+		return v * v;
+	}
+
+
+	/**
+	 * Voxelises the segment between points i0 and i1 - the voxels on a segment between two voxels are
+	 * gcd(|dx|, |dy|, |dz|) + 1, and all are on the surface.
+	 */
+	private void computeSegment(int i0, int i1) {
+		int g = gcd( gcd( Math.abs(px[i1] - px[i0]), Math.abs(py[i1] - py[i0]) ), Math.abs(pz[i1] - pz[i0]) );
+		convexVolume = g + 1;
+		convexSurface = g + 1;
+	}
+
+	private static int gcd(int a, int b) {
+		while(b != 0) {
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+
+	/**
+	 * Voxelises the hull of coplanar points, which lie in the plane nx.x + ny.y + nz.z = d.  The points are
+	 * projected onto the axis plane the normal is most aligned with, their 2D hull is found by the monotone
+	 * chain algorithm, and the voxels inside this polygon which lie exactly on the plane are counted.
+	 * A voxel on a plane always has a 6-connected neighbour off the plane, so all are on the surface.
+	 */
+	private void computePolygon(long nx, long ny, long nz, long d) {
+
+		// project onto the two axes other than the dominant normal axis w:
+		int[] pu, pv;
+		long nu, nv, nw;
+		if( Math.abs(nz) >= Math.abs(nx) && Math.abs(nz) >= Math.abs(ny) ) {
+			pu = px; pv = py;
+			nu = nx; nv = ny; nw = nz;
+		}
+		else if( Math.abs(ny) >= Math.abs(nx) ) {
+			pu = px; pv = pz;
+			nu = nx; nv = nz; nw = ny;
+		}
+		else {
+			pu = py; pv = pz;
+			nu = ny; nv = nz; nw = nx;
+		}
+
+		// sort the projected points by u, then v:
+		long[] keys = new long[pointCount];
+		for(int a=0; a<pointCount; a++) {
+			keys[a] = ( (long)pu[a] << 32 ) | (pv[a] & 0xffffffffL);
+		}
+		Arrays.sort(keys);
+
+		// monotone chain - hull vertices counter-clockwise in u v:
+		long[] hu = new long[2 * pointCount + 1];
+		long[] hv = new long[2 * pointCount + 1];
+		int k = 0;
+		long u, v;
+		for(int a=0; a<pointCount; a++) {
+			u = keys[a] >> 32;
+			v = (int)keys[a];
+			while(k >= 2 && cross(hu[k-2], hv[k-2], hu[k-1], hv[k-1], u, v) <= 0) {
+				k--;
+			}
+			hu[k] = u;
+			hv[k] = v;
+			k++;
+		}
+		int lower = k + 1;
+		for(int a=pointCount-2; a>=0; a--) {
+			u = keys[a] >> 32;
+			v = (int)keys[a];
+			while(k >= lower && cross(hu[k-2], hv[k-2], hu[k-1], hv[k-1], u, v) <= 0) {
+				k--;
+			}
+			hu[k] = u;
+			hv[k] = v;
+			k++;
+		}
+		int vertices = k - 1; // last vertex repeats the first
+
+		long vMin = Long.MAX_VALUE, vMax = Long.MIN_VALUE, uMin = Long.MAX_VALUE, uMax = Long.MIN_VALUE;
+		for(int a=0; a<vertices; a++) {
+			vMin = Math.min(vMin, hv[a]);
+			vMax = Math.max(vMax, hv[a]);
+			uMin = Math.min(uMin, hu[a]);
+			uMax = Math.max(uMax, hu[a]);
+		}
+
+		// each row of v - intersect the u range with the inside of every polygon edge a->b:
+		//   (bu-au)(v-av) - (bv-av)(u-au) >= 0  ->  (bv-av).u <= (bu-au)(v-av) + (bv-av).au
+		long count = 0;
+		long lo, hi, coeff, rhs;
+		for(v=vMin; v<=vMax; v++) {
+			lo = uMin;
+			hi = uMax;
+			for(int a=0; a<vertices && lo<=hi; a++) {
+				coeff = hv[a+1] - hv[a];
+				rhs = (hu[a+1] - hu[a]) * (v - hv[a]) + coeff * hu[a];
+				if(coeff > 0) {
+					hi = Math.min(hi, Math.floorDiv(rhs, coeff) );
+				}
+				else if(coeff < 0) {
+					lo = Math.max(lo, -Math.floorDiv(rhs, -coeff) );
+				}
+				else if(rhs < 0) {
+					hi = lo - 1;
+				}
+			}
+			if(lo > hi) {
+				continue;
+			}
+			if(nu == 0 && nv == 0) {
+				// plane is normal to the dropped axis - every voxel of the row is on the plane:
+				count += hi - lo + 1;
+			}
+			else {
+				// only count voxels where the dropped coordinate is a whole number:
+				for(u=lo; u<=hi; u++) {
+					if( (d - nu * u - nv * v) % nw == 0 ) {
+						count++;
+					}
+				}
+			}
+		}
+
+		convexVolume = (int)count;
+		convexSurface = (int)count;
+	}
+
+	private static long cross(long ou, long ov, long au, long av, long bu, long bv) {
+		return (au - ou) * (bv - ov) - (av - ov) * (bu - ou);
+	}
+
+
+	/**
+	 * Builds the 3D hull by Quickhull from the initial tetrahedron i0 i1 i2 i3, then voxelises it.
+	 */
+	private void computePolyhedron(int i0, int i1, int i2, int i3) {
+
+		if(conflictNext.length < pointCount) {
+			conflictNext = new int[pointCount];
+			startFace = new int[pointCount];
+		}
+
+		// initial tetrahedron - each face oriented so the opposite vertex is inside:
+		int[][] tetra = new int[][] { {i0, i1, i2, i3}, {i0, i3, i1, i2}, {i1, i3, i2, i0}, {i2, i3, i0, i1} };
+		for(int[] t : tetra) {
+			int f = addFace(t[0], t[1], t[2]);
+			if(outside(f, t[3]) > 0) {
+				faceCount--;
+				addFace(t[0], t[2], t[1]);
+			}
+		}
+		for(int f=0; f<4; f++) {
+			for(int e=0; e<3; e++) {
+				int a = fv[3*f + e];
+				int b = fv[3*f + (e+1)%3];
+				for(int g=0; g<4; g++) {
+					if(g != f && edgeIndex(g, b, a) >= 0) {
+						fnb[3*f + e] = g;
+					}
+				}
+			}
+		}
+
+		// assign every other point to a face it is outside of - points inside the tetrahedron are dropped:
+		for(int p=0; p<pointCount; p++) {
+			if(p == i0 || p == i1 || p == i2 || p == i3) {
+				continue;
+			}
+			assignPoint(p, 0, 4);
+		}
+
+		// new faces are added at the end, and only new faces receive points - so one scan processes all:
+		for(int f=0; f<faceCount; f++) {
+			if(alive[f] && conflictHead[f] != -1) {
+				addPoint(f);
+			}
+		}
+
+		voxelise();
+	}
+
+	/**
+	 * Adds a face a b c, and returns its index.
+	 */
+	private int addFace(int a, int b, int c) {
+		if(faceCount == alive.length) {
+			int capacity = alive.length << 1;
+			fv = Arrays.copyOf(fv, 3 * capacity);
+			fnb = Arrays.copyOf(fnb, 3 * capacity);
+			fnx = Arrays.copyOf(fnx, capacity);
+			fny = Arrays.copyOf(fny, capacity);
+			fnz = Arrays.copyOf(fnz, capacity);
+			fd = Arrays.copyOf(fd, capacity);
+			alive = Arrays.copyOf(alive, capacity);
+			conflictHead = Arrays.copyOf(conflictHead, capacity);
+			visibleMark = Arrays.copyOf(visibleMark, capacity);
+			seenMark = Arrays.copyOf(seenMark, capacity);
+			visible = Arrays.copyOf(visible, capacity);
+			horizon = Arrays.copyOf(horizon, 3 * capacity);
+		}
+		int f = faceCount++;
+		fv[3*f] = a;
+		fv[3*f + 1] = b;
+		fv[3*f + 2] = c;
+		long ux = px[b] - px[a], uy = py[b] - py[a], uz = pz[b] - pz[a];
+		long vx = px[c] - px[a], vy = py[c] - py[a], vz = pz[c] - pz[a];
+		fnx[f] = uy * vz - uz * vy;
+		fny[f] = uz * vx - ux * vz;
+		fnz[f] = ux * vy - uy * vx;
+		fd[f] = fnx[f] * px[a] + fny[f] * py[a] + fnz[f] * pz[a];
+		alive[f] = true;
+		conflictHead[f] = -1;
+		visibleMark[f] = 0;
+		seenMark[f] = 0;
+		return f;
+	}
+
+	/**
+	 * Returns a positive value if point p is strictly outside the plane of face f, proportional to its
+	 * distance from the plane.
+	 */
+	private long outside(int f, int p) {
+		return fnx[f] * px[p] + fny[f] * py[p] + fnz[f] * pz[p] - fd[f];
+	}
+
+	/**
+	 * Returns the index of the edge a->b in face f, or -1 if f has no such edge.
+	 */
+	private int edgeIndex(int f, int a, int b) {
+		for(int e=0; e<3; e++) {
+			if(fv[3*f + e] == a && fv[3*f + (e+1)%3] == b) {
+				return e;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds point p to the conflict list of the first face in from..to-1 it is outside of, if any.
+	 */
+	private void assignPoint(int p, int from, int to) {
+		for(int f=from; f<to; f++) {
+			if(outside(f, p) > 0) {
+				conflictNext[p] = conflictHead[f];
+				conflictHead[f] = p;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adds the conflict point of face f furthest from its plane to the hull:  the faces visible from the
+	 * point are removed, and the horizon is joined to the point with new faces.
+	 */
+	private void addPoint(int f) {
+
+		// eye point - the furthest outside point of f, which is a vertex of the hull:
+		int eye = conflictHead[f];
+		long best = outside(f, eye);
+		for(int p=conflictNext[eye]; p!=-1; p=conflictNext[p]) {
+			long dist = outside(f, p);
+			if(dist > best) {
+				best = dist;
+				eye = p;
+			}
+		}
+
+		// faces visible from the eye - a connected region around f:
+		stamp++;
+		int visibleCount = 0;
+		visible[visibleCount++] = f;
+		visibleMark[f] = stamp;
+		seenMark[f] = stamp;
+		int horizonCount = 0;
+		for(int a=0; a<visibleCount; a++) {
+			int g = visible[a];
+			for(int e=0; e<3; e++) {
+				int h = fnb[3*g + e];
+				if(seenMark[h] != stamp) {
+					seenMark[h] = stamp;
+					if(outside(h, eye) > 0) {
+						visibleMark[h] = stamp;
+						visible[visibleCount++] = h;
+					}
+				}
+			}
+		}
+
+		// horizon - edges of visible faces whose neighbour is not visible:
+		for(int a=0; a<visibleCount; a++) {
+			int g = visible[a];
+			for(int e=0; e<3; e++) {
+				int h = fnb[3*g + e];
+				if(visibleMark[h] != stamp) {
+					horizon[3*horizonCount] = fv[3*g + e];
+					horizon[3*horizonCount + 1] = fv[3*g + (e+1)%3];
+					horizon[3*horizonCount + 2] = h;
+					horizonCount++;
+				}
+			}
+		}
+
+		// join each horizon edge a->b to the eye - each horizon vertex starts exactly one edge:
+		int firstNew = faceCount;
+		for(int a=0; a<horizonCount; a++) {
+			int start = horizon[3*a];
+			int end = horizon[3*a + 1];
+			int outsideFace = horizon[3*a + 2];
+			int nf = addFace(start, end, eye);
+			fnb[3*nf] = outsideFace;
+			fnb[3*outsideFace + edgeIndex(outsideFace, end, start)] = nf;
+			startFace[start] = nf;
+		}
+		for(int nf=firstNew; nf<faceCount; nf++) {
+			// edge end->eye borders the new face starting at end:
+			int next = startFace[ fv[3*nf + 1] ];
+			fnb[3*nf + 1] = next;
+			fnb[3*next + 2] = nf;
+		}
+
+		// remove the visible faces, and re-assign their conflict points to the new faces:
+		for(int a=0; a<visibleCount; a++) {
+			int g = visible[a];
+			alive[g] = false;
+			int p = conflictHead[g];
+			while(p != -1) {
+				int next = conflictNext[p];
+				if(p != eye) {
+					assignPoint(p, firstNew, faceCount);
+				}
+				p = next;
+			}
+			conflictHead[g] = -1;
+		}
+	}
+
+	/**
+	 * Counts the voxels inside or on the hull, row by row in x:  each face plane bounds x in each (y, z)
+	 * row, so the voxels of a row are one interval.  A voxel is on the surface if it is at the end of its
+	 * row interval, or outside the interval of a neighbouring row in y or z.
+	 */
+	private void voxelise() {
+
+		int xMin = Integer.MAX_VALUE, xMax = Integer.MIN_VALUE;
+		int yMin = Integer.MAX_VALUE, yMax = Integer.MIN_VALUE;
+		int zMin = Integer.MAX_VALUE, zMax = Integer.MIN_VALUE;
+		for(int p=0; p<pointCount; p++) {
+			xMin = Math.min(xMin, px[p]);
+			xMax = Math.max(xMax, px[p]);
+			yMin = Math.min(yMin, py[p]);
+			yMax = Math.max(yMax, py[p]);
+			zMin = Math.min(zMin, pz[p]);
+			zMax = Math.max(zMax, pz[p]);
+		}
+
+		// compact the live faces:
+		int live = 0;
+		for(int f=0; f<faceCount; f++) {
+			if(alive[f]) {
+				fnx[live] = fnx[f];
+				fny[live] = fny[f];
+				fnz[live] = fnz[f];
+				fd[live] = fd[f];
+				live++;
+			}
+		}
+
+		int h = yMax - yMin + 1;
+		int d = zMax - zMin + 1;
+		int[] rowLo = new int[h * d];
+		int[] rowHi = new int[h * d];
+		long lo, hi, rhs, volume = 0;
+		for(int z=zMin; z<=zMax; z++) {
+			for(int y=yMin; y<=yMax; y++) {
+				lo = xMin;
+				hi = xMax;
+				for(int f=0; f<live && lo<=hi; f++) {
+					// fnx.x <= fd - fny.y - fnz.z :
+					rhs = fd[f] - fny[f] * y - fnz[f] * z;
+					if(fnx[f] > 0) {
+						hi = Math.min(hi, Math.floorDiv(rhs, fnx[f]) );
+					}
+					else if(fnx[f] < 0) {
+						lo = Math.max(lo, -Math.floorDiv(rhs, -fnx[f]) );
+					}
+					else if(rhs < 0) {
+						hi = lo - 1;
+					}
+				}
+				int r = (z - zMin) * h + (y - yMin);
+				if(lo > hi) {
+					rowLo[r] = 1;
+					rowHi[r] = 0;
+				}
+				else {
+					rowLo[r] = (int)lo;
+					rowHi[r] = (int)hi;
+					volume += hi - lo + 1;
+				}
+			}
+		}
+
+		long surface = 0;
+		int interiorLo, interiorHi;
+		for(int zz=0; zz<d; zz++) {
+			for(int yy=0; yy<h; yy++) {
+				int r = zz * h + yy;
+				if(rowLo[r] > rowHi[r]) {
+					continue;
+				}
+				if(yy == 0 || yy == h-1 || zz == 0 || zz == d-1) {
+					// neighbouring rows outside the bounding box are empty:
+					surface += rowHi[r] - rowLo[r] + 1;
+					continue;
+				}
+				interiorLo = rowLo[r] + 1;
+				interiorHi = rowHi[r] - 1;
+				interiorLo = Math.max( Math.max(interiorLo, rowLo[r-1]), Math.max(rowLo[r+1], 
+								Math.max(rowLo[r-h], rowLo[r+h]) ) );
+				interiorHi = Math.min( Math.min(interiorHi, rowHi[r-1]), Math.min(rowHi[r+1], 
+								Math.min(rowHi[r-h], rowHi[r+h]) ) );
+				surface += (rowHi[r] - rowLo[r] + 1) - Math.max(0, interiorHi - interiorLo + 1);
+			}
+		}
+
+		convexVolume = (int)volume;
+		convexSurface = (int)surface;
+	}
+
+
+	/**
+	 * Returns the dimension of the last hull computed:  0 point, 1 segment, 2 polygon, 3 polyhedron - or
+	 * -1 if no points were given.
+	 * @return
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * Returns the number of voxels inside or on the last hull computed.
+	 * @return
+	 */
+	public int getConvexVolume() {
+		return convexVolume;
+	}
+
+	/**
+	 * Returns the number of voxels of the voxelised hull with a 6-connected neighbour outside the hull.
+	 * @return
+	 */
+	public int getConvexSurface() {
+		return convexSurface;
+	}
+
+}
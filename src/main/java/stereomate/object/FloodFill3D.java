@@ -0,0 +1,513 @@
+package stereomate.object;
+
+import mcib3d.image3d.ImageHandler;
+import stereomate.roi.RoiView;
+import stereomate.settings.OM_ProcedureSettings;
+
+/**
+ * Shared 3D flood fill engine used by the ObjectVoxelProcessing algorithms.
+ * <p>
+ * Voxels are referenced by a packed linear index:  z * sizeX * sizeY + y * sizeX + x.  This is an int, so
+ * an image of more than MAX_VOXELS voxels is rejected with an IllegalArgumentException (see
+ * checkPackedSize()), rather than overflowing the index.  The queue is a re-usable primitive IntRingBuffer
+ * of these indexes, and each voxel is set to the new value as it is ADDED to the queue - so each voxel is
+ * queued at most once, and the fill is linear in object size.
+ * <p>
+ * Every voxel filled in the most recent call to fill() is recorded in a re-usable int array, accessible
+ * through getFilledCount() and getFilledIndex().  The ObjectVoxelProcessing methods use this to count
+ * voxels inside a ROI, refill an object with another value, or to build the voxel list of an object,
+ * without any further search of the image.
+ * <p>
+ * Connectivity is set at construction:  6, 18 or 26 connected, as a NeighbourOffsets table.  Neighbours
+ * are addressed by their z offset and in-slice linear delta, and are only visited if they lie within the
+ * image bounds - the boundary bits of each voxel are computed once, and masked against each neighbour, so
+ * interior voxels test no bounds.
+ * <p>
+ * A FloodFill3D is not thread-safe - each thread must use its own instance.
+ *
+ * @author stevenwest
+ *
+ */
+public class FloodFill3D {
+
+	public static final int CONNECTED6 = 6, CONNECTED18 = 18, CONNECTED26 = 26;
+
+	/**
+	 * The largest number of voxels an image may have for its voxels to be referenced by packed int indexes.
+	 */
+	public static final long MAX_VOXELS = Integer.MAX_VALUE;
+
+	/**
+	 * Neighbour offset table of this flood fill - 6, 18 or 26 connected.
+	 */
+	NeighbourOffsets offsets;
+
+	/**
+	 * Neighbour offsets in x, y and z, and boundary masks - from offsets.
+	 */
+	int[] dx, dy, dz, mask;
+
+	/**
+	 * In-slice linear delta of each neighbour, for the image width of the last fill.
+	 */
+	int[] dxy;
+
+	/**
+	 * The queue of packed voxel indexes still to be processed.
+	 */
+	IntRingBuffer queue;
+
+	/**
+	 * Packed voxel indexes filled in the last call to fill(), and the number of these.
+	 */
+	int[] filled;
+	int filledCount;
+
+	/**
+	 * Image dimensions from the last fill - used to unpack voxel indexes.
+	 */
+	int sizeX, sizeY, sizeZ, sizeXY;
+
+
+	/**
+	 * Constructs a FloodFill3D with the given connectivity:  CONNECTED6, CONNECTED18 or CONNECTED26.
+	 * Any other value is treated as CONNECTED26.
+	 * @param connectivity
+	 */
+	public FloodFill3D(int connectivity) {
+		this( new NeighbourOffsets(connectivity) );
+	}
+
+	/**
+	 * Constructs a FloodFill3D which visits the neighbours in offsets.
+	 * @param offsets
+	 */
+	public FloodFill3D(NeighbourOffsets offsets) {
+		this.offsets = offsets;
+		dx = offsets.dx;
+		dy = offsets.dy;
+		dz = offsets.dz;
+		mask = offsets.mask;
+		dxy = offsets.xyDeltas(0);
+		sizeX = 0;
+		queue = new IntRingBuffer();
+		filled = new int[1024];
+		filledCount = 0;
+	}
+
+	/**
+	 * Constructs a FloodFill3D with the connectivity given by the OM_ProcedureSettings objConnectivity
+	 * String:  CONNECTED6, CONNECTED18 or CONNECTED26.
+	 * @param objConnectivity
+	 */
+	public FloodFill3D(String objConnectivity) {
+		this( resolveConnectivity(objConnectivity) );
+	}
+
+	/**
+	 * Returns the int connectivity (6, 18 or 26) represented by the OM_ProcedureSettings objConnectivity
+	 * String.  Returns 26 if the String is null or not recognised.
+	 * @param objConnectivity
+	 * @return
+	 */
+	public static int resolveConnectivity(String objConnectivity) {
+		if(objConnectivity == null) {
+			return CONNECTED26;
+		}
+		if( objConnectivity.equalsIgnoreCase(OM_ProcedureSettings.CONNECTED6) ) {
+			return CONNECTED6;
+		}
+		else if( objConnectivity.equalsIgnoreCase(OM_ProcedureSettings.CONNECTED18) ) {
+			return CONNECTED18;
+		}
+		return CONNECTED26;
+	}
+
+	public int getConnectivity() {
+		return offsets.getConnectivity();
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if an image of sizeX * sizeY * sizeZ voxels has more than
+	 * MAX_VOXELS voxels - its packed voxel indexes would overflow an int.
+	 * @param sizeX
+	 * @param sizeY
+	 * @param sizeZ
+	 */
+	public static void checkPackedSize(int sizeX, int sizeY, int sizeZ) {
+		if( (long)sizeX * sizeY * sizeZ > MAX_VOXELS ) {
+			throw new IllegalArgumentException("FloodFill3D: image of " + sizeX + " x " + sizeY + " x " + sizeZ
+							+ " voxels is too large - objects can only be analysed in images of at most "
+							+ MAX_VOXELS + " voxels");
+		}
+	}
+
+
+	/**
+	 * Fill the object in pixels at seed with newVal.  The object is all voxels connected to the seed which
+	 * have the same value as the seed.
+	 * @return the number of voxels filled.
+	 */
+	public int fill(byte[][] pixels, int sizeX, int sizeY, int sizeZ,
+			int seedX, int seedY, int seedZ, byte newVal) {
+		return fill(pixels, sizeX, sizeY, sizeZ, seedX, seedY, seedZ,
+				pixels[seedZ][seedX + seedY * sizeX], newVal);
+	}
+
+	/**
+	 * Fill all voxels connected to seed with value oldVal in pixels with newVal.  If the seed voxel is
+	 * not oldVal, nothing is filled.  If oldVal and newVal are equal, the filled voxels cannot be marked,
+	 * and so nothing is filled.
+	 * @return the number of voxels filled.
+	 */
+	public int fill(byte[][] pixels, int sizeX, int sizeY, int sizeZ,
+			int seedX, int seedY, int seedZ, byte oldVal, byte newVal) {
+
+		startFill(sizeX, sizeY, sizeZ);
+
+		int seedXY = seedX + seedY * sizeX;
+		if(oldVal == newVal || pixels[seedZ][seedXY] != oldVal) {
+			return 0;
+		}
+
+		pixels[seedZ][seedXY] = newVal;
+		addFilled(seedZ * sizeXY + seedXY);
+
+		int index, x, y, z, xy, boundary, curZ, curXY;
+		while( !queue.isEmpty() ) {
+			index = queue.remove();
+			z = index / sizeXY;
+			xy = index - z * sizeXY;
+			y = xy / sizeX;
+			x = xy - y * sizeX;
+			boundary = NeighbourOffsets.boundary(x, y, z, sizeX, sizeY, sizeZ);
+
+			for(int n=0; n<dxy.length; n++) {
+				if( (mask[n] & boundary) != 0 ) {
+					continue; // neighbour is outside the image
+				}
+				curZ = z + dz[n];
+				curXY = xy + dxy[n];
+				if(pixels[curZ][curXY] == oldVal) {
+					pixels[curZ][curXY] = newVal;
+					addFilled(curZ * sizeXY + curXY);
+				}
+			}
+		}
+
+		return filledCount;
+	}
+
+	/**
+	 * Fill the object in pixels at seed with newVal.  The object is all voxels connected to the seed which
+	 * have the same value as the seed.
+	 * @return the number of voxels filled.
+	 */
+	public int fill(short[][] pixels, int sizeX, int sizeY, int sizeZ,
+			int seedX, int seedY, int seedZ, short newVal) {
+		return fill(pixels, sizeX, sizeY, sizeZ, seedX, seedY, seedZ,
+				pixels[seedZ][seedX + seedY * sizeX], newVal);
+	}
+
+	/**
+	 * Fill all voxels connected to seed with value oldVal in pixels with newVal.  If the seed voxel is
+	 * not oldVal, nothing is filled.  If oldVal and newVal are equal, the filled voxels cannot be marked,
+	 * and so nothing is filled.
+	 * @return the number of voxels filled.
+	 */
+	public int fill(short[][] pixels, int sizeX, int sizeY, int sizeZ,
+			int seedX, int seedY, int seedZ, short oldVal, short newVal) {
+
+		startFill(sizeX, sizeY, sizeZ);
+
+		int seedXY = seedX + seedY * sizeX;
+		if(oldVal == newVal || pixels[seedZ][seedXY] != oldVal) {
+			return 0;
+		}
+
+		pixels[seedZ][seedXY] = newVal;
+		addFilled(seedZ * sizeXY + seedXY);
+
+		int index, x, y, z, xy, boundary, curZ, curXY;
+		while( !queue.isEmpty() ) {
+			index = queue.remove();
+			z = index / sizeXY;
+			xy = index - z * sizeXY;
+			y = xy / sizeX;
+			x = xy - y * sizeX;
+			boundary = NeighbourOffsets.boundary(x, y, z, sizeX, sizeY, sizeZ);
+
+			for(int n=0; n<dxy.length; n++) {
+				if( (mask[n] & boundary) != 0 ) {
+					continue; // neighbour is outside the image
+				}
+				curZ = z + dz[n];
+				curXY = xy + dxy[n];
+				if(pixels[curZ][curXY] == oldVal) {
+					pixels[curZ][curXY] = newVal;
+					addFilled(curZ * sizeXY + curXY);
+				}
+			}
+		}
+
+		return filledCount;
+	}
+
+	/**
+	 * Fill all voxels connected to seed with a value of limit or above with newVal.  newVal must be
+	 * below limit, else nothing is filled.
+	 * @return the number of voxels filled.
+	 */
+	public int fillAbove(short[][] pixels, int sizeX, int sizeY, int sizeZ,
+			int seedX, int seedY, int seedZ, short limit, short newVal) {
+
+		startFill(sizeX, sizeY, sizeZ);
+
+		int seedXY = seedX + seedY * sizeX;
+		if(newVal >= limit || pixels[seedZ][seedXY] < limit) {
+			return 0;
+		}
+
+		pixels[seedZ][seedXY] = newVal;
+		addFilled(seedZ * sizeXY + seedXY);
+
+		int index, x, y, z, xy, boundary, curZ, curXY;
+		while( !queue.isEmpty() ) {
+			index = queue.remove();
+			z = index / sizeXY;
+			xy = index - z * sizeXY;
+			y = xy / sizeX;
+			x = xy - y * sizeX;
+			boundary = NeighbourOffsets.boundary(x, y, z, sizeX, sizeY, sizeZ);
+
+			for(int n=0; n<dxy.length; n++) {
+				if( (mask[n] & boundary) != 0 ) {
+					continue; // neighbour is outside the image
+				}
+				curZ = z + dz[n];
+				curXY = xy + dxy[n];
+				if(pixels[curZ][curXY] >= limit) {
+					pixels[curZ][curXY] = newVal;
+					addFilled(curZ * sizeXY + curXY);
+				}
+			}
+		}
+
+		return filledCount;
+	}
+
+	/**
+	 * Fill all voxels connected to seed with a value of limit or above with newVal, in any mcib3d
+	 * ImageHandler.  newVal must be below limit, else nothing is filled.
+	 * @return the number of voxels filled.
+	 */
+	public int fillAbove(ImageHandler img, int seedX, int seedY, int seedZ, float limit, float newVal) {
+
+		int sizeX = img.sizeX;
+		int sizeY = img.sizeY;
+		int sizeZ = img.sizeZ;
+
+		startFill(sizeX, sizeY, sizeZ);
+
+		if(newVal >= limit || img.getPixel(seedX, seedY, seedZ) < limit) {
+			return 0;
+		}
+
+		img.setPixel(seedX, seedY, seedZ, newVal);
+		addFilled(seedZ * sizeXY + seedX + seedY * sizeX);
+
+		int index, x, y, z, xy, boundary, curX, curY, curZ;
+		while( !queue.isEmpty() ) {
+			index = queue.remove();
+			z = index / sizeXY;
+			xy = index - z * sizeXY;
+			y = xy / sizeX;
+			x = xy - y * sizeX;
+			boundary = NeighbourOffsets.boundary(x, y, z, sizeX, sizeY, sizeZ);
+
+			for(int n=0; n<dx.length; n++) {
+				if( (mask[n] & boundary) != 0 ) {
+					continue; // neighbour is outside the image
+				}
+				curX = x + dx[n];
+				curY = y + dy[n];
+				curZ = z + dz[n];
+				if(img.getPixel(curX, curY, curZ) >= limit) {
+					img.setPixel(curX, curY, curZ, newVal);
+					addFilled(curZ * sizeXY + curX + curY * sizeX);
+				}
+			}
+		}
+
+		return filledCount;
+	}
+
+	/**
+	 * Fill all voxels connected to seed with value val, as seen through the RoiView view - the view voxels are
+	 * marked as visited instead of being set to a new value, so the parent image is not modified.  Voxels 
+	 * already visited are not filled.  The filled voxels are recorded as PARENT voxel indexes, so the fill can
+	 * be measured as a fill of the parent image.  val must not be 0 (background).
+	 * @return the number of voxels filled.
+	 */
+	public int fill(RoiView view, int seedX, int seedY, int seedZ, int val) {
+
+		int sizeX = view.getSizeX();
+		int sizeY = view.getSizeY();
+		int sizeZ = view.getSizeZ();
+
+		startFill(sizeX, sizeY, sizeZ);
+
+		if(val == 0 || view.isVisited(seedX, seedY, seedZ) || view.getPixelInt(seedX, seedY, seedZ) != val) {
+			return 0;
+		}
+
+		view.setVisited(seedX, seedY, seedZ);
+		addFilled(seedZ * sizeXY + seedX + seedY * sizeX);
+
+		int index, x, y, z, xy, boundary, curX, curY, curZ;
+		while( !queue.isEmpty() ) {
+			index = queue.remove();
+			z = index / sizeXY;
+			xy = index - z * sizeXY;
+			y = xy / sizeX;
+			x = xy - y * sizeX;
+			boundary = NeighbourOffsets.boundary(x, y, z, sizeX, sizeY, sizeZ);
+
+			for(int n=0; n<dx.length; n++) {
+				if( (mask[n] & boundary) != 0 ) {
+					continue; // neighbour is outside the image
+				}
+				curX = x + dx[n];
+				curY = y + dy[n];
+				curZ = z + dz[n];
+				if(view.getPixelInt(curX, curY, curZ) == val && view.isVisited(curX, curY, curZ) == false) {
+					view.setVisited(curX, curY, curZ);
+					addFilled(curZ * sizeXY + curX + curY * sizeX);
+				}
+			}
+		}
+
+		return filledCount;
+	}
+
+
+	/**
+	 * Set every voxel filled in the last fill to val.
+	 * @param pixels
+	 * @param val
+	 */
+	public void refill(byte[][] pixels, byte val) {
+		int index, z;
+		for(int a=0; a<filledCount; a++) {
+			index = filled[a];
+			z = index / sizeXY;
+			pixels[z][index - z * sizeXY] = val;
+		}
+	}
+
+	/**
+	 * Set every voxel filled in the last fill to val.
+	 * @param pixels
+	 * @param val
+	 */
+	public void refill(short[][] pixels, short val) {
+		int index, z;
+		for(int a=0; a<filledCount; a++) {
+			index = filled[a];
+			z = index / sizeXY;
+			pixels[z][index - z * sizeXY] = val;
+		}
+	}
+
+	/**
+	 * Number of voxels filled in the last fill.
+	 * @return
+	 */
+	public int getFilledCount() {
+		return filledCount;
+	}
+
+	/**
+	 * Packed voxel index of the a'th voxel filled in the last fill.  Voxels are stored in the order they
+	 * were filled.
+	 * @param a
+	 * @return
+	 */
+	public int getFilledIndex(int a) {
+		return filled[a];
+	}
+
+	/**
+	 * The FIRST VOXEL of the last filled object - the voxel with the lowest z, then lowest y, then lowest x.
+	 * This is the voxel with the lowest packed index.  Returns -1 if nothing was filled.
+	 * @return
+	 */
+	public int getFirstVoxelIndex() {
+		if(filledCount == 0) {
+			return -1;
+		}
+		int first = filled[0];
+		for(int a=1; a<filledCount; a++) {
+			if(filled[a] < first) {
+				first = filled[a];
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * x coordinate of a packed voxel index from the last fill.
+	 */
+	public int getX(int index) {
+		return (index % sizeXY) % sizeX;
+	}
+
+	/**
+	 * y coordinate of a packed voxel index from the last fill.
+	 */
+	public int getY(int index) {
+		return (index % sizeXY) / sizeX;
+	}
+
+	/**
+	 * z coordinate of a packed voxel index from the last fill.
+	 */
+	public int getZ(int index) {
+		return index / sizeXY;
+	}
+
+
+	/**
+	 * Reset the queue and filled list, and store the image dimensions for this fill - the in-slice
+	 * neighbour deltas are only recomputed when the image width changes.
+	 */
+	private void startFill(int sizeX, int sizeY, int sizeZ) {
+		if(sizeX != this.sizeX || sizeY != this.sizeY || sizeZ != this.sizeZ) {
+			checkPackedSize(sizeX, sizeY, sizeZ);
+		}
+		if(sizeX != this.sizeX) {
+			dxy = offsets.xyDeltas(sizeX);
+		}
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+		this.sizeXY = sizeX * sizeY;
+		queue.clear();
+		filledCount = 0;
+	}
+
+	/**
+	 * Record index as filled, and add it to the queue so its neighbours are processed.
+	 * @param index
+	 */
+	private void addFilled(int index) {
+		if(filledCount == filled.length) {
+			int[] newFilled = new int[filled.length << 1];
+			System.arraycopy(filled, 0, newFilled, 0, filledCount);
+			filled = newFilled;
+		}
+		filled[filledCount++] = index;
+		queue.add(index);
+	}
+
+}
@@ -0,0 +1,108 @@
+package stereomate.object;
+
+/**
+ * A simple FIFO queue of primitive ints, backed by a circular array whose capacity is always a
+ * power of two.  The array grows (doubles) when it is full, and is never shrunk, so a single
+ * IntRingBuffer can be re-used across many flood fills without further allocation once it has
+ * reached the size of the largest object.
+ * <p>
+ * This replaces the ArrayList<IntCoord3D> queues previously used in the flood fill algorithms, where
+ * queue.remove(0) made each flood quadratic in object size, and one IntCoord3D was allocated for every
+ * neighbour voxel added to the queue.
+ *
+ * @author stevenwest
+ *
+ */
+public class IntRingBuffer {
+
+	/**
+	 * The circular array of values - its length is always a power of two.
+	 */
+	int[] buffer;
+
+	/**
+	 * Bit mask to wrap indexes into the buffer - buffer.length - 1.
+	 */
+	int mask;
+
+	/**
+	 * Index of the next value to be removed, and the number of values currently in the queue.
+	 */
+	int head, size;
+
+
+	/**
+	 * Constructs an IntRingBuffer with a default initial capacity of 1024 values.
+	 */
+	public IntRingBuffer() {
+		this(1024);
+	}
+
+	/**
+	 * Constructs an IntRingBuffer which can hold at least initialCapacity values before it needs to grow.
+	 * @param initialCapacity
+	 */
+	public IntRingBuffer(int initialCapacity) {
+		int capacity = 16;
+		while(capacity < initialCapacity) {
+			capacity = capacity << 1;
+		}
+		buffer = new int[capacity];
+		mask = capacity - 1;
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Add value to the tail of the queue, growing the buffer if it is full.
+	 * @param value
+	 */
+	public void add(int value) {
+		if(size == buffer.length) {
+			grow();
+		}
+		buffer[ (head + size) & mask ] = value;
+		size++;
+	}
+
+	/**
+	 * Remove and return the value at the head of the queue.  The queue must not be empty.
+	 * @return
+	 */
+	public int remove() {
+		int value = buffer[head];
+		head = (head + 1) & mask;
+		size--;
+		return value;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Empties the queue - the underlying buffer is retained for re-use.
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Doubles the capacity of the buffer, unwrapping the current contents so the head is at index 0.
+	 */
+	private void grow() {
+		int[] newBuffer = new int[buffer.length << 1];
+		int firstPart = buffer.length - head;
+		System.arraycopy(buffer, head, newBuffer, 0, firstPart);
+		System.arraycopy(buffer, 0, newBuffer, firstPart, head);
+		buffer = newBuffer;
+		mask = newBuffer.length - 1;
+		head = 0;
+	}
+
+}
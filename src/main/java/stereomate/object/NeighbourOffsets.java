@@ -0,0 +1,150 @@
+package stereomate.object;
+
+/**
+ * A neighbour-offset table for 6, 18 or 26 connectivity, resolved once so flood fill and labelling loops
+ * iterate an int table instead of testing the connectivity of each offset in a triple loop.
+ * <p>
+ * Each neighbour has an x, y and z offset, and a boundary mask:  the boundary bits (X_LOW, X_HIGH, Y_LOW,
+ * Y_HIGH, Z_LOW, Z_HIGH) of the voxels for which the neighbour lies outside the image.  A loop computes the
+ * boundary bits of the central voxel once with boundary(), and skips any neighbour whose mask shares a
+ * bit with them - for interior voxels the bits are 0, and no bounds are tested at all.
+ * <p>
+ * The in-slice linear delta of each neighbour (dy * sizeX + dx) depends on the image width, and is
+ * returned by xyDeltas() - with the z offset, this addresses neighbours in [z][xy] pixel arrays without
+ * unpacking coordinates.
+ * <p>
+ * A NeighbourOffsets is immutable, and so can be shared between threads.
+ *
+ * @author stevenwest
+ *
+ */
+public class NeighbourOffsets {
+
+	/**
+	 * Boundary bits - the central voxel is on the first or last voxel in x, y or z.
+	 */
+	public static final int X_LOW = 1, X_HIGH = 2, Y_LOW = 4, Y_HIGH = 8, Z_LOW = 16, Z_HIGH = 32;
+
+	/**
+	 * Connectivity - 6, 18 or 26.
+	 */
+	final int connectivity;
+
+	/**
+	 * Neighbour offsets in x, y and z, and the boundary mask of each neighbour.
+	 */
+	final int[] dx, dy, dz, mask;
+
+
+	/**
+	 * Constructs the table of all neighbours for the given connectivity:  6, 18 or 26.  Any other value
+	 * is treated as 26.
+	 * @param connectivity
+	 */
+	public NeighbourOffsets(int connectivity) {
+		this(connectivity, false);
+	}
+
+	/**
+	 * Constructs the table for the given connectivity:  6, 18 or 26.  Any other value is treated as 26.
+	 * If backwardOnly is true, only the neighbours which precede the central voxel in a raster scan
+	 * (z, y, x) are included - 3, 9 or 13 neighbours.
+	 * @param connectivity
+	 * @param backwardOnly
+	 */
+	public NeighbourOffsets(int connectivity, boolean backwardOnly) {
+		if(connectivity != FloodFill3D.CONNECTED6 && connectivity != FloodFill3D.CONNECTED18) {
+			connectivity = FloodFill3D.CONNECTED26;
+		}
+		this.connectivity = connectivity;
+
+		int n = backwardOnly ? (connectivity - 1) / 2 + 1 : connectivity;
+		dx = new int[n];
+		dy = new int[n];
+		dz = new int[n];
+		mask = new int[n];
+		int a = 0;
+		for(int zz=-1; zz<2; zz++) {
+			for(int yy=-1; yy<2; yy++) {
+				for(int xx=-1; xx<2; xx++) {
+					int dist = Math.abs(xx) + Math.abs(yy) + Math.abs(zz);
+					if(dist == 0) {
+						continue; // the central voxel
+					}
+					if( backwardOnly && (zz > 0 || (zz == 0 && (yy > 0 || (yy == 0 && xx > 0) ) ) ) ) {
+						continue; // forward neighbour
+					}
+					if( (connectivity == FloodFill3D.CONNECTED6 && dist > 1) ||
+							(connectivity == FloodFill3D.CONNECTED18 && dist > 2) ) {
+						continue;
+					}
+					dx[a] = xx;
+					dy[a] = yy;
+					dz[a] = zz;
+					mask[a] = (xx < 0 ? X_LOW : 0) | (xx > 0 ? X_HIGH : 0) |
+								(yy < 0 ? Y_LOW : 0) | (yy > 0 ? Y_HIGH : 0) |
+								(zz < 0 ? Z_LOW : 0) | (zz > 0 ? Z_HIGH : 0);
+					a++;
+				}
+			}
+		}
+	}
+
+	public int getConnectivity() {
+		return connectivity;
+	}
+
+	/**
+	 * Number of neighbours in this table.
+	 * @return
+	 */
+	public int size() {
+		return dx.length;
+	}
+
+	/**
+	 * Returns the in-slice linear delta (dy * sizeX + dx) of each neighbour, for images of width sizeX.
+	 * @param sizeX
+	 * @return
+	 */
+	public int[] xyDeltas(int sizeX) {
+		int[] dxy = new int[dx.length];
+		for(int a=0; a<dx.length; a++) {
+			dxy[a] = dy[a] * sizeX + dx[a];
+		}
+		return dxy;
+	}
+
+	/**
+	 * Returns the boundary bits of voxel x,y,z in an image of the given size - 0 for interior voxels.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param sizeX
+	 * @param sizeY
+	 * @param sizeZ
+	 * @return
+	 */
+	public static int boundary(int x, int y, int z, int sizeX, int sizeY, int sizeZ) {
+		return (x == 0 ? X_LOW : 0) | (x == sizeX - 1 ? X_HIGH : 0) |
+				(y == 0 ? Y_LOW : 0) | (y == sizeY - 1 ? Y_HIGH : 0) |
+				(z == 0 ? Z_LOW : 0) | (z == sizeZ - 1 ? Z_HIGH : 0);
+	}
+
+	/**
+	 * Returns true if the offset xx,yy,zz is a neighbour in this table.
+	 * @param xx
+	 * @param yy
+	 * @param zz
+	 * @return
+	 */
+	public boolean contains(int xx, int yy, int zz) {
+		for(int a=0; a<dx.length; a++) {
+			if(dx[a] == xx && dy[a] == yy && dz[a] == zz) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
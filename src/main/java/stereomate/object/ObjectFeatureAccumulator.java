@@ -0,0 +1,587 @@
+package stereomate.object;
+
+import java.util.Arrays;
+
+import mcib3d.image3d.ImageByte;
+import mcib3d.image3d.ImageInt;
+import mcib3d.image3d.ImageShort;
+
+/**
+ * Accumulates the primary measures of one object in a single pass over its voxels, without building
+ * any Voxel3D or Object3DVoxels objects:
+ * <p>
+ * - Volume (voxel count) and bounding box.
+ * <p>
+ * - Centroid and second-order central moments (the covariance of the voxel coordinates), and from their
+ * eigenvalues the main and median elongation and the volume of the ellipsoid with the same moments.
+ * <p>
+ * - Surface voxel count - voxels with at least one 6-connected neighbour outside the object (or
+ * outside the image), the same definition as the mcib3d contour voxels used by getAreaPixels().
+ * <p>
+ * - Intensity sum, sum of squares, minimum and maximum in the intensity image.
+ * <p>
+ * - Intensity histogram of byte and short intensity images, giving the exact median and any percentile
+ * without sorting.  Only the bins between the previous object's minimum and maximum are cleared on reset,
+ * so the 65536 bins of a short image are not cleared for every object.  For other images the intensity
+ * values are kept, and sorted when a percentile is requested.
+ * <p>
+ * - The coordinates of the surface voxels, which have the same convex hull as the whole object, for
+ * ConvexHull3D.
+ * <p>
+ * Voxels are supplied either from the last fill of a FloodFill3D, or from a label of an ObjectLabels,
+ * so the measures are collected straight from the primitive voxel index arrays these hold.  Coordinate
+ * sums are accumulated relative to the first voxel added, to limit cancellation in the moments.
+ * <p>
+ * An ObjectFeatureAccumulator is re-usable - call reset() (done by each addVoxels() method) before
+ * each object.  It is not thread-safe.
+ *
+ * @author stevenwest
+ *
+ */
+public class ObjectFeatureAccumulator {
+
+	/**
+	 * Number of voxels, and number of surface voxels.
+	 */
+	int volume, surface;
+
+	/**
+	 * Bounding box.
+	 */
+	int xMin, xMax, yMin, yMax, zMin, zMax;
+
+	/**
+	 * Origin the coordinate sums are relative to - the first voxel added.
+	 */
+	int x0, y0, z0;
+
+	/**
+	 * First and second order coordinate sums, relative to x0, y0, z0.
+	 */
+	double sx, sy, sz, sxx, syy, szz, sxy, sxz, syz;
+
+	/**
+	 * Intensity sum, sum of squares, minimum and maximum.
+	 */
+	double intensitySum, intensitySumSq, intensityMin, intensityMax;
+
+	/**
+	 * Intensity histogram, used for byte and short intensity images.
+	 */
+	int[] histogram;
+	boolean useHistogram;
+
+	/**
+	 * The intensity image of the current object.
+	 */
+	ImageInt intensityImg;
+
+	/**
+	 * Intensity values, used for other intensity images - the first volume entries are used.
+	 */
+	int[] values;
+	boolean valuesSorted;
+
+	/**
+	 * Coordinates of the surface voxels - the first surface entries are used.
+	 */
+	int[] surfaceX, surfaceY, surfaceZ;
+
+	/**
+	 * The sorted indexes of the voxels of a fill - the first getFilledCount() entries are used.
+	 */
+	int[] filled;
+
+
+	public ObjectFeatureAccumulator() {
+		surfaceX = new int[256];
+		surfaceY = new int[256];
+		surfaceZ = new int[256];
+		histogram = new int[256];
+		values = new int[256];
+		useHistogram = false;
+		reset();
+	}
+
+	/**
+	 * Clears all measures, ready for a new object.
+	 */
+	public void reset() {
+		if(useHistogram && volume > 0) {
+			// clear only the bins used by the last object:
+			Arrays.fill(histogram, (int)intensityMin, (int)intensityMax + 1, 0);
+		}
+		valuesSorted = false;
+		volume = 0;
+		surface = 0;
+		xMin = yMin = zMin = Integer.MAX_VALUE;
+		xMax = yMax = zMax = Integer.MIN_VALUE;
+		sx = sy = sz = 0.0;
+		sxx = syy = szz = sxy = sxz = syz = 0.0;
+		intensitySum = 0.0;
+		intensitySumSq = 0.0;
+		intensityMin = Double.POSITIVE_INFINITY;
+		intensityMax = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Add one voxel to the measures.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param isSurface true if this voxel has a 6-connected neighbour outside the object.
+	 * @param intensity the intensity image value at this voxel.
+	 */
+	public void add(int x, int y, int z, boolean isSurface, int intensity) {
+
+		if(useHistogram) {
+			histogram[intensity]++;
+		}
+		else {
+			if(volume == values.length) {
+				values = Arrays.copyOf(values, volume << 1);
+			}
+			values[volume] = intensity;
+		}
+
+		if(volume == 0) {
+			x0 = x;
+			y0 = y;
+			z0 = z;
+		}
+		volume++;
+
+		if(isSurface) {
+			if(surface == surfaceX.length) {
+				surfaceX = Arrays.copyOf(surfaceX, surface << 1);
+				surfaceY = Arrays.copyOf(surfaceY, surface << 1);
+				surfaceZ = Arrays.copyOf(surfaceZ, surface << 1);
+			}
+			surfaceX[surface] = x;
+			surfaceY[surface] = y;
+			surfaceZ[surface] = z;
+			surface++;
+		}
+
+		if(x < xMin) xMin = x;
+		if(x > xMax) xMax = x;
+		if(y < yMin) yMin = y;
+		if(y > yMax) yMax = y;
+		if(z < zMin) zMin = z;
+		if(z > zMax) zMax = z;
+
+		double dx = x - x0;
+		double dy = y - y0;
+		double dz = z - z0;
+		sx += dx;
+		sy += dy;
+		sz += dz;
+		sxx += dx * dx;
+		syy += dy * dy;
+		szz += dz * dz;
+		sxy += dx * dy;
+		sxz += dx * dz;
+		syz += dy * dz;
+
+		intensitySum += intensity;
+		intensitySumSq += (double)intensity * intensity;
+		if(intensity < intensityMin) intensityMin = intensity;
+		if(intensity > intensityMax) intensityMax = intensity;
+	}
+
+	/**
+	 * Accumulates the measures of the object filled in the last fill of floodFill into img.  The filled
+	 * voxels are marked in a mask over their bounding box, so a voxel is on the surface if a 6-connected
+	 * neighbour is not one of the filled voxels - whatever value the object was filled with.  Intensities
+	 * are read from intensityImg.
+	 * @param floodFill
+	 * @param img
+	 * @param intensityImg
+	 */
+	public void addVoxels(FloodFill3D floodFill, ImageInt img, ImageInt intensityImg) {
+		addVoxels(floodFill, img.sizeX, img.sizeY, img.sizeZ, intensityImg);
+	}
+
+	/**
+	 * Accumulates the measures of the object filled in the last fill of floodFill into an image of sizeX by
+	 * sizeY by sizeZ - as addVoxels(FloodFill3D, ImageInt, ImageInt), for a fill on a RoiView of an image of
+	 * these dimensions.
+	 * @param floodFill
+	 * @param sizeX
+	 * @param sizeY
+	 * @param sizeZ
+	 * @param intensityImg
+	 */
+	public void addVoxels(FloodFill3D floodFill, int sizeX, int sizeY, int sizeZ, ImageInt intensityImg) {
+		reset();
+		setIntensityImage(intensityImg);
+		addFilledVoxels(floodFill, sizeX, sizeY, sizeZ);
+	}
+
+	/**
+	 * Accumulates the voxels filled in the last fill of floodFill into an image of sizeX by sizeY by sizeZ.
+	 * Must be called after reset() and setIntensityImage().
+	 */
+	private void addFilledVoxels(FloodFill3D floodFill, int sizeX, int sizeY, int sizeZ) {
+		int sizeXY = sizeX * sizeY;
+		int count = floodFill.getFilledCount();
+		if(count == 0) {
+			return;
+		}
+
+		// the filled indexes in ascending order, so neighbours are found by binary search - memory is
+			// proportional to the object, not its bounding box:
+		if(filled == null || filled.length < count) {
+			filled = new int[Math.max(count, filled == null ? 256 : filled.length * 2)];
+		}
+		for(int a=0; a<count; a++) {
+			filled[a] = floodFill.getFilledIndex(a);
+		}
+		Arrays.sort(filled, 0, count);
+
+		int index, x, y, z;
+		boolean isSurface;
+		for(int a=0; a<count; a++) {
+			index = floodFill.getFilledIndex(a);
+			z = index / sizeXY;
+			y = (index % sizeXY) / sizeX;
+			x = (index % sizeXY) % sizeX;
+			if(x == 0 || x == sizeX-1 || y == 0 || y == sizeY-1 || z == 0 || z == sizeZ-1) {
+				// neighbours outside the image are outside the object:
+				isSurface = true;
+			}
+			else {
+				isSurface = !isFilled(index-1, count) || !isFilled(index+1, count) ||
+							!isFilled(index-sizeX, count) || !isFilled(index+sizeX, count) ||
+							!isFilled(index-sizeXY, count) || !isFilled(index+sizeXY, count);
+			}
+			add(x, y, z, isSurface, intensity(z, index % sizeXY) );
+		}
+	}
+
+	/**
+	 * Returns true if index is one of the first count sorted filled indexes.
+	 */
+	private boolean isFilled(int index, int count) {
+		return Arrays.binarySearch(filled, 0, count, index) >= 0;
+	}
+
+	/**
+	 * Accumulates the measures of the object with the given label in objectLabels.  A voxel is on the
+	 * surface if a 6-connected neighbour has a different label.  Intensities are read from intensityImg.
+	 * @param objectLabels
+	 * @param label
+	 * @param intensityImg
+	 */
+	public void addVoxels(ObjectLabels objectLabels, int label, ImageInt intensityImg) {
+		reset();
+		setIntensityImage(intensityImg);
+		int sizeX = objectLabels.sizeX;
+		int sizeY = objectLabels.sizeY;
+		int sizeZ = objectLabels.sizeZ;
+		int sizeXY = objectLabels.sizeXY;
+		int[][] labels = objectLabels.labels;
+		int index, xy, x, y, z;
+		boolean isSurface;
+		for(int a=0; a<objectLabels.getVoxelCount(label); a++) {
+			index = objectLabels.getVoxelIndex(label, a);
+			z = index / sizeXY;
+			xy = index % sizeXY;
+			y = xy / sizeX;
+			x = xy % sizeX;
+			if(x == 0 || x == sizeX-1 || y == 0 || y == sizeY-1 || z == 0 || z == sizeZ-1) {
+				// neighbours outside the image are outside the object:
+				isSurface = true;
+			}
+			else {
+				int[] slice = labels[z];
+				isSurface = slice[xy-1] != label || slice[xy+1] != label ||
+							slice[xy-sizeX] != label || slice[xy+sizeX] != label ||
+							labels[z-1][xy] != label || labels[z+1][xy] != label;
+			}
+			add(x, y, z, isSurface, intensity(z, xy) );
+		}
+	}
+
+	/**
+	 * Selects the histogram for byte and short intensity images, sized to the full range of their values.
+	 * Must be called after reset(), before any voxels are added.
+	 */
+	private void setIntensityImage(ImageInt intensityImg) {
+		this.intensityImg = intensityImg;
+		int bins = 0;
+		if(intensityImg instanceof ImageByte) {
+			bins = 256;
+		}
+		else if(intensityImg instanceof ImageShort) {
+			bins = 65536;
+		}
+		useHistogram = bins > 0;
+		if(histogram.length < bins) {
+			histogram = new int[bins];
+		}
+	}
+
+	/**
+	 * Returns the intensity of the current object at slice z, index xy.
+	 */
+	private int intensity(int z, int xy) {
+		return value(intensityImg, z, xy);
+	}
+
+	/**
+	 * Returns the value of img at slice z, index xy - read directly from the pixel arrays of
+	 * byte and short images.
+	 */
+	private static int value(ImageInt img, int z, int xy) {
+		if(img instanceof ImageByte) {
+			return ((ImageByte)img).pixels[z][xy] & 0xff;
+		}
+		else if(img instanceof ImageShort) {
+			return ((ImageShort)img).pixels[z][xy] & 0xffff;
+		}
+		return img.getPixelInt(xy, z);
+	}
+
+
+	public int getVolume() {
+		return volume;
+	}
+
+	/**
+	 * Returns the number of surface voxels - voxels with at least one 6-connected neighbour outside
+	 * the object.
+	 * @return
+	 */
+	public int getSurface() {
+		return surface;
+	}
+
+	/**
+	 * Returns the x coordinates of the surface voxels - only the first getSurface() entries are valid.
+	 * The array is re-used for the next object.
+	 * @return
+	 */
+	public int[] getSurfaceX() {
+		return surfaceX;
+	}
+
+	public int[] getSurfaceY() {
+		return surfaceY;
+	}
+
+	public int[] getSurfaceZ() {
+		return surfaceZ;
+	}
+
+	/**
+	 * Returns the bounding box as {xMin, xMax, yMin, yMax, zMin, zMax} - the same order as
+	 * Object3DVoxels.getBoundingBox().
+	 * @return
+	 */
+	public int[] getBoundingBox() {
+		return new int[] { xMin, xMax, yMin, yMax, zMin, zMax };
+	}
+
+	public double getCentreX() {
+		return x0 + sx / volume;
+	}
+
+	public double getCentreY() {
+		return y0 + sy / volume;
+	}
+
+	public double getCentreZ() {
+		return z0 + sz / volume;
+	}
+
+	/**
+	 * Returns the second-order central moments of the voxel coordinates, divided by the volume:
+	 * {Sxx, Syy, Szz, Sxy, Sxz, Syz}.
+	 * @return
+	 */
+	public double[] getSecondMoments() {
+		double mx = sx / volume;
+		double my = sy / volume;
+		double mz = sz / volume;
+		return new double[] {
+				sxx / volume - mx * mx,
+				syy / volume - my * my,
+				szz / volume - mz * mz,
+				sxy / volume - mx * my,
+				sxz / volume - mx * mz,
+				syz / volume - my * mz
+		};
+	}
+
+	/**
+	 * Returns the eigenvalues of the covariance matrix of getSecondMoments(), in ascending order - the
+	 * variances of the voxel coordinates along the principal axes of the object.  The matrix is symmetric, so
+	 * the eigenvalues are real, and are found directly from its characteristic cubic.
+	 * @return
+	 */
+	public double[] getSecondMomentEigenvalues() {
+		double[] m = getSecondMoments();
+		double xx = m[0], yy = m[1], zz = m[2], xy = m[3], xz = m[4], yz = m[5];
+		double offDiagonal = xy * xy + xz * xz + yz * yz;
+		double e0, e1, e2;
+		// an axis with no covariance with the others - such as z of an object in one slice - is an eigenvector,
+			// and the other two eigenvalues are those of the 2 x 2 matrix left:
+		if(xz == 0.0 && yz == 0.0) {
+			e0 = zz;
+			e1 = eigenvalue2x2(xx, yy, xy, -1);
+			e2 = eigenvalue2x2(xx, yy, xy, 1);
+		}
+		else if(xy == 0.0 && yz == 0.0) {
+			e0 = yy;
+			e1 = eigenvalue2x2(xx, zz, xz, -1);
+			e2 = eigenvalue2x2(xx, zz, xz, 1);
+		}
+		else if(xy == 0.0 && xz == 0.0) {
+			e0 = xx;
+			e1 = eigenvalue2x2(yy, zz, yz, -1);
+			e2 = eigenvalue2x2(yy, zz, yz, 1);
+		}
+		else {
+			// eigenvalues of the symmetric matrix at the angles of the trigonometric solution of its cubic:
+			double q = (xx + yy + zz) / 3.0;
+			double p = Math.sqrt( ( (xx-q) * (xx-q) + (yy-q) * (yy-q) + (zz-q) * (zz-q) + 2.0 * offDiagonal ) / 6.0 );
+			double bxx = (xx - q) / p, byy = (yy - q) / p, bzz = (zz - q) / p;
+			double bxy = xy / p, bxz = xz / p, byz = yz / p;
+			double r = ( bxx * (byy * bzz - byz * byz) - bxy * (bxy * bzz - byz * bxz) 
+							+ bxz * (bxy * byz - byy * bxz) ) / 2.0;
+			double phi = Math.acos( Math.max( -1.0, Math.min(1.0, r) ) ) / 3.0;
+			e2 = q + 2.0 * p * Math.cos(phi);
+			e0 = q + 2.0 * p * Math.cos(phi + 2.0 * Math.PI / 3.0);
+			e1 = 3.0 * q - e0 - e2;
+		}
+		// rounding can leave the eigenvalue of a flat object just below 0:
+		double[] e = new double[] { Math.max(e0, 0.0), Math.max(e1, 0.0), Math.max(e2, 0.0) };
+		Arrays.sort(e);
+		return e;
+	}
+
+	/**
+	 * Returns the smaller (sign -1) or larger (sign 1) eigenvalue of the symmetric matrix {{a, c}, {c, b}}.
+	 */
+	private static double eigenvalue2x2(double a, double b, double c, int sign) {
+		double h = (a - b) / 2.0;
+		return (a + b) / 2.0 + sign * Math.sqrt(h * h + c * c);
+	}
+
+	/**
+	 * Returns the main elongation - the square root of the ratio of the largest to the middle eigenvalue of
+	 * the second moments, as mcib3d Object3D.getMainElongation().
+	 * @return
+	 */
+	public double getMainElongation() {
+		double[] e = getSecondMomentEigenvalues();
+		return Math.sqrt(e[2] / e[1]);
+	}
+
+	/**
+	 * Returns the median elongation - the square root of the ratio of the middle to the smallest eigenvalue of
+	 * the second moments, as mcib3d Object3D.getMedianElongation().
+	 * @return
+	 */
+	public double getMedianElongation() {
+		double[] e = getSecondMomentEigenvalues();
+		return Math.sqrt(e[1] / e[0]);
+	}
+
+	/**
+	 * Returns the volume of the ellipsoid with the second moments of the object - a solid ellipsoid of radius
+	 * R on an axis has variance R^2 / 5 along it, so its radii are the square roots of 5 x the eigenvalues.
+	 * As mcib3d Object3D.getVolumeEllipseUnit(), in voxels.
+	 * @return
+	 */
+	public double getEllipsoidVolume() {
+		double[] e = getSecondMomentEigenvalues();
+		return 4.0 / 3.0 * Math.PI * Math.sqrt(5.0 * e[0]) * Math.sqrt(5.0 * e[1]) * Math.sqrt(5.0 * e[2]);
+	}
+
+	/**
+	 * Returns the ratio of object volume to the volume of the ellipsoid with its second moments, as mcib3d
+	 * Object3D.getRatioEllipsoid().
+	 * @return
+	 */
+	public double getVolToVolEllipsoid() {
+		return (double)volume / getEllipsoidVolume();
+	}
+
+	/**
+	 * Returns the ratio of object volume to the volume of its bounding box.
+	 * @return
+	 */
+	public double getVolToVolBox() {
+		return (double)volume / ( (double)(xMax - xMin + 1) * (yMax - yMin + 1) * (zMax - zMin + 1) );
+	}
+
+	public double getIntensitySum() {
+		return intensitySum;
+	}
+
+	public double getIntensitySumSq() {
+		return intensitySumSq;
+	}
+
+	public double getMeanIntensity() {
+		return intensitySum / volume;
+	}
+
+	/**
+	 * Returns the sample standard deviation of the intensity (n-1 denominator).
+	 * @return
+	 */
+	public double getSdIntensity() {
+		double mean = intensitySum / volume;
+		double var = (intensitySumSq - volume * mean * mean) / (volume - 1);
+		return Math.sqrt( Math.max(var, 0.0) );
+	}
+
+	/**
+	 * Returns the median intensity - the mean of the two middle values when the volume is even.
+	 * @return
+	 */
+	public double getMedianIntensity() {
+		if(volume == 0) {
+			return Double.NaN;
+		}
+		int rank = (volume - 1) / 2;
+		if(volume % 2 == 1) {
+			return valueAtRank(rank);
+		}
+		return ( valueAtRank(rank) + valueAtRank(rank + 1) ) / 2.0;
+	}
+
+	/**
+	 * Returns the intensity value at the given rank (0 is the minimum) - read from the histogram, or from
+	 * the sorted values.
+	 */
+	private int valueAtRank(int rank) {
+		if(useHistogram) {
+			int cumulative = 0;
+			for(int v=(int)intensityMin; v<(int)intensityMax; v++) {
+				cumulative += histogram[v];
+				if(cumulative > rank) {
+					return v;
+				}
+			}
+			return (int)intensityMax;
+		}
+		if(valuesSorted == false) {
+			Arrays.sort(values, 0, volume);
+			valuesSorted = true;
+		}
+		return values[rank];
+	}
+
+	public double getMinIntensity() {
+		return intensityMin;
+	}
+
+	public double getMaxIntensity() {
+		return intensityMax;
+	}
+
+}
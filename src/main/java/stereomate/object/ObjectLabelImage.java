@@ -0,0 +1,170 @@
+package stereomate.object;
+
+import java.util.Arrays;
+
+import mcib3d.image3d.ImageInt;
+
+/**
+ * A 32-bit label image of the objects in a thresholded image, where each object's voxels hold its label
+ * and each label maps to the object's objNo - its 1-based row in the object dataset.
+ * <p>
+ * The object identity flags (see ObjectIdentifier) are kept in a side array indexed by label, rather than
+ * only encoded in the 8 or 16 bit pixel values of the thresholded image.  The thresholded image still
+ * displays each object's flag, but objects are identified by their label - so finding the objNo or flag of
+ * the object at any voxel is an O(1) array read, and the number of objects is not limited by the bit depth
+ * of the thresholded image.
+ * <p>
+ * The labels are held in the int[][] store of an ObjectLabels, which is shared, not copied.  By default
+ * the objNo of each label is label + objNoOffset - the numbering given by ImageHandler when it assesses
+ * labelled objects.  Where objects were numbered elsewhere (for example, loaded from an ARFF file) the
+ * objNo of each label can be set from its FIRST VOXEL with setObjNo().
+ *
+ * @author stevenwest
+ *
+ */
+public class ObjectLabelImage {
+
+	/**
+	 * The labelled objects - labels 1 to getObjectCount(), 0 is background.
+	 */
+	ObjectLabels objectLabels;
+
+	/**
+	 * objNo of each label - objNo[0] is 0 for background.
+	 */
+	int[] objNo;
+
+	/**
+	 * Object identity flag of each label - the pixel value the object holds in the thresholded image.
+	 */
+	int[] flags;
+
+
+	/**
+	 * Constructs an ObjectLabelImage from objectLabels, where the objNo of each label is label + objNoOffset,
+	 * and every object has the identity flag initialFlag.
+	 * @param objectLabels
+	 * @param objNoOffset
+	 * @param initialFlag
+	 */
+	public ObjectLabelImage(ObjectLabels objectLabels, int objNoOffset, int initialFlag) {
+		this.objectLabels = objectLabels;
+		int count = objectLabels.getLabelCount();
+		objNo = new int[count + 1];
+		for(int label=1; label<=count; label++) {
+			objNo[label] = label + objNoOffset;
+		}
+		flags = new int[count + 1];
+		Arrays.fill(flags, 1, count + 1, initialFlag);
+	}
+
+	public int getObjectCount() {
+		return objectLabels.getLabelCount();
+	}
+
+	public ObjectLabels getObjectLabels() {
+		return objectLabels;
+	}
+
+	/**
+	 * Returns the label of the object at voxel x,y,z - 0 if this voxel is background.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public int getLabel(int x, int y, int z) {
+		return objectLabels.getLabel(x, y, z);
+	}
+
+	/**
+	 * Returns the objNo of the object at voxel x,y,z - 0 if this voxel is background.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public int getObjNo(int x, int y, int z) {
+		return objNo[ objectLabels.getLabel(x, y, z) ];
+	}
+
+	/**
+	 * Returns the objNo of the object with the given label.
+	 * @param label
+	 * @return
+	 */
+	public int getObjNo(int label) {
+		return objNo[label];
+	}
+
+	/**
+	 * Sets the objNo of the object whose FIRST VOXEL is x1,y1,z1 - the object numbering held in an object
+	 * dataset.  Returns false if x1,y1,z1 is not the first voxel of an object.
+	 * @param x1
+	 * @param y1
+	 * @param z1
+	 * @param objectNumber
+	 * @return
+	 */
+	public boolean setObjNo(int x1, int y1, int z1, int objectNumber) {
+		int label = objectLabels.getLabel(x1, y1, z1);
+		if(label == 0 || objectLabels.getFirstVoxelIndex(label) !=
+				(z1 * objectLabels.sizeXY + y1 * objectLabels.sizeX + x1) ) {
+			return false;
+		}
+		objNo[label] = objectNumber;
+		return true;
+	}
+
+	/**
+	 * Returns the identity flag of the object at voxel x,y,z - 0 if this voxel is background.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public int getFlag(int x, int y, int z) {
+		return flags[ objectLabels.getLabel(x, y, z) ];
+	}
+
+	/**
+	 * Returns the identity flag of the object with the given label.
+	 * @param label
+	 * @return
+	 */
+	public int getFlag(int label) {
+		return flags[label];
+	}
+
+	/**
+	 * Sets the identity flag of the object with the given label, without changing any image.
+	 * @param label
+	 * @param flag
+	 */
+	public void setFlag(int label, int flag) {
+		flags[label] = flag;
+	}
+
+	/**
+	 * Sets the identity flag of the object with the given label, and sets its voxels in img to the flag.
+	 * @param img
+	 * @param label
+	 * @param flag
+	 */
+	public void setFlag(ImageInt img, int label, int flag) {
+		flags[label] = flag;
+		objectLabels.setObjectValue(img, label, flag);
+	}
+
+	/**
+	 * Sets the voxels of every object in img to its identity flag - img must have the same dimensions
+	 * as the labelled image.
+	 * @param img
+	 */
+	public void renderFlags(ImageInt img) {
+		for(int label=1; label<=objectLabels.getLabelCount(); label++) {
+			objectLabels.setObjectValue(img, label, flags[label]);
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+package stereomate.object;
+
+import java.util.LinkedList;
+
+import mcib3d.geom.Voxel3D;
+import mcib3d.image3d.ImageByte;
+import mcib3d.image3d.ImageInt;
+import mcib3d.image3d.ImageShort;
+
+/**
+ * The result of a ConnectedComponentLabeller run:  a label image of the objects in a thresholded image,
+ * plus the voxels of every object.
+ * <p>
+ * Labels run from 1 to getLabelCount(), and 0 marks background.  Labels are numbered in the same order
+ * that the per-seed object search in ImageHandler discovers objects (x outer, then y, then z), so
+ * label n is the object which would previously have been given objNo n.
+ * <p>
+ * The voxels of every object are stored as packed indexes (z * sizeX * sizeY + y * sizeX + x) in one
+ * int array, with the voxels of each label held contiguously in ascending index order:  voxelStart[label]
+ * to voxelStart[label+1] - 1.  This allows any object to be re-coloured or measured directly, without
+ * a flood fill.
+ *
+ * @author stevenwest
+ *
+ */
+public class ObjectLabels {
+
+	/**
+	 * Image dimensions.
+	 */
+	int sizeX, sizeY, sizeZ, sizeXY;
+
+	/**
+	 * The label of each voxel - labels[z][y * sizeX + x] - 0 is background.
+	 */
+	int[][] labels;
+
+	/**
+	 * Number of labels (objects) in the image.
+	 */
+	int labelCount;
+
+	/**
+	 * The packed index of the FIRST VOXEL (lowest z, then y, then x) of each label.
+	 */
+	int[] firstVoxel;
+
+	/**
+	 * Start of each label's voxels in voxels - length labelCount + 2, so voxelStart[label+1] is the end
+	 * of label's voxels.
+	 */
+	int[] voxelStart;
+
+	/**
+	 * Packed voxel indexes of all objects, grouped by label.
+	 */
+	int[] voxels;
+
+
+	ObjectLabels(int sizeX, int sizeY, int sizeZ, int[][] labels, int labelCount,
+					int[] firstVoxel, int[] voxelStart, int[] voxels) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+		this.sizeXY = sizeX * sizeY;
+		this.labels = labels;
+		this.labelCount = labelCount;
+		this.firstVoxel = firstVoxel;
+		this.voxelStart = voxelStart;
+		this.voxels = voxels;
+	}
+
+	/**
+	 * Returns the label at voxel x,y,z - 0 if this voxel is background.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public int getLabel(int x, int y, int z) {
+		return labels[z][y * sizeX + x];
+	}
+
+	public int getLabelCount() {
+		return labelCount;
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getSizeZ() {
+		return sizeZ;
+	}
+
+	/**
+	 * Returns the number of voxels in the object with the given label.
+	 * @param label
+	 * @return
+	 */
+	public int getVoxelCount(int label) {
+		return voxelStart[label+1] - voxelStart[label];
+	}
+
+	/**
+	 * Returns the packed index of voxel i of the object with the given label.
+	 * @param label
+	 * @param i
+	 * @return
+	 */
+	public int getVoxelIndex(int label, int i) {
+		return voxels[ voxelStart[label] + i ];
+	}
+
+	/**
+	 * Returns the packed index of the FIRST VOXEL of the object with the given label - the voxel with the
+	 * lowest z, then lowest y, then lowest x.
+	 * @param label
+	 * @return
+	 */
+	public int getFirstVoxelIndex(int label) {
+		return firstVoxel[label];
+	}
+
+	public int getX(int index) {
+		return (index % sizeXY) % sizeX;
+	}
+
+	public int getY(int index) {
+		return (index % sizeXY) / sizeX;
+	}
+
+	public int getZ(int index) {
+		return index / sizeXY;
+	}
+
+	/**
+	 * Returns the voxels of the object with the given label as a list of Voxel3D, which can be used to
+	 * construct an mcib3d Object3DVoxels.
+	 * @param label
+	 * @return
+	 */
+	public LinkedList<Voxel3D> getVoxels(int label) {
+		LinkedList<Voxel3D> voxelList = new LinkedList<Voxel3D>();
+		int index;
+		for(int a=voxelStart[label]; a<voxelStart[label+1]; a++) {
+			index = voxels[a];
+			voxelList.add(new Voxel3D(getX(index), getY(index), getZ(index), (float)(255) ) );
+		}
+		return voxelList;
+	}
+
+	/**
+	 * Sets every voxel of the object with the given label to value in img.  img must have the same
+	 * dimensions as the image which was labelled.
+	 * @param img
+	 * @param label
+	 * @param value
+	 */
+	public void setObjectValue(ImageInt img, int label, int value) {
+		int index;
+		if(img instanceof ImageByte) {
+			byte[][] pixels = ((ImageByte)img).pixels;
+			byte val = (byte)value;
+			for(int a=voxelStart[label]; a<voxelStart[label+1]; a++) {
+				index = voxels[a];
+				pixels[index / sizeXY][index % sizeXY] = val;
+			}
+		}
+		else if(img instanceof ImageShort) {
+			short[][] pixels = ((ImageShort)img).pixels;
+			short val = (short)value;
+			for(int a=voxelStart[label]; a<voxelStart[label+1]; a++) {
+				index = voxels[a];
+				pixels[index / sizeXY][index % sizeXY] = val;
+			}
+		}
+		else {
+			for(int a=voxelStart[label]; a<voxelStart[label+1]; a++) {
+				index = voxels[a];
+				img.setPixel(getX(index), getY(index), getZ(index), value);
+			}
+		}
+	}
+
+}
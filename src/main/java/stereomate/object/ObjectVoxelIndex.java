@@ -0,0 +1,364 @@
+package stereomate.object;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import mcib3d.image3d.ImageByte;
+import mcib3d.image3d.ImageInt;
+import mcib3d.image3d.ImageShort;
+
+/**
+ * An index of the voxels of every assessed object, so an object can be re-coloured by writing directly to
+ * its voxels - in O(object voxels) - rather than flood filling it again from its FIRST VOXEL.
+ * <p>
+ * The voxels of each object are held as runs of consecutive packed indexes (z * sizeX * sizeY + y * sizeX
+ * + x) within one slice:  each run is a pair of ints, its start index and length, so a compact object is
+ * held in a few ints per row rather than one per voxel.  The runs may be held in a direct buffer (offHeap),
+ * so the index of a large image does not occupy the JVM heap.
+ * <p>
+ * Objects are held in the order they are added, at positions 0 to getObjectCount() - 1, and can be found by
+ * their objNo or their FIRST VOXEL.
+ *
+ * @author stevenwest
+ *
+ */
+public class ObjectVoxelIndex {
+
+	/**
+	 * Image dimensions.
+	 */
+	int sizeX, sizeY, sizeZ, sizeXY;
+
+	boolean offHeap;
+
+	/**
+	 * Start index and length of each run, one pair of ints per run, grouped by object.
+	 */
+	IntBuffer runs;
+	int runCount;
+
+	/**
+	 * objNo, packed index of the FIRST VOXEL, first run and voxel count of each object - runStart has
+	 * objectCount + 1 entries, so runStart[pos+1] is the end of the runs of the object at pos.
+	 */
+	int[] objNo, firstVoxel, runStart, voxelCount;
+	int objectCount;
+
+	/**
+	 * objNo and FIRST VOXEL of each object in the high int, and its position in the low int - sorted on
+	 * first use after an object is added, to find objects by binary search.
+	 */
+	long[] objNoKeys, firstVoxelKeys;
+
+
+	/**
+	 * Constructs an empty index for an image of sizeX * sizeY * sizeZ voxels.  If offHeap is true, the runs
+	 * are held in a direct buffer.
+	 * @param sizeX
+	 * @param sizeY
+	 * @param sizeZ
+	 * @param offHeap
+	 */
+	public ObjectVoxelIndex(int sizeX, int sizeY, int sizeZ, boolean offHeap) {
+		FloodFill3D.checkPackedSize(sizeX, sizeY, sizeZ);
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+		this.sizeXY = sizeX * sizeY;
+		this.offHeap = offHeap;
+
+		runs = allocateRuns(1024);
+		runCount = 0;
+
+		objNo = new int[64];
+		firstVoxel = new int[64];
+		voxelCount = new int[64];
+		runStart = new int[65];
+		objectCount = 0;
+	}
+
+	/**
+	 * Constructs the index of every labelled object in objectLabels, where label n is objNo n + objNoOffset -
+	 * the numbering given by ImageHandler when it assesses labelled objects.
+	 * @param objectLabels
+	 * @param objNoOffset
+	 * @param offHeap
+	 */
+	public ObjectVoxelIndex(ObjectLabels objectLabels, int objNoOffset, boolean offHeap) {
+		this(objectLabels.getSizeX(), objectLabels.getSizeY(), objectLabels.getSizeZ(), offHeap);
+		for(int label=1; label<=objectLabels.getLabelCount(); label++) {
+			add(label + objNoOffset, objectLabels, label);
+		}
+	}
+
+	/**
+	 * Adds the object with the given label in objectLabels as objNo.  The voxels of each label are held in
+	 * ascending index order, so are read directly into runs.
+	 * @param objNo
+	 * @param objectLabels
+	 * @param label
+	 */
+	public void add(int objNo, ObjectLabels objectLabels, int label) {
+		int from = objectLabels.voxelStart[label];
+		int to = objectLabels.voxelStart[label+1];
+		addObject(objNo, objectLabels.getFirstVoxelIndex(label), to - from);
+		addRuns(objectLabels.voxels, from, to);
+		runStart[objectCount] = runCount;
+	}
+
+	/**
+	 * Adds the object filled in the last fill of floodFill as objNo.  The filled voxels are sorted into
+	 * ascending index order to be read into runs.
+	 * @param objNo
+	 * @param floodFill
+	 */
+	public void add(int objNo, FloodFill3D floodFill) {
+		int count = floodFill.getFilledCount();
+		int[] indexes = new int[count];
+		for(int a=0; a<count; a++) {
+			indexes[a] = floodFill.getFilledIndex(a);
+		}
+		Arrays.sort(indexes);
+		addObject(objNo, floodFill.getFirstVoxelIndex(), count);
+		addRuns(indexes, 0, count);
+		runStart[objectCount] = runCount;
+	}
+
+	/**
+	 * Adds the entry of a new object at position objectCount, with its runs to start at runCount.
+	 */
+	private void addObject(int objNo, int firstVoxel, int voxelCount) {
+		if(objectCount == this.objNo.length) {
+			this.objNo = Arrays.copyOf(this.objNo, objectCount * 2);
+			this.firstVoxel = Arrays.copyOf(this.firstVoxel, objectCount * 2);
+			this.voxelCount = Arrays.copyOf(this.voxelCount, objectCount * 2);
+			runStart = Arrays.copyOf(runStart, objectCount * 2 + 1);
+		}
+		this.objNo[objectCount] = objNo;
+		this.firstVoxel[objectCount] = firstVoxel;
+		this.voxelCount[objectCount] = voxelCount;
+		runStart[objectCount] = runCount;
+		objectCount++;
+		// the keys are sorted again on next use:
+		objNoKeys = null;
+		firstVoxelKeys = null;
+	}
+
+	/**
+	 * Adds the runs of the ascending packed indexes from to to - 1 of indexes - a run ends where the next
+	 * index is not consecutive, or is in the next slice.
+	 */
+	private void addRuns(int[] indexes, int from, int to) {
+		int a = from, start, length;
+		while(a < to) {
+			start = indexes[a];
+			length = 1;
+			a++;
+			while(a < to && indexes[a] == start + length && (start + length) % sizeXY != 0) {
+				length++;
+				a++;
+			}
+			addRun(start, length);
+		}
+	}
+
+	private void addRun(int start, int length) {
+		if( (runCount + 1L) * 2 > runs.capacity() ) {
+			// double the runs held, up to the most a buffer can hold:
+			IntBuffer grown = allocateRuns( Math.max( Math.min(runCount * 2L, maxRuns() ), runCount + 1L ) );
+			runs.clear();
+			grown.put(runs);
+			runs = grown;
+		}
+		runs.put(runCount * 2, start);
+		runs.put(runCount * 2 + 1, length);
+		runCount++;
+	}
+
+	/**
+	 * Returns a buffer of capacity runs - on the heap, or direct if offHeap.  Throws an
+	 * IllegalArgumentException if capacity is more than maxRuns().
+	 */
+	private IntBuffer allocateRuns(long capacity) {
+		if(capacity > maxRuns() ) {
+			throw new IllegalArgumentException("ObjectVoxelIndex: "+capacity+" runs are too many - at most "
+												+maxRuns()+" runs can be held"+(offHeap ? " off heap" : "") );
+		}
+		if(offHeap) {
+			return ByteBuffer.allocateDirect( (int)(capacity * 2 * 4) ).asIntBuffer();
+		}
+		return IntBuffer.allocate( (int)(capacity * 2) );
+	}
+
+	/**
+	 * Returns the most runs a buffer can hold - a direct buffer is indexed by byte, a heap buffer by int.
+	 */
+	private long maxRuns() {
+		return offHeap ? Integer.MAX_VALUE / (2 * 4) : Integer.MAX_VALUE / 2;
+	}
+
+	public int getObjectCount() {
+		return objectCount;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Returns the position of the object with objNo, or -1 if it is not in the index.
+	 * @param objNo
+	 * @return
+	 */
+	public int findObjNo(int objNo) {
+		if(objNoKeys == null) {
+			objNoKeys = sortedKeys(this.objNo);
+		}
+		return find(objNoKeys, objNo);
+	}
+
+	/**
+	 * Returns the position of the object whose FIRST VOXEL has the packed index firstVoxel, or -1 if no
+	 * object in the index has this first voxel.
+	 * @param firstVoxel
+	 * @return
+	 */
+	public int findFirstVoxel(int firstVoxel) {
+		if(firstVoxelKeys == null) {
+			firstVoxelKeys = sortedKeys(this.firstVoxel);
+		}
+		return find(firstVoxelKeys, firstVoxel);
+	}
+
+	/**
+	 * Returns true if voxel x,y,z is a voxel of the object at position pos - found by binary search of its
+	 * runs, which are held in ascending index order.
+	 * @param pos
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public boolean contains(int pos, int x, int y, int z) {
+		int index = z * sizeXY + y * sizeX + x;
+		int lo = runStart[pos], hi = runStart[pos+1] - 1, mid, start;
+		while(lo <= hi) {
+			mid = (lo + hi) >>> 1;
+			start = runs.get(mid * 2);
+			if(index < start) {
+				hi = mid - 1;
+			}
+			else if(index >= start + runs.get(mid * 2 + 1) ) {
+				lo = mid + 1;
+			}
+			else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns each value of values with its position, sorted by value.
+	 */
+	private long[] sortedKeys(int[] values) {
+		long[] keys = new long[objectCount];
+		for(int pos=0; pos<objectCount; pos++) {
+			keys[pos] = ( (long)values[pos] << 32 ) | pos;
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	/**
+	 * Returns the position held with value in the sorted keys, or -1.
+	 */
+	private static int find(long[] keys, int value) {
+		int pos = Arrays.binarySearch(keys, (long)value << 32);
+		if(pos < 0) {
+			pos = -pos - 1;
+		}
+		if(pos < keys.length && (int)(keys[pos] >> 32) == value) {
+			return (int)keys[pos];
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the objNo of the object at position pos.
+	 * @param pos
+	 * @return
+	 */
+	public int getObjNo(int pos) {
+		return objNo[pos];
+	}
+
+	/**
+	 * Returns the packed index of the FIRST VOXEL of the object at position pos.
+	 * @param pos
+	 * @return
+	 */
+	public int getFirstVoxelIndex(int pos) {
+		return firstVoxel[pos];
+	}
+
+	/**
+	 * Returns the number of voxels of the object at position pos.
+	 * @param pos
+	 * @return
+	 */
+	public int getVoxelCount(int pos) {
+		return voxelCount[pos];
+	}
+
+	/**
+	 * Returns the number of runs held for the object at position pos.
+	 * @param pos
+	 * @return
+	 */
+	public int getRunCount(int pos) {
+		return runStart[pos+1] - runStart[pos];
+	}
+
+	public int getX(int index) {
+		return (index % sizeXY) % sizeX;
+	}
+
+	public int getY(int index) {
+		return (index % sizeXY) / sizeX;
+	}
+
+	public int getZ(int index) {
+		return index / sizeXY;
+	}
+
+	/**
+	 * Sets every voxel of the object at position pos to value in img.  img must have the dimensions of this
+	 * index.
+	 * @param img
+	 * @param pos
+	 * @param value
+	 */
+	public void setObjectValue(ImageInt img, int pos, int value) {
+		int start, length, z, xy;
+		for(int r=runStart[pos]; r<runStart[pos+1]; r++) {
+			start = runs.get(r * 2);
+			length = runs.get(r * 2 + 1);
+			z = start / sizeXY;
+			xy = start - z * sizeXY;
+			if(img instanceof ImageByte) {
+				Arrays.fill( ((ImageByte)img).pixels[z], xy, xy + length, (byte)value );
+			}
+			else if(img instanceof ImageShort) {
+				Arrays.fill( ((ImageShort)img).pixels[z], xy, xy + length, (short)value );
+			}
+			else {
+				for(int a=0; a<length; a++) {
+					img.setPixel(xy + a, z, value);
+				}
+			}
+		}
+	}
+
+}
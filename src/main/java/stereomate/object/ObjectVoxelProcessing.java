@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import mcib3d.geom.IntCoord3D;
 import mcib3d.geom.Object3DVoxels;
@@ -17,7 +19,10 @@ import mcib3d.image3d.ImageByte;
 import mcib3d.image3d.ImageHandler;
 import mcib3d.image3d.ImageInt;
 import mcib3d.image3d.ImageShort;
+import weka.core.Utils;
 import stereomate.data.ObjectDataContainer;
+import stereomate.data.ObjectFeatureSet;
+import stereomate.roi.RoiView;
 import stereomate.settings.OM_ProcedureSettings;
 
 /**
@@ -55,6 +60,11 @@ import stereomate.settings.OM_ProcedureSettings;
  */
 public class ObjectVoxelProcessing {
 	
+	/**
+	 * newPixValue passed to the labelled objAssessment3d() methods to leave the object voxels unchanged in img.
+	 */
+	public static final int KEEP_PIX_VALUE = -1;
+	
 	ArrayList<Short> oldValsProcessed;
 	
 	int thresholdVal = 255;
@@ -66,12 +76,76 @@ public class ObjectVoxelProcessing {
 	//int i = (outRoiValByte & 0xff);  //correct conversion of byte to int.
 	
 	String objConnectivity;
+	
+	/**
+	 * The objConnectivity neighbour-offset table - resolved once at construction, and iterated by the
+	 * floodFill engine.
+	 */
+	NeighbourOffsets neighbourOffsets;
+	
+	/**
+	 * Flood fill engines used by the flood methods in this class:  floodFill uses the objConnectivity
+	 * passed to the constructor, floodFill6 and floodFill26 are used by the 6- and 26-connected variants.
+	 */
+	FloodFill3D floodFill, floodFill6, floodFill26;
+	
+	/**
+	 * Flood fill engines of the static flood and reconstruct methods - one per thread, so their queue and
+	 * filled arrays are re-used across calls rather than allocated on each.
+	 */
+	static final ThreadLocal<FloodFill3D> staticFloodFill6 = new ThreadLocal<FloodFill3D>() {
+		@Override
+		protected FloodFill3D initialValue() {
+			return new FloodFill3D(FloodFill3D.CONNECTED6);
+		}
+	};
+	static final ThreadLocal<FloodFill3D> staticFloodFill26 = new ThreadLocal<FloodFill3D>() {
+		@Override
+		protected FloodFill3D initialValue() {
+			return new FloodFill3D(FloodFill3D.CONNECTED26);
+		}
+	};
+	
+	/**
+	 * Accumulates the volume, bounding box, centroid, surface and intensity measures of each assessed
+	 * object directly from the filled or labelled voxel indexes.
+	 */
+	ObjectFeatureAccumulator accumulator;
+	
+	/**
+	 * The measures computed when objects are assessed - measures not in this set are returned as missing
+	 * values.  Contains all measures by default.
+	 */
+	ObjectFeatureSet featureSet;
 
 	
 	public ObjectVoxelProcessing(String objConnectivity) {
 		oldValsProcessed = new ArrayList<Short>();
 		this.objConnectivity = objConnectivity;
 		
+		neighbourOffsets = new NeighbourOffsets( FloodFill3D.resolveConnectivity(objConnectivity) );
+		
+		floodFill = new FloodFill3D(neighbourOffsets);
+		floodFill6 = new FloodFill3D(FloodFill3D.CONNECTED6);
+		floodFill26 = new FloodFill3D(FloodFill3D.CONNECTED26);
+		
+		accumulator = new ObjectFeatureAccumulator();
+		
+		featureSet = new ObjectFeatureSet();
+		
+	}
+	
+	/**
+	 * Set the measures computed when objects are assessed.  Measures not in featureSet are skipped, and
+	 * returned as missing values.
+	 * @param featureSet
+	 */
+	public void setFeatureSet(ObjectFeatureSet featureSet) {
+		this.featureSet = featureSet;
+	}
+	
+	public ObjectFeatureSet getFeatureSet() {
+		return featureSet;
 	}
 	
 	
@@ -100,102 +174,24 @@ public class ObjectVoxelProcessing {
 	
 	
 	private int[] borderObjPixCount3D6(ImageShort img, IntCoord3D seed, Roi borderRoi, int newVal) {
-			int[] pixCounts = new int[2];
-	        short[][] pixels = img.pixels;
-	        int sizeX = img.sizeX;
-	        int sizeY = img.sizeY;
-	        int sizeZ = img.sizeZ;
-	        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-	        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-	        queue.add(seed);
-	        while (!queue.isEmpty()) {
-	            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-	            int xy = curCoord.x + curCoord.y * sizeX;
-	            
-	            if (pixels[curCoord.z][xy] == oldVal) {
-	            	
-	            	//check if pixel is inside the ROI:
-	            	if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-		            	pixCounts[0] = pixCounts[0] + 1;
-		            }
-		            else {
-		            	pixCounts[1] = pixCounts[1] + 1;
-		            }
-	            	
-	                pixels[curCoord.z][xy] = (short)newVal;
-	                if (curCoord.x > 0 && pixels[curCoord.z][xy - 1] == oldVal) {
-	                    queue.add(new IntCoord3D(curCoord.x - 1, curCoord.y, curCoord.z));
-	                }
-	                if (curCoord.x < (sizeX - 1) && pixels[curCoord.z][xy + 1] == oldVal) {
-	                    queue.add(new IntCoord3D(curCoord.x + 1, curCoord.y, curCoord.z));
-	                }
-	                if (curCoord.y > 0 && pixels[curCoord.z][xy - sizeX] == oldVal) {
-	                    queue.add(new IntCoord3D(curCoord.x, curCoord.y - 1, curCoord.z));
-	                }
-	                if (curCoord.y < (sizeY - 1) && pixels[curCoord.z][xy + sizeX] == oldVal) {
-	                    queue.add(new IntCoord3D(curCoord.x, curCoord.y + 1, curCoord.z));
-	                }
-	                if (curCoord.z > 0 && pixels[curCoord.z - 1][xy] == oldVal) {
-	                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z - 1));
-	                }
-	                if (curCoord.z < (sizeZ - 1) && pixels[curCoord.z + 1][xy] == oldVal) {
-	                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z + 1));
-	                }
-	            }
-	            else {
-	            	//IJ.showMessage("pixels[curCoord.z][xy] == oldVal - FLASE");
-	            }
-	        }
-	        
-	        return pixCounts;
-	    }
+		
+		//fill the object with newVal, 6-connected:
+		floodFill6.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)newVal);
+		
+		//count the filled pixels inside and outside the ROI:
+		return countRoiPixels(floodFill6, borderRoi, false);
+		
+	}
 	
 	
 	private int[] borderObjPixCount3DByte6(ImageByte img, IntCoord3D seed, Roi borderRoi, int newVal) {
-		int[] pixCounts = new int[2];
-        byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            
-            if (pixels[curCoord.z][xy] == oldVal) {
-            	
-            	if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-                	pixCounts[0] = pixCounts[0] + 1;
-                }
-                else {
-                	pixCounts[1] = pixCounts[1] + 1;
-                }
-            	
-                pixels[curCoord.z][xy] = (byte)newVal;
-                if (curCoord.x > 0 && pixels[curCoord.z][xy - 1] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x - 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.x < (sizeX - 1) && pixels[curCoord.z][xy + 1] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x + 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.y > 0 && pixels[curCoord.z][xy - sizeX] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y - 1, curCoord.z));
-                }
-                if (curCoord.y < (sizeY - 1) && pixels[curCoord.z][xy + sizeX] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y + 1, curCoord.z));
-                }
-                if (curCoord.z > 0 && pixels[curCoord.z - 1][xy] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z - 1));
-                }
-                if (curCoord.z < (sizeZ - 1) && pixels[curCoord.z + 1][xy] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z + 1));
-                }
-            }
-        }
-        
-        return pixCounts;
+		
+		//fill the object with newVal, 6-connected:
+		floodFill6.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)newVal);
+		
+		//count the filled pixels inside and outside the ROI:
+		return countRoiPixels(floodFill6, borderRoi, false);
+		
     }
 	
 	
@@ -223,10 +219,7 @@ public class ObjectVoxelProcessing {
 		
 		int[] pixCounts = new int[2];   
 		short[][] pixels = img.pixels;
-	    int sizeX = img.sizeX;
-	    int sizeY = img.sizeY;
-	    int sizeZ = img.sizeZ;
-	    short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
+	    short oldVal = pixels[seed.z][seed.x + seed.y * img.sizeX];
 	    
 
 	    //check oldVal has not been processed already:
@@ -237,86 +230,21 @@ public class ObjectVoxelProcessing {
 	    	}
 	    }
 	    
-	    ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-	    ArrayList<IntCoord3D> refill = new ArrayList<IntCoord3D>();
-	    
 	    if(!processedOldVal) {
-	   
-	    	queue.add(seed);
-	    
-	        
-	    while (!queue.isEmpty()) {
-	        IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-	        int xy = curCoord.x + curCoord.y * sizeX;
-	            
-	        if (pixels[curCoord.z][xy] == oldVal) {
-	            	
-	        	//add to refill to refill at end - if pix IN is LOWER than pix OUT:
-	        	refill.add(curCoord);
-	            	
-	        	if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-	 	        	pixCounts[0] = pixCounts[0] + 1;
-	 	        }
-	            else if( borderRoi.contains(curCoord.x-1, curCoord.y ) || borderRoi.contains(curCoord.x, curCoord.y-1 ) ) {
-	            	// this deals with a border case
-	            	pixCounts[0] = pixCounts[0] + 1;
-	            }
-	 	        else {
-	 	        	pixCounts[1] = pixCounts[1] + 1;
-	 	        }
-	            
-	        	//set the pixel to new val -> prevents this pixel being re-added to queue!
-	            pixels[curCoord.z][xy] = (short)newVal;
-	                
-	            //loop and look all pixels in 26-dimensions around current pixel:
-	                int curZ, curY, curX;
-	                for (int zz = -1; zz < 2; zz++) {
-	                    curZ = curCoord.z + zz;
-	                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-	                        for (int yy = -1; yy < 2; yy++) {
-	                            curY = curCoord.y + yy;
-	                            if (curY > 0 && curY < (sizeY - 1)) {
-	                                for (int xx = -1; xx < 2; xx++) {
-	                                    curX = curCoord.x + xx;
-	                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-	                                        if (pixels[curZ][curX + curY * sizeX] == oldVal) {
-	                                            queue.add(new IntCoord3D(curX, curY, curZ));
-	                                        }
-	                                    }
-	                                }
-	                            }
-	                        }
-	                    }
-	                }
-	            }
-	        } //end while loop
-	    
-	    
-	    //Can create a Voxel3D Obj. from refill -> which will include all voxels that were contained in
-	    //ArrayList<Voxel3D> vox3D;
-	    //for(int a=0; a<refill.size(); a++) {
-	    	//IntCoord3D curCoord = refill.get(a);
-	    	//vox3D.add( new Voxel3D(refill.get(a).x, refill.get(a).y, refill.get(a).z, oldVal) );
-	    //}
-
-	        
-	    //refill the pixels in refill with oldVal, 
-	        			//IF IN pix (pixCounts[0]) is Above or Equal to OUT pix (pixCounts[1]):
-	    			//Only refilling when IN ensures searching roi histogram allows all obj on border over 
-	    				//half IN to be assessed:
-	    //MUST REFILL ALL OBJS - as if on border, must be in one or the other!
-	    //if(pixCounts[0] >= pixCounts[1]) {
-	        	while( !refill.isEmpty() ) {
-	        		IntCoord3D curCoord = refill.remove(0); // FIXME last element?
-		            int xy = curCoord.x + curCoord.y * sizeX;
-		            pixels[curCoord.z][xy] = oldVal;
-	        	}
-	      //}
-	    
-	    //finally, add this value to oldValsProcessed:
-	    oldValsProcessed.add(oldVal);
-	        
-	 
+	    	
+	    	//fill the object with newVal -> prevents each pixel being re-added to queue:
+	    	floodFill26.fill(pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)newVal);
+	    	
+	    	//count the filled pixels inside the ROI (including the ROI border) and outside the ROI:
+	    	pixCounts = countRoiPixels(floodFill26, borderRoi, true);
+	    	
+	    	//refill the filled pixels with oldVal:
+	    	//MUST REFILL ALL OBJS - as if on border, must be in one or the other!
+	    	floodFill26.refill(pixels, oldVal);
+	    	
+	    	//finally, add this value to oldValsProcessed:
+	    	oldValsProcessed.add(oldVal);
+	    	
 	    }//end if !processedOldVal
 	        
 	    return pixCounts;
@@ -326,86 +254,20 @@ public class ObjectVoxelProcessing {
 	
 	
 	private int[] borderObjPixCount3DByte26(ImageByte img, IntCoord3D seed, Roi borderRoi, int newVal) {
-		int[] pixCounts = new int[2];
+		
         byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
         //short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        short oldVal = (short) ((byte)thresholdVal);
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        ArrayList<IntCoord3D> refill = new ArrayList<IntCoord3D>();
-        queue.add(seed);
+        byte oldVal = (byte)thresholdVal;
         
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            
-            //if pixel value of this coord equals old value:
-            if (pixels[curCoord.z][xy] == oldVal) {
-            	
-            	//add coord to refill to refill at end - if pix IN is LOWER than pix OUT:
-            	refill.add(curCoord);
-            	
-            	//add to pixCounts depending on whether this coord is in the roi:
-            	 if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-            		 //if in ROI, add to ref 0: IN
-                 	pixCounts[0] = pixCounts[0] + 1;
-                 }
-            	 else if( borderRoi.contains(curCoord.x-1, curCoord.y ) || borderRoi.contains(curCoord.x, curCoord.y-1 ) ) {
-            		 //if on border of ROI, add to ref 0: IN
-            		 pixCounts[0] = pixCounts[0] + 1;
-            	 }
-                 else {
-                	 //if away from border, add to ref 1: OUT
-                 	pixCounts[1] = pixCounts[1] + 1;
-                 }
-            	
-            	// IJ.showMessage("current Pix value: "+pixels[curCoord.z][xy]);
-            	// IJ.showMessage("new val int: "+newVal);
-            	// IJ.showMessage("new val byte: "+ ((byte)newVal) );
-                pixels[curCoord.z][xy] = (byte)newVal;
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > 0 && curY < (sizeY - 1)) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-                                        if (pixels[curZ][curX + curY * sizeX] == oldVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } //end while loop
+        //fill the object with newVal:
+        floodFill26.fill(pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, oldVal, (byte)newVal);
         
-        //refill the pixels in refill with oldVal, 
-        	//IF IN pix (pixCounts[0]) is below OUT pix (pixCounts[1]):
-        //Actually, refill no matter what (wont affect the pixCounts, and need to keep image filled with objects!)
-        if(pixCounts[0] < pixCounts[1]) {
-        	while( !refill.isEmpty() ) {
-        		IntCoord3D curCoord = refill.remove(0); // FIXME last element?
-	            int xy = curCoord.x + curCoord.y * sizeX;
-	            pixels[curCoord.z][xy] = (byte)outRoiVal;
-        	}
-        }
-        else {
-        	while( !refill.isEmpty() ) {
-        		IntCoord3D curCoord = refill.remove(0); // FIXME last element?
-	            int xy = curCoord.x + curCoord.y * sizeX;
-	            pixels[curCoord.z][xy] = (byte)outRoiVal;
-        	}
-        }
+        //count the filled pixels inside the ROI (including the ROI border) and outside the ROI:
+        int[] pixCounts = countRoiPixels(floodFill26, borderRoi, true);
+        
+        //refill the filled pixels with outRoiVal:
+        //Refill no matter what (wont affect the pixCounts, and need to keep image filled with objects!)
+        floodFill26.refill(pixels, (byte)outRoiVal);
         
         return pixCounts;
     }
@@ -445,101 +307,11 @@ public class ObjectVoxelProcessing {
 	private SelectedObject selectObj3DShort(ImageShort img, IntCoord3D seed, int newPixValue,
 			int newPixValueUnselected) {
 		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
-				
-		//int to store xy ref:
-		int xy = 0;
-		        
-		//local reference to the pixel values, and image sizes:
-		short[][] pixels = img.pixels;
-		int sizeX = img.sizeX;
-		int sizeY = img.sizeY;
-		int sizeZ = img.sizeZ;
-		        
-		//reference to the original voxel value of the obj -> for appropriate filtering:
-		short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-		        
-		//array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-		        
-		//Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		//LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		        
-		//First, add the initial seed to the queue:
-		queue.add(seed);
-		        
-		//IJ.showMessage("Old Value: "+ ((int)oldVal) );
-		        
-		//IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-		        
-		//IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-		        
-		//loop through queue:
-		while (!queue.isEmpty()) {
-			//get the coord obj - and remove from queue:
-		    curCoord = queue.remove(0); // FIXME last element?
-		            
-		    //get xy ref:
-		    xy = curCoord.x + curCoord.y * sizeX;
-		            
-		    //if pixel value of this coord equals original value:
-		    if (pixels[curCoord.z][xy] == origVal) {
-		            	
-		    	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-		        //analyse.add(curCoord);
-		        analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-		            	 
-		        //Set pixel to newPixValue -> remove this pixel from further analysis:
-		        pixels[curCoord.z][xy] = (byte)newPixValue;
-		                
-		        //loop through all 26 voxels surrounding this voxel:
-		        int curZ, curY, curX;
-		        for (int zz = -1; zz < 2; zz++) {
-		        	curZ = curCoord.z + zz;
-		            if (curZ > 0 && curZ < (sizeZ - 1)) {
-		            	for (int yy = -1; yy < 2; yy++) {
-		            		curY = curCoord.y + yy;
-		                    if (curY > 0 && curY < (sizeY - 1)) {
-		                    	for (int xx = -1; xx < 2; xx++) {
-		                    		curX = curCoord.x + xx;
-		                            if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-		 
-		                            	//if any of these equal the original voxel value, add to queue:
-		                                        
-		                            	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-		                            		queue.add(new IntCoord3D(curX, curY, curZ));
-		                            	}
-		                                    	
-		                            }
-		                    	}
-		                    }
-		            	}
-		            }
-		        }
-		    }
-		} //end while loop
-		        
-		//IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-		        
-		        
-		//analyse the pixels in analyse:
-			//Want to analyse pixel number (size), geometry (location and bounding box), and
-			//Shape characteristics:
-		Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-		        
-		int[] boundingBox = obj3Dvox.getBoundingBox();
-		        
-		//Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-			//No low-pass filter required as no obj is too big... This will be dealt with in the
-				//ObjectFilter.
-		   // if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-			//		&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-		        	
-		        	
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)newPixValue);
+		
 		//FIRST PIXEL:
-		Point3D p3d = getFirstVoxel(obj3Dvox);
+		Point3D p3d = getFirstVoxel(floodFill);
 	        	
 		// TODO what should be returned here?!
 		return new SelectedObject(p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), true, newPixValue, newPixValueUnselected );
@@ -551,117 +323,47 @@ public class ObjectVoxelProcessing {
 	private SelectedObject selectObj3DByte(ImageByte img, IntCoord3D seed, 
 												int newPixValue, int newPixValueUnselected) {
 
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
-		
-		//int to store xy ref:
-		int xy = 0;
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)newPixValue);
         
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        
-        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	
-            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-            	//analyse.add(curCoord);
-            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-            	 
-            	 //Set pixel to newPixValue -> remove this pixel from further analysis:
-                pixels[curCoord.z][xy] = (byte)newPixValue;
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                        
-                    	for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                                
-                            	for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
- 
-                                    	//if any of these equal the original voxel value, add to queue:
-                                        
-                                    	if (pixels[curZ][curX + curY * sizeX] == origVal &&
-                                    		objConnectivityFilter(xx,yy,zz,objConnectivity) ) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    	
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } //end while loop
-        
-        //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-        
-        //analyse the pixels in analyse:
-        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-        	//Shape characteristics:
-        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-        
-        int[] boundingBox = obj3Dvox.getBoundingBox();
-        
-        //Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-        	//No low-pass filter required as no obj is too big... This will be dealt with in the
-        		//ObjectFilter.
-        //if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-        	//	&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-        
-        	//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
-        		//CLASH with another obj Bary Centre!
-        		//Therefore, I have made a new method -> getFirstVoxel()
-        			//Takes Object3DVoxels obj as parameter, it gets its ArrayList, converted it to HashSet, and
-        				//then searches through the BoundingBox (starting at xMin, yMin, zMin) and finds the
-        				//FIRST VOXEL -> which is returned as a Point3D object:
+		//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
+			//CLASH with another obj Bary Centre!
+			//Therefore, the FIRST VOXEL is taken from the filled voxels -> the voxel with the lowest z, y and x:
+		Point3D p3d = getFirstVoxel(floodFill);
         	
-        	Point3D p3d = getFirstVoxel(obj3Dvox);
-        	
-        	// TODO what should be returned here?!
-        	return new SelectedObject(p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), true, newPixValue, newPixValueUnselected );
+		// TODO what should be returned here?!
+		return new SelectedObject(p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), true, newPixValue, newPixValueUnselected );
         	
     }
 	
 	
 	
 	
+	/**
+	 * Sets the object at position pos in voxelIndex to newPixValue in img, writing directly to its indexed
+	 * voxels rather than flood filling it.  Returns an object which contains the FirstPixel of this object.
+	 * @param img
+	 * @param voxelIndex
+	 * @param pos
+	 * @param newPixValue
+	 * @param newPixValueUnselected
+	 * @return
+	 */
+	public SelectedObject selectObj3d(ImageInt img, ObjectVoxelIndex voxelIndex, int pos, int newPixValue,
+			int newPixValueUnselected) {
+		
+		voxelIndex.setObjectValue(img, pos, newPixValue);
+		
+		int firstVoxel = voxelIndex.getFirstVoxelIndex(pos);
+		
+		return new SelectedObject(voxelIndex.getX(firstVoxel), voxelIndex.getY(firstVoxel), 
+				voxelIndex.getZ(firstVoxel), true, newPixValue, newPixValueUnselected );
+		
+	}
+	
+	
+	
+	
 	/**
 	 * This method will assess the object at seed (seedX, seedY, seedZ) in the ImageInt img, and set its value
 	 * to the newPixValue int passed.  It will return an object which contains the FirstPixel of this object
@@ -695,100 +397,11 @@ public class ObjectVoxelProcessing {
 	private SelectedObject selectObj3DShort26(ImageShort img, IntCoord3D seed, int newPixValue,
 			int newPixValueUnselected) {
 		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
-				
-		//int to store xy ref:
-		int xy = 0;
-		        
-		//local reference to the pixel values, and image sizes:
-		short[][] pixels = img.pixels;
-		int sizeX = img.sizeX;
-		int sizeY = img.sizeY;
-		int sizeZ = img.sizeZ;
-		        
-		//reference to the original voxel value of the obj -> for appropriate filtering:
-		short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-		        
-		//array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-		        
-		//Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		        
-		//First, add the initial seed to the queue:
-		queue.add(seed);
-		        
-		//IJ.showMessage("Old Value: "+ ((int)oldVal) );
-		        
-		//IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-		        
-		//IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-		        
-		//loop through queue:
-		while (!queue.isEmpty()) {
-			//get the coord obj - and remove from queue:
-		    curCoord = queue.remove(0); // FIXME last element?
-		            
-		    //get xy ref:
-		    xy = curCoord.x + curCoord.y * sizeX;
-		            
-		    //if pixel value of this coord equals original value:
-		    if (pixels[curCoord.z][xy] == origVal) {
-		            	
-		    	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-		        //analyse.add(curCoord);
-		        analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-		            	 
-		        //Set pixel to newPixValue -> remove this pixel from further analysis:
-		        pixels[curCoord.z][xy] = (byte)newPixValue;
-		                
-		        //loop through all 26 voxels surrounding this voxel:
-		        int curZ, curY, curX;
-		        for (int zz = -1; zz < 2; zz++) {
-		        	curZ = curCoord.z + zz;
-		            if (curZ > 0 && curZ < (sizeZ - 1)) {
-		            	for (int yy = -1; yy < 2; yy++) {
-		            		curY = curCoord.y + yy;
-		                    if (curY > 0 && curY < (sizeY - 1)) {
-		                    	for (int xx = -1; xx < 2; xx++) {
-		                    		curX = curCoord.x + xx;
-		                            if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-		 
-		                            	//if any of these equal the original voxel value, add to queue:
-		                                        
-		                            	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-		                            		queue.add(new IntCoord3D(curX, curY, curZ));
-		                            	}
-		                                    	
-		                            }
-		                    	}
-		                    }
-		            	}
-		            }
-		        }
-		    }
-		} //end while loop
-		        
-		//IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-		        
-		        
-		//analyse the pixels in analyse:
-			//Want to analyse pixel number (size), geometry (location and bounding box), and
-			//Shape characteristics:
-		Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-		        
-		int[] boundingBox = obj3Dvox.getBoundingBox();
-		        
-		//Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-			//No low-pass filter required as no obj is too big... This will be dealt with in the
-				//ObjectFilter.
-		   // if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-			//		&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-		        	
-		        	
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)newPixValue);
+		
 		//FIRST PIXEL:
-		Point3D p3d = getFirstVoxel(obj3Dvox);
+		Point3D p3d = getFirstVoxel(floodFill26);
 	        	
 		// TODO what should be returned here?!
 		return new SelectedObject(p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), true, newPixValue, newPixValueUnselected );
@@ -799,108 +412,14 @@ public class ObjectVoxelProcessing {
 	
 	private SelectedObject selectObj3DByte26(ImageByte img, IntCoord3D seed, int newPixValue, int newPixValueUnselected) {
 
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)newPixValue);
 		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
-		
-		//int to store xy ref:
-		int xy = 0;
-        
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        
-        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	
-            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-            	//analyse.add(curCoord);
-            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-            	 
-            	 //Set pixel to newPixValue -> remove this pixel from further analysis:
-                pixels[curCoord.z][xy] = (byte)newPixValue;
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
- 
-                                    	//if any of these equal the original voxel value, add to queue:
-                                        
-                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    	
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } //end while loop
-        
-        //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-        
-        //analyse the pixels in analyse:
-        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-        	//Shape characteristics:
-        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-        
-        int[] boundingBox = obj3Dvox.getBoundingBox();
-        
-        //Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-        	//No low-pass filter required as no obj is too big... This will be dealt with in the
-        		//ObjectFilter.
-        //if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-        	//	&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-        
-        	//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
-        		//CLASH with another obj Bary Centre!
-        		//Therefore, I have made a new method -> getFirstVoxel()
-        			//Takes Object3DVoxels obj as parameter, it gets its ArrayList, converted it to HashSet, and
-        				//then searches through the BoundingBox (starting at xMin, yMin, zMin) and finds the
-        				//FIRST VOXEL -> which is returned as a Point3D object:
-        	
-        	Point3D p3d = getFirstVoxel(obj3Dvox);
+		//FIRST PIXEL:
+		Point3D p3d = getFirstVoxel(floodFill26);
         	
-        	// TODO what should be returned here?!
-        	return new SelectedObject(p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), true, newPixValue, newPixValueUnselected );
+		// TODO what should be returned here?!
+		return new SelectedObject(p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), true, newPixValue, newPixValueUnselected );
         	
     }
 	
@@ -923,7 +442,7 @@ public class ObjectVoxelProcessing {
         //int[] pixCounts = null;
         if (img instanceof ImageShort) {
         	//IJ.showMessage("Analysis Short");
-            return objAssessment3DShort((ImageShort) img, intensityImg, seed, objCounter, newPixValue);
+            return objAssessment3DShort((ImageShort) img, intensityImg, seed, objCounter, newPixValue, convexMeasures);
         } else if (img instanceof ImageByte) {
         	// IJ.showMessage("Analysis Byte");
         	return objAssessment3DByte((ImageByte) img, intensityImg, seed, objCounter, newPixValue, convexMeasures);
@@ -935,713 +454,145 @@ public class ObjectVoxelProcessing {
     }
 	
 	
-	private ObjectDataContainer objAssessment3DShort(ImageShort img, ImageInt intensityImg, IntCoord3D seed, 
-													int objCounter, int newPixValue) {
+	/**
+	 * This method will assess the object at seed (seedX, seedY, seedZ) as seen through the RoiView view, and
+	 * return an object which contains all of the measures made on this object.  The object is every voxel
+	 * connected to the seed with the seed value in the view - for a BORDER_BACKGROUND view, the fragment of the
+	 * object inside the ROI.  The object is flood filled on the view, marking its voxels as visited, so the
+	 * parent image is NOT modified, and the object is not found again from another seed in the view.
+	 * <p>
+	 * Returns null if the seed voxel is background or has already been visited.
+	 * @param view
+	 * @param intensityImg
+	 * @param seedX
+	 * @param seedY
+	 * @param seedZ
+	 * @param objCounter
+	 * @param convexMeasures
+	 * @return
+	 */
+	public ObjectDataContainer objAssessment3d(RoiView view, ImageInt intensityImg, int seedX, int seedY, int seedZ, 
+												int objCounter, boolean convexMeasures) {
+		
+		return objAssessment3d(view, intensityImg, seedX, seedY, seedZ, objCounter, convexMeasures, 
+								floodFill, accumulator);
 		
-		//create new MCIB_SM_DataObj to fill with data & return:
-		ObjectDataContainer dataObj = new ObjectDataContainer();
-
-		//A reference to IntCorrd3D object:
-				IntCoord3D curCoord;
-				
-				//int to store xy ref:
-				int xy = 0;
-		        
-				//local reference to the pixel values, and image sizes:
-				short[][] pixels = img.pixels;
-		        int sizeX = img.sizeX;
-		        int sizeY = img.sizeY;
-		        int sizeZ = img.sizeZ;
-		        
-		        //reference to the original voxel value of the obj -> for appropriate filtering:
-		        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-		        
-		        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-		        
-		        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		        //LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		        
-		        //First, add the initial seed to the queue:
-		        queue.add(seed);
-		        
-		        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-		        
-		        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-		        
-		        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-		        
-		        //loop through queue:
-		        while (!queue.isEmpty()) {
-		        	//get the coord obj - and remove from queue:
-		            curCoord = queue.remove(0); // FIXME last element?
-		            
-		            //get xy ref:
-		            xy = curCoord.x + curCoord.y * sizeX;
-		            
-		            //if pixel value of this coord equals original value:
-		            if (pixels[curCoord.z][xy] == origVal) {
-		            	
-		            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-		            	//analyse.add(curCoord);
-		            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-		            	 
-		            	 //Set pixel to newPixValue -> remove this pixel from further analysis:
-		                pixels[curCoord.z][xy] = (byte)newPixValue;
-		                
-		                //loop through all 26 voxels surrounding this voxel:
-		                int curZ, curY, curX;
-		                for (int zz = -1; zz < 2; zz++) {
-		                    curZ = curCoord.z + zz;
-		                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-		                        for (int yy = -1; yy < 2; yy++) {
-		                            curY = curCoord.y + yy;
-		                            if (curY > 0 && curY < (sizeY - 1)) {
-		                                for (int xx = -1; xx < 2; xx++) {
-		                                    curX = curCoord.x + xx;
-		                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-		 
-		                                    	//if any of these equal the original voxel value, add to queue:
-		                                        
-		                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-		                                            queue.add(new IntCoord3D(curX, curY, curZ));
-		                                        }
-		                                    	
-		                                    }
-		                                }
-		                            }
-		                        }
-		                    }
-		                }
-		            }
-		        } //end while loop
-		        
-		        //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-		        
-		        
-		        //analyse the pixels in analyse:
-		        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-		        	//Shape characteristics:
-		        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-		        
-		        int[] boundingBox = obj3Dvox.getBoundingBox();
-		        
-		        //Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-		        	//No low-pass filter required as no obj is too big... This will be dealt with in the
-		        		//ObjectFilter.
-		        //if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-		        	//	&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-		        
-		        	//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
-		        		//CLASH with another obj Bary Centre!
-		        		//Therefore, I have made a new method -> getFirstVoxel()
-		        			//Takes Object3DVoxels obj as parameter, it gets its ArrayList, converted it to HashSet, and
-		        				//then searches through the BoundingBox (starting at xMin, yMin, zMin) and finds the
-		        				//FIRST VOXEL -> which is returned as a Point3D object:
-		        	
-		        //FIRST PIXEL:
-		        Point3D p3d = getFirstVoxel(obj3Dvox);
-
-		        int x1 = p3d.getRoundX();
-		        int y1 = p3d.getRoundY();
-		        int z1 = p3d.getRoundZ();
-
-		        //Obj Counter:
-		        int objNo = objCounter;
-
-		        //GEOMETRICAL MEASURES:
-		        int volVoxels = obj3Dvox.getVolumePixels();
-		        double areaVoxels = obj3Dvox.getAreaPixels() ;
-
-
-		        int xMin = boundingBox[0];
-		        int xMax = boundingBox[1];
-		        int yMin = boundingBox[2];
-		        int yMax = boundingBox[3];
-		        int zMin = boundingBox[4];
-		        int zMax = boundingBox[5];
-
-		        double centreX = obj3Dvox.getCenterX();
-		        double centreY = obj3Dvox.getCenterY();
-		        double centreZ = obj3Dvox.getCenterZ();
-
-		        //SHAPE MEASURES:
-		        double compactness = obj3Dvox.getCompactness(true);
-		        double sphericity = obj3Dvox.getSphericity(true);
-
-		        double volConvex = 0.0;
-		        double surfConvex = 0.0;
-		        double solidity3D = 1.0;
-		        double convexity3D = 1.0;
-
-		        if( (xMax-xMin) != 0 && 
-		        		(yMax-yMin) != 0 && 
-		        		(zMax-zMin) != 0 ) {
-		        	// the object exists in more than one slice in X Y & Z - so compute 3D Convex Hull:
-
-		        	//compute the convex obj to calculate solidity3D and convexity3D:
-		        	Object3DVoxels convex3Dobj = obj3Dvox.getConvexObject();
-		        	//get its volume and surface area:
-		        	volConvex = convex3Dobj.getVolumePixels();
-		        	surfConvex = convex3Dobj.getAreaPixels();
-
-		        	//get original obj vol. and surf.:
-		        	//double vol = obj3Dvox.getVolumePixels();
-		        	//double surf = obj3Dvox.getAreaPixels();
-
-		        	//Compute Solidity3D and Convexity3D:
-		        	//rt.addValue("Solidity 3D", (vol/volConvex) );
-		        	//rt.addValue("Convexity 3D", (surf/surfConvex) );
-		        	solidity3D = ((double)volVoxels/volConvex);
-		        	convexity3D = (surfConvex/areaVoxels);
-
-		        	//IJ.log(" ");
-		        	//LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-		        	//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-		        	//IJ.log(" ");
-
-		        }
-		        // TODO This method needs improving, can the convex voxels be derived from a co-planar objecr
-		        // in a better way?  Need to look at where the error occurs, and try to adjustObject3DVoxels
-		        else {
-		        	// if object is only in one plane in any dimension - need to calculate the convex hull in 2D:
-
-		        	// will calculate the convex volume and surface convex area of co-planar objects by 
-		        	// putting two of them together:
-		        	if( (xMax-xMin) != 0 && 
-		        			(yMax-yMin) != 0 && 
-		        			(zMax-zMin) == 0 ) {
-
-		        		Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-		        		//LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-		        		LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-		        		obj3Dvox2.addVoxels(vox3D);
-		        		obj3Dvox2.addVoxels(vox3D);
-
-		        		//IJ.log(" ");
-		        		//IJ.log("COPLANAER Z");
-		        		//IJ.log(" ");
-
-		        		//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-		        		//IJ.log(" ");
-
-		        		//compute the convex obj to calculate solidity3D and convexity3D:
-		        		Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-		        		//get its volume and surface area:
-		        		volConvex = convex3Dobj.getVolumePixels();
-		        		surfConvex = convex3Dobj.getAreaPixels();
-
-		        		//Compute Solidity3D and Convexity3D:
-		        		solidity3D = (double)volVoxels/volConvex;
-		        		convexity3D = (surfConvex/areaVoxels);
-
-		        	} // Z
-
-		        	else if( (xMax-xMin) != 0 && 
-		        			(yMax-yMin) == 0 && 
-		        			(zMax-zMin) != 0 ) {
-
-		        		Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-		        		//LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-		        		LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-		        		obj3Dvox2.addVoxels(vox3D);
-		        		obj3Dvox2.addVoxels(vox3D);
-
-		        		//for(int a=0; a<vox3D.size(); a++) {
-		        			//vox3D.get(a).setY( vox3D.get(a).getY() + 1 );
-		        		//}
-
-		        		//compute the convex obj to calculate solidity3D and convexity3D:
-		        		Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-		        		//get its volume and surface area:
-		        		volConvex = convex3Dobj.getVolumePixels();
-		        		surfConvex = convex3Dobj.getAreaPixels();
-
-		        		//Compute Solidity3D and Convexity3D:
-		        		solidity3D = (double)volVoxels/volConvex;
-		        		convexity3D = (surfConvex/areaVoxels);
-
-		        	} // Y
-
-		        	else if( (xMax-xMin) == 0 && 
-		        			(yMax-yMin) != 0 && 
-		        			(zMax-zMin) != 0 ) {
-
-		        		Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-		        		LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-		        		obj3Dvox2.addVoxels(vox3D);
-		        		obj3Dvox2.addVoxels(vox3D);
-
-		        		//for(int a=0; a<vox3D.size(); a++) {
-		        			//vox3D.get(a).setX( vox3D.get(a).getX() + 1 );
-		        		//}
-
-		        		//compute the convex obj to calculate solidity3D and convexity3D:
-		        		Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-		        		//get its volume and surface area:
-		        		volConvex = convex3Dobj.getVolumePixels();
-		        		surfConvex = convex3Dobj.getAreaPixels();
-
-		        		//get original obj vol. and surf.:
-		        		//double vol = obj3Dvox.getVolumePixels();
-		        		//double surf = obj3Dvox.getAreaPixels();
-
-		        		//Compute Solidity3D and Convexity3D:
-		        		//rt.addValue("Solidity 3D", (vol/volConvex) );
-		        		//rt.addValue("Convexity 3D", (surf/surfConvex) );
-		        		solidity3D = (double)volVoxels/volConvex;
-		        		convexity3D = (surfConvex/areaVoxels);
-
-		        	} // X
-
-		        	else {
-		        		// more than one dimension is co-planar -> so set solidity and convexity to 1.0:
-		        		// the values are 1.0 by default.
-		        		// solidity3D = 1.0;
-		        		// convexity3D = 1.0;
-		        	}
-
-		        }
-
-		        double volToVolBox = obj3Dvox.getRatioBox();
-
-		        double mainElong = obj3Dvox.getMainElongation();
-		        double medianElong = obj3Dvox.getMedianElongation();
-
-		        double volEllipse = obj3Dvox.getVolumeEllipseUnit();
-		        double volToVolEllipse = obj3Dvox.getRatioEllipsoid();
-		        
-	        	// Moment Invariants:
-	        	
-	        	double[] homInv = obj3Dvox.getHomogeneousInvariants(); // n=5
-	        	
-	        	double homInv1 = homInv[0];
-	        	double homInv2 = homInv[1];
-	        	double homInv3 = homInv[2];
-	        	double homInv4 = homInv[3];
-	        	double homInv5 = homInv[4];
-	        	
-	        	double[] geoInv = obj3Dvox.getGeometricInvariants(); // n=6
-	        	
-	        	double geoInv1 = geoInv[0];
-	        	double geoInv2 = geoInv[1];
-	        	double geoInv3 = geoInv[2];
-	        	double geoInv4 = geoInv[3];
-	        	double geoInv5 = geoInv[4];
-	        	double geoInv6 = geoInv[5];
-	        	
-	        	double[] inv = obj3Dvox.getMoments3D(); // n=5
-	        	
-	        	double biocatJ1 = inv[0];
-	        	double biocatJ2 = inv[1];
-	        	double biocatJ3 = inv[2];
-	        	double biocatI1 = inv[3];
-	        	double biocatI2 = inv[4];
-
-		        //INTENSITY MEASURES
-		        double meanPix = obj3Dvox.getPixMeanValue(intensityImg);
-		        double sdPix = obj3Dvox.getPixStdDevValue(intensityImg);
-		        double maxPix = obj3Dvox.getPixMaxValue(intensityImg);
-		        double medianPix = obj3Dvox.getPixMedianValue(intensityImg);
-		        double minPix = obj3Dvox.getPixMinValue(intensityImg);
-
-		        // } //end objGeoFilter high-pass Filter
-
-		        dataObj.setDataValues( x1,  y1,  z1,  objNo,  volVoxels,  areaVoxels,  xMin,  xMax,  yMin,
-		        		yMax,  zMin,  zMax,  centreX,  centreY,  centreZ,  compactness,
-		        		sphericity,  volConvex,  surfConvex,  solidity3D,  convexity3D, 
-		        		volToVolBox,  mainElong,  medianElong,  volEllipse,  volToVolEllipse, 
-						 homInv1, homInv2, homInv3, homInv4, homInv5, 
-						 geoInv1, geoInv2, geoInv3, geoInv4, geoInv5, geoInv6, 
-						 biocatJ1, biocatJ2, biocatJ3, biocatI1, biocatI2,
-		        		meanPix,  sdPix,  maxPix,  medianPix,  minPix);
-
-		        return dataObj;
-
-	    
 	}
 	
+	/**
+	 * Assess the object at seed as seen through view, using fill and acc to flood and measure it - see
+	 * objAssessment3d(RoiView, ImageInt, int, int, int, int, boolean).  Objects in different views can be 
+	 * assessed concurrently, if each thread passes its own FloodFill3D (from createFloodFill()) and
+	 * ObjectFeatureAccumulator.
+	 * @param view
+	 * @param intensityImg
+	 * @param seedX
+	 * @param seedY
+	 * @param seedZ
+	 * @param objCounter
+	 * @param convexMeasures
+	 * @param fill
+	 * @param acc
+	 * @return
+	 */
+	public ObjectDataContainer objAssessment3d(RoiView view, ImageInt intensityImg, int seedX, int seedY, int seedZ, 
+			int objCounter, boolean convexMeasures, FloodFill3D fill, ObjectFeatureAccumulator acc) {
+		
+		//fill the object on the view -> marks these voxels as visited, the parent is not modified:
+		if( fill.fill(view, seedX, seedY, seedZ, view.getPixelInt(seedX, seedY, seedZ) ) == 0 ) {
+			return null;
+		}
+		
+		// the filled voxels are parent voxels, so are measured as a fill of the parent:
+		acc.addVoxels(fill, view.getSizeX(), view.getSizeY(), view.getSizeZ(), intensityImg);
+		
+		return measureViewObject(fill, acc, objCounter, intensityImg, convexMeasures);
+		
+	}
 	
-	
-	private ObjectDataContainer objAssessment3DByte(ImageByte img, ImageInt intensityImg, IntCoord3D seed, 
-												int objCounter, int newPixValue, boolean convexMeasures) {
-		//long startTime = System.currentTimeMillis();
-		//long currentTime;
-		//IJ.log("start time: "+startTime);
+	/**
+	 * Measures the object filled on a view in fill, with its voxels accumulated in acc.
+	 */
+	private ObjectDataContainer measureViewObject(FloodFill3D fill, ObjectFeatureAccumulator acc, int objCounter, 
+													ImageInt intensityImg, boolean convexMeasures) {
 		
-		//IJ.log("seed: x: "+seed.x+" y: "+seed.y+" z: "+seed.z);
+		Object3DVoxels obj3Dvox = featureSet.requiresObject3D() ? 
+				new Object3DVoxels( getVoxels(fill) ) : null;
 		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
+		//FIRST VOXEL - the voxel with the lowest z, y and x in the object:
+		Point3D p3d = getFirstVoxel(fill);
 		
-		//int to store xy ref:
-		int xy = 0;
-        
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        
-        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        // IJ.showMessage("Original Value: "+ ((int)origVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            // IJ.log("current coord xy: "+xy);
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	// IJ.log("add: x: "+curCoord.x+" y: "+curCoord.y+" z: "+curCoord.z);
-            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-            	//analyse.add(curCoord);
-            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-            	 
-            	// IJ.log("Coord val: "+pixels[curCoord.z][xy]);
-            	 //Set pixel to newPixValue -> remove this pixel from further analysis:
-                pixels[curCoord.z][xy] = (byte)newPixValue;
-                // IJ.log("Coord val set to: "+pixels[curCoord.z][xy]);
-                // IJ.log("");
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                       
-                    	for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                               
-                            	for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX) { 
-                                    	
-                                    	if( (xx != 0 || yy != 0 || zz != 0) ) { 
-                                    		// xx, yy, zz must not all equal 0, as this is the central pixel!
-                                    		
-                                    		//if any of these equal the original voxel value, add to queue:
-                                    		if ( (pixels[curZ][curX + curY * sizeX] == origVal) && 
-                                        			objConnectivityFilter(xx,yy,zz,objConnectivity) ) {
-                                    			queue.add(new IntCoord3D(curX, curY, curZ));
-                                    			// IJ.log("added: "+curX+" "+curY+" "+curZ );
-                                    		}	
-                                    	}
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            // IJ.log("");
-        } //end while loop
-        
-        // IJ.showMessage("Reached end of while loop!");
-        
-        //analyse the pixels in analyse:
-        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-        	//Shape characteristics:
-        
-       // currentTime = System.currentTimeMillis() - startTime;
-        //IJ.log("creating object3Dvoxels time: "+currentTime );
-        
-        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-        
-        //currentTime = System.currentTimeMillis() - startTime;
-        //IJ.log("creating bounding box time: "+currentTime );
-        
-        int[] boundingBox = obj3Dvox.getBoundingBox();
-        
-        //Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-        	//No low-pass filter required as no obj is too big... This will be dealt with in the
-        		//ObjectFilter.
-        //if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-        	//	&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-        
-        	//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
-        		//CLASH with another obj Bary Centre!
-        		//Therefore, I have made a new method -> getFirstVoxel()
-        			//Takes Object3DVoxels obj as parameter, it gets its ArrayList, converted it to HashSet, and
-        				//then searches through the BoundingBox (starting at xMin, yMin, zMin) and finds the
-        				//FIRST VOXEL -> which is returned as a Point3D object:
-        	
-        // TODO Move the Data Extraction to the MCIB_SM_DataObj class!
-        // Therefore, this method should just return either 'analyse' (ArrayList of Voxel3D obj), or
-        	// return the Object3DVoxels made from 'analyse'
-        	// By extracting the data in the same class as the data points are defined, it is easy to add
-        	// or modify the set of data points collected.
-        
-       // currentTime = System.currentTimeMillis() - startTime;
-       // IJ.log("getFirstVoxel time: "+currentTime );
-        
-        	Point3D p3d = getFirstVoxel(obj3Dvox);
-        	
-        	int x1 = p3d.getRoundX();
-        	int y1 = p3d.getRoundY();
-        	int z1 = p3d.getRoundZ();
-        
-        	//Obj Counter:
-        	int objNo = objCounter;
-        
-        	//GEOMETRICAL MEASURES:
-        	int volVoxels = obj3Dvox.getVolumePixels();
-        	double areaVoxels = obj3Dvox.getAreaPixels() ;
-        
-        
-        	int xMin = boundingBox[0];
-        	int xMax = boundingBox[1];
-        	int yMin = boundingBox[2];
-        	int yMax = boundingBox[3];
-        	int zMin = boundingBox[4];
-        	int zMax = boundingBox[5];
-        	
-        	int xLength = xMax - xMin + 1; // +1 to account for the FIRST PIXEL (i,e is first is 10 and last is 10,
-        	int yLength = yMax - yMin + 1; // its still 1 voxel thick!)
-        	int zLength = zMax - zMin + 1;
-        
-        	double centreX = obj3Dvox.getCenterX();
-        	double centreY = obj3Dvox.getCenterY();
-        	double centreZ = obj3Dvox.getCenterZ();
-        
-        	//SHAPE MEASURES:
-        	double compactness = obj3Dvox.getCompactness(true);
-        	double sphericity = obj3Dvox.getSphericity(true);
-
-        	double volConvex = 0.0;
-        	double surfConvex = 0.0;
-        	double solidity3D = 1.0;
-			double convexity3D = 1.0;
-        	
-			if(convexMeasures == true) {
-				if( (xMax-xMin) != 0 && 
-						(yMax-yMin) != 0 && 
-						(zMax-zMin) != 0 ) {
-					// the object exists in more than one slice in X Y & Z - so compute 3D Convex Hull:
-
-					//compute the convex obj to calculate solidity3D and convexity3D:
-					Object3DVoxels convex3Dobj = obj3Dvox.getConvexObject();
-					//get its volume and surface area:
-					volConvex = convex3Dobj.getVolumePixels();
-					surfConvex = convex3Dobj.getAreaPixels();
-
-					//get original obj vol. and surf.:
-					//double vol = obj3Dvox.getVolumePixels();
-					//double surf = obj3Dvox.getAreaPixels();
-
-					//Compute Solidity3D and Convexity3D:
-					//rt.addValue("Solidity 3D", (vol/volConvex) );
-					//rt.addValue("Convexity 3D", (surf/surfConvex) );
-					solidity3D = ((double)volVoxels/volConvex);
-					convexity3D = (surfConvex/areaVoxels);
-
-					//IJ.log(" ");
-					//LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-					//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-					//IJ.log(" ");
-
-				}
-				// TODO This method needs improving, can the convex voxels be derived from a co-planar objecr
-				// in a better way?  Need to look at where the error occurs, and try to adjustObject3DVoxels
-				else {
-					// if object is only in one plane in any dimension - need to calculate the convex hull in 2D:
-
-					// will calculate the convex volume and surface convex area of co-planar objects by 
-					// putting two of them together:
-					if( (xMax-xMin) != 0 && 
-							(yMax-yMin) != 0 && 
-							(zMax-zMin) == 0 ) {
-
-						Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-						LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-						obj3Dvox2.addVoxels(vox3D);
-						obj3Dvox2.addVoxels(vox3D);
-
-						//IJ.log(" ");
-						//IJ.log("COPLANAER Z");
-						//IJ.log(" ");
-
-						//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-						//IJ.log(" ");
-
-						//compute the convex obj to calculate solidity3D and convexity3D:
-						Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-						//get its volume and surface area:
-						volConvex = convex3Dobj.getVolumePixels();
-						surfConvex = convex3Dobj.getAreaPixels();
-
-						//Compute Solidity3D and Convexity3D:
-						solidity3D = (double)volVoxels/volConvex;
-						convexity3D = (surfConvex/areaVoxels);
-
-					} // Z
-
-					else if( (xMax-xMin) != 0 && 
-							(yMax-yMin) == 0 && 
-							(zMax-zMin) != 0 ) {
-
-						Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-						LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-						obj3Dvox2.addVoxels(vox3D);
-						obj3Dvox2.addVoxels(vox3D);
-
-						//for(int a=0; a<vox3D.size(); a++) {
-							//vox3D.get(a).setY( vox3D.get(a).getY() + 1 );
-						//}
-
-						//compute the convex obj to calculate solidity3D and convexity3D:
-						Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-						//get its volume and surface area:
-						volConvex = convex3Dobj.getVolumePixels();
-						surfConvex = convex3Dobj.getAreaPixels();
-
-						//Compute Solidity3D and Convexity3D:
-						solidity3D = (double)volVoxels/volConvex;
-						convexity3D = (surfConvex/areaVoxels);
-
-					} // Y
-
-					else if( (xMax-xMin) == 0 && 
-							(yMax-yMin) != 0 && 
-							(zMax-zMin) != 0 ) {
-
-						Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-						LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-						obj3Dvox2.addVoxels(vox3D);
-						obj3Dvox2.addVoxels(vox3D);
-
-						//for(int a=0; a<vox3D.size(); a++) {
-							//vox3D.get(a).setX( vox3D.get(a).getX() + 1 );
-						//}
-
-						//compute the convex obj to calculate solidity3D and convexity3D:
-						Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-						//get its volume and surface area:
-						volConvex = convex3Dobj.getVolumePixels();
-						surfConvex = convex3Dobj.getAreaPixels();
-
-						//get original obj vol. and surf.:
-						//double vol = obj3Dvox.getVolumePixels();
-						//double surf = obj3Dvox.getAreaPixels();
-
-						//Compute Solidity3D and Convexity3D:
-						//rt.addValue("Solidity 3D", (vol/volConvex) );
-						//rt.addValue("Convexity 3D", (surf/surfConvex) );
-						solidity3D = (double)volVoxels/volConvex;
-						convexity3D = (surfConvex/areaVoxels);
-
-					} // X
-
-					else {
-						// more than one dimension is co-planar -> so set solidity and convexity to 1.0:
-						// the values are 1.0 by default.
-						// solidity3D = 1.0;
-						// convexity3D = 1.0;
-					}
-
-				}
-			}
-        	
-        	//currentTime = System.currentTimeMillis() - startTime;
-	        //IJ.log("vol elong and intensity Measures time: "+currentTime );
-        
-        	double volToVolBox = obj3Dvox.getRatioBox();
-        
-        	double mainElong = obj3Dvox.getMainElongation();
-        	double medianElong = obj3Dvox.getMedianElongation();
-        
-        	double volEllipse = obj3Dvox.getVolumeEllipseUnit();
-        	double volToVolEllipse = obj3Dvox.getRatioEllipsoid();
-        	
-        	// Moment Invariants:
-        	
-        	double[] homInv = obj3Dvox.getHomogeneousInvariants(); // n=5
-        	
-        	double homInv1 = homInv[0];
-        	double homInv2 = homInv[1];
-        	double homInv3 = homInv[2];
-        	double homInv4 = homInv[3];
-        	double homInv5 = homInv[4];
-        	
-        	double[] geoInv = obj3Dvox.getGeometricInvariants(); // n=6
-        	
-        	double geoInv1 = geoInv[0];
-        	double geoInv2 = geoInv[1];
-        	double geoInv3 = geoInv[2];
-        	double geoInv4 = geoInv[3];
-        	double geoInv5 = geoInv[4];
-        	double geoInv6 = geoInv[5];
-        	
-        	double[] inv = obj3Dvox.getMoments3D(); // n=5
-        	
-        	double biocatJ1 = inv[0];
-        	double biocatJ2 = inv[1];
-        	double biocatJ3 = inv[2];
-        	double biocatI1 = inv[3];
-        	double biocatI2 = inv[4];
-        
-        	//INTENSITY MEASURES
-        	double meanPix = obj3Dvox.getPixMeanValue(intensityImg);
-        	double sdPix = obj3Dvox.getPixStdDevValue(intensityImg);
-        	double maxPix = obj3Dvox.getPixMaxValue(intensityImg);
-        	double medianPix = obj3Dvox.getPixMedianValue(intensityImg);
-        	double minPix = obj3Dvox.getPixMinValue(intensityImg);
-        
-       // } //end objGeoFilter high-pass Filter
-        	
-        	// IJ.showMessage("x1: "+x1+" y1: "+y1+" z1: "+z1);
-        	
-        	//currentTime = System.currentTimeMillis() - startTime;
-	        //IJ.log("Return Obj time: "+currentTime );
-        	//IJ.log("");
-        	return new ObjectDataContainer( x1,  y1,  z1,  objNo,  volVoxels,  areaVoxels,  xMin,  yMin,
-					 zMin,  xLength, yLength, zLength,  centreX,  centreY,  centreZ,  compactness,
-					 sphericity,  volConvex,  surfConvex,  solidity3D,  convexity3D, 
-					 volToVolBox,  mainElong,  medianElong,  volEllipse,  volToVolEllipse,
-					 homInv1, homInv2, homInv3, homInv4, homInv5, 
-					 geoInv1, geoInv2, geoInv3, geoInv4, geoInv5, geoInv6, 
-					 biocatJ1, biocatJ2, biocatJ3, biocatI1, biocatI2,
-					 meanPix,  sdPix,  maxPix,  medianPix,  minPix);
-        
-    }
+		return measureObject(acc, obj3Dvox, p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), 
+								objCounter, intensityImg, convexMeasures);
+		
+	}
+	
+	/**
+	 * Returns a new FloodFill3D with the objConnectivity of this ObjectVoxelProcessing - for a thread to
+	 * flood objects with, alongside the flood fill engines of this class.
+	 * @return
+	 */
+	public FloodFill3D createFloodFill() {
+		return new FloodFill3D(neighbourOffsets);
+	}
+	
+	/**
+	 * Returns the objConnectivity flood fill engine of this class - which holds the voxels of the object
+	 * filled or assessed last by the objConnectivity methods.
+	 * @return
+	 */
+	public FloodFill3D getFloodFill() {
+		return floodFill;
+	}
+	
+	
+	private ObjectDataContainer objAssessment3DShort(ImageShort img, ImageInt intensityImg, IntCoord3D seed, 
+												int objCounter, int newPixValue, boolean convexMeasures) {
+		
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)newPixValue);
+		
+		//analyse the filled pixels:
+			//Want to analyse pixel number (size), geometry (location and bounding box), and
+			//Shape characteristics:
+		accumulator.addVoxels(floodFill, img, intensityImg);
+		Object3DVoxels obj3Dvox = featureSet.requiresObject3D() ? 
+				new Object3DVoxels( getVoxels(floodFill) ) : null;
+		
+		//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
+			//CLASH with another obj Bary Centre!
+			//Therefore, the FIRST VOXEL is taken from the filled voxels -> the voxel with the lowest z, y and x:
+		Point3D p3d = getFirstVoxel(floodFill);
+		
+		return measureObject(accumulator, obj3Dvox, p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), 
+								objCounter, intensityImg, convexMeasures);
+	    
+	}
+	
+	
+	
+	private ObjectDataContainer objAssessment3DByte(ImageByte img, ImageInt intensityImg, IntCoord3D seed, 
+												int objCounter, int newPixValue, boolean convexMeasures) {
+		
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)newPixValue);
+		
+		//analyse the filled pixels:
+			//Want to analyse pixel number (size), geometry (location and bounding box), and
+			//Shape characteristics:
+		accumulator.addVoxels(floodFill, img, intensityImg);
+		Object3DVoxels obj3Dvox = featureSet.requiresObject3D() ? 
+				new Object3DVoxels( getVoxels(floodFill) ) : null;
+		
+		//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
+			//CLASH with another obj Bary Centre!
+			//Therefore, the FIRST VOXEL is taken from the filled voxels -> the voxel with the lowest z, y and x:
+		Point3D p3d = getFirstVoxel(floodFill);
+		
+		return measureObject(accumulator, obj3Dvox, p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), 
+								objCounter, intensityImg, convexMeasures);
+	    
+	}
 	
 	/**
 	 * Returns true if the passed XYZ coordinates indicate a coordinate which would be considered
@@ -1658,7 +609,10 @@ public class ObjectVoxelProcessing {
 	 * @param zz
 	 * @param objConnectivity
 	 * @return
+	 * @deprecated compares the objConnectivity String for every call - use objConnectivityFilter(xx, yy, zz),
+	 * which looks the offset up in the neighbour-offset table resolved at construction.
 	 */
+	@Deprecated
 	public boolean objConnectivityFilter(int xx,int yy,int zz,String objConnectivity) {
 		
 		if( objConnectivity.equalsIgnoreCase(OM_ProcedureSettings.CONNECTED6) ) {
@@ -1683,6 +637,18 @@ public class ObjectVoxelProcessing {
 		return true;
 	}
 	
+	/**
+	 * Returns true if the offset xx,yy,zz from a central pixel is connected to it with the objConnectivity
+	 * of this ObjectVoxelProcessing - looked up in the neighbour-offset table resolved at construction.
+	 * @param xx
+	 * @param yy
+	 * @param zz
+	 * @return
+	 */
+	public boolean objConnectivityFilter(int xx,int yy,int zz) {
+		return neighbourOffsets.contains(xx, yy, zz);
+	}
+	
 	/**
 	 * This method will assess the object at seed (seedX, seedY, seedZ) in the ImageInt img, and return an object
 	 * which contains all of the measures made on this object.
@@ -1699,7 +665,7 @@ public class ObjectVoxelProcessing {
         //int[] pixCounts = null;
         if (img instanceof ImageShort) {
         	//IJ.showMessage("Analysis Short");
-            return objAssessment3DShort26((ImageShort) img, intensityImg, seed, objCounter, newPixValue);
+            return objAssessment3DShort26((ImageShort) img, intensityImg, seed, objCounter, newPixValue, convexMeasures);
         } else if (img instanceof ImageByte) {
         	// IJ.showMessage("Analysis Byte");
         	return objAssessment3DByte26((ImageByte) img, intensityImg, seed, objCounter, newPixValue, convexMeasures);
@@ -1712,334 +678,25 @@ public class ObjectVoxelProcessing {
 	
 	
 	private ObjectDataContainer objAssessment3DShort26(ImageShort img, ImageInt intensityImg, IntCoord3D seed, 
-													int objCounter, int newPixValue) {
+												int objCounter, int newPixValue, boolean convexMeasures) {
 		
-		//create new MCIB_SM_DataObj to fill with data & return:
-		ObjectDataContainer dataObj = new ObjectDataContainer();
-
-		//A reference to IntCorrd3D object:
-				IntCoord3D curCoord;
-				
-				//int to store xy ref:
-				int xy = 0;
-		        
-				//local reference to the pixel values, and image sizes:
-				short[][] pixels = img.pixels;
-		        int sizeX = img.sizeX;
-		        int sizeY = img.sizeY;
-		        int sizeZ = img.sizeZ;
-		        
-		        //reference to the original voxel value of the obj -> for appropriate filtering:
-		        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-		        
-		        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-		        
-		        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		        
-		        //First, add the initial seed to the queue:
-		        queue.add(seed);
-		        
-		        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-		        
-		        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-		        
-		        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-		        
-		        //loop through queue:
-		        while (!queue.isEmpty()) {
-		        	//get the coord obj - and remove from queue:
-		            curCoord = queue.remove(0); // FIXME last element?
-		            
-		            //get xy ref:
-		            xy = curCoord.x + curCoord.y * sizeX;
-		            
-		            //if pixel value of this coord equals original value:
-		            if (pixels[curCoord.z][xy] == origVal) {
-		            	
-		            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-		            	//analyse.add(curCoord);
-		            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-		            	 
-		            	 //Set pixel to newPixValue -> remove this pixel from further analysis:
-		                pixels[curCoord.z][xy] = (byte)newPixValue;
-		                
-		                //loop through all 26 voxels surrounding this voxel:
-		                int curZ, curY, curX;
-		                for (int zz = -1; zz < 2; zz++) {
-		                    curZ = curCoord.z + zz;
-		                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-		                        for (int yy = -1; yy < 2; yy++) {
-		                            curY = curCoord.y + yy;
-		                            if (curY > 0 && curY < (sizeY - 1)) {
-		                                for (int xx = -1; xx < 2; xx++) {
-		                                    curX = curCoord.x + xx;
-		                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-		 
-		                                    	//if any of these equal the original voxel value, add to queue:
-		                                        
-		                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-		                                            queue.add(new IntCoord3D(curX, curY, curZ));
-		                                        }
-		                                    	
-		                                    }
-		                                }
-		                            }
-		                        }
-		                    }
-		                }
-		            }
-		        } //end while loop
-		        
-		        //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-		        
-		        
-		        //analyse the pixels in analyse:
-		        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-		        	//Shape characteristics:
-		        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-		        
-		        int[] boundingBox = obj3Dvox.getBoundingBox();
-		        
-		        //Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-		        	//No low-pass filter required as no obj is too big... This will be dealt with in the
-		        		//ObjectFilter.
-		        //if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-		        	//	&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-		        
-		        	//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
-		        		//CLASH with another obj Bary Centre!
-		        		//Therefore, I have made a new method -> getFirstVoxel()
-		        			//Takes Object3DVoxels obj as parameter, it gets its ArrayList, converted it to HashSet, and
-		        				//then searches through the BoundingBox (starting at xMin, yMin, zMin) and finds the
-		        				//FIRST VOXEL -> which is returned as a Point3D object:
-		        	
-		        //FIRST PIXEL:
-		        Point3D p3d = getFirstVoxel(obj3Dvox);
-
-		        int x1 = p3d.getRoundX();
-		        int y1 = p3d.getRoundY();
-		        int z1 = p3d.getRoundZ();
-
-		        //Obj Counter:
-		        int objNo = objCounter;
-
-		        //GEOMETRICAL MEASURES:
-		        int volVoxels = obj3Dvox.getVolumePixels();
-		        double areaVoxels = obj3Dvox.getAreaPixels() ;
-
-
-		        int xMin = boundingBox[0];
-		        int xMax = boundingBox[1];
-		        int yMin = boundingBox[2];
-		        int yMax = boundingBox[3];
-		        int zMin = boundingBox[4];
-		        int zMax = boundingBox[5];
-
-		        double centreX = obj3Dvox.getCenterX();
-		        double centreY = obj3Dvox.getCenterY();
-		        double centreZ = obj3Dvox.getCenterZ();
-
-		        //SHAPE MEASURES:
-		        double compactness = obj3Dvox.getCompactness(true);
-		        double sphericity = obj3Dvox.getSphericity(true);
-
-		        double volConvex = 0.0;
-		        double surfConvex = 0.0;
-		        double solidity3D = 1.0;
-		        double convexity3D = 1.0;
-
-		        if( (xMax-xMin) != 0 && 
-		        		(yMax-yMin) != 0 && 
-		        		(zMax-zMin) != 0 ) {
-		        	// the object exists in more than one slice in X Y & Z - so compute 3D Convex Hull:
-
-		        	//compute the convex obj to calculate solidity3D and convexity3D:
-		        	Object3DVoxels convex3Dobj = obj3Dvox.getConvexObject();
-		        	//get its volume and surface area:
-		        	volConvex = convex3Dobj.getVolumePixels();
-		        	surfConvex = convex3Dobj.getAreaPixels();
-
-		        	//get original obj vol. and surf.:
-		        	//double vol = obj3Dvox.getVolumePixels();
-		        	//double surf = obj3Dvox.getAreaPixels();
-
-		        	//Compute Solidity3D and Convexity3D:
-		        	//rt.addValue("Solidity 3D", (vol/volConvex) );
-		        	//rt.addValue("Convexity 3D", (surf/surfConvex) );
-		        	solidity3D = ((double)volVoxels/volConvex);
-		        	convexity3D = (surfConvex/areaVoxels);
-
-		        	//IJ.log(" ");
-		        	//LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-		        	//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-		        	//IJ.log(" ");
-
-		        }
-		        // TODO This method needs improving, can the convex voxels be derived from a co-planar objecr
-		        // in a better way?  Need to look at where the error occurs, and try to adjustObject3DVoxels
-		        else {
-		        	// if object is only in one plane in any dimension - need to calculate the convex hull in 2D:
-
-		        	// will calculate the convex volume and surface convex area of co-planar objects by 
-		        	// putting two of them together:
-		        	if( (xMax-xMin) != 0 && 
-		        			(yMax-yMin) != 0 && 
-		        			(zMax-zMin) == 0 ) {
-
-		        		Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-		        		LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-		        		obj3Dvox2.addVoxels(vox3D);
-		        		obj3Dvox2.addVoxels(vox3D);
-
-		        		//IJ.log(" ");
-		        		//IJ.log("COPLANAER Z");
-		        		//IJ.log(" ");
-
-		        		//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-		        		//IJ.log(" ");
-
-		        		//compute the convex obj to calculate solidity3D and convexity3D:
-		        		Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-		        		//get its volume and surface area:
-		        		volConvex = convex3Dobj.getVolumePixels();
-		        		surfConvex = convex3Dobj.getAreaPixels();
-
-		        		//Compute Solidity3D and Convexity3D:
-		        		solidity3D = (double)volVoxels/volConvex;
-		        		convexity3D = (surfConvex/areaVoxels);
-
-		        	} // Z
-
-		        	else if( (xMax-xMin) != 0 && 
-		        			(yMax-yMin) == 0 && 
-		        			(zMax-zMin) != 0 ) {
-
-		        		Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-		        		LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-		        		obj3Dvox2.addVoxels(vox3D);
-		        		obj3Dvox2.addVoxels(vox3D);
-
-		        		//for(int a=0; a<vox3D.size(); a++) {
-		        			//vox3D.get(a).setY( vox3D.get(a).getY() + 1 );
-		        		//}
-
-		        		//compute the convex obj to calculate solidity3D and convexity3D:
-		        		Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-		        		//get its volume and surface area:
-		        		volConvex = convex3Dobj.getVolumePixels();
-		        		surfConvex = convex3Dobj.getAreaPixels();
-
-		        		//Compute Solidity3D and Convexity3D:
-		        		solidity3D = (double)volVoxels/volConvex;
-		        		convexity3D = (surfConvex/areaVoxels);
-
-		        	} // Y
-
-		        	else if( (xMax-xMin) == 0 && 
-		        			(yMax-yMin) != 0 && 
-		        			(zMax-zMin) != 0 ) {
-
-		        		Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-		        		LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-		        		obj3Dvox2.addVoxels(vox3D);
-		        		obj3Dvox2.addVoxels(vox3D);
-
-		        		//for(int a=0; a<vox3D.size(); a++) {
-		        			//vox3D.get(a).setX( vox3D.get(a).getX() + 1 );
-		        		//}
-
-		        		//compute the convex obj to calculate solidity3D and convexity3D:
-		        		Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-		        		//get its volume and surface area:
-		        		volConvex = convex3Dobj.getVolumePixels();
-		        		surfConvex = convex3Dobj.getAreaPixels();
-
-		        		//get original obj vol. and surf.:
-		        		//double vol = obj3Dvox.getVolumePixels();
-		        		//double surf = obj3Dvox.getAreaPixels();
-
-		        		//Compute Solidity3D and Convexity3D:
-		        		//rt.addValue("Solidity 3D", (vol/volConvex) );
-		        		//rt.addValue("Convexity 3D", (surf/surfConvex) );
-		        		solidity3D = (double)volVoxels/volConvex;
-		        		convexity3D = (surfConvex/areaVoxels);
-
-		        	} // X
-
-		        	else {
-		        		// more than one dimension is co-planar -> so set solidity and convexity to 1.0:
-		        		// the values are 1.0 by default.
-		        		// solidity3D = 1.0;
-		        		// convexity3D = 1.0;
-		        	}
-
-		        }
-
-		        double volToVolBox = obj3Dvox.getRatioBox();
-
-		        double mainElong = obj3Dvox.getMainElongation();
-		        double medianElong = obj3Dvox.getMedianElongation();
-
-		        double volEllipse = obj3Dvox.getVolumeEllipseUnit();
-		        double volToVolEllipse = obj3Dvox.getRatioEllipsoid();
-		        
-	        	// Moment Invariants:
-	        	
-	        	double[] homInv = obj3Dvox.getHomogeneousInvariants(); // n=5
-	        	
-	        	double homInv1 = homInv[0];
-	        	double homInv2 = homInv[1];
-	        	double homInv3 = homInv[2];
-	        	double homInv4 = homInv[3];
-	        	double homInv5 = homInv[4];
-	        	
-	        	double[] geoInv = obj3Dvox.getGeometricInvariants(); // n=6
-	        	
-	        	double geoInv1 = geoInv[0];
-	        	double geoInv2 = geoInv[1];
-	        	double geoInv3 = geoInv[2];
-	        	double geoInv4 = geoInv[3];
-	        	double geoInv5 = geoInv[4];
-	        	double geoInv6 = geoInv[5];
-	        	
-	        	double[] inv = obj3Dvox.getMoments3D(); // n=5
-	        	
-	        	double biocatJ1 = inv[0];
-	        	double biocatJ2 = inv[1];
-	        	double biocatJ3 = inv[2];
-	        	double biocatI1 = inv[3];
-	        	double biocatI2 = inv[4];
-
-		        //INTENSITY MEASURES
-		        double meanPix = obj3Dvox.getPixMeanValue(intensityImg);
-		        double sdPix = obj3Dvox.getPixStdDevValue(intensityImg);
-		        double maxPix = obj3Dvox.getPixMaxValue(intensityImg);
-		        double medianPix = obj3Dvox.getPixMedianValue(intensityImg);
-		        double minPix = obj3Dvox.getPixMinValue(intensityImg);
-
-		        // } //end objGeoFilter high-pass Filter
-
-		        dataObj.setDataValues( x1,  y1,  z1,  objNo,  volVoxels,  areaVoxels,  xMin,  xMax,  yMin,
-		        		yMax,  zMin,  zMax,  centreX,  centreY,  centreZ,  compactness,
-		        		sphericity,  volConvex,  surfConvex,  solidity3D,  convexity3D, 
-		        		volToVolBox,  mainElong,  medianElong,  volEllipse,  volToVolEllipse, 
-						 homInv1, homInv2, homInv3, homInv4, homInv5, 
-						 geoInv1, geoInv2, geoInv3, geoInv4, geoInv5, geoInv6, 
-						 biocatJ1, biocatJ2, biocatJ3, biocatI1, biocatI2,
-		        		meanPix,  sdPix,  maxPix,  medianPix,  minPix);
-
-		        return dataObj;
-
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)newPixValue);
+		
+		//analyse the filled pixels:
+			//Want to analyse pixel number (size), geometry (location and bounding box), and
+			//Shape characteristics:
+		accumulator.addVoxels(floodFill26, img, intensityImg);
+		Object3DVoxels obj3Dvox = featureSet.requiresObject3D() ? 
+				new Object3DVoxels( getVoxels(floodFill26) ) : null;
+		
+		//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
+			//CLASH with another obj Bary Centre!
+			//Therefore, the FIRST VOXEL is taken from the filled voxels -> the voxel with the lowest z, y and x:
+		Point3D p3d = getFirstVoxel(floodFill26);
+		
+		return measureObject(accumulator, obj3Dvox, p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), 
+								objCounter, intensityImg, convexMeasures);
 	    
 	}
 	
@@ -2047,375 +704,463 @@ public class ObjectVoxelProcessing {
 	
 	private ObjectDataContainer objAssessment3DByte26(ImageByte img, ImageInt intensityImg, IntCoord3D seed, 
 												int objCounter, int newPixValue, boolean convexMeasures) {
-		//long startTime = System.currentTimeMillis();
-		//long currentTime;
-		//IJ.log("start time: "+startTime);
 		
-		//IJ.log("seed: x: "+seed.x+" y: "+seed.y+" z: "+seed.z);
+		//fill the object with newPixValue -> remove these pixels from further analysis:
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)newPixValue);
 		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
+		//analyse the filled pixels:
+			//Want to analyse pixel number (size), geometry (location and bounding box), and
+			//Shape characteristics:
+		accumulator.addVoxels(floodFill26, img, intensityImg);
+		Object3DVoxels obj3Dvox = featureSet.requiresObject3D() ? 
+				new Object3DVoxels( getVoxels(floodFill26) ) : null;
 		
-		//int to store xy ref:
-		int xy = 0;
-        
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        
-        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        // IJ.showMessage("Original Value: "+ ((int)origVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            // IJ.log("current coord xy: "+xy);
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	// IJ.log("add: x: "+curCoord.x+" y: "+curCoord.y+" z: "+curCoord.z);
-            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-            	//analyse.add(curCoord);
-            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-            	 
-            	// IJ.log("Coord val: "+pixels[curCoord.z][xy]);
-            	 //Set pixel to newPixValue -> remove this pixel from further analysis:
-                pixels[curCoord.z][xy] = (byte)newPixValue;
-                // IJ.log("Coord val set to: "+pixels[curCoord.z][xy]);
-                // IJ.log("");
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                       
-                    	for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                               
-                            	for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX) { 
-                                    	
-                                    	if((xx != 0 || yy != 0 || zz != 0)) { 
-                                    		// xx, yy, zz must not all equal 0, as this is the central pixel!
-                                    		
-                                    		//if any of these equal the original voxel value, add to queue:
-                                    		if (pixels[curZ][curX + curY * sizeX] == origVal) {
-                                    			queue.add(new IntCoord3D(curX, curY, curZ));
-                                    			// IJ.log("added: "+curX+" "+curY+" "+curZ );
-                                    		}	
-                                    	}
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            // IJ.log("");
-        } //end while loop
-        
-        // IJ.showMessage("Reached end of while loop!");
-        
-        //analyse the pixels in analyse:
-        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-        	//Shape characteristics:
-        
-       // currentTime = System.currentTimeMillis() - startTime;
-        //IJ.log("creating object3Dvoxels time: "+currentTime );
-        
-        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-        
-        //currentTime = System.currentTimeMillis() - startTime;
-        //IJ.log("creating bounding box time: "+currentTime );
-        
-        int[] boundingBox = obj3Dvox.getBoundingBox();
-        
-        //Analyse Pixels IF this Obj passes the objGeoFilter High-Pass Filter:
-        	//No low-pass filter required as no obj is too big... This will be dealt with in the
-        		//ObjectFilter.
-        //if(obj3Dvox.getVolumePixels() >= objGeoFilter.minSize && boundingBox[0] >= objGeoFilter.minXY
-        	//	&& boundingBox[2] >= objGeoFilter.maxXY && boundingBox[4] >= objGeoFilter.minZ ) {
-        
-        	//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
-        		//CLASH with another obj Bary Centre!
-        		//Therefore, I have made a new method -> getFirstVoxel()
-        			//Takes Object3DVoxels obj as parameter, it gets its ArrayList, converted it to HashSet, and
-        				//then searches through the BoundingBox (starting at xMin, yMin, zMin) and finds the
-        				//FIRST VOXEL -> which is returned as a Point3D object:
-        	
-        // TODO Move the Data Extraction to the MCIB_SM_DataObj class!
-        // Therefore, this method should just return either 'analyse' (ArrayList of Voxel3D obj), or
-        	// return the Object3DVoxels made from 'analyse'
-        	// By extracting the data in the same class as the data points are defined, it is easy to add
-        	// or modify the set of data points collected.
-        
-       // currentTime = System.currentTimeMillis() - startTime;
-       // IJ.log("getFirstVoxel time: "+currentTime );
-        
-        	Point3D p3d = getFirstVoxel(obj3Dvox);
-        	
-        	int x1 = p3d.getRoundX();
-        	int y1 = p3d.getRoundY();
-        	int z1 = p3d.getRoundZ();
-        
-        	//Obj Counter:
-        	int objNo = objCounter;
-        
-        	//GEOMETRICAL MEASURES:
-        	int volVoxels = obj3Dvox.getVolumePixels();
-        	double areaVoxels = obj3Dvox.getAreaPixels() ;
-        
-        
-        	int xMin = boundingBox[0];
-        	int xMax = boundingBox[1];
-        	int yMin = boundingBox[2];
-        	int yMax = boundingBox[3];
-        	int zMin = boundingBox[4];
-        	int zMax = boundingBox[5];
-        	
-        	int xLength = xMax - xMin + 1; // +1 to account for the FIRST PIXEL (i,e is first is 10 and last is 10,
-        	int yLength = yMax - yMin + 1; // its still 1 voxel thick!)
-        	int zLength = zMax - zMin + 1;
-        
-        	double centreX = obj3Dvox.getCenterX();
-        	double centreY = obj3Dvox.getCenterY();
-        	double centreZ = obj3Dvox.getCenterZ();
-        
-        	//SHAPE MEASURES:
-        	double compactness = obj3Dvox.getCompactness(true);
-        	double sphericity = obj3Dvox.getSphericity(true);
-
-        	double volConvex = 0.0;
-        	double surfConvex = 0.0;
-        	double solidity3D = 1.0;
-			double convexity3D = 1.0;
-        	
-			if(convexMeasures == true) {
-				if( (xMax-xMin) != 0 && 
-						(yMax-yMin) != 0 && 
-						(zMax-zMin) != 0 ) {
-					// the object exists in more than one slice in X Y & Z - so compute 3D Convex Hull:
-
-					//compute the convex obj to calculate solidity3D and convexity3D:
-					Object3DVoxels convex3Dobj = obj3Dvox.getConvexObject();
-					//get its volume and surface area:
-					volConvex = convex3Dobj.getVolumePixels();
-					surfConvex = convex3Dobj.getAreaPixels();
-
-					//get original obj vol. and surf.:
-					//double vol = obj3Dvox.getVolumePixels();
-					//double surf = obj3Dvox.getAreaPixels();
-
-					//Compute Solidity3D and Convexity3D:
-					//rt.addValue("Solidity 3D", (vol/volConvex) );
-					//rt.addValue("Convexity 3D", (surf/surfConvex) );
-					solidity3D = ((double)volVoxels/volConvex);
-					convexity3D = (surfConvex/areaVoxels);
-
-					//IJ.log(" ");
-					//LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-					//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-					//IJ.log(" ");
-
-				}
-				// TODO This method needs improving, can the convex voxels be derived from a co-planar objecr
-				// in a better way?  Need to look at where the error occurs, and try to adjustObject3DVoxels
-				else {
-					// if object is only in one plane in any dimension - need to calculate the convex hull in 2D:
-
-					// will calculate the convex volume and surface convex area of co-planar objects by 
-					// putting two of them together:
-					if( (xMax-xMin) != 0 && 
-							(yMax-yMin) != 0 && 
-							(zMax-zMin) == 0 ) {
-
-						Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-						LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-						obj3Dvox2.addVoxels(vox3D);
-						obj3Dvox2.addVoxels(vox3D);
-
-						//IJ.log(" ");
-						//IJ.log("COPLANAER Z");
-						//IJ.log(" ");
-
-						//IJ.log("co-planar z: obj3Dvox: "+vox3D);
-						//IJ.log(" ");
-
-						//compute the convex obj to calculate solidity3D and convexity3D:
-						Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-						//get its volume and surface area:
-						volConvex = convex3Dobj.getVolumePixels();
-						surfConvex = convex3Dobj.getAreaPixels();
-
-						//Compute Solidity3D and Convexity3D:
-						solidity3D = (double)volVoxels/volConvex;
-						convexity3D = (surfConvex/areaVoxels);
-
-					} // Z
-
-					else if( (xMax-xMin) != 0 && 
-							(yMax-yMin) == 0 && 
-							(zMax-zMin) != 0 ) {
-
-						Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-						LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-						obj3Dvox2.addVoxels(vox3D);
-						obj3Dvox2.addVoxels(vox3D);
-
-						//for(int a=0; a<vox3D.size(); a++) {
-							//vox3D.get(a).setY( vox3D.get(a).getY() + 1 );
-						//}
-
-						//compute the convex obj to calculate solidity3D and convexity3D:
-						Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-
-						//get its volume and surface area:
-						volConvex = convex3Dobj.getVolumePixels();
-						surfConvex = convex3Dobj.getAreaPixels();
-
-						//Compute Solidity3D and Convexity3D:
-						solidity3D = (double)volVoxels/volConvex;
-						convexity3D = (surfConvex/areaVoxels);
-
-					} // Y
-
-					else if( (xMax-xMin) == 0 && 
-							(yMax-yMin) != 0 && 
-							(zMax-zMin) != 0 ) {
-
-						Object3DVoxels obj3Dvox2 = new Object3DVoxels();
-
-						LinkedList<Voxel3D> vox3D = obj3Dvox.getVoxels();
-
-						obj3Dvox2.addVoxels(vox3D);
-						obj3Dvox2.addVoxels(vox3D);
-
-						//for(int a=0; a<vox3D.size(); a++) {
-							//vox3D.get(a).setX( vox3D.get(a).getX() + 1 );
-						//}
-
-						//compute the convex obj to calculate solidity3D and convexity3D:
-						Object3DVoxels convex3Dobj = obj3Dvox2.getConvexObject();
-						//get its volume and surface area:
-						volConvex = convex3Dobj.getVolumePixels();
-						surfConvex = convex3Dobj.getAreaPixels();
-
-						//get original obj vol. and surf.:
-						//double vol = obj3Dvox.getVolumePixels();
-						//double surf = obj3Dvox.getAreaPixels();
-
-						//Compute Solidity3D and Convexity3D:
-						//rt.addValue("Solidity 3D", (vol/volConvex) );
-						//rt.addValue("Convexity 3D", (surf/surfConvex) );
-						solidity3D = (double)volVoxels/volConvex;
-						convexity3D = (surfConvex/areaVoxels);
-
-					} // X
-
-					else {
-						// more than one dimension is co-planar -> so set solidity and convexity to 1.0:
-						// the values are 1.0 by default.
-						// solidity3D = 1.0;
-						// convexity3D = 1.0;
-					}
-
+		//FIRST PIXEL - could use Bary Centre -> but not guaranteed to be a voxel in the obj!  Therefore could potentially
+			//CLASH with another obj Bary Centre!
+			//Therefore, the FIRST VOXEL is taken from the filled voxels -> the voxel with the lowest z, y and x:
+		Point3D p3d = getFirstVoxel(floodFill26);
+		
+		return measureObject(accumulator, obj3Dvox, p3d.getRoundX(), p3d.getRoundY(), p3d.getRoundZ(), 
+								objCounter, intensityImg, convexMeasures);
+	    
+	}
+	
+	
+	
+	
+	/**
+	 * This method will assess the object with the given label in objectLabels, and return an object which
+	 * contains all of the measures made on this object.  The object voxels are set to newPixValue in img,
+	 * as in objAssessment3d() with a seed, but the voxels are read from the labelling instead of being
+	 * found by a flood fill.  If newPixValue is KEEP_PIX_VALUE, img is not modified.
+	 * @param img
+	 * @param intensityImg
+	 * @param objectLabels
+	 * @param label
+	 * @param objCounter
+	 * @param newPixValue
+	 * @param convexMeasures
+	 * @return
+	 */
+	public ObjectDataContainer objAssessment3d(ImageInt img, ImageInt intensityImg, ObjectLabels objectLabels, 
+									int label, int objCounter, int newPixValue, boolean convexMeasures) {
+		
+		return objAssessment3d(img, intensityImg, objectLabels, label, objCounter, newPixValue, 
+								convexMeasures, accumulator);
+		
+	}
+	
+	/**
+	 * Assess the labelled object, using acc to accumulate its measures.  Each thread assessing objects must
+	 * pass its own ObjectFeatureAccumulator.
+	 */
+	protected ObjectDataContainer objAssessment3d(ImageInt img, ImageInt intensityImg, ObjectLabels objectLabels, 
+			int label, int objCounter, int newPixValue, boolean convexMeasures, ObjectFeatureAccumulator acc) {
+		
+		//set the object to newPixValue -> remove these pixels from further analysis:
+		if(newPixValue != KEEP_PIX_VALUE) {
+			objectLabels.setObjectValue(img, label, newPixValue);
+		}
+		
+		acc.addVoxels(objectLabels, label, intensityImg);
+		Object3DVoxels obj3Dvox = featureSet.requiresObject3D() ? 
+				new Object3DVoxels( objectLabels.getVoxels(label) ) : null;
+		
+		//FIRST VOXEL - the voxel with the lowest z, y and x in the object:
+		int firstVoxel = objectLabels.getFirstVoxelIndex(label);
+		
+		return measureObject(acc, obj3Dvox, objectLabels.getX(firstVoxel), objectLabels.getY(firstVoxel), 
+								objectLabels.getZ(firstVoxel), objCounter, intensityImg, convexMeasures);
+		
+	}
+	
+	/**
+	 * This method will assess all of the objects in objectLabels on the ForkJoinPool pool, and return an array
+	 * of the data from each object, in label order:  the object with label n is returned at index n-1, and is
+	 * given the object number objCounter + n.  Each object is set to newPixValue in img.
+	 * <p>
+	 * The objects are independent - each has its own voxels in objectLabels - so they are assessed in parallel,
+	 * but the returned array is in the same order as serial assessment.
+	 * @param img
+	 * @param intensityImg
+	 * @param objectLabels
+	 * @param objCounter
+	 * @param newPixValue
+	 * @param convexMeasures
+	 * @param pool
+	 * @return
+	 */
+	public ObjectDataContainer[] objAssessment3d(ImageInt img, ImageInt intensityImg, ObjectLabels objectLabels, 
+							int objCounter, int newPixValue, boolean convexMeasures, ForkJoinPool pool) {
+		
+		ObjectLabels[] labelSets = new ObjectLabels[objectLabels.getLabelCount()];
+		int[] labels = new int[objectLabels.getLabelCount()];
+		for(int a=0; a<labels.length; a++) {
+			labelSets[a] = objectLabels;
+			labels[a] = a + 1;
+		}
+		return objAssessment3d(img, intensityImg, labelSets, labels, objCounter, newPixValue, convexMeasures, pool);
+		
+	}
+	
+	/**
+	 * This method will assess the objects labels[a] in labelSets[a] on the ForkJoinPool pool, and return an array
+	 * of the data from each object, in the passed order:  object a is returned at index a, and is given the object
+	 * number objCounter + a + 1.  Each object is set to newPixValue in img.
+	 * @param img
+	 * @param intensityImg
+	 * @param labelSets
+	 * @param labels
+	 * @param objCounter
+	 * @param newPixValue
+	 * @param convexMeasures
+	 * @param pool
+	 * @return
+	 */
+	public ObjectDataContainer[] objAssessment3d(ImageInt img, ImageInt intensityImg, ObjectLabels[] labelSets, 
+				int[] labels, int objCounter, int newPixValue, boolean convexMeasures, ForkJoinPool pool) {
+		
+		int[] objNos = new int[labels.length];
+		for(int a=0; a<objNos.length; a++) {
+			objNos[a] = objCounter + a + 1;
+		}
+		return objAssessment3d(img, intensityImg, labelSets, labels, objNos, newPixValue, convexMeasures, pool);
+		
+	}
+	
+	/**
+	 * This method will assess the objects labels[a] in labelSets[a] on the ForkJoinPool pool, and return an array
+	 * of the data from each object, in the passed order:  object a is returned at index a, and is given the object
+	 * number objNos[a].  This allows objects from several ROIs, each numbered from 1, to be assessed in one call.
+	 * Each object is set to newPixValue in img.
+	 * @param img
+	 * @param intensityImg
+	 * @param labelSets
+	 * @param labels
+	 * @param objNos
+	 * @param newPixValue
+	 * @param convexMeasures
+	 * @param pool
+	 * @return
+	 */
+	public ObjectDataContainer[] objAssessment3d(ImageInt img, ImageInt intensityImg, ObjectLabels[] labelSets, 
+				int[] labels, int[] objNos, int newPixValue, boolean convexMeasures, ForkJoinPool pool) {
+		
+		ObjectDataContainer[] dataObjs = new ObjectDataContainer[labels.length];
+		
+		pool.invoke( new ObjAssessmentTask(img, intensityImg, labelSets, labels, objNos, newPixValue, 
+											convexMeasures, dataObjs, 0, labels.length) );
+		
+		return dataObjs;
+		
+	}
+	
+	/**
+	 * Assesses a range of labelled objects, splitting the range in half until it is at most LEAF_SIZE objects.
+	 * Each leaf assesses its objects in order with its own ObjectFeatureAccumulator, and writes each result to
+	 * its own index in dataObjs.
+	 * 
+	 * @author stevenwest
+	 *
+	 */
+	protected class ObjAssessmentTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * Maximum number of objects assessed in one task - objects vary widely in size, so this is kept
+		 * small for the pool to balance the work.
+		 */
+		static final int LEAF_SIZE = 4;
+		
+		ImageInt img, intensityImg;
+		ObjectLabels[] labelSets;
+		int[] labels, objNos;
+		int newPixValue;
+		boolean convexMeasures;
+		ObjectDataContainer[] dataObjs;
+		int start, end;
+		
+		ObjAssessmentTask(ImageInt img, ImageInt intensityImg, ObjectLabels[] labelSets, int[] labels, 
+							int[] objNos, int newPixValue, boolean convexMeasures, 
+							ObjectDataContainer[] dataObjs, int start, int end) {
+			this.img = img;
+			this.intensityImg = intensityImg;
+			this.labelSets = labelSets;
+			this.labels = labels;
+			this.objNos = objNos;
+			this.newPixValue = newPixValue;
+			this.convexMeasures = convexMeasures;
+			this.dataObjs = dataObjs;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if(end - start <= LEAF_SIZE) {
+				ObjectFeatureAccumulator acc = new ObjectFeatureAccumulator();
+				for(int a=start; a<end; a++) {
+					dataObjs[a] = objAssessment3d(img, intensityImg, labelSets[a], labels[a], objNos[a], 
+													newPixValue, convexMeasures, acc);
 				}
 			}
-        	
-        	//currentTime = System.currentTimeMillis() - startTime;
-	        //IJ.log("vol elong and intensity Measures time: "+currentTime );
-        
-        	double volToVolBox = obj3Dvox.getRatioBox();
-        
-        	double mainElong = obj3Dvox.getMainElongation();
-        	double medianElong = obj3Dvox.getMedianElongation();
-        
-        	double volEllipse = obj3Dvox.getVolumeEllipseUnit();
-        	double volToVolEllipse = obj3Dvox.getRatioEllipsoid();
-        	
-      	// Moment Invariants:
-        	
-        	double[] homInv = obj3Dvox.getHomogeneousInvariants(); // n=5
-        	
-        	double homInv1 = homInv[0];
-        	double homInv2 = homInv[1];
-        	double homInv3 = homInv[2];
-        	double homInv4 = homInv[3];
-        	double homInv5 = homInv[4];
-        	
-        	double[] geoInv = obj3Dvox.getGeometricInvariants(); // n=6
-        	
-        	double geoInv1 = geoInv[0];
-        	double geoInv2 = geoInv[1];
-        	double geoInv3 = geoInv[2];
-        	double geoInv4 = geoInv[3];
-        	double geoInv5 = geoInv[4];
-        	double geoInv6 = geoInv[5];
-        	
-        	double[] inv = obj3Dvox.getMoments3D(); // n=5
-        	
-        	double biocatJ1 = inv[0];
-        	double biocatJ2 = inv[1];
-        	double biocatJ3 = inv[2];
-        	double biocatI1 = inv[3];
-        	double biocatI2 = inv[4];
-        
-        	//INTENSITY MEASURES
-        	double meanPix = obj3Dvox.getPixMeanValue(intensityImg);
-        	double sdPix = obj3Dvox.getPixStdDevValue(intensityImg);
-        	double maxPix = obj3Dvox.getPixMaxValue(intensityImg);
-        	double medianPix = obj3Dvox.getPixMedianValue(intensityImg);
-        	double minPix = obj3Dvox.getPixMinValue(intensityImg);
-        
+			else {
+				int mid = (start + end) >>> 1;
+				invokeAll(
+						new ObjAssessmentTask(img, intensityImg, labelSets, labels, objNos, newPixValue, 
+												convexMeasures, dataObjs, start, mid), 
+						new ObjAssessmentTask(img, intensityImg, labelSets, labels, objNos, newPixValue, 
+												convexMeasures, dataObjs, mid, end) );
+			}
+		}
+		
+	}
+	
+	
+	/**
+	 * Measures the object obj3Dvox, returning an ObjectDataContainer containing all of the measures made on
+	 * this object.  The FIRST VOXEL (x1, y1, z1) and object number are passed, as these are determined by
+	 * how the object was found in the image.  Intensity measures are made on intensityImg.
+	 * <p>
+	 * Volume, area, bounding box, centre, volume to box ratio, and the mean, sd, min and max intensity are
+	 * taken from acc, which must hold the measures of the same object.  The elongations and ellipsoid
+	 * measures are computed from the second moments in acc, and the median intensity from its intensity
+	 * histogram.  Convex measures are computed by ConvexHull3D on the surface voxels in acc - a DEGENERATE
+	 * object (1 to 3 voxels, or collinear voxels), or a hull with fewer voxels than the object, falls back to
+	 * the object itself as its convex object, so its solidity and convexity are 1.  The compactness,
+	 * sphericity and moment invariants are computed on obj3Dvox.  Measures are only computed if they are in
+	 * the featureSet - otherwise they are set to missing values.  obj3Dvox may be null if the featureSet does
+	 * not require it.
+	 * @param acc
+	 * @param obj3Dvox
+	 * @param x1
+	 * @param y1
+	 * @param z1
+	 * @param objNo
+	 * @param intensityImg
+	 * @param convexMeasures
+	 * @return
+	 */
+	protected ObjectDataContainer measureObject(ObjectFeatureAccumulator acc, Object3DVoxels obj3Dvox, 
+							int x1, int y1, int z1, int objNo, ImageInt intensityImg, boolean convexMeasures) {
+		
+		int[] boundingBox = acc.getBoundingBox();
+		
+		//GEOMETRICAL MEASURES:
+		int volVoxels = acc.getVolume();
+		double areaVoxels = acc.getSurface();
+		
+		
+		int xMin = boundingBox[0];
+		int xMax = boundingBox[1];
+		int yMin = boundingBox[2];
+		int yMax = boundingBox[3];
+		int zMin = boundingBox[4];
+		int zMax = boundingBox[5];
+		
+		int xLength = xMax - xMin + 1; // +1 to account for the FIRST PIXEL (i,e is first is 10 and last is 10,
+		int yLength = yMax - yMin + 1; // its still 1 voxel thick!)
+		int zLength = zMax - zMin + 1;
+		
+		double centreX = acc.getCentreX();
+		double centreY = acc.getCentreY();
+		double centreZ = acc.getCentreZ();
+		
+		// measures not in the featureSet are skipped, and returned as missing values:
+		double missing = Utils.missingValue();
+		
+		//SHAPE MEASURES:
+		double compactness = missing;
+		double sphericity = missing;
+		if( featureSet.containsAny(ObjectDataContainer.COMPACTNESS, ObjectDataContainer.SPHERICITY) ) {
+			compactness = obj3Dvox.getCompactness(true);
+			sphericity = obj3Dvox.getSphericity(true);
+		}
+
+		double volConvex = 0.0;
+		double surfConvex = 0.0;
+		double solidity3D = 1.0;
+		double convexity3D = 1.0;
+		
+		if( featureSet.containsAny(ObjectFeatureSet.CONVEX_TITLES) == false ) {
+			volConvex = missing;
+			surfConvex = missing;
+			solidity3D = missing;
+			convexity3D = missing;
+		}
+		else if(convexMeasures == true) {
+			//convex hull of the surface voxels - these have the same hull as the whole object:
+			ConvexHull3D convexHull = new ConvexHull3D();
+			convexHull.compute(acc.getSurfaceX(), acc.getSurfaceY(), acc.getSurfaceZ(), acc.getSurface() );
+			
+			//get its volume and surface area:
+			volConvex = convexHull.getConvexVolume();
+			surfConvex = convexHull.getConvexSurface();
+			
+			//DEGENERATE objects - 1 to 3 voxels, or collinear voxels - have no hull with any extent beyond the
+				//object, and a hull can never hold fewer voxels than the object - so in these cases the convex
+				//object is the object itself:
+			if(volVoxels <= 3 || convexHull.getDimension() < 2 || volConvex < volVoxels) {
+				volConvex = volVoxels;
+				surfConvex = areaVoxels;
+			}
+			
+			//Compute Solidity3D and Convexity3D:
+			solidity3D = ((double)volVoxels/volConvex);
+			convexity3D = (surfConvex/areaVoxels);
+		}
+		
+		//currentTime = System.currentTimeMillis() - startTime;
+		//IJ.log("vol elong and intensity Measures time: "+currentTime );
+		
+		double volToVolBox = acc.getVolToVolBox();
+		
+		double mainElong = missing;
+		double medianElong = missing;
+		if( featureSet.containsAny(ObjectDataContainer.MAINELONG, ObjectDataContainer.MEDIANELONG) ) {
+			mainElong = acc.getMainElongation();
+			medianElong = acc.getMedianElongation();
+		}
+		
+		double volEllipse = missing;
+		double volToVolEllipse = missing;
+		if( featureSet.containsAny(ObjectDataContainer.VOLELLIPSE, ObjectDataContainer.VOLTOVOLELLIPSE) ) {
+			volEllipse = acc.getEllipsoidVolume();
+			volToVolEllipse = acc.getVolToVolEllipsoid();
+		}
+		
+		// Moment Invariants:
+		
+		double[] homInv = new double[] { missing, missing, missing, missing, missing };
+		if( featureSet.containsAny(ObjectDataContainer.HOMINV1, ObjectDataContainer.HOMINV2, 
+				ObjectDataContainer.HOMINV3, ObjectDataContainer.HOMINV4, ObjectDataContainer.HOMINV5) ) {
+			homInv = obj3Dvox.getHomogeneousInvariants(); // n=5
+		}
+		
+		double homInv1 = homInv[0];
+		double homInv2 = homInv[1];
+		double homInv3 = homInv[2];
+		double homInv4 = homInv[3];
+		double homInv5 = homInv[4];
+		
+		double[] geoInv = new double[] { missing, missing, missing, missing, missing, missing };
+		if( featureSet.containsAny(ObjectDataContainer.GEOINV1, ObjectDataContainer.GEOINV2, ObjectDataContainer.GEOINV3, 
+				ObjectDataContainer.GEOINV4, ObjectDataContainer.GEOINV5, ObjectDataContainer.GEOINV6) ) {
+			geoInv = obj3Dvox.getGeometricInvariants(); // n=6
+		}
+		
+		double geoInv1 = geoInv[0];
+		double geoInv2 = geoInv[1];
+		double geoInv3 = geoInv[2];
+		double geoInv4 = geoInv[3];
+		double geoInv5 = geoInv[4];
+		double geoInv6 = geoInv[5];
+		
+		double[] inv = new double[] { missing, missing, missing, missing, missing };
+		if( featureSet.containsAny(ObjectDataContainer.BIOCATJ1, ObjectDataContainer.BIOCATJ2, 
+				ObjectDataContainer.BIOCATJ3, ObjectDataContainer.BIOCATI1, ObjectDataContainer.BIOCATI2) ) {
+			inv = obj3Dvox.getMoments3D(); // n=5
+		}
+		
+		double biocatJ1 = inv[0];
+		double biocatJ2 = inv[1];
+		double biocatJ3 = inv[2];
+		double biocatI1 = inv[3];
+		double biocatI2 = inv[4];
+		
+		//INTENSITY MEASURES
+		double meanPix = acc.getMeanIntensity();
+		double sdPix = acc.getSdIntensity();
+		double maxPix = acc.getMaxIntensity();
+		double medianPix = missing;
+		if( featureSet.contains(ObjectDataContainer.MEDIANPIX) ) {
+			medianPix = acc.getMedianIntensity();
+		}
+		double minPix = acc.getMinIntensity();
+		
        // } //end objGeoFilter high-pass Filter
-        	
-        	// IJ.showMessage("x1: "+x1+" y1: "+y1+" z1: "+z1);
-        	
-        	//currentTime = System.currentTimeMillis() - startTime;
+		
+		// IJ.showMessage("x1: "+x1+" y1: "+y1+" z1: "+z1);
+		
+		//currentTime = System.currentTimeMillis() - startTime;
 	        //IJ.log("Return Obj time: "+currentTime );
-        	//IJ.log("");
-        	return new ObjectDataContainer( x1,  y1,  z1,  objNo,  volVoxels,  areaVoxels,  xMin,  yMin,
+		//IJ.log("");
+		return new ObjectDataContainer( x1,  y1,  z1,  objNo,  volVoxels,  areaVoxels,  xMin,  yMin,
 					 zMin,  xLength, yLength, zLength,  centreX,  centreY,  centreZ,  compactness,
 					 sphericity,  volConvex,  surfConvex,  solidity3D,  convexity3D, 
-					 volToVolBox,  mainElong,  medianElong,  volEllipse,  volToVolEllipse, 
+					 volToVolBox,  mainElong,  medianElong,  volEllipse,  volToVolEllipse,
 					 homInv1, homInv2, homInv3, homInv4, homInv5, 
 					 geoInv1, geoInv2, geoInv3, geoInv4, geoInv5, geoInv6, 
 					 biocatJ1, biocatJ2, biocatJ3, biocatI1, biocatI2,
 					 meanPix,  sdPix,  maxPix,  medianPix,  minPix);
         
     }
+
+
+
+	/**
+	 * Returns the FIRST VOXEL of the object filled in the last fill of floodFill:  the voxel with the
+	 * lowest z, then lowest y, then lowest x - the same voxel as found by getFirstVoxel(Object3DVoxels).
+	 * Returns null if no voxels were filled.
+	 * @param floodFill
+	 * @return
+	 */
+	public static Point3D getFirstVoxel(FloodFill3D floodFill) {
+		int index = floodFill.getFirstVoxelIndex();
+		if(index < 0) {
+			return null;
+		}
+		return new Point3D( (double)floodFill.getX(index), (double)floodFill.getY(index), (double)floodFill.getZ(index) );
+	}
 	
+	/**
+	 * Returns a list of Voxel3D objects for all the voxels filled in the last fill of floodFill, for
+	 * constructing an Object3DVoxels obj.
+	 * @param floodFill
+	 * @return
+	 */
+	public static LinkedList<Voxel3D> getVoxels(FloodFill3D floodFill) {
+		LinkedList<Voxel3D> voxels = new LinkedList<Voxel3D>();
+		int index;
+		for(int a=0; a<floodFill.getFilledCount(); a++) {
+			index = floodFill.getFilledIndex(a);
+			voxels.add(new Voxel3D(floodFill.getX(index), floodFill.getY(index), floodFill.getZ(index), (float)(255) ) );
+		}
+		return voxels;
+	}
 	
+	/**
+	 * Counts the voxels filled in the last fill of floodFill which are inside borderRoi (index 0) and
+	 * outside borderRoi (index 1).  If includeBorder is true, voxels just to the right of or below the
+	 * ROI edge are also counted as inside the ROI.
+	 * @param floodFill
+	 * @param borderRoi
+	 * @param includeBorder
+	 * @return
+	 */
+	private static int[] countRoiPixels(FloodFill3D floodFill, Roi borderRoi, boolean includeBorder) {
+		int[] pixCounts = new int[2];
+		int index, x, y;
+		for(int a=0; a<floodFill.getFilledCount(); a++) {
+			index = floodFill.getFilledIndex(a);
+			x = floodFill.getX(index);
+			y = floodFill.getY(index);
+			if( borderRoi.contains(x, y) ) {
+				//if in ROI, add to ref 0: IN
+				pixCounts[0] = pixCounts[0] + 1;
+			}
+			else if( includeBorder && ( borderRoi.contains(x-1, y) || borderRoi.contains(x, y-1) ) ) {
+				//if on border of ROI, add to ref 0: IN
+				pixCounts[0] = pixCounts[0] + 1;
+			}
+			else {
+				//if away from border, add to ref 1: OUT
+				pixCounts[1] = pixCounts[1] + 1;
+			}
+		}
+		return pixCounts;
+	}
 	
 	
 	public static Point3D getFirstVoxel(Object3DVoxels obj3Dvox) {
@@ -2473,186 +1218,26 @@ public class ObjectVoxelProcessing {
 	
 	protected static Object3DVoxels reconstructObj3DShort(ImageShort img,  IntCoord3D seed, int newPixValue) {
 		
-
-		//A reference to IntCorrd3D object:
-				IntCoord3D curCoord;
-				
-				//int to store xy ref:
-				int xy = 0;
-		        
-				//local reference to the pixel values, and image sizes:
-				short[][] pixels = img.pixels;
-		        int sizeX = img.sizeX;
-		        int sizeY = img.sizeY;
-		        int sizeZ = img.sizeZ;
-		        
-		        //reference to the original voxel value of the obj -> for appropriate filtering:
-		        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-		        
-		        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-		        
-		        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		        
-		        //First, add the initial seed to the queue:
-		        queue.add(seed);
-		        
-		        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-		        
-		        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-		        
-		        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-		        
-		        //loop through queue:
-		        while (!queue.isEmpty()) {
-		        	//get the coord obj - and remove from queue:
-		            curCoord = queue.remove(0); // FIXME last element?
-		            
-		            //get xy ref:
-		            xy = curCoord.x + curCoord.y * sizeX;
-		            
-		            //if pixel value of this coord equals original value:
-		            if (pixels[curCoord.z][xy] == origVal) {
-		            	
-		            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-		            	//analyse.add(curCoord);
-		            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-		            	 
-		            	 //Set pixel to 0 -> remove this pixel from further analysis:
-		                pixels[curCoord.z][xy] = (byte)0;
-		                
-		                //loop through all 26 voxels surrounding this voxel:
-		                int curZ, curY, curX;
-		                for (int zz = -1; zz < 2; zz++) {
-		                    curZ = curCoord.z + zz;
-		                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-		                        for (int yy = -1; yy < 2; yy++) {
-		                            curY = curCoord.y + yy;
-		                            if (curY > 0 && curY < (sizeY - 1)) {
-		                                for (int xx = -1; xx < 2; xx++) {
-		                                    curX = curCoord.x + xx;
-		                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-		 
-		                                    	//if any of these equal the original voxel value, add to queue:
-		                                        
-		                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-		                                            queue.add(new IntCoord3D(curX, curY, curZ));
-		                                        }
-		                                    	
-		                                    }
-		                                }
-		                            }
-		                        }
-		                    }
-		                }
-		            }
-		        } //end while loop
-		        
-		        //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-		        
-		        
-		        //analyse the pixels in analyse:
-		        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-		        	//Shape characteristics:
-		        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-		        
-		        return obj3Dvox;
+		FloodFill3D floodFill = staticFloodFill26.get();
+		
+		//Set pixels to 0 -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)0);
+		
+		//return the filled voxels as an Object3DVoxels obj:
+		return new Object3DVoxels( getVoxels(floodFill) );
 		        
 	}
 	
 	
 	protected static Object3DVoxels reconstructObj3DByte(ImageByte img,  IntCoord3D seed, int newPixValue) {
 
-		//create new MCIB_SM_DataObj to fill with data & return:
-		ObjectDataContainer dataObj = new ObjectDataContainer();
-
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
-
-		//int to store xy ref:
-		int xy = 0;
-
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-		int sizeX = img.sizeX;
-		int sizeY = img.sizeY;
-		int sizeZ = img.sizeZ;
-
-		//reference to the original voxel value of the obj -> for appropriate filtering:
-		short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-
-		//array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-
-		//Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-
-		//First, add the initial seed to the queue:
-		queue.add(seed);
-
-		//IJ.showMessage("Old Value: "+ ((int)oldVal) );
-
-		//IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-
-		//IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-
-		//loop through queue:
-		while (!queue.isEmpty()) {
-			//get the coord obj - and remove from queue:
-			curCoord = queue.remove(0); // FIXME last element?
-
-			//get xy ref:
-			xy = curCoord.x + curCoord.y * sizeX;
-
-			//if pixel value of this coord equals original value:
-			if (pixels[curCoord.z][xy] == origVal) {
-
-				//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-				//analyse.add(curCoord);
-				analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-
-				//Set pixel to newPixValue -> remove this pixel from further analysis:
-				pixels[curCoord.z][xy] = (byte)newPixValue;
-
-				//loop through all 26 voxels surrounding this voxel:
-				int curZ, curY, curX;
-				
-				for (int zz = -1; zz < 2; zz++) {
-					curZ = curCoord.z + zz;
-					if (curZ > -1 && curZ < sizeZ) {
-						
-						for (int yy = -1; yy < 2; yy++) {
-							curY = curCoord.y + yy;
-							if (curY > -1 && curY < sizeY) {
-								
-								for (int xx = -1; xx < 2; xx++) {
-									curX = curCoord.x + xx;
-									if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
-
-										//if any of these equal the original voxel value, add to queue:
-
-										if ( (pixels[curZ][curX + curY * sizeX] == origVal) ) {
-											queue.add(new IntCoord3D(curX, curY, curZ));
-										}
-
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-		} //end while loop
-
-		//IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-
-		//analyse the pixels in analyse:
-		//Want to analyse pixel number (size), geometry (location and bounding box), and
-		//Shape characteristics:
-		Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
+		FloodFill3D floodFill = staticFloodFill26.get();
 		
-		return obj3Dvox;
+		//Set pixels to newPixValue -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)newPixValue);
+		
+		//return the filled voxels as an Object3DVoxels obj:
+		return new Object3DVoxels( getVoxels(floodFill) );
 		
 	}
 	
@@ -2679,183 +1264,26 @@ public class ObjectVoxelProcessing {
 	
 	protected static Object3DVoxels reconstructObj3DShort26(ImageShort img,  IntCoord3D seed, int newPixValue) {
 		
-
-		//A reference to IntCorrd3D object:
-				IntCoord3D curCoord;
-				
-				//int to store xy ref:
-				int xy = 0;
-		        
-				//local reference to the pixel values, and image sizes:
-				short[][] pixels = img.pixels;
-		        int sizeX = img.sizeX;
-		        int sizeY = img.sizeY;
-		        int sizeZ = img.sizeZ;
-		        
-		        //reference to the original voxel value of the obj -> for appropriate filtering:
-		        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-		        
-		        //array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-		        
-		        //Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		        LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-		        
-		        //First, add the initial seed to the queue:
-		        queue.add(seed);
-		        
-		        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-		        
-		        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-		        
-		        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-		        
-		        //loop through queue:
-		        while (!queue.isEmpty()) {
-		        	//get the coord obj - and remove from queue:
-		            curCoord = queue.remove(0); // FIXME last element?
-		            
-		            //get xy ref:
-		            xy = curCoord.x + curCoord.y * sizeX;
-		            
-		            //if pixel value of this coord equals original value:
-		            if (pixels[curCoord.z][xy] == origVal) {
-		            	
-		            	//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-		            	//analyse.add(curCoord);
-		            	analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-		            	 
-		            	 //Set pixel to 0 -> remove this pixel from further analysis:
-		                pixels[curCoord.z][xy] = (byte)0;
-		                
-		                //loop through all 26 voxels surrounding this voxel:
-		                int curZ, curY, curX;
-		                for (int zz = -1; zz < 2; zz++) {
-		                    curZ = curCoord.z + zz;
-		                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-		                        for (int yy = -1; yy < 2; yy++) {
-		                            curY = curCoord.y + yy;
-		                            if (curY > 0 && curY < (sizeY - 1)) {
-		                                for (int xx = -1; xx < 2; xx++) {
-		                                    curX = curCoord.x + xx;
-		                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-		 
-		                                    	//if any of these equal the original voxel value, add to queue:
-		                                        
-		                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-		                                            queue.add(new IntCoord3D(curX, curY, curZ));
-		                                        }
-		                                    	
-		                                    }
-		                                }
-		                            }
-		                        }
-		                    }
-		                }
-		            }
-		        } //end while loop
-		        
-		        //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-		        
-		        
-		        //analyse the pixels in analyse:
-		        	//Want to analyse pixel number (size), geometry (location and bounding box), and
-		        	//Shape characteristics:
-		        Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
-		        
-		        return obj3Dvox;
+		FloodFill3D floodFill = staticFloodFill26.get();
+		
+		//Set pixels to 0 -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)0);
+		
+		//return the filled voxels as an Object3DVoxels obj:
+		return new Object3DVoxels( getVoxels(floodFill) );
 		        
 	}
 	
 	
 	protected static Object3DVoxels reconstructObj3DByte26(ImageByte img,  IntCoord3D seed, int newPixValue) {
 
-		//create new MCIB_SM_DataObj to fill with data & return:
-		ObjectDataContainer dataObj = new ObjectDataContainer();
-
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
-
-		//int to store xy ref:
-		int xy = 0;
-
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-		int sizeX = img.sizeX;
-		int sizeY = img.sizeY;
-		int sizeZ = img.sizeZ;
-
-		//reference to the original voxel value of the obj -> for appropriate filtering:
-		short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-
-		//array list of the IntCoord3D -> for the queue (to process all voxels in this method):
-		ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-
-		//Array list of -> for analysis (once all voxels have been collected, want to analyse this obj):
-		LinkedList<Voxel3D> analyse = new LinkedList<Voxel3D>();
-
-		//First, add the initial seed to the queue:
-		queue.add(seed);
-
-		//IJ.showMessage("Old Value: "+ ((int)oldVal) );
-
-		//IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-
-		//IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-
-		//loop through queue:
-		while (!queue.isEmpty()) {
-			//get the coord obj - and remove from queue:
-			curCoord = queue.remove(0); // FIXME last element?
-
-			//get xy ref:
-			xy = curCoord.x + curCoord.y * sizeX;
-
-			//if pixel value of this coord equals original value:
-			if (pixels[curCoord.z][xy] == origVal) {
-
-				//add coord to analyse at end - will analyse this obj at end when all voxels are collected:
-				//analyse.add(curCoord);
-				analyse.add(new Voxel3D(curCoord.x, curCoord.y, curCoord.z, (float)(255) ) );
-
-				//Set pixel to newPixValue -> remove this pixel from further analysis:
-				pixels[curCoord.z][xy] = (byte)newPixValue;
-
-				//loop through all 26 voxels surrounding this voxel:
-				int curZ, curY, curX;
-				for (int zz = -1; zz < 2; zz++) {
-					curZ = curCoord.z + zz;
-					if (curZ > -1 && curZ < sizeZ) {
-						for (int yy = -1; yy < 2; yy++) {
-							curY = curCoord.y + yy;
-							if (curY > -1 && curY < sizeY) {
-								for (int xx = -1; xx < 2; xx++) {
-									curX = curCoord.x + xx;
-									if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
-
-										//if any of these equal the original voxel value, add to queue:
-
-										if (pixels[curZ][curX + curY * sizeX] == origVal) {
-											queue.add(new IntCoord3D(curX, curY, curZ));
-										}
-
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-		} //end while loop
-
-		//IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
-
-		//analyse the pixels in analyse:
-		//Want to analyse pixel number (size), geometry (location and bounding box), and
-		//Shape characteristics:
-		Object3DVoxels obj3Dvox = new Object3DVoxels(analyse);
+		FloodFill3D floodFill = staticFloodFill26.get();
+		
+		//Set pixels to newPixValue -> remove these pixels from further analysis:
+		floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)newPixValue);
 		
-		return obj3Dvox;
+		//return the filled voxels as an Object3DVoxels obj:
+		return new Object3DVoxels( getVoxels(floodFill) );
 		
 	}
 	
@@ -2877,114 +1305,19 @@ public class ObjectVoxelProcessing {
 	
 	private void borderObjFilter3DShort(ImageShort img, IntCoord3D seed, Roi borderRoi, int inVal, int outVal) {
 		
-
-		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
-		int[] pixCounts = new int[2];
-		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
+		//Set pixels to inVal -> assume this obj is INSIDE the ROI - the border flood is always 26-connected:
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)inVal);
 		
-		//int to store xy ref:
-		int xy = 0;
-        
-		//local reference to the pixel values, and image sizes:
-		short[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //Two array lists of the IntCoord3D -> one for the queue (to process all voxels), and one for
-        	//refill (in case the voxels need to be filled with the outVal instead of the inVal):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        ArrayList<IntCoord3D> refill = new ArrayList<IntCoord3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	
-            	//add coord to refill at end - will refill with outVal if pix IN is LOWER than pix OUT:
-            	refill.add(curCoord);
-            	
-            	//add to pixCounts depending on whether this coord is in the roi:
-            	 if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-            		 //if in ROI, add to ref 0: IN
-                 	pixCounts[0] = pixCounts[0] + 1;
-                 }
-            	 else if( borderRoi.contains(curCoord.x-1, curCoord.y ) || borderRoi.contains(curCoord.x, curCoord.y-1 ) ) {
-            		 //if on border of ROI, add to ref 0: IN
-            		 pixCounts[0] = pixCounts[0] + 1;
-            	 }
-                 else {
-                	 //if away from border, add to ref 1: OUT
-                 	pixCounts[1] = pixCounts[1] + 1;
-                 }
-            	
-            	 
-            	 //Set pixel to inVal -> assume this obj is INSIDE the ROI
-                pixels[curCoord.z][xy] = (byte)inVal;
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-                        
-                    	for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > 0 && curY < (sizeY - 1)) {
-                                
-                            	for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
- 
-                                    	//if any of these equal the original voxel value, add to queue:
-                                        
-                                    	if ( (pixels[curZ][curX + curY * sizeX] == origVal) &&
-                                    		objConnectivityFilter(xx,yy,zz,objConnectivity) ) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    	
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } //end while loop
+		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
+		int[] pixCounts = countRoiPixels(floodFill26, borderRoi, true);
         
         //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
         
-        //refill the pixels in refill with OUT ROI Value -> outVal 
+        //refill the filled pixels with OUT ROI Value -> outVal 
         	//IF IN pix (pixCounts[0]) is below OUT pix (pixCounts[1]):
         if(pixCounts[0] < pixCounts[1]) {
-        	while( !refill.isEmpty() ) {
-        		curCoord = refill.remove(0); // FIXME last element?
-	            xy = curCoord.x + curCoord.y * sizeX;
-	            pixels[curCoord.z][xy] = (byte)outVal;
-        	}
+        	floodFill26.refill(img.pixels, (short)outVal);
         }
-
 	    
 	}
 	
@@ -2992,108 +1325,20 @@ public class ObjectVoxelProcessing {
 	
 	private void borderObjFilter3DByte(ImageByte img, IntCoord3D seed, Roi borderRoi, int inVal, int outVal) {
 		
-		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
-		int[] pixCounts = new int[2];
-		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
+		//Set pixels to inVal -> assume this obj is INSIDE the ROI - the border flood is always 26-connected:
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)inVal);
 		
-		//int to store xy ref:
-		int xy = 0;
-        
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //Two array lists of the IntCoord3D -> one for the queue (to process all voxels), and one for
-        	//refill (in case the voxels need to be filled with the outVal instead of the inVal):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        ArrayList<IntCoord3D> refill = new ArrayList<IntCoord3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	
-            	//add coord to refill at end - will refill with outVal if pix IN is LOWER than pix OUT:
-            	refill.add(curCoord);
-            	
-            	//add to pixCounts depending on whether this coord is in the roi:
-            	 if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-            		 //if in ROI, add to ref 0: IN
-                 	pixCounts[0] = pixCounts[0] + 1;
-                 }
-            	 //else if( borderRoi.contains(curCoord.x-1, curCoord.y ) || borderRoi.contains(curCoord.x, curCoord.y-1 ) ) {
-            		 //if on border of ROI, add to ref 0: IN
-            	 	// This is not needed as now the roi is concatenated in RoiAssessmentHandler prior to calling this method!
-            		// pixCounts[0] = pixCounts[0] + 1;
-            	 //}
-                 else {
-                	 //if away from border, add to ref 1: OUT
-                 	pixCounts[1] = pixCounts[1] + 1;
-                 }
-            	
-            	 
-            	 //Set pixel to inVal -> assume this obj is INSIDE the ROI
-                pixels[curCoord.z][xy] = (byte)inVal;
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
- 
-                                    	//if any of these equal the original voxel value, add to queue:
-                                        
-                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    	
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } //end while loop
+		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
+			// the ROI border is not checked, as the roi is concatenated in RoiAssessmentHandler prior to 
+			// calling this method!
+		int[] pixCounts = countRoiPixels(floodFill26, borderRoi, false);
         
        // IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
         
-        //refill the pixels in refill with OUT ROI Value -> outVal 
+        //refill the filled pixels with OUT ROI Value -> outVal 
         	//IF IN pix (pixCounts[0]) is below OUT pix (pixCounts[1]):
         if(pixCounts[0] < pixCounts[1]) {
-        	while( !refill.isEmpty() ) {
-        		curCoord = refill.remove(0); // FIXME last element?
-	            xy = curCoord.x + curCoord.y * sizeX;
-	            pixels[curCoord.z][xy] = (byte)outVal;
-        	}
+        	floodFill26.refill(img.pixels, (byte)outVal);
         }
         
     }
@@ -3116,110 +1361,17 @@ public class ObjectVoxelProcessing {
 	
 	private void borderObjFilter3DShort26(ImageShort img, IntCoord3D seed, Roi borderRoi, int inVal, int outVal) {
 		
-
-		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
-		int[] pixCounts = new int[2];
-		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
+		//Set pixels to inVal -> assume this obj is INSIDE the ROI - the border flood is always 26-connected:
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (short)inVal);
 		
-		//int to store xy ref:
-		int xy = 0;
-        
-		//local reference to the pixel values, and image sizes:
-		short[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //Two array lists of the IntCoord3D -> one for the queue (to process all voxels), and one for
-        	//refill (in case the voxels need to be filled with the outVal instead of the inVal):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        ArrayList<IntCoord3D> refill = new ArrayList<IntCoord3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	
-            	//add coord to refill at end - will refill with outVal if pix IN is LOWER than pix OUT:
-            	refill.add(curCoord);
-            	
-            	//add to pixCounts depending on whether this coord is in the roi:
-            	 if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-            		 //if in ROI, add to ref 0: IN
-                 	pixCounts[0] = pixCounts[0] + 1;
-                 }
-            	 else if( borderRoi.contains(curCoord.x-1, curCoord.y ) || borderRoi.contains(curCoord.x, curCoord.y-1 ) ) {
-            		 //if on border of ROI, add to ref 0: IN
-            		 pixCounts[0] = pixCounts[0] + 1;
-            	 }
-                 else {
-                	 //if away from border, add to ref 1: OUT
-                 	pixCounts[1] = pixCounts[1] + 1;
-                 }
-            	
-            	 
-            	 //Set pixel to inVal -> assume this obj is INSIDE the ROI
-                pixels[curCoord.z][xy] = (byte)inVal;
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > 0 && curY < (sizeY - 1)) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
- 
-                                    	//if any of these equal the original voxel value, add to queue:
-                                        
-                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    	
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } //end while loop
-        
-        //IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
+		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
+		int[] pixCounts = countRoiPixels(floodFill26, borderRoi, true);
         
-        //refill the pixels in refill with OUT ROI Value -> outVal 
+        //refill the filled pixels with OUT ROI Value -> outVal 
         	//IF IN pix (pixCounts[0]) is below OUT pix (pixCounts[1]):
         if(pixCounts[0] < pixCounts[1]) {
-        	while( !refill.isEmpty() ) {
-        		curCoord = refill.remove(0); // FIXME last element?
-	            xy = curCoord.x + curCoord.y * sizeX;
-	            pixels[curCoord.z][xy] = (byte)outVal;
-        	}
+        	floodFill26.refill(img.pixels, (short)outVal);
         }
-
 	    
 	}
 	
@@ -3227,108 +1379,18 @@ public class ObjectVoxelProcessing {
 	
 	private void borderObjFilter3DByte26(ImageByte img, IntCoord3D seed, Roi borderRoi, int inVal, int outVal) {
 		
-		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
-		int[] pixCounts = new int[2];
-		
-		//A reference to IntCorrd3D object:
-		IntCoord3D curCoord;
+		//Set pixels to inVal -> assume this obj is INSIDE the ROI
+		floodFill26.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, (byte)inVal);
 		
-		//int to store xy ref:
-		int xy = 0;
-        
-		//local reference to the pixel values, and image sizes:
-		byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        
-        //reference to the original voxel value of the obj -> for appropriate filtering:
-        short origVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        
-        //Two array lists of the IntCoord3D -> one for the queue (to process all voxels), and one for
-        	//refill (in case the voxels need to be filled with the outVal instead of the inVal):
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        ArrayList<IntCoord3D> refill = new ArrayList<IntCoord3D>();
-        
-        //First, add the initial seed to the queue:
-        queue.add(seed);
-        
-        //IJ.showMessage("Old Value: "+ ((int)oldVal) );
-        
-        //IJ.showMessage("Old Value (byte to int): "+ ( (int)(0xFF & oldVal) ) );
-        
-        //IJ.showMessage("Old Value (short to int): "+ ( (int)(0xFFFF & oldVal) ) );
-        
-        //loop through queue:
-        while (!queue.isEmpty()) {
-        	//get the coord obj - and remove from queue:
-            curCoord = queue.remove(0); // FIXME last element?
-            
-            //get xy ref:
-            xy = curCoord.x + curCoord.y * sizeX;
-            
-            //if pixel value of this coord equals original value:
-            if (pixels[curCoord.z][xy] == origVal) {
-            	
-            	//add coord to refill at end - will refill with outVal if pix IN is LOWER than pix OUT:
-            	refill.add(curCoord);
-            	
-            	//add to pixCounts depending on whether this coord is in the roi:
-            	 if( borderRoi.contains(curCoord.x, curCoord.y ) ) {
-            		 //if in ROI, add to ref 0: IN
-                 	pixCounts[0] = pixCounts[0] + 1;
-                 }
-            	 //else if( borderRoi.contains(curCoord.x-1, curCoord.y ) || borderRoi.contains(curCoord.x, curCoord.y-1 ) ) {
-            		 //if on border of ROI, add to ref 0: IN
-            	 	// This is not needed as now the roi is concatenated in RoiAssessmentHandler prior to calling this method!
-            		// pixCounts[0] = pixCounts[0] + 1;
-            	 //}
-                 else {
-                	 //if away from border, add to ref 1: OUT
-                 	pixCounts[1] = pixCounts[1] + 1;
-                 }
-            	
-            	 
-            	 //Set pixel to inVal -> assume this obj is INSIDE the ROI
-                pixels[curCoord.z][xy] = (byte)inVal;
-                
-                //loop through all 26 voxels surrounding this voxel:
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
- 
-                                    	//if any of these equal the original voxel value, add to queue:
-                                        
-                                    	if (pixels[curZ][curX + curY * sizeX] == origVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    	
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } //end while loop
-        
-       // IJ.showMessage("Pix IN: "+pixCounts[0]+" Pix OUT: "+pixCounts[1]);
+		//this array stores the number of pixels which are inside the ROI and how many are outside the ROI:
+			// the ROI border is not checked, as the roi is concatenated in RoiAssessmentHandler prior to 
+			// calling this method!
+		int[] pixCounts = countRoiPixels(floodFill26, borderRoi, false);
         
-        //refill the pixels in refill with OUT ROI Value -> outVal 
+        //refill the filled pixels with OUT ROI Value -> outVal 
         	//IF IN pix (pixCounts[0]) is below OUT pix (pixCounts[1]):
         if(pixCounts[0] < pixCounts[1]) {
-        	while( !refill.isEmpty() ) {
-        		curCoord = refill.remove(0); // FIXME last element?
-	            xy = curCoord.x + curCoord.y * sizeX;
-	            pixels[curCoord.z][xy] = (byte)outVal;
-        	}
+        	floodFill26.refill(img.pixels, (byte)outVal);
         }
         
     }
@@ -3364,76 +1426,11 @@ public class ObjectVoxelProcessing {
     
     
     private void flood3DShort(ImageShort img, IntCoord3D seed, short newVal) {
-        short[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            if (pixels[curCoord.z][xy] == oldVal) {
-                pixels[curCoord.z][xy] = newVal;
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > 0 && curY < (sizeY - 1)) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-                                        if (pixels[curZ][curX + curY * sizeX] == oldVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, newVal);
     }
 
     private void flood3DByte(ImageByte img, IntCoord3D seed, byte newVal) {
-        byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            if (pixels[curCoord.z][xy] == oldVal) {
-                pixels[curCoord.z][xy] = newVal;
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
-                                        if ( (pixels[curZ][curX + curY * sizeX] == oldVal) &&
-                                        		objConnectivityFilter(xx,yy,zz,objConnectivity) ) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, newVal);
     }
 
     /**
@@ -3454,221 +1451,34 @@ public class ObjectVoxelProcessing {
     }
 
     private static void flood3DShort6(ImageShort img, IntCoord3D seed, short newVal) {
-        short[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            if (pixels[curCoord.z][xy] == oldVal) {
-                pixels[curCoord.z][xy] = newVal;
-                if (curCoord.x > 0 && pixels[curCoord.z][xy - 1] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x - 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.x < (sizeX - 1) && pixels[curCoord.z][xy + 1] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x + 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.y > 0 && pixels[curCoord.z][xy - sizeX] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y - 1, curCoord.z));
-                }
-                if (curCoord.y < (sizeY - 1) && pixels[curCoord.z][xy + sizeX] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y + 1, curCoord.z));
-                }
-                if (curCoord.z > 0 && pixels[curCoord.z - 1][xy] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z - 1));
-                }
-                if (curCoord.z < (sizeZ - 1) && pixels[curCoord.z + 1][xy] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z + 1));
-                }
-            }
-        }
+        FloodFill3D floodFill = staticFloodFill6.get();
+        floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, newVal);
     }
 
     public static void flood3DNoiseShort62(ImageShort img, IntCoord3D seed, short limit, short newVal) {
-        short[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        int oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
         //int limit=oldVal-noise;
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            IJ.log("processing " + curCoord.x + " " + curCoord.y + " " + curCoord.z + " " + oldVal + " " + limit);
-            int xy = curCoord.x + curCoord.y * sizeX;
-            if (pixels[curCoord.z][xy] >= limit) {
-                pixels[curCoord.z][xy] = newVal;
-                if (curCoord.x > 0 && pixels[curCoord.z][xy - 1] >= limit) {
-                    queue.add(new IntCoord3D(curCoord.x - 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.x < (sizeX - 1) && pixels[curCoord.z][xy + 1] >= limit) {
-                    queue.add(new IntCoord3D(curCoord.x + 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.y > 0 && pixels[curCoord.z][xy - sizeX] >= limit) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y - 1, curCoord.z));
-                }
-                if (curCoord.y < (sizeY - 1) && pixels[curCoord.z][xy + sizeX] >= limit) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y + 1, curCoord.z));
-                }
-                if (curCoord.z > 0 && pixels[curCoord.z - 1][xy] >= limit) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z - 1));
-                }
-                if (curCoord.z < (sizeZ - 1) && pixels[curCoord.z + 1][xy] >= limit) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z + 1));
-                }
-            }
-        }
+        FloodFill3D floodFill = staticFloodFill6.get();
+        floodFill.fillAbove(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, limit, newVal);
     }
 
     private static void flood3DByte6(ImageByte img, IntCoord3D seed, byte newVal) {
-        byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            if (pixels[curCoord.z][xy] == oldVal) {
-                pixels[curCoord.z][xy] = newVal;
-                if (curCoord.x > 0 && pixels[curCoord.z][xy - 1] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x - 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.x < (sizeX - 1) && pixels[curCoord.z][xy + 1] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x + 1, curCoord.y, curCoord.z));
-                }
-                if (curCoord.y > 0 && pixels[curCoord.z][xy - sizeX] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y - 1, curCoord.z));
-                }
-                if (curCoord.y < (sizeY - 1) && pixels[curCoord.z][xy + sizeX] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y + 1, curCoord.z));
-                }
-                if (curCoord.z > 0 && pixels[curCoord.z - 1][xy] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z - 1));
-                }
-                if (curCoord.z < (sizeZ - 1) && pixels[curCoord.z + 1][xy] == oldVal) {
-                    queue.add(new IntCoord3D(curCoord.x, curCoord.y, curCoord.z + 1));
-                }
-            }
-        }
+        FloodFill3D floodFill = staticFloodFill6.get();
+        floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, newVal);
     }
 
     private static void flood3DShort26(ImageShort img, IntCoord3D seed, short newVal) {
-        short[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            if (pixels[curCoord.z][xy] == oldVal) {
-                pixels[curCoord.z][xy] = newVal;
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > 0 && curZ < (sizeZ - 1)) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > 0 && curY < (sizeY - 1)) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > 0 && curX < (sizeX - 1) && (xx != 0 || yy != 0 || zz != 0)) {
-                                        if (pixels[curZ][curX + curY * sizeX] == oldVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        FloodFill3D floodFill = staticFloodFill26.get();
+        floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, newVal);
     }
 
     public static void flood3DNoise262(ImageHandler img, IntCoord3D seed, int limit, int newVal) {
-        //short[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        //short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        //short newval = (short) newVal;
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            //int xy = curCoord.x + curCoord.y * sizeX;
-            if (img.getPixel(curCoord.x, curCoord.y, curCoord.z) >= limit) {
-                //IJ.log("Flood " + curCoord.x + " " + curCoord.y + " " + curCoord.z + " " + img.getPixel(curCoord.x, curCoord.y, curCoord.z) + " " + limit);
-                img.setPixel(curCoord.x, curCoord.y, curCoord.z, newVal);
-                //pixels[curCoord.z][xy] = newval;
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if ((curZ >= 0) && (curZ <= (sizeZ - 1))) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if ((curY >= 0) && (curY <= (sizeY - 1))) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if ((curX >= 0) && (curX <= (sizeX - 1))) {
-                                        if (img.getPixel(curX, curY, curZ) >= limit) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        FloodFill3D floodFill = staticFloodFill26.get();
+        floodFill.fillAbove(img, seed.x, seed.y, seed.z, limit, newVal);
     }
 
     private static void flood3DByte26(ImageByte img, IntCoord3D seed, byte newVal) {
-        byte[][] pixels = img.pixels;
-        int sizeX = img.sizeX;
-        int sizeY = img.sizeY;
-        int sizeZ = img.sizeZ;
-        short oldVal = pixels[seed.z][seed.x + seed.y * sizeX];
-        ArrayList<IntCoord3D> queue = new ArrayList<IntCoord3D>();
-        queue.add(seed);
-        while (!queue.isEmpty()) {
-            IntCoord3D curCoord = queue.remove(0); // FIXME last element?
-            int xy = curCoord.x + curCoord.y * sizeX;
-            if (pixels[curCoord.z][xy] == oldVal) {
-                pixels[curCoord.z][xy] = newVal;
-                int curZ, curY, curX;
-                for (int zz = -1; zz < 2; zz++) {
-                    curZ = curCoord.z + zz;
-                    if (curZ > -1 && curZ < sizeZ) {
-                        for (int yy = -1; yy < 2; yy++) {
-                            curY = curCoord.y + yy;
-                            if (curY > -1 && curY < sizeY) {
-                                for (int xx = -1; xx < 2; xx++) {
-                                    curX = curCoord.x + xx;
-                                    if (curX > -1 && curX < sizeX && (xx != 0 || yy != 0 || zz != 0)) {
-                                        if (pixels[curZ][curX + curY * sizeX] == oldVal) {
-                                            queue.add(new IntCoord3D(curX, curY, curZ));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        FloodFill3D floodFill = staticFloodFill26.get();
+        floodFill.fill(img.pixels, img.sizeX, img.sizeY, img.sizeZ, seed.x, seed.y, seed.z, newVal);
     }
 }
 
@@ -25,7 +25,6 @@ import java.io.File;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -1476,7 +1475,10 @@ public class Object_Manager implements PlugIn, StereoMateAlgorithm, MouseListene
 
 		// Remove all objects which reside on the image border:
 			// only if the wholeObjectButton - Whole Object Assessment - is selected:
-		imageHandler.removeEdgeObjects( wholeObjectButton.isSelected() );
+		int edgeObjects = imageHandler.removeEdgeObjects( wholeObjectButton.isSelected() );
+		if( wholeObjectButton.isSelected() ) {
+			IJ.log("        Removed "+edgeObjects+" edge objects");
+		}
 
 		// if the arffFile does NOT exist, need to collect the data on each object in thresholdImp:
 		if(arffFile.exists() == false) {
@@ -5248,7 +5250,7 @@ public class Object_Manager implements PlugIn, StereoMateAlgorithm, MouseListene
 				// 4. In arff data file, set the manual classifier column to newAttrVal value:
 				objectDataset.sort(ObjectDataContainer.OBJNO); // sort by OBJNO first to ensure the CORRECT obj is modified
 				objectDataset.setValue( 
-						(firstPixObjNoMap.get( selectedObj.returnArrayListFirstPixCoord() ))-1, // -1 as obj ref is -1 from obj no 
+						returnObjNo(selectedObj)-1, // -1 as obj ref is -1 from obj no 
 						(double)ObjectDataContainer.getValueIndex(ObjectDataContainer.MANUALCLASS, newAttrVal),
 						ObjectDataContainer.MANUALCLASS,
 						false
@@ -5258,7 +5260,7 @@ public class Object_Manager implements PlugIn, StereoMateAlgorithm, MouseListene
 				// 5. adjust the manClassArffBuffer as appropriate:
 				manClassArffBuffer.adjustArffBufferData(  
 						newAttrVal, 
-						firstPixObjNoMap.get( selectedObj.returnArrayListFirstPixCoord() )  
+						returnObjNo(selectedObj)  
 						);
 
 
@@ -5445,6 +5447,21 @@ public class Object_Manager implements PlugIn, StereoMateAlgorithm, MouseListene
 	}
 
 
+	/**
+	 * Returns the objNo of selectedObj.  If the objects were labelled when they were assessed, this is read
+	 * directly from the imageHandler label image, otherwise it is looked up from the FIRST VOXEL of
+	 * selectedObj in the firstPixObjNoMap.
+	 * @param selectedObj
+	 * @return
+	 */
+	public int returnObjNo(SelectedObject selectedObj) {
+		int objNo = imageHandler.getObjNo(selectedObj.x, selectedObj.y, selectedObj.z);
+		if(objNo > 0) {
+			return objNo;
+		}
+		return firstPixObjNoMap.get( selectedObj.returnArrayListFirstPixCoord() );
+	}
+
 	/**
 	 * This method will update the Obj Info Text Area to reflect the information of the currently selected object
 	 * (if any). 
@@ -5467,14 +5484,8 @@ public class Object_Manager implements PlugIn, StereoMateAlgorithm, MouseListene
 			else {
 				// else an obj is selected - report its number and attributes and classification:
 
-				//Get the objRef from hashmap:
-				ArrayList<Integer> list = new ArrayList<Integer>();
-				Collections.addAll(list, selectedObj.x, selectedObj.y, selectedObj.z);
-				
-				// IJ.showMessage("list - x: "+list.get(0)+" y: "+list.get(1)+" z: "+list.get(2) );
-
-				//Get the objNo from hashmap:
-				int objNo = firstPixObjNoMap.get( list );
+				//Get the objNo - from the label image, or the hashmap:
+				int objNo = returnObjNo(selectedObj);
 
 				int size = (int)objectDataset.get( (objNo-1), ObjectDataContainer.VOLVOXELS);
 
@@ -5524,13 +5535,8 @@ public class Object_Manager implements PlugIn, StereoMateAlgorithm, MouseListene
 				// Current Obj No. / Total Obj Number
 				// Object details -> objNo, Size, Sphericity, Classification.
 
-				ArrayList<Integer> list = new ArrayList<Integer>();
-				list.add(selectedObj.x);
-				list.add(selectedObj.y);
-				list.add(selectedObj.z);
-
-				//Get the objRef from hashmap:
-				int objNo = firstPixObjNoMap.get( list );
+				//Get the objNo - from the label image, or the hashmap:
+				int objNo = returnObjNo(selectedObj);
 
 				int size = (int)objectDataset.get( (objNo-1), ObjectDataContainer.VOLVOXELS);
 
@@ -70,6 +70,7 @@ import mcib3d.image3d.processing.Flood3D;
 import stereomate.data.DatasetWrapper;
 import stereomate.data.ObjectDataContainer;
 import stereomate.data.ObjectDatasetMap;
+import stereomate.data.ObjectFeatureSet;
 import stereomate.data.RoiDataContainer;
 import stereomate.dialog.DialogWindow;
 import stereomate.dialog.DialogWindow.FileSelector;
@@ -800,163 +801,111 @@ public class StereoMate_Analyser implements PlugIn, StereoMateAlgorithm {
 		
 		// this builds the imageHandler and generates the Thresholded image stacks:
 		imageHandler = new ImageHandler(imp, procedureStack, om_ProcedureSettings.getObjectConnectivity() );
+
+		// assess objects in parallel across all processors - the data is returned in the same objNo order:
+		imageHandler.setAssessmentThreads( Runtime.getRuntime().availableProcessors() );
 		
-		
-		IJ.showStatus("SM Analyser: Collecting ROIs");
-		IJ.log("");
-		IJ.log("    Collecting ROIs...");
+		try {
+			
+			IJ.showStatus("SM Analyser: Collecting ROIs");
+			IJ.log("");
+			IJ.log("    Collecting ROIs...");
 
-		rois = getRois(imp);
+			rois = getRois(imp);
 		
-		roiDatasets = new ArrayList<DatasetWrapper>();
-		generateDataInstances(roiDatasets, rois.size() ); 
-			// The data here contains the Measures Attributes AND the Classifier Class Attribute
+			roiDatasets = new ArrayList<DatasetWrapper>();
+			generateDataInstances(roiDatasets, rois.size() ); 
+				// The data here contains the Measures Attributes AND the Classifier Class Attribute
 
 		
-		IJ.showStatus("SM Analyser: Assessing Objects");
+			IJ.showStatus("SM Analyser: Assessing Objects");
 
-		IJ.log("");
-		IJ.log("    Assessing Objects...");
+			IJ.log("");
+			IJ.log("    Assessing Objects...");
 		
-		assessObjects( getDatasetPath() );
+			assessObjects( getDatasetPath() );
 
 		
-		IJ.showStatus("SM Analyser: Constructing ROIs");
+			IJ.showStatus("SM Analyser: Constructing ROIs");
 		
-		IJ.log("");
-		IJ.log("    Constructing ROIs...");
+			IJ.log("");
+			IJ.log("    Constructing ROIs...");
 		
 		
-		int exclXY = om_ProcedureSettings.getMaxXYMean();
-		if( exclusionXYCheckBox.isSelected() == false) {
-			exclXY = 0;
-		}
-		int exclZ = (int)om_ProcedureSettings.maxZ.getContent();
-		if( exclusionZCheckBox.isSelected() == false) {
-			exclZ = 0;
-		}
+			int exclXY = om_ProcedureSettings.getMaxXYMean();
+			if( exclusionXYCheckBox.isSelected() == false) {
+				exclXY = 0;
+			}
+			int exclZ = (int)om_ProcedureSettings.maxZ.getContent();
+			if( exclusionZCheckBox.isSelected() == false) {
+				exclZ = 0;
+			}
 
-		roiHandler = new RoiAssessmentHandler(rois, roiDatasets, 
-													0, 0, 
-													imp.getWidth(), imp.getHeight(), 
-													exclXY, exclZ );
+			roiHandler = new RoiAssessmentHandler(rois, roiDatasets, 
+														0, 0, 
+														imp.getWidth(), imp.getHeight(), 
+														exclXY, exclZ );
 		
-		// *** WHOLE OBJECT ANALYSIS *** //
+			// Object classes to analyse - each ROI is traversed ONCE for all classes, and the overview data
+				// summarises the objects of all classes:
+			int[] objVals;
+			String[] classifierAttributes;
 		
-		if( om_ProcedureSettings.isWholeObjectAnalysis() ) {
-			
 			if(  ( objectClassifier != null && objectClassifier.isLoaded() ) == false  ) {
-				
-				// CLASSIFIER IS NOT LOADED:  Analyse just "FEATURE" (ALL) Objects
-				
-				// Only run the Analyser on FEATURE objects - WITH roiOverviewDataset
-			
-				IJ.showStatus("SM Analyser: Analysing Objects - WHOLE OBJECT");
-
-				IJ.log("");
-				IJ.log("    Analysing WHOLE OBJECTS...");
-
-				roiHandler.analyseRoisWholeObjects(imageHandler, objectDataset, firstPixObjNoMap, 
-						roiOverviewDataset, dw.getCurrentOutputFile(),
-						featureObjVal, featureInVal, featureOutVal, ObjectDataContainer.FEATUREATR,
-						exclusionXYCheckBox.isSelected(), exclusionZCheckBox.isSelected() );
 			
+				// CLASSIFIER IS NOT LOADED:  Analyse just "FEATURE" (ALL) Objects
+				objVals = new int[] { featureObjVal };
+				classifierAttributes = new String[] { ObjectDataContainer.FEATUREATR };
 			}
-						
-			else if(  ( objectClassifier != null && objectClassifier.isLoaded() )  ) {
-				
+			else {
+			
 				// CLASSIFIER IS LOADED: Analyse both FEATURE and CONNECTED objects
-				
-				// Run the Analyser on FEATURE objects WITHOUT roiOverviewDataset
-				
+					// can only have connected objects if an objectClassifier is NOT NULL and is LOADED
+				objVals = new int[] { featureObjVal, connectedObjVal };
+				classifierAttributes = new String[] { ObjectDataContainer.FEATUREATR, ObjectDataContainer.CONNECTEDATR };
+			}
+		
+			// *** WHOLE OBJECT ANALYSIS *** //
+		
+			if( om_ProcedureSettings.isWholeObjectAnalysis() ) {
+			
 				IJ.showStatus("SM Analyser: Analysing Objects - WHOLE OBJECT");
 
 				IJ.log("");
 				IJ.log("    Analysing WHOLE OBJECTS...");
 
-				roiHandler.analyseRoisWholeObjects(imageHandler, objectDataset, firstPixObjNoMap, 
-						dw.getCurrentOutputFile(),
-						featureObjVal, featureInVal, featureOutVal, ObjectDataContainer.FEATUREATR,
+				// objects are assigned to ROIs by membership - the image is not modified, so the ROIs are
+				// analysed concurrently on the assessment pool:
+				roiHandler.analyseRoisWholeObjectsConcurrent(imageHandler, roiOverviewDataset, 
+						dw.getCurrentOutputFile(), objVals, classifierAttributes,
 						exclusionXYCheckBox.isSelected(), exclusionZCheckBox.isSelected() );
-
-				// can only have connected objects if an objectClassifier is NOT NULL and is LOADED
-				
-				// Then run the Analyser on CONNECTED objects - WITH roiOverviewDataset
-
-				IJ.showStatus("SM Analyser: Analysing Objects - WHOLE OBJECT CONNECTED");
-
-				IJ.log("");
-				IJ.log("    Analysing WHOLE OBJECTS - CONNECTED...");
-
-				roiHandler.analyseRoisWholeObjects(imageHandler, objectDataset, firstPixObjNoMap, 
-						roiOverviewDataset, dw.getCurrentOutputFile(),
-						connectedObjVal, connectedInVal, connectedOutVal, ObjectDataContainer.CONNECTEDATR,
-						exclusionXYCheckBox.isSelected(), exclusionZCheckBox.isSelected() );
-			
 			}
-			
-			// this is INEFFICIENT running the analyse() method TWICE, but its a quick fix until the
-				// borderObjPixProcessing3D Objects methods can be adjusted to handle BOTH feature 
-					// and connected numbers..
-		}
 		
-		// *** OBJECT FRAGMENT ANALYSIS *** //
-		else {
-
-			if(  ( objectClassifier != null && objectClassifier.isLoaded() ) == false  ) {
-
-				// Only run the Analyser on FEATURE objects - WITH roiOverviewDataset
-
-				IJ.showStatus("SM Analyser: Analysing Objects - OBJECT FRAGMENT");
-
-				IJ.log("");
-				IJ.log("    Analysing OBJECT FRAGMENTS...");
-
-				roiHandler.analyseRoisObjectsAndFragments(imageHandler, 
-						roiOverviewDataset, dw.getCurrentOutputFile(),
-						featureObjVal,  ObjectDataContainer.FEATUREATR,
-						exclusionXYCheckBox.isSelected(), exclusionZCheckBox.isSelected() );	
-			}
-
-			else if(  ( objectClassifier != null && objectClassifier.isLoaded() )  ) {
-
-				// can only have connected objects if an objectClassifier is NOT NULL and is LOADED
+			// *** OBJECT FRAGMENT ANALYSIS *** //
+			else {
 
-				// Run the Analyser on FEATURE objects WITHOUT roiOverviewDataset
-				
 				IJ.showStatus("SM Analyser: Analysing Objects - OBJECT FRAGMENT");
 
 				IJ.log("");
 				IJ.log("    Analysing OBJECT FRAGMENTS...");
 
-				roiHandler.analyseRoisObjectsAndFragments(imageHandler, 
-						dw.getCurrentOutputFile(),
-						featureObjVal,  ObjectDataContainer.FEATUREATR,
+				// fragments are found on a view of each ROI - the image is not modified, so the ROIs are
+				// analysed concurrently on the assessment pool:
+				roiHandler.analyseRoisObjectsAndFragmentsConcurrent(imageHandler, roiOverviewDataset, 
+						dw.getCurrentOutputFile(), objVals, classifierAttributes,
 						exclusionXYCheckBox.isSelected(), exclusionZCheckBox.isSelected() );
-				
-				// Then run the Analyser on CONNECTED objects - WITH roiOverviewDataset
-
-				IJ.showStatus("SM Analyser: Analysing Objects - OBJECT FRAGMENT CONNECTED");
-
-				IJ.log("");
-				IJ.log("    Analysing OBJECT FRAGMENTS - CONNECTED...");
-
-				roiHandler.analyseRoisObjectsAndFragments(imageHandler,
-						roiOverviewDataset, dw.getCurrentOutputFile(),
-						connectedObjVal, ObjectDataContainer.CONNECTEDATR,
-						exclusionXYCheckBox.isSelected(), exclusionZCheckBox.isSelected() );
-
 			}
-			
-		// this is INEFFICIENT running the analyse() method TWICE, but its a quick fix until the
-		// borderObjPixProcessing3D Objects methods can be adjusted to handle BOTH feature 
-			// and connected numbers..
-		}
 		
-		IJ.log("");
-		IJ.log("    Saving ROI Datasets...");
+			IJ.log("");
+			IJ.log("    Saving ROI Datasets...");
 				
-		saveInstancesData(roiDatasets, dw.getCurrentOutputFile(), ".csv" );
+			saveInstancesData(roiDatasets, dw.getCurrentOutputFile(), ".csv" );
+		}
+		finally {
+			// shut down the assessment pool for this image - also if the analysis of the image fails, so a
+				// pool is not left running for each image:
+			imageHandler.setAssessmentThreads(1);
+		}
 
 	}
 
@@ -1384,7 +1333,10 @@ public class StereoMate_Analyser implements PlugIn, StereoMateAlgorithm {
 	public void assessObjects(String arffPath) {
 
 		// only remove is whole object analysis:
-		imageHandler.removeEdgeObjects( om_ProcedureSettings.isWholeObjectAnalysis() );
+		int edgeObjects = imageHandler.removeEdgeObjects( om_ProcedureSettings.isWholeObjectAnalysis() );
+		if( om_ProcedureSettings.isWholeObjectAnalysis() ) {
+			IJ.log("        Removed "+edgeObjects+" edge objects");
+		}
 		
 		File arffFile = new File(arffPath);
 
@@ -1489,6 +1441,9 @@ public class StereoMate_Analyser implements PlugIn, StereoMateAlgorithm {
 
 		IJ.showStatus("Object Manager: Assessing Objects - gathering data");
 
+		// this dataset is only used by the filter and classifier - only compute the measures they use:
+		imageHandler.setFeatureSet( returnFilterAndClassifierFeatureSet() );
+
 		// setup loop through thresholdImgInt in imageHandler:
 		imageHandler.setupLoopThresholdImgInt(0, 0, 0, 0);
 
@@ -1505,6 +1460,9 @@ public class StereoMate_Analyser implements PlugIn, StereoMateAlgorithm {
 			IJ.showStatus("Object Manager: Assessing Objects - gathering data");
 		}
 
+		// ROI data is saved - compute all measures for the ROI objects:
+		imageHandler.setFeatureSet( new ObjectFeatureSet() );
+
 		// showArffDatatable(arff);
 		// IJ.showMessage("New Arff Data Table for New Image.");
 
@@ -1515,6 +1473,31 @@ public class StereoMate_Analyser implements PlugIn, StereoMateAlgorithm {
 
 	}
 
+	/**
+	 * Returns the ObjectFeatureSet containing the measures used by the objectClassifier attributes and the
+	 * objectFilter attribute.  If neither is set, only the measures which are always computed are included.
+	 * @return
+	 */
+	public ObjectFeatureSet returnFilterAndClassifierFeatureSet() {
+		
+		ObjectFeatureSet featureSet;
+		
+		if(objectClassifier != null && objectClassifier.isLoaded() ) {
+			featureSet = ObjectFeatureSet.fromAttributes( objectClassifier.getClassifierAttributes() );
+		}
+		else {
+			featureSet = new ObjectFeatureSet( new String[0] );
+		}
+		
+		if(objectFilter != null) {
+			// filter index is 1-based on the objectDataset attributes:
+			featureSet.addAttribute( 
+					objectDataset.attribute( om_ProcedureSettings.getFilterIndexValue() - 1 ).name() );
+		}
+		
+		return featureSet;
+	}
+	
 	/**
 	 * Adds the Filter and Classifier Attributes to the datasetHandler dataset.
 	 */
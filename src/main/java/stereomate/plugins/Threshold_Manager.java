@@ -74,10 +74,15 @@ import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.WindowManager;
+import ij.gui.Roi;
 import ij.plugin.PlugIn;
 import ij.process.LUT;
 import stereomate.dialog.DialogWindow;
+import stereomate.image.ChannelStack;
+import stereomate.image.CompiledProcedureStack;
 import stereomate.image.ImageWindowWithPanel;
+import stereomate.image.ProcedurePreview;
+import stereomate.image.StepResultCache;
 import stereomate.settings.OptionsPanel;
 import stereomate.settings.StereoMateUtilities;
 
@@ -367,6 +372,31 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 	 */
 	ProcedureStack procedureStack;
 	
+	/**
+	 * Cache of the result of each step of the procedure stack, keyed by the input channel and the step prefix -
+	 * so editing step k of the stack only re-runs steps k to n.  Made on first use, and cleared when the
+	 * Threshold Manager is closed.
+	 */
+	StepResultCache stepCache;
+	
+	/**
+	 * The reduced preview the procedure stack is run on - a downsampled copy or a sub-region of the active channel -
+	 * or null to run at full resolution.  Set with previewLevelComboBox - the full resolution run is then made
+	 * with applyButton.  previewImp holds the reduced result of the last run of the stack, which the preview of
+	 * a command is run on top of.
+	 */
+	ProcedurePreview procedurePreview;
+	ImagePlus previewImp;
+	
+	/**
+	 * The XY halo previewImp was reduced with - a command previewed on top of it needs this to cover the halo of
+	 * the toggled on steps AND of the command.
+	 */
+	int previewImpHaloXY;
+	
+	JComboBox<String> previewLevelComboBox;
+	JButton applyButton;
+	
 	
 	
 	/**
@@ -469,6 +499,12 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 				activeImp = null;
 				activeChannelThread = null;
 				
+				if(stepCache != null) {
+					stepCache.clear();
+					stepCache = null;
+				}
+				previewImp = null;
+				
 				// remove THIS listener from IWP:
 				IWP.iw.removeWindowListener( this );
 				
@@ -689,6 +725,43 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 		gbc.gridy = 1;
 		activeChannelPanel.add(activeChannelcbPanel, gbc);
 		
+		// Preview level - the procedure stack can be run on a downsampled copy or a ROI region of the active
+			// channel while it is edited, and run at full resolution with the apply button:
+		previewLevelComboBox = new JComboBox<String>( new String[] { "Full Resolution", "1/2 XY", "1/4 XY", "ROI Region" } );
+		previewLevelComboBox.setToolTipText("Run the procedure stack on a downsampled or ROI region preview");
+		
+		previewLevelComboBox.addActionListener( new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if(setProcedurePreview() == true) {
+					// re-run the procedure stack on the new preview - in a new thread, which re-activates the buttons:
+					deactivateButtons(mainPanel);
+					ImageProcessingProcedureThread ippt = new ImageProcessingProcedureThread(mainPanel, true);
+					ippt.start();
+				}
+			}
+		});
+		
+		applyButton = new JButton("Apply");
+		applyButton.setToolTipText("Run the procedure stack at full resolution");
+		
+		applyButton.addActionListener( new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				deactivateButtons(mainPanel);
+				ImageProcessingProcedureThread ippt = new ImageProcessingProcedureThread(mainPanel, true, true);
+				ippt.start();
+			}
+		});
+		
+		gbc.gridx = 0;
+		gbc.gridy = 2;
+		activeChannelPanel.add(previewLevelComboBox, gbc);
+		
+		gbc.gridx = 0;
+		gbc.gridy = 3;
+		activeChannelPanel.add(applyButton, gbc);
+		
 		
 		// reset ipadx:
 		gbc.ipadx = 0;
@@ -3472,6 +3545,42 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 	}
 	
 	
+	/**
+	 * Sets the procedurePreview from the item selected in previewLevelComboBox - a ROI Region preview is of the
+	 * bounds of the ROI on the IWP image.  Returns false if no ROI is set for a ROI Region preview, in which case
+	 * the combobox is set back to Full Resolution (which sets the preview again).
+	 * @return
+	 */
+	public boolean setProcedurePreview() {
+		
+		// the reduced result of the previous preview is no longer valid:
+		previewImp = null;
+		
+		String level = (String)previewLevelComboBox.getSelectedItem();
+		
+		if(level.equals("1/2 XY") ) {
+			procedurePreview = ProcedurePreview.downsampled(2);
+		}
+		else if(level.equals("1/4 XY") ) {
+			procedurePreview = ProcedurePreview.downsampled(4);
+		}
+		else if(level.equals("ROI Region") ) {
+			Roi roi = IWP.getImagePlus().getRoi();
+			if(roi == null) {
+				IJ.showMessage("Draw a ROI on the image to preview a region!");
+				procedurePreview = null;
+				previewLevelComboBox.setSelectedIndex(0);
+				return false;
+			}
+			procedurePreview = ProcedurePreview.region( roi.getBounds() );
+		}
+		else {
+			procedurePreview = null;
+		}
+		
+		return true;
+	}
+	
 	/**
 	 *  * This method will deactivate all Buttons on the JPanel or any JPanels this JPanel contains.
 	 * <p>
@@ -3674,10 +3783,14 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 			
 				//Filter ImageStack to retrieve the stack which represents the active channel:
 					//this is channelNum:
-				is = IWP.filterImageStack(is, activeChannelNum, IWP.getOriginalImagePlus().getNChannels() );
+				//this is a copy-on-write view - the channel is only copied when a procedure modifies it:
+				is = new ChannelStack(is, activeChannelNum, IWP.getOriginalImagePlus().getNChannels() );
 			
 				//Set is to activeImp:
 				activeImp.setStack(is);
+				
+				// any reduced preview is of the previous activeImp:
+				previewImp = null;
 			
 			//THEN **REPLACE** the current extra channel in IWP with this new extracted channel:
 				
@@ -3740,11 +3853,15 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 						// IWP.deleteImageStack( imp, imp.getNChannels(), imp.getNChannels() );
 				
 				// Above deletes the images directly from the imageStack - so the 
-				is = IWP.filterImageStack(is, activeChannelNum, imp.getNChannels() );
+				//this is a copy-on-write view - the channel is only copied when a procedure modifies it:
+				is = new ChannelStack(is, activeChannelNum, imp.getNChannels() );
 				//is = IWP.filterImageStackNoDup(is, activeChannelNum, IWP.getOriginalImagePlus().getNChannels() );
 			
 				//Set is to activeImp:
 				activeImp.setStack(is);
+				
+				// any reduced preview is of the previous activeImp:
+				previewImp = null;
 			
 			//THEN **REPLACE** the current extra channel in IWP with this new extracted channel:
 				
@@ -4184,13 +4301,87 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 
 		
 		/**
-		 * Runs the current image processing procedure stack on the passed imp.
+		 * Runs the current image processing procedure stack on the passed imp - on the reduced procedurePreview,
+		 * if one is set.
 		 * @param imp
 		 */
 		public void runProcedureStack(ImagePlus imp) {
+			runProcedureStack(imp, false);
+		}
+		
+		/**
+		 * Runs the current image processing procedure stack on the passed imp.  Unless fullResolution is true, the
+		 * stack is run on the reduced procedurePreview of imp, if one is set - the options of each step are scaled
+		 * to the preview, the reduced result is kept in previewImp, and imp is set to the result expanded to its size.
+		 * @param imp
+		 * @param fullResolution
+		 */
+		public void runProcedureStack(ImagePlus imp, boolean fullResolution) {
+			runProcedureStack(imp, fullResolution, 0);
+		}
+		
+		/**
+		 * Runs the procedure stack as runProcedureStack(imp, fullResolution), with a ROI Region preview reduced with
+		 * commandHaloXY pixels beyond the halo of the steps - the halo of a command to be previewed on top of the
+		 * result in previewImp.
+		 * @param imp
+		 * @param fullResolution
+		 * @param commandHaloXY
+		 */
+		public void runProcedureStack(ImagePlus imp, boolean fullResolution, int commandHaloXY) {
 			boolean cmdRan = false;
-						
+			
+			// the steps are run on runImp - imp itself at full resolution, or the reduced preview of imp:
+			ProcedurePreview preview = fullResolution ? null : procedurePreview;
+			ImagePlus runImp = imp;
+			int haloXY = previewHaloXY() + commandHaloXY;
+			if(preview != null) {
+				runImp = preview.reduce(imp, haloXY);
+			}
+			previewImp = null;
+			
+			if(stepCache == null) {
+				// hold up to a quarter of the heap in memory, and spill up to the same again to temp files:
+				long maxBytes = Runtime.getRuntime().maxMemory() / 4;
+				stepCache = new StepResultCache(maxBytes, new File( System.getProperty("java.io.tmpdir") ), maxBytes);
+			}
+			
+			// options each toggled on step is run with - scaled to the preview - and the key of its result - the
+				// hash of the input and every step before it:
+			String[] runOptions = new String[commandTitles.size()];
+			long[] stepKeys = new long[commandTitles.size()];
+			long key = stepCache.inputKey( runImp.getStack() );
+			int cachedStep = -1;
 			for(int a=0; a<commandTitles.size(); a++) {
+				if(toggleProperties.get(a).equals("1") ) {
+					runOptions[a] = preview == null ? commandOptions.get(a) 
+													: preview.scaleOptions( commandTitles.get(a), commandOptions.get(a) );
+					key = StepResultCache.stepKey(key, commandTitles.get(a), runOptions[a] );
+					stepKeys[a] = key;
+				}
+			}
+			
+			// restore the result of the LAST step which is cached - only the steps after it are run:
+			for(int a=commandTitles.size()-1; a>=0; a--) {
+				if(toggleProperties.get(a).equals("1") ) {
+					ImageStack cached = stepCache.get( stepKeys[a] );
+					if(cached != null) {
+						ChannelStack.setStack(runImp, cached);
+						if(preview == null) {
+							IWP.getOriginalImagePlus().setStack( IWP.replaceStacks( IWP.getOriginalImagePlus().getStack(), 
+																					activeImp.getStack() ), 
+																			IWP.getOriginalImagePlus().getNChannels(), 
+																			IWP.getOriginalImagePlus().getNSlices(), 
+																			IWP.getOriginalImagePlus().getNFrames() );
+						}
+						cachedStep = a;
+						cmdRan = true;
+						break;
+					}
+				}
+			}
+						
+			for(int a=cachedStep+1; a<commandTitles.size(); a++) {
 				
 				if(toggleProperties.get(a).equals("1") ) {	
 					//only run the procedure IF the toggle property is 1 for this item in the stack:
@@ -4205,7 +4396,14 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 					
 					// IJ.showMessage("(active)Imp ip b4 run: "+imp.getProcessor().hashCode());
 					
-					IJ.run( imp, commandTitles.get(a), commandOptions.get(a) );
+					// run in-process if the command is compiled, else with IJ.run() - copying the activeImp
+						// channel view before its pixels are modified - the IWP stack is replaced with the new
+						// pixels below:
+					CompiledProcedureStack.compile( commandTitles.get(a), runOptions[a] ).run(runImp);
+					
+					// cache the result - runImp continues on a copy-on-write view of it, with its processor on the
+						// view, so the cached pixels are not modified by the next step:
+					ChannelStack.setStack( runImp, stepCache.put( stepKeys[a], runImp.getStack() ) );
 					
 					// IJ.showMessage("(active)Imp ip after run: "+imp.getProcessor().hashCode());
 					
@@ -4219,14 +4417,31 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 					
 					//SO - **REPLACE** the current extra channel in IWP with this new extracted channel:
 					
+					//  - at full resolution only, as a preview does not modify imp until all steps are run:
+					if(preview == null) {
+						IWP.getOriginalImagePlus().setStack( IWP.replaceStacks( IWP.getOriginalImagePlus().getStack(), 
+																				activeImp.getStack() ), 
+																			IWP.getOriginalImagePlus().getNChannels(), 
+																			IWP.getOriginalImagePlus().getNSlices(), 
+																			IWP.getOriginalImagePlus().getNFrames() );
+					}
+					
+					//if command is run, set cmdRan to true:
+					cmdRan = true;
+				}
+			}
+			
+			if(preview != null) {
+				// keep the reduced result for previews of a command, and display it expanded to the size of imp:
+				previewImp = runImp;
+				previewImpHaloXY = haloXY;
+				if(cmdRan == true) {
+					imp.setStack( preview.expand( runImp.getStack(), imp.getWidth(), imp.getHeight() ) );
 					IWP.getOriginalImagePlus().setStack( IWP.replaceStacks( IWP.getOriginalImagePlus().getStack(), 
 																			activeImp.getStack() ), 
 																		IWP.getOriginalImagePlus().getNChannels(), 
 																		IWP.getOriginalImagePlus().getNSlices(), 
 																		IWP.getOriginalImagePlus().getNFrames() );
-					
-					//if command is run, set cmdRan to true:
-					cmdRan = true;
 				}
 			}
 			
@@ -4239,20 +4454,41 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 				hideIwpActiveImp();
 			}
 			
+			String upToDate = preview == null ? "Up to date." : "Preview up to date: "+preview.getDescription();
+			
 			if(list.isSelectionEmpty() == true) {
 				if(status != null) {
-					status.setText("Up to date.");
+					status.setText(upToDate);
 				}
 			}
 			else {
 				if(status != null) {
-					status.setText("Up to date. \n options: \n"+procedureStack.getOptions(list.getSelectedIndex() ) );
+					status.setText(upToDate+" \n options: \n"+procedureStack.getOptions(list.getSelectedIndex() ) );
 				}
 			}
 			
 			
 		}
 		
+		/**
+		 * Returns the sum of the XY halos of the toggled on steps - the pixels they read around a voxel - so a
+		 * ROI Region preview is run on the region with this halo around it.  Steps which need whole slices are
+		 * run on the region and its halo.
+		 * @return
+		 */
+		public int previewHaloXY() {
+			int halo = 0;
+			for(int a=0; a<commandTitles.size(); a++) {
+				if(toggleProperties.get(a).equals("1") ) {
+					int stepHalo = CompiledProcedureStack.compile( commandTitles.get(a), commandOptions.get(a) ).getHaloXY();
+					if(stepHalo > 0) {
+						halo = halo + stepHalo;
+					}
+				}
+			}
+			return halo;
+		}
+		
 		/**
 		 * Runs a given command with given options on the passed imp.  This method takes care of previews on IWP
 		 * in Threshold Manager Plugin.
@@ -4262,8 +4498,50 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 		 */
 		public void runProcedure(ImagePlus imp, String cmd, String options) {
 			status.setText("Running: "+cmd );
+			
+			if(procedurePreview != null) {
+				// run the command on the reduced result of the procedure stack - or on the reduced imp, if the stack
+					// has not been run on the preview - with its options scaled to the preview.  The reduced image
+					// must cover the halo of the steps AND of the command, else the edges of a ROI Region are wrong:
+				int commandHaloXY = Math.max( CompiledProcedureStack.compile(cmd, options).getHaloXY(), 0);
+				int haloXY = previewHaloXY() + commandHaloXY;
+				if(previewImp != null && procedurePreview.getRegion() != null && previewImpHaloXY < haloXY) {
+					// the stack result was reduced with too small a halo - re-run the stack on the fresh active
+						// channel, reduced with the halo of the command too:
+					activeChannelThread = new ActiveChannelThread();
+					activeChannelThread.runNoReActivate();
+					runProcedureStack(imp, false, commandHaloXY);
+				}
+				if(previewImp == null) {
+					previewImp = procedurePreview.reduce(imp, haloXY);
+					previewImpHaloXY = haloXY;
+				}
+				CompiledProcedureStack.compile(cmd, procedurePreview.scaleOptions(cmd, options) ).run(previewImp);
+				
+				// display the result expanded to the size of imp:
+				imp.setStack( procedurePreview.expand( previewImp.getStack(), imp.getWidth(), imp.getHeight() ) );
+				IWP.getOriginalImagePlus().setStack( IWP.replaceStacks( IWP.getOriginalImagePlus().getStack(), 
+																		imp.getStack() ), 
+																	IWP.getOriginalImagePlus().getNChannels(), 
+																	IWP.getOriginalImagePlus().getNSlices(), 
+																	IWP.getOriginalImagePlus().getNFrames() );
+				
+				status.setText("Preview up to date: "+procedurePreview.getDescription() );
+				return;
+			}
 
-			IJ.run(imp, cmd, options);
+			// run in-process if the command is compiled, else with IJ.run() - copying the activeImp channel
+				// view before its pixels are modified:
+			boolean copied = CompiledProcedureStack.compile(cmd, options).run(imp);
+			
+			if(copied == true) {
+				//the IWP extra channel still references the old pixels - REPLACE it with the new pixels:
+				IWP.getOriginalImagePlus().setStack( IWP.replaceStacks( IWP.getOriginalImagePlus().getStack(), 
+																		imp.getStack() ), 
+																	IWP.getOriginalImagePlus().getNChannels(), 
+																	IWP.getOriginalImagePlus().getNSlices(), 
+																	IWP.getOriginalImagePlus().getNFrames() );
+			}
 			
 			if(list.isSelectionEmpty() == true) {
 				status.setText("Up to date.");
@@ -4730,6 +5008,11 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 		 */
 		boolean toggleOffInstance;
 		
+		/**
+		 * Set to true to run the procedure stack at full resolution, whatever the procedurePreview.
+		 */
+		boolean fullResolution;
+		
 		public ImageProcessingProcedureThread() {
 			cmd = null;
 			options = null;
@@ -4771,6 +5054,12 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 			toggleOffInstance=togOff;
 		}
 		
+		public ImageProcessingProcedureThread(JPanel panel, boolean togOff, boolean fullResolution) {
+			this(panel, togOff);
+			
+			this.fullResolution = fullResolution;
+		}
+		
 		/**
 		 * The run method should perform all the operations in the ImageProcessingProcedureStack as required.
 		 * This just called the runProcedureStack method on the procedureStack variable, using the activeImp as
@@ -4809,8 +5098,9 @@ public class Threshold_Manager implements PlugIn, StereoMateAlgorithm {
 					//run this in the current thread - as this code is outside the EDT!
 						//run the method which does NOT reactivate the mainPanel -> want to do this at the end of THIS method.
 										
-					//and then run the procedure stack on activeImp:
-					procedureStack.runProcedureStack(activeImp);
+					//and then run the procedure stack on activeImp - on the reduced preview, unless this is the full
+						// resolution run:
+					procedureStack.runProcedureStack(activeImp, fullResolution);
 					
 					//boolean ran = procedureStack.runProcedureStack(activeImp);
 					
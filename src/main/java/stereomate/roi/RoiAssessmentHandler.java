@@ -21,6 +21,7 @@ import stereomate.data.DatasetWrapper;
 import stereomate.data.ObjectDataContainer;
 import stereomate.data.ObjectDatasetMap;
 import stereomate.image.ImageHandler;
+import stereomate.object.ObjectLabels;
 import weka.core.AttributeStats;
 import weka.core.DenseInstance;
 import weka.core.Instance;
@@ -54,6 +55,18 @@ public class RoiAssessmentHandler {
 	
 	private ArrayList<Roi> rois, roisExcl;
 	
+	/**
+	 * The rasterised rois and roisExcl - each is computed on first use by getRoiSpans(), and cleared when
+	 * rois or roisExcl are set.
+	 */
+	private RoiSpans[] roiSpans, roiExclSpans;
+	
+	/**
+	 * The fragment spans of rois and roisExcl - each ROI minus the ROIs before it - computed on first use by
+	 * getFragmentSpans(), and cleared with the ROI spans.
+	 */
+	private RoiSpans[] roiFragmentSpans, roiExclFragmentSpans;
+	
 	private RoisWithEdgeContacts rec;
 	
 	private int xMin, yMin, xMax, yMax, maxXY, maxZ;
@@ -118,6 +131,8 @@ public class RoiAssessmentHandler {
 
 	public void setRois(ArrayList<Roi> rois) {
 		this.rois = rois;
+		this.roiSpans = null;
+		this.roiFragmentSpans = null;
 	}
 
 	public ArrayList<Roi> getRoisExcl() {
@@ -126,6 +141,8 @@ public class RoiAssessmentHandler {
 
 	public void setRoisExcl(ArrayList<Roi> roisExcl) {
 		this.roisExcl = roisExcl;
+		this.roiExclSpans = null;
+		this.roiExclFragmentSpans = null;
 	}
 
 	public RoisWithEdgeContacts getRec() {
@@ -158,6 +175,11 @@ public class RoiAssessmentHandler {
 
 	public void setxMax(int xMax) {
 		this.xMax = xMax;
+		// the ROI spans are clipped to the image size:
+		this.roiSpans = null;
+		this.roiExclSpans = null;
+		this.roiFragmentSpans = null;
+		this.roiExclFragmentSpans = null;
 	}
 
 	public int getyMax() {
@@ -166,6 +188,11 @@ public class RoiAssessmentHandler {
 
 	public void setyMax(int yMax) {
 		this.yMax = yMax;
+		// the ROI spans are clipped to the image size:
+		this.roiSpans = null;
+		this.roiExclSpans = null;
+		this.roiFragmentSpans = null;
+		this.roiExclFragmentSpans = null;
 	}
 
 	public int getMaxXY() {
@@ -853,7 +880,56 @@ public class RoiAssessmentHandler {
 			ObjectDatasetMap firstPixObjNoMap, File outputFile, int objVal, int inVal, int outVal, 
 						String ClassifierAttribute, boolean exclusionXY, boolean exclusionZ) {
 
+		analyseRoisWholeObjects(imageHandler, null, outputFile, new int[] {objVal}, new int[] {inVal}, 
+				new int[] {outVal}, new String[] {ClassifierAttribute}, exclusionXY, exclusionZ);
+		
+	}
+	
+	/**
+	 * Assess objects within the ROI - whole objects.
+	 * 
+	 * @param imageHandler
+	 * @param objVal
+	 * @param inVal
+	 * @param outVal
+	 * @param exclusionZ
+	 */
+	public void analyseRoisWholeObjects(ImageHandler imageHandler, DatasetWrapper datasetHandler,
+			ObjectDatasetMap firstPixObjNoMap, DatasetWrapper roiOverviewDataset, File outputFile,
+			int objVal, int inVal, int outVal, String ClassifierAttribute, boolean exclusionXY, boolean exclusionZ) {
+
+		analyseRoisWholeObjects(imageHandler, roiOverviewDataset, outputFile, new int[] {objVal}, new int[] {inVal}, 
+				new int[] {outVal}, new String[] {ClassifierAttribute}, exclusionXY, exclusionZ);
+		
+	}
+	
+	/**
+	 * Assess objects of a set of object classes within the ROI - whole objects.  Each ROI is traversed once
+	 * for all classes:  objects of class c have pixel value objVals[c], are set to inVals[c] or outVals[c] 
+	 * when on the ROI border, and their rows are added to the ROI dataset with ClassifierClass 
+	 * classifierAttributes[c].  The pixel values of all classes must be distinct.
+	 * <p>
+	 * One Roi Overview row, summarising the objects of all classes, is added to roiOverviewDataset for each
+	 * ROI - unless roiOverviewDataset is null.
+	 * 
+	 * @param imageHandler
+	 * @param roiOverviewDataset
+	 * @param outputFile
+	 * @param objVals
+	 * @param inVals
+	 * @param outVals
+	 * @param classifierAttributes
+	 * @param exclusionXY
+	 * @param exclusionZ
+	 */
+	public void analyseRoisWholeObjects(ImageHandler imageHandler, DatasetWrapper roiOverviewDataset, 
+			File outputFile, int[] objVals, int[] inVals, int[] outVals, String[] classifierAttributes, 
+			boolean exclusionXY, boolean exclusionZ) {
+
 		int roiVolume;
+		
+		// label the objects once, before any ROI border is processed - reused for every ROI:
+		ObjectLabels[] roiLabels = imageHandler.labelRoiObjects(objVals);
 
 		// loop through each ROI object:
 		for(int a=0; a<borderPoints.size(); a++) {
@@ -863,7 +939,7 @@ public class RoiAssessmentHandler {
 			// process all border points - sort objects into 50%+ IN or OUT of current ROI:
 				// Objs 50%+ IN -> inVal  :  Objs >50% OUT -> outVal
 			imageHandler.processBorderPoints(borderPoints.get(a), imageHandler.thresholdImgInt.sizeZ, 
-																	inVal, outVal, objVal, rois.get(a));
+																	inVals, outVals, objVals, rois.get(a));
 
 			// process the ROI with exclusion Zone applied (if appropriate):
 			Roi roiExcl = getRoiExcl(exclusionXY, a);
@@ -872,71 +948,121 @@ public class RoiAssessmentHandler {
 			
 			//IJ.showMessage("Processing ROI Objects: "+a);
 
-			roiVolume = imageHandler.processRoiObjects(roiExcl, inVal, objVal, zMax, firstPixObjNoMap, 
-														datasetHandler, roiDatasets.get(a), ClassifierAttribute );
+			roiVolume = imageHandler.processRoiObjects(getRoiSpans(exclusionXY, a), inVals, objVals, roiLabels, 
+														zMax, roiDatasets.get(a), classifierAttributes );
 			
 			//IJ.showMessage("Re-setting Border Points: "+a);
 			// Finally, process borderPoints again to set any objects designated as OUT back to the default maxVal
 				// pixel value:
-			imageHandler.setBorderPoints(borderPoints.get(a), imageHandler.thresholdImgInt.sizeZ, outVal, objVal);
+			imageHandler.setBorderPoints(borderPoints.get(a), imageHandler.thresholdImgInt.sizeZ, outVals, objVals);
 
+			if(roiOverviewDataset != null) {
+				//IJ.showMessage("Adding Overview Data: "+a);
+				// Add the data to the overview Data instances object:
+				roiOverviewDataset.addData(  getOverviewData( roiOverviewDataset, roiDatasets.get(a), a, roiVolume, 
+						roiExcl, zMax, outputFile )  );
+			}
+			
+			//IJ.showMessage("ROI Analysis Complete!: "+a);
 
 		} // end roi loop
 		
 	}
 	
+	
 	/**
-	 * Assess objects within the ROI - whole objects.
+	 * Assess objects of a set of object classes within the ROI - whole objects - by ROI membership.  The 
+	 * membership of every object in every ROI is computed once, from the labelled objects of each class 
+	 * (pixel value objVals[c]), so the objects on each ROI border are not flooded and reset, and the image 
+	 * in imageHandler is not modified.  Each object is assessed in the first ROI it is a member of (50%+ IN)
+	 * and has a voxel in the ROI with exclusion zone applied, and its row is added to the ROI dataset with 
+	 * ClassifierClass classifierAttributes[c].
+	 * <p>
+	 * One Roi Overview row, summarising the objects of all classes, is added to roiOverviewDataset for each
+	 * ROI - unless roiOverviewDataset is null.
 	 * 
 	 * @param imageHandler
-	 * @param objVal
-	 * @param inVal
-	 * @param outVal
+	 * @param roiOverviewDataset
+	 * @param outputFile
+	 * @param objVals
+	 * @param classifierAttributes
+	 * @param exclusionXY
 	 * @param exclusionZ
 	 */
-	public void analyseRoisWholeObjects(ImageHandler imageHandler, DatasetWrapper datasetHandler,
-			ObjectDatasetMap firstPixObjNoMap, DatasetWrapper roiOverviewDataset, File outputFile,
-			int objVal, int inVal, int outVal, String ClassifierAttribute, boolean exclusionXY, boolean exclusionZ) {
+	public void analyseRoisWholeObjectsByMembership(ImageHandler imageHandler, DatasetWrapper roiOverviewDataset, 
+			File outputFile, int[] objVals, String[] classifierAttributes, boolean exclusionXY, boolean exclusionZ) {
 
+		// membership of all objects in all ROIs:
+		RoiMembership[] memberships = imageHandler.computeRoiMembership(rois, objVals);
+		
 		int roiVolume;
 
 		// loop through each ROI object:
-		for(int a=0; a<borderPoints.size(); a++) {
-			
-			//IJ.showMessage("Processing Border Points: "+a);
-
-			// process all border points - sort objects into 50%+ IN or OUT of current ROI:
-				// Objs 50%+ IN -> inVal  :  Objs >50% OUT -> outVal
-			imageHandler.processBorderPoints(borderPoints.get(a), imageHandler.thresholdImgInt.sizeZ, 
-																	inVal, outVal, objVal, rois.get(a));
+		for(int a=0; a<rois.size(); a++) {
 
 			// process the ROI with exclusion Zone applied (if appropriate):
 			Roi roiExcl = getRoiExcl(exclusionXY, a);
-			//IJ.log("ROI index: "+a+"exclZ: "+maxZ+" sizeZ: "+imageHandler.thresholdImgInt.sizeZ);
 			int zMax = getZlengthExcl(exclusionZ, imageHandler.thresholdImgInt.sizeZ);
-			
-			//IJ.showMessage("Processing ROI Objects: "+a);
 
-			roiVolume = imageHandler.processRoiObjects(roiExcl, inVal, objVal, zMax, firstPixObjNoMap, 
-														datasetHandler, roiDatasets.get(a), ClassifierAttribute );
-			
-			//IJ.showMessage("Re-setting Border Points: "+a);
-			// Finally, process borderPoints again to set any objects designated as OUT back to the default maxVal
-				// pixel value:
-			imageHandler.setBorderPoints(borderPoints.get(a), imageHandler.thresholdImgInt.sizeZ, outVal, objVal);
+			roiVolume = imageHandler.processRoiMembers(memberships, a, getRoiSpans(exclusionXY, a), zMax, 
+														roiDatasets.get(a), classifierAttributes );
 
-			//IJ.showMessage("Adding Overview Data: "+a);
-			// Add the data to the overview Data instances object:
-			roiOverviewDataset.addData(  getOverviewData( roiOverviewDataset, roiDatasets.get(a), a, roiVolume, 
-					roiExcl, zMax, outputFile )  );
-			
-			//IJ.showMessage("ROI Analysis Complete!: "+a);
+			if(roiOverviewDataset != null) {
+				// Add the data to the overview Data instances object:
+				roiOverviewDataset.addData(  getOverviewData( roiOverviewDataset, roiDatasets.get(a), a, roiVolume, 
+						roiExcl, zMax, outputFile )  );
+			}
 
 		} // end roi loop
 		
 	}
 	
 	
+	/**
+	 * Concurrent version of analyseRoisWholeObjectsByMembership():  the ROIs are scanned, and their objects
+	 * assessed and added to each ROI dataset, concurrently on the assessment pool of imageHandler - see
+	 * ImageHandler.processRoiMembersConcurrent().  The ROI datasets and Roi Overview rows are identical to
+	 * analyseRoisWholeObjectsByMembership(), and the image in imageHandler is not modified.
+	 * <p>
+	 * The Roi Overview rows are added in ROI order once all ROIs are analysed, unless roiOverviewDataset is 
+	 * null.
+	 * 
+	 * @param imageHandler
+	 * @param roiOverviewDataset
+	 * @param outputFile
+	 * @param objVals
+	 * @param classifierAttributes
+	 * @param exclusionXY
+	 * @param exclusionZ
+	 */
+	public void analyseRoisWholeObjectsConcurrent(ImageHandler imageHandler, DatasetWrapper roiOverviewDataset, 
+			File outputFile, int[] objVals, String[] classifierAttributes, boolean exclusionXY, boolean exclusionZ) {
+
+		// membership of all objects in all ROIs:
+		RoiMembership[] memberships = imageHandler.computeRoiMembership(rois, objVals);
+		
+		// the ROIs with exclusion Zone applied (if appropriate) - rasterised here, before the ROIs are shared
+		// between threads:
+		ArrayList<RoiSpans> roisAnalysed = new ArrayList<RoiSpans>();
+		for(int a=0; a<rois.size(); a++) {
+			roisAnalysed.add( getRoiSpans(exclusionXY, a) );
+		}
+		int zMax = getZlengthExcl(exclusionZ, imageHandler.thresholdImgInt.sizeZ);
+		
+		int[] roiVolumes = imageHandler.processRoiMembersConcurrent(memberships, roisAnalysed, zMax, 
+																		roiDatasets, classifierAttributes);
+		
+		if(roiOverviewDataset != null) {
+			for(int a=0; a<rois.size(); a++) {
+				// Add the data to the overview Data instances object:
+				roiOverviewDataset.addData(  getOverviewData( roiOverviewDataset, roiDatasets.get(a), a, 
+						roiVolumes[a], getRoiExcl(exclusionXY, a), zMax, outputFile )  );
+			}
+		}
+		
+	}
+	
+	
 	/**
 	 * Assess objects within the ROI - objects and fragments.  Does NOT save Roi Overview Data.
 	 * <p>
@@ -951,17 +1077,8 @@ public class RoiAssessmentHandler {
 	public void analyseRoisObjectsAndFragments(ImageHandler imageHandler, File outputFile, int objVal, 
 						String ClassifierAttribute, boolean exclusionXY, boolean exclusionZ) {
 
-		for(int a=0; a<borderPoints.size(); a++) {
-
-			// process the ROI with exclusion Zone applied (if appropriate):
-			Roi roiExcl = getRoiExcl(exclusionXY, a);
-			int zMax = getZlengthExcl(exclusionZ, imageHandler.thresholdImgInt.sizeZ);
-
-			int roiVolume = 
-					imageHandler.processRoiObjectsFragments(roiExcl, objVal, zMax, 
-											roiDatasets.get(a), ClassifierAttribute );
-
-		} // end roi loop
+		analyseRoisObjectsAndFragments(imageHandler, null, outputFile, new int[] {objVal}, 
+				new String[] {ClassifierAttribute}, exclusionXY, exclusionZ);
 		
 	}
 	
@@ -981,6 +1098,35 @@ public class RoiAssessmentHandler {
 	public void analyseRoisObjectsAndFragments(ImageHandler imageHandler, DatasetWrapper roiOverviewDataset, 
 					File outputFile, int objVal, String ClassifierAttribute, boolean exclusionXY, boolean exclusionZ) {
 
+		analyseRoisObjectsAndFragments(imageHandler, roiOverviewDataset, outputFile, new int[] {objVal}, 
+				new String[] {ClassifierAttribute}, exclusionXY, exclusionZ);
+		
+	}
+	
+	/**
+	 * Assess objects of a set of object classes within the ROI - objects and fragments.  Each ROI is traversed
+	 * once for all classes:  objects of class c have pixel value objVals[c], and their rows are added to the ROI
+	 * dataset with ClassifierClass classifierAttributes[c].
+	 * <p>
+	 * The fragments are found on a view of each ROI, so the image in imageHandler is not modified - see
+	 * ImageHandler.processRoiObjectsFragments(RoiSpans, RoiSpans, ...).  As when the fragments were removed 
+	 * from the image, a fragment voxel inside several (overlapping) ROIs is only assessed in the first.
+	 * <p>
+	 * One Roi Overview row, summarising the objects of all classes, is added to roiOverviewDataset for each
+	 * ROI - unless roiOverviewDataset is null.
+	 * 
+	 * @param imageHandler
+	 * @param roiOverviewDataset
+	 * @param outputFile
+	 * @param objVals
+	 * @param classifierAttributes
+	 * @param exclusionXY
+	 * @param exclusionZ
+	 */
+	public void analyseRoisObjectsAndFragments(ImageHandler imageHandler, DatasetWrapper roiOverviewDataset, 
+					File outputFile, int[] objVals, String[] classifierAttributes, 
+					boolean exclusionXY, boolean exclusionZ) {
+
 		for(int a=0; a<borderPoints.size(); a++) {
 
 			// process the ROI with exclusion Zone applied (if appropriate):
@@ -988,17 +1134,62 @@ public class RoiAssessmentHandler {
 			int zMax = getZlengthExcl(exclusionZ, imageHandler.thresholdImgInt.sizeZ);
 
 			int roiVolume = 
-					imageHandler.processRoiObjectsFragments(roiExcl, objVal, zMax, 
-											roiDatasets.get(a), ClassifierAttribute );
+					imageHandler.processRoiObjectsFragments(getRoiSpans(exclusionXY, a), 
+							getFragmentSpans(exclusionXY, a), objVals, zMax, roiDatasets.get(a), classifierAttributes );
 
-			// Add the data to the overview Data instances object:
-			roiOverviewDataset.addData(  getOverviewData( roiOverviewDataset, roiDatasets.get(a), a, roiVolume, 
-					roiExcl, zMax, outputFile )  );
+			if(roiOverviewDataset != null) {
+				// Add the data to the overview Data instances object:
+				roiOverviewDataset.addData(  getOverviewData( roiOverviewDataset, roiDatasets.get(a), a, roiVolume, 
+						roiExcl, zMax, outputFile )  );
+			}
 
 		} // end roi loop
 		
 	}
 	
+	/**
+	 * Concurrent version of analyseRoisObjectsAndFragments():  the fragments of each ROI are assessed and added 
+	 * to its dataset concurrently on the assessment pool of imageHandler - see 
+	 * ImageHandler.processRoiObjectsFragmentsConcurrent().  The ROI datasets and Roi Overview rows are identical
+	 * to analyseRoisObjectsAndFragments(), and the image in imageHandler is not modified.
+	 * <p>
+	 * The Roi Overview rows are added in ROI order once all ROIs are analysed, unless roiOverviewDataset is 
+	 * null.
+	 * 
+	 * @param imageHandler
+	 * @param roiOverviewDataset
+	 * @param outputFile
+	 * @param objVals
+	 * @param classifierAttributes
+	 * @param exclusionXY
+	 * @param exclusionZ
+	 */
+	public void analyseRoisObjectsAndFragmentsConcurrent(ImageHandler imageHandler, DatasetWrapper roiOverviewDataset, 
+			File outputFile, int[] objVals, String[] classifierAttributes, boolean exclusionXY, boolean exclusionZ) {
+		
+		// the ROIs with exclusion Zone applied (if appropriate), and their fragment spans - rasterised here, 
+		// before the ROIs are shared between threads:
+		ArrayList<RoiSpans> roisAnalysed = new ArrayList<RoiSpans>();
+		ArrayList<RoiSpans> fragmentSpans = new ArrayList<RoiSpans>();
+		for(int a=0; a<borderPoints.size(); a++) {
+			roisAnalysed.add( getRoiSpans(exclusionXY, a) );
+			fragmentSpans.add( getFragmentSpans(exclusionXY, a) );
+		}
+		int zMax = getZlengthExcl(exclusionZ, imageHandler.thresholdImgInt.sizeZ);
+		
+		int[] roiVolumes = imageHandler.processRoiObjectsFragmentsConcurrent(roisAnalysed, fragmentSpans, objVals, 
+																		zMax, roiDatasets, classifierAttributes);
+		
+		if(roiOverviewDataset != null) {
+			for(int a=0; a<roisAnalysed.size(); a++) {
+				// Add the data to the overview Data instances object:
+				roiOverviewDataset.addData(  getOverviewData( roiOverviewDataset, roiDatasets.get(a), a, 
+						roiVolumes[a], getRoiExcl(exclusionXY, a), zMax, outputFile )  );
+			}
+		}
+		
+	}
+	
 	/**
 	 * Returns either roisExcl at index if exclusionXY is true, otherwise it returns rois at
 	 * index.
@@ -1017,6 +1208,72 @@ public class RoiAssessmentHandler {
 		
 	}
 	
+	/**
+	 * Returns the rasterised ROI at index of roisExcl if exclusionXY is true, otherwise of rois.  The spans of
+	 * each ROI are computed once, clipped to the image (xMax by yMax), and cached.
+	 * @param exclusionXY
+	 * @param index
+	 * @return
+	 */
+	public RoiSpans getRoiSpans(boolean exclusionXY, int index) {
+		
+		if(exclusionXY == true) {
+			if(roiExclSpans == null) {
+				roiExclSpans = new RoiSpans[roisExcl.size()];
+			}
+			if(roiExclSpans[index] == null) {
+				roiExclSpans[index] = new RoiSpans(roisExcl.get(index), xMax, yMax);
+			}
+			return roiExclSpans[index];
+		}
+		else {
+			if(roiSpans == null) {
+				roiSpans = new RoiSpans[rois.size()];
+			}
+			if(roiSpans[index] == null) {
+				roiSpans[index] = new RoiSpans(rois.get(index), xMax, yMax);
+			}
+			return roiSpans[index];
+		}
+		
+	}
+	
+	/**
+	 * Returns the fragment spans of the ROI at index of roisExcl if exclusionXY is true, otherwise of rois:  the
+	 * pixels of getRoiSpans(exclusionXY, index) which are not inside any ROI before index.  The fragment spans
+	 * of all ROIs are computed together on first use, and cached.
+	 * @param exclusionXY
+	 * @param index
+	 * @return
+	 */
+	public RoiSpans getFragmentSpans(boolean exclusionXY, int index) {
+		
+		RoiSpans[] fragmentSpans = exclusionXY ? roiExclFragmentSpans : roiFragmentSpans;
+		
+		if(fragmentSpans == null) {
+			int count = exclusionXY ? roisExcl.size() : rois.size();
+			ArrayList<RoiSpans> spans = new ArrayList<RoiSpans>();
+			for(int a=0; a<count; a++) {
+				spans.add( getRoiSpans(exclusionXY, a) );
+			}
+			// each pixel is owned by the first ROI containing it:
+			int[] owner = RoiSpans.ownerMap(spans, xMax, yMax);
+			fragmentSpans = new RoiSpans[count];
+			for(int a=0; a<count; a++) {
+				fragmentSpans[a] = new RoiSpans(spans.get(a), owner, a);
+			}
+			if(exclusionXY == true) {
+				roiExclFragmentSpans = fragmentSpans;
+			}
+			else {
+				roiFragmentSpans = fragmentSpans;
+			}
+		}
+		
+		return fragmentSpans[index];
+		
+	}
+	
 	/**
 	 * Returns either sizeZ minus the maxZ [max object length in Z) if exclusionZ is true, otherwise
 	 * returns sizeZ as z length for exclusion.
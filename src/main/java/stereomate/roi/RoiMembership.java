@@ -0,0 +1,341 @@
+package stereomate.roi;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import ij.gui.Roi;
+import stereomate.object.ObjectLabels;
+
+/**
+ * Assigns the labelled objects of a thresholded image to a set of ROIs by overlap fraction, for all ROIs at
+ * once, without modifying the image.
+ * <p>
+ * For each ROI, the voxels of each object inside the ROI (across all z) are counted in one pass over the ROI
+ * area - an object is a MEMBER of the ROI if at least minFraction of its voxels are inside it.  With the
+ * default fraction of 0.5, this is the same IN/OUT decision ObjectVoxelProcessing.borderObjFilter3d() makes
+ * by flooding each object from the ROI border points - objects with at least as many voxels inside the ROI
+ * as outside are IN.  If includeBorder is true, voxels immediately below or right of the ROI are counted as
+ * inside, as for ImageShort images in borderObjFilter3d().
+ * <p>
+ * Membership may be decided on a different labelling of the same voxels (membershipLabels) from the labelling
+ * of the objects assessed (objectLabels):  borderObjFilter3d() always floods 26-connected, so the IN/OUT
+ * decision is made on the 26-connected objects, and each object of a 6- or 18-connected labelling is a member
+ * of the ROIs its enclosing 26-connected object is a member of.
+ * <p>
+ * Each object also holds an assessed flag, so an object which is a member of several (overlapping) ROIs is
+ * only assessed in the first, as when assessed objects are removed from the image.
+ *
+ * @author stevenwest
+ *
+ */
+public class RoiMembership {
+
+	/**
+	 * Default minimum fraction of an object's voxels inside an ROI for it to be a member.
+	 */
+	public static final double MEMBERSHIP_FRACTION = 0.5;
+
+	/**
+	 * The labelled objects, and the pixel value they were labelled from.
+	 */
+	ObjectLabels objectLabels;
+	int objVal;
+
+	/**
+	 * The labelled objects the membership is decided on - objectLabels, or a labelling of the same voxels
+	 * with a higher connectivity.
+	 */
+	ObjectLabels membershipLabels;
+
+	double minFraction;
+
+	/**
+	 * Labels of the membershipLabels objects overlapping each ROI, in ascending order, and the number of
+	 * their voxels inside the ROI:  roiLabels[roi][i] has roiInsideCounts[roi][i] voxels inside roi.
+	 */
+	int[][] roiLabels, roiInsideCounts;
+
+	/**
+	 * ROIs each label is a member of - null if the label is not a member of any ROI.
+	 */
+	int[][] memberRois;
+
+	/**
+	 * Whether each label has been assessed.
+	 */
+	boolean[] assessed;
+
+	/**
+	 * Bounds of the mask returned by insideMask().
+	 */
+	private Rectangle insideBounds;
+
+
+	/**
+	 * Computes the membership of the objects in objectLabels in each roi, with the default minimum fraction.
+	 * @param objectLabels
+	 * @param objVal The pixel value the objects were labelled from.
+	 * @param rois
+	 * @param includeBorder
+	 */
+	public RoiMembership(ObjectLabels objectLabels, int objVal, ArrayList<Roi> rois, boolean includeBorder) {
+		this(objectLabels, objVal, rois, includeBorder, MEMBERSHIP_FRACTION);
+	}
+
+	/**
+	 * Computes the membership of the objects in objectLabels in each roi:  objects with at least minFraction
+	 * of their voxels inside an roi are members of it.
+	 * @param objectLabels
+	 * @param objVal The pixel value the objects were labelled from.
+	 * @param rois
+	 * @param includeBorder
+	 * @param minFraction
+	 */
+	public RoiMembership(ObjectLabels objectLabels, int objVal, ArrayList<Roi> rois,
+							boolean includeBorder, double minFraction) {
+		this(objectLabels, objectLabels, objVal, rois, includeBorder, minFraction);
+	}
+
+	/**
+	 * Computes the membership of the objects in membershipLabels in each roi, with the default minimum
+	 * fraction - each object in objectLabels, a labelling of the same voxels, is a member of the rois of the
+	 * membershipLabels object which contains it.
+	 * @param objectLabels
+	 * @param membershipLabels
+	 * @param objVal The pixel value the objects were labelled from.
+	 * @param rois
+	 * @param includeBorder
+	 */
+	public RoiMembership(ObjectLabels objectLabels, ObjectLabels membershipLabels, int objVal, 
+							ArrayList<Roi> rois, boolean includeBorder) {
+		this(objectLabels, membershipLabels, objVal, rois, includeBorder, MEMBERSHIP_FRACTION);
+	}
+
+	/**
+	 * Computes the membership of the objects in membershipLabels in each roi:  objects with at least
+	 * minFraction of their voxels inside an roi are members of it.  Each object in objectLabels, a labelling
+	 * of the same voxels, is a member of the rois of the membershipLabels object which contains it.
+	 * @param objectLabels
+	 * @param membershipLabels
+	 * @param objVal The pixel value the objects were labelled from.
+	 * @param rois
+	 * @param includeBorder
+	 * @param minFraction
+	 */
+	public RoiMembership(ObjectLabels objectLabels, ObjectLabels membershipLabels, int objVal, 
+							ArrayList<Roi> rois, boolean includeBorder, double minFraction) {
+
+		this.objectLabels = objectLabels;
+		this.membershipLabels = membershipLabels;
+		this.objVal = objVal;
+		this.minFraction = minFraction;
+
+		int labelCount = membershipLabels.getLabelCount();
+
+		roiLabels = new int[rois.size()][];
+		roiInsideCounts = new int[rois.size()][];
+		memberRois = new int[labelCount + 1][];
+		assessed = new boolean[objectLabels.getLabelCount() + 1];
+
+		// inside counts of the current roi, and the labels touched - reset after each roi:
+		int[] counts = new int[labelCount + 1];
+		int[] touched = new int[16];
+
+		for(int r=0; r<rois.size(); r++) {
+
+			boolean[] inside = insideMask(rois.get(r), includeBorder);
+			Rectangle b = insideBounds;
+
+			int touchedCount = 0;
+			int label;
+
+			for(int z=0; z<membershipLabels.getSizeZ(); z++) {
+				for(int y=0; y<b.height; y++) {
+					for(int x=0; x<b.width; x++) {
+						if(inside[y * b.width + x]) {
+							label = membershipLabels.getLabel(x + b.x, y + b.y, z);
+							if(label > 0) {
+								if(counts[label] == 0) {
+									if(touchedCount == touched.length) {
+										touched = Arrays.copyOf(touched, touchedCount * 2);
+									}
+									touched[touchedCount++] = label;
+								}
+								counts[label]++;
+							}
+						}
+					}
+				}
+			}
+
+			// record the overlaps of this roi, in label order:
+			Arrays.sort(touched, 0, touchedCount);
+			roiLabels[r] = Arrays.copyOf(touched, touchedCount);
+			roiInsideCounts[r] = new int[touchedCount];
+
+			for(int i=0; i<touchedCount; i++) {
+				label = touched[i];
+				roiInsideCounts[r][i] = counts[label];
+				if( isMemberCount(counts[label], membershipLabels.getVoxelCount(label)) ) {
+					addMemberRoi(label, r);
+				}
+				counts[label] = 0;
+			}
+		}
+
+		if(membershipLabels != objectLabels) {
+			// each object is a member of the rois of the membershipLabels object containing its first voxel:
+			int[][] membershipRois = memberRois;
+			memberRois = new int[objectLabels.getLabelCount() + 1][];
+			int index;
+			for(int l=1; l<=objectLabels.getLabelCount(); l++) {
+				index = objectLabels.getFirstVoxelIndex(l);
+				memberRois[l] = membershipRois[ membershipLabels.getLabel( objectLabels.getX(index), 
+														objectLabels.getY(index), objectLabels.getZ(index) ) ];
+			}
+		}
+
+	}
+
+	/**
+	 * Returns a mask of the pixels counted as inside roi, clipped to the image, over insideBounds:  the
+	 * pixels roi contains, plus the pixels immediately below or right of these if includeBorder is true.
+	 * @param roi
+	 * @param includeBorder
+	 * @return
+	 */
+	private boolean[] insideMask(Roi roi, boolean includeBorder) {
+
+		Rectangle r = roi.getBounds();
+		int border = includeBorder ? 1 : 0;
+
+		int x0 = Math.max(0, r.x);
+		int y0 = Math.max(0, r.y);
+		int x1 = Math.min(membershipLabels.getSizeX(), r.x + r.width + border);
+		int y1 = Math.min(membershipLabels.getSizeY(), r.y + r.height + border);
+
+		insideBounds = new Rectangle(x0, y0, Math.max(0, x1 - x0), Math.max(0, y1 - y0));
+		boolean[] inside = new boolean[insideBounds.width * insideBounds.height];
+
+		for(int y=y0; y<y1; y++) {
+			for(int x=x0; x<x1; x++) {
+				inside[(y - y0) * insideBounds.width + (x - x0)] = roi.contains(x, y) ||
+						( includeBorder && ( roi.contains(x-1, y) || roi.contains(x, y-1) ) );
+			}
+		}
+
+		return inside;
+	}
+
+	private boolean isMemberCount(int insideCount, int voxelCount) {
+		if(minFraction == MEMBERSHIP_FRACTION) {
+			// exact integer test - at least as many voxels inside as outside:
+			return insideCount >= (voxelCount - insideCount);
+		}
+		return insideCount >= minFraction * voxelCount;
+	}
+
+	private void addMemberRoi(int label, int roi) {
+		if(memberRois[label] == null) {
+			memberRois[label] = new int[] { roi };
+		}
+		else {
+			int[] rois = Arrays.copyOf(memberRois[label], memberRois[label].length + 1);
+			rois[rois.length - 1] = roi;
+			memberRois[label] = rois;
+		}
+	}
+
+	public ObjectLabels getObjectLabels() {
+		return objectLabels;
+	}
+
+	/**
+	 * Returns the labelled objects the membership is decided on - the labels of getInsideVoxelCount(),
+	 * getOverlapFraction() and getOverlappingLabels().
+	 * @return
+	 */
+	public ObjectLabels getMembershipLabels() {
+		return membershipLabels;
+	}
+
+	/**
+	 * The pixel value the objects were labelled from.
+	 * @return
+	 */
+	public int getObjVal() {
+		return objVal;
+	}
+
+	public int getRoiCount() {
+		return roiLabels.length;
+	}
+
+	/**
+	 * Returns the number of voxels of the membershipLabels object with the given label inside roi.
+	 * @param roi
+	 * @param label
+	 * @return
+	 */
+	public int getInsideVoxelCount(int roi, int label) {
+		int i = Arrays.binarySearch(roiLabels[roi], label);
+		return i < 0 ? 0 : roiInsideCounts[roi][i];
+	}
+
+	/**
+	 * Returns the fraction of the voxels of the membershipLabels object with the given label inside roi.
+	 * @param roi
+	 * @param label
+	 * @return
+	 */
+	public double getOverlapFraction(int roi, int label) {
+		return (double)getInsideVoxelCount(roi, label) / (double)membershipLabels.getVoxelCount(label);
+	}
+
+	/**
+	 * Returns the labels of all membershipLabels objects with any voxel inside roi, in ascending order.
+	 * @param roi
+	 * @return
+	 */
+	public int[] getOverlappingLabels(int roi) {
+		return roiLabels[roi].clone();
+	}
+
+	/**
+	 * Returns true if the object with the given label is a member of roi.
+	 * @param roi
+	 * @param label
+	 * @return
+	 */
+	public boolean isMember(int roi, int label) {
+		if(memberRois[label] == null) {
+			return false;
+		}
+		for(int r : memberRois[label]) {
+			if(r == roi) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the ROIs the object with the given label is a member of, in ascending order - an empty array
+	 * if it is not a member of any ROI.
+	 * @param label
+	 * @return
+	 */
+	public int[] getMemberRois(int label) {
+		return memberRois[label] == null ? new int[0] : memberRois[label].clone();
+	}
+
+	public boolean isAssessed(int label) {
+		return assessed[label];
+	}
+
+	public void setAssessed(int label) {
+		assessed[label] = true;
+	}
+
+}
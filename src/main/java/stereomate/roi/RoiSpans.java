@@ -0,0 +1,246 @@
+package stereomate.roi;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+import ij.gui.Roi;
+import ij.process.ImageProcessor;
+
+/**
+ * A rasterised ROI:  the pixels inside an ROI as runs (spans) of consecutive pixels along each image row,
+ * computed once from the ROI mask and clipped to the image.
+ * <p>
+ * Spans are held in raster order - by y, then x - so iterating the spans of each z slice visits the ROI
+ * voxels in the same z, y, x order as a loop over roi.getMask(), but without testing each mask pixel.
+ * Span i covers the pixels getXStart(i) to getXEnd(i) - 1 on row getY(i), in image coordinates, and
+ * getOffset(i) is the index of its first pixel in an image slice (y * sizeX + x).
+ * <p>
+ * A RoiSpans is immutable, so it can be shared between threads.
+ *
+ * @author stevenwest
+ *
+ */
+public class RoiSpans {
+
+	/**
+	 * Row, start x and end x (exclusive) of each span, in image coordinates.
+	 */
+	int[] spanY, spanXStart, spanXEnd;
+
+	int spanCount;
+
+	/**
+	 * Number of pixels inside the ROI - the sum of the span lengths.
+	 */
+	int area;
+
+	/**
+	 * Width of the image - used to compute the slice offset of each span.
+	 */
+	int sizeX;
+
+	/**
+	 * Bounds of the ROI - not clipped to the image.
+	 */
+	Rectangle bounds;
+
+
+	/**
+	 * Rasterises roi, clipped to an image of sizeX by sizeY pixels.  If roi has no mask (a rectangle),
+	 * every pixel in its bounds is inside it.
+	 * @param roi
+	 * @param sizeX
+	 * @param sizeY
+	 */
+	public RoiSpans(Roi roi, int sizeX, int sizeY) {
+
+		this.sizeX = sizeX;
+
+		ImageProcessor mask = roi.getMask();
+		Rectangle r = roi.getBounds();
+		bounds = new Rectangle(r);
+
+		// the mask rows and columns inside the image:
+		int x0 = Math.max(0, -r.x);
+		int y0 = Math.max(0, -r.y);
+		int x1 = Math.min(r.width, sizeX - r.x);
+		int y1 = Math.min(r.height, sizeY - r.y);
+
+		int capacity = Math.max(16, y1 - y0);
+		spanY = new int[capacity];
+		spanXStart = new int[capacity];
+		spanXEnd = new int[capacity];
+		spanCount = 0;
+		area = 0;
+
+		int start;
+		for(int y=y0; y<y1; y++) {
+			if(mask == null) {
+				addSpan(y + r.y, x0 + r.x, x1 + r.x);
+				continue;
+			}
+			start = -1;
+			for(int x=x0; x<x1; x++) {
+				if(mask.getPixel(x, y) > 0) {
+					if(start == -1) {
+						start = x;
+					}
+				}
+				else if(start != -1) {
+					addSpan(y + r.y, start + r.x, x + r.x);
+					start = -1;
+				}
+			}
+			if(start != -1) {
+				addSpan(y + r.y, start + r.x, x1 + r.x);
+			}
+		}
+
+	}
+
+	/**
+	 * Constructs the spans of the pixels of roiSpans which are owned by ownerIndex:  pixel xy of the image is
+	 * kept if owner[xy] is ownerIndex.  The bounds are those of roiSpans.
+	 * @param roiSpans
+	 * @param owner The owner of each image pixel - see ownerMap().
+	 * @param ownerIndex
+	 */
+	public RoiSpans(RoiSpans roiSpans, int[] owner, int ownerIndex) {
+
+		this.sizeX = roiSpans.sizeX;
+		this.bounds = new Rectangle(roiSpans.bounds);
+
+		spanY = new int[Math.max(16, roiSpans.spanCount)];
+		spanXStart = new int[spanY.length];
+		spanXEnd = new int[spanY.length];
+		spanCount = 0;
+		area = 0;
+
+		int y, start, xy;
+		for(int s=0; s<roiSpans.spanCount; s++) {
+			y = roiSpans.spanY[s];
+			start = -1;
+			xy = y * sizeX + roiSpans.spanXStart[s];
+			for(int x=roiSpans.spanXStart[s]; x<roiSpans.spanXEnd[s]; x++, xy++) {
+				if(owner[xy] == ownerIndex) {
+					if(start == -1) {
+						start = x;
+					}
+				}
+				else if(start != -1) {
+					addSpan(y, start, x);
+					start = -1;
+				}
+			}
+			if(start != -1) {
+				addSpan(y, start, roiSpans.spanXEnd[s]);
+			}
+		}
+
+	}
+
+	/**
+	 * Returns the owner of each pixel of an image of sizeX by sizeY:  the index of the FIRST of roiSpans which
+	 * contains the pixel, or -1 if no ROI contains it.  All roiSpans must be rasterised for this image size.
+	 * @param roiSpans
+	 * @param sizeX
+	 * @param sizeY
+	 * @return
+	 */
+	public static int[] ownerMap(List<RoiSpans> roiSpans, int sizeX, int sizeY) {
+
+		int[] owner = new int[sizeX * sizeY];
+		Arrays.fill(owner, -1);
+
+		for(int r=0; r<roiSpans.size(); r++) {
+			RoiSpans spans = roiSpans.get(r);
+			for(int s=0; s<spans.spanCount; s++) {
+				int xy = spans.getOffset(s);
+				for(int a=0; a<spans.getLength(s); a++, xy++) {
+					if(owner[xy] == -1) {
+						owner[xy] = r;
+					}
+				}
+			}
+		}
+
+		return owner;
+	}
+
+	private void addSpan(int y, int xStart, int xEnd) {
+		if(xEnd <= xStart) {
+			return;
+		}
+		if(spanCount == spanY.length) {
+			spanY = Arrays.copyOf(spanY, spanCount * 2);
+			spanXStart = Arrays.copyOf(spanXStart, spanCount * 2);
+			spanXEnd = Arrays.copyOf(spanXEnd, spanCount * 2);
+		}
+		spanY[spanCount] = y;
+		spanXStart[spanCount] = xStart;
+		spanXEnd[spanCount] = xEnd;
+		spanCount++;
+		area = area + (xEnd - xStart);
+	}
+
+	public int getSpanCount() {
+		return spanCount;
+	}
+
+	public int getY(int span) {
+		return spanY[span];
+	}
+
+	public int getXStart(int span) {
+		return spanXStart[span];
+	}
+
+	/**
+	 * Returns the end x of span - the pixel AFTER the last pixel in the span.
+	 * @param span
+	 * @return
+	 */
+	public int getXEnd(int span) {
+		return spanXEnd[span];
+	}
+
+	/**
+	 * Returns the index of the first pixel of span in an image slice:  y * sizeX + xStart.
+	 * @param span
+	 * @return
+	 */
+	public int getOffset(int span) {
+		return spanY[span] * sizeX + spanXStart[span];
+	}
+
+	public int getLength(int span) {
+		return spanXEnd[span] - spanXStart[span];
+	}
+
+	/**
+	 * Returns the bounds of the ROI - these are not clipped to the image.
+	 * @return
+	 */
+	public Rectangle getBounds() {
+		return new Rectangle(bounds);
+	}
+
+	/**
+	 * Returns the number of pixels inside the ROI.
+	 * @return
+	 */
+	public int getArea() {
+		return area;
+	}
+
+	/**
+	 * Returns the number of voxels inside the ROI over zDepth slices.
+	 * @param zDepth
+	 * @return
+	 */
+	public int getVolume(int zDepth) {
+		return area * zDepth;
+	}
+
+}
@@ -0,0 +1,260 @@
+package stereomate.roi;
+
+import java.awt.Rectangle;
+
+import mcib3d.image3d.ImageByte;
+import mcib3d.image3d.ImageInt;
+import mcib3d.image3d.ImageShort;
+
+/**
+ * A zero-copy view of a 3D ROI in a parent image:  the voxels of the parent inside the rasterised ROI
+ * (roiSpans), down to zMax slices.  The view reads the parent pixel arrays directly, in PARENT coordinates,
+ * so no voxels are copied - unlike ImageHandler.isolateRoi(), which copies the ROI bounds x full Z into a
+ * new image.
+ * <p>
+ * The border policy sets what voxels outside the ROI read as:
+ * <p>
+ * BORDER_BACKGROUND - voxels outside the ROI (or below zMax) read as 0, as if the ROI had been isolated
+ * into a blank image with a background border, as isolateRoiWithBorder() does.  A flood fill on the view
+ * stops at the ROI edge, and so finds the object fragments inside the ROI.
+ * <p>
+ * BORDER_PARENT - voxels outside the ROI read through to the parent image, so a flood fill seeded in the
+ * ROI finds whole objects.
+ * <p>
+ * The view also holds a visited bitset over the voxels a flood fill can reach on it - the ROI bounds x zMax
+ * for BORDER_BACKGROUND, or the whole parent for BORDER_PARENT - so objects can be flood filled on the view
+ * without modifying the parent.  A RoiView is not thread-safe, but any number of views may read the same
+ * parent concurrently.
+ *
+ * @author stevenwest
+ *
+ */
+public class RoiView {
+
+	public static final int BORDER_BACKGROUND = 0, BORDER_PARENT = 1;
+
+	/**
+	 * The parent image, and its pixel arrays if it is an ImageByte or ImageShort.
+	 */
+	ImageInt parent;
+	byte[][] bytes;
+	short[][] shorts;
+
+	/**
+	 * Dimensions of the parent.
+	 */
+	int sizeX, sizeY, sizeZ;
+
+	RoiSpans roiSpans;
+
+	int zMax, borderPolicy;
+
+	/**
+	 * Bounds of the ROI clipped to the parent, and the ROI mask over these bounds.
+	 */
+	int x0, y0, width, height;
+	boolean[] inside;
+
+	/**
+	 * Visited bitset, over the extent a flood fill can reach:  the clipped bounds x zMax for
+	 * BORDER_BACKGROUND, or the whole parent for BORDER_PARENT.  Allocated on first use.
+	 */
+	long[] visited;
+
+
+	/**
+	 * Constructs a view of the voxels of parent inside roiSpans, in slices 0 to zMax - 1.
+	 * @param parent
+	 * @param roiSpans Must be rasterised for an image of the size of parent.
+	 * @param zMax
+	 * @param borderPolicy BORDER_BACKGROUND or BORDER_PARENT.
+	 */
+	public RoiView(ImageInt parent, RoiSpans roiSpans, int zMax, int borderPolicy) {
+
+		this.parent = parent;
+
+		if(parent instanceof ImageByte) {
+			bytes = ((ImageByte)parent).pixels;
+		}
+		else if(parent instanceof ImageShort) {
+			shorts = ((ImageShort)parent).pixels;
+		}
+
+		this.sizeX = parent.sizeX;
+		this.sizeY = parent.sizeY;
+		this.sizeZ = parent.sizeZ;
+		this.roiSpans = roiSpans;
+		this.zMax = Math.min(zMax, sizeZ);
+		this.borderPolicy = borderPolicy;
+
+		// clipped bounds - the extent of the spans:
+		int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE, xMax = 0, yMax = 0;
+		for(int s=0; s<roiSpans.getSpanCount(); s++) {
+			xMin = Math.min(xMin, roiSpans.getXStart(s));
+			xMax = Math.max(xMax, roiSpans.getXEnd(s));
+			yMin = Math.min(yMin, roiSpans.getY(s));
+			yMax = Math.max(yMax, roiSpans.getY(s) + 1);
+		}
+		if(roiSpans.getSpanCount() == 0) {
+			xMin = xMax = yMin = yMax = 0;
+		}
+		x0 = xMin;
+		y0 = yMin;
+		width = xMax - xMin;
+		height = yMax - yMin;
+
+		inside = new boolean[width * height];
+		for(int s=0; s<roiSpans.getSpanCount(); s++) {
+			int i = (roiSpans.getY(s) - y0) * width + (roiSpans.getXStart(s) - x0);
+			for(int a=0; a<roiSpans.getLength(s); a++) {
+				inside[i + a] = true;
+			}
+		}
+
+	}
+
+	public ImageInt getParent() {
+		return parent;
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getSizeZ() {
+		return sizeZ;
+	}
+
+	public RoiSpans getRoiSpans() {
+		return roiSpans;
+	}
+
+	public int getZMax() {
+		return zMax;
+	}
+
+	public int getBorderPolicy() {
+		return borderPolicy;
+	}
+
+	/**
+	 * Returns the bounds of the ROI clipped to the parent image.
+	 * @return
+	 */
+	public Rectangle getBounds() {
+		return new Rectangle(x0, y0, width, height);
+	}
+
+	/**
+	 * Returns true if parent voxel x,y,z is inside the 3D ROI.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public boolean contains(int x, int y, int z) {
+		x = x - x0;
+		y = y - y0;
+		return x >= 0 && x < width && y >= 0 && y < height && z >= 0 && z < zMax && inside[y * width + x];
+	}
+
+	/**
+	 * Returns the value of parent voxel x,y,z as seen through the view:  the parent value inside the ROI, and
+	 * outside it 0 for BORDER_BACKGROUND, or the parent value for BORDER_PARENT.  x,y,z must be inside the
+	 * parent image.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public int getPixelInt(int x, int y, int z) {
+		if(borderPolicy == BORDER_BACKGROUND && contains(x, y, z) == false) {
+			return 0;
+		}
+		return getParentPixel(x, y, z);
+	}
+
+	/**
+	 * Returns the value of parent voxel x,y,z, read directly from the parent pixel arrays.
+	 */
+	private int getParentPixel(int x, int y, int z) {
+		int xy = y * sizeX + x;
+		if(bytes != null) {
+			return bytes[z][xy] & 0xff;
+		}
+		if(shorts != null) {
+			return shorts[z][xy] & 0xffff;
+		}
+		return parent.getPixelInt(xy, z);
+	}
+
+	/**
+	 * Returns true if parent voxel x,y,z has been marked as visited.  Voxels outside the visited extent
+	 * (see class description) are never visited.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public boolean isVisited(int x, int y, int z) {
+		if(visited == null) {
+			return false;
+		}
+		long bit = visitedBit(x, y, z);
+		return bit >= 0 && ( visited[(int)(bit >>> 6)] & (1L << bit) ) != 0;
+	}
+
+	/**
+	 * Marks parent voxel x,y,z as visited - if it is inside the visited extent.
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	public void setVisited(int x, int y, int z) {
+		long bit = visitedBit(x, y, z);
+		if(bit < 0) {
+			return;
+		}
+		if(visited == null) {
+			visited = new long[ (int)( (visitedExtent() + 63) >>> 6 ) ];
+		}
+		visited[(int)(bit >>> 6)] |= 1L << bit;
+	}
+
+	/**
+	 * Clears all visited marks.
+	 */
+	public void clearVisited() {
+		visited = null;
+	}
+
+	/**
+	 * Number of voxels in the visited extent.
+	 */
+	private long visitedExtent() {
+		if(borderPolicy == BORDER_BACKGROUND) {
+			return (long)width * height * zMax;
+		}
+		return (long)sizeX * sizeY * sizeZ;
+	}
+
+	/**
+	 * Bit of parent voxel x,y,z in the visited bitset, or -1 if it is outside the visited extent.
+	 */
+	private long visitedBit(int x, int y, int z) {
+		if(borderPolicy == BORDER_BACKGROUND) {
+			x = x - x0;
+			y = y - y0;
+			if(x < 0 || x >= width || y < 0 || y >= height || z < 0 || z >= zMax) {
+				return -1;
+			}
+			return ( (long)z * height + y ) * width + x;
+		}
+		return ( (long)z * sizeY + y ) * sizeX + x;
+	}
+
+}
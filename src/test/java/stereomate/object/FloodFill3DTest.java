@@ -0,0 +1,83 @@
+package stereomate.object;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import mcib3d.image3d.ImageByte;
+
+/**
+ * Tests the packed size guard of FloodFill3D, and that the labeller and voxel index reject images whose
+ * packed voxel indexes would overflow an int.
+ *
+ * @author stevenwest
+ *
+ */
+public class FloodFill3DTest {
+
+	@Test
+	public void checkPackedSizeAcceptsLargestImage() {
+		FloodFill3D.checkPackedSize(Integer.MAX_VALUE, 1, 1);
+		FloodFill3D.checkPackedSize(46340, 46340, 1);
+	}
+
+	@Test
+	public void checkPackedSizeRejectsOverflowingImage() {
+		try {
+			FloodFill3D.checkPackedSize(65536, 32768, 1);
+			fail("image of 2^31 voxels was accepted");
+		}
+		catch(IllegalArgumentException e) {
+			assertTrue( e.getMessage().startsWith("FloodFill3D:") );
+		}
+	}
+
+	@Test
+	public void checkPackedSizeRejectsOverflowInZ() {
+		try {
+			// sizeX * sizeY fits an int, but not the voxels of all slices:
+			FloodFill3D.checkPackedSize(1024, 1024, 2048);
+			fail("image of 2^31 voxels was accepted");
+		}
+		catch(IllegalArgumentException e) {
+			assertTrue( e.getMessage().startsWith("FloodFill3D:") );
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void fillRejectsOverflowingImage() {
+		// the size is checked before any pixel is read:
+		new FloodFill3D(FloodFill3D.CONNECTED6).fill(new byte[1][1], 65536, 65536, 1, 0, 0, 0, (byte)1, (byte)2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void labellerRejectsOverflowingImage() {
+		ImageByte img = new ImageByte("test", 1, 1, 1);
+		img.sizeX = 65536;
+		img.sizeY = 65536;
+		new ConnectedComponentLabeller(FloodFill3D.CONNECTED26).label(img, 255);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void voxelIndexRejectsOverflowingImage() {
+		new ObjectVoxelIndex(65536, 65536, 1, false);
+	}
+
+	@Test
+	public void fillFollowsConnectivity() {
+		// two voxels touching only at a corner - one object 26-connected, two objects 6-connected:
+		byte[][] pixels = new byte[2][4];
+		pixels[0][0] = 1;
+		pixels[1][3] = 1;
+
+		assertEquals( 1, new FloodFill3D(FloodFill3D.CONNECTED6).fill(pixels, 2, 2, 2, 0, 0, 0, (byte)1, (byte)2) );
+		assertEquals( 1, pixels[1][3] );
+
+		pixels[0][0] = 1;
+		assertEquals( 2, new FloodFill3D(FloodFill3D.CONNECTED26).fill(pixels, 2, 2, 2, 0, 0, 0, (byte)1, (byte)2) );
+		assertEquals( 2, pixels[1][3] );
+	}
+
+}
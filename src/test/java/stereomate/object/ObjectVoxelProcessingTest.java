@@ -0,0 +1,144 @@
+package stereomate.object;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import mcib3d.image3d.ImageByte;
+import mcib3d.image3d.ImageShort;
+
+/**
+ * Tests the static flood and reconstruct methods of ObjectVoxelProcessing, which share one FloodFill3D per
+ * thread for each connectivity.
+ *
+ * @author stevenwest
+ *
+ */
+public class ObjectVoxelProcessingTest {
+
+	/**
+	 * Returns a byte image of 3 x 3 x 3 voxels holding a 6-connected bar of 3 voxels along x at y = 0, z = 0,
+	 * and a voxel touching its end only at a corner, at (2, 1, 1) - all of value 255.
+	 */
+	private static ImageByte barAndCorner() {
+		ImageByte img = new ImageByte("test", 3, 3, 3);
+		img.pixels[0][0] = (byte)255;
+		img.pixels[0][1] = (byte)255;
+		img.pixels[0][2] = (byte)255;
+		img.pixels[1][1 * 3 + 2] = (byte)255;
+		return img;
+	}
+
+	private static int count(byte[][] pixels, int value) {
+		int count = 0;
+		for(int z=0; z<pixels.length; z++) {
+			for(int xy=0; xy<pixels[z].length; xy++) {
+				if( (pixels[z][xy] & 0xff) == value) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void flood3d62FillsSixConnectedObject() {
+		ImageByte img = barAndCorner();
+		ObjectVoxelProcessing.flood3d62(img, 0, 0, 0, 100);
+		assertEquals( 3, count(img.pixels, 100) );
+		assertEquals( 255, img.pixels[1][1 * 3 + 2] & 0xff );
+	}
+
+	@Test
+	public void flood3d262FillsTwentySixConnectedObject() {
+		ImageByte img = barAndCorner();
+		ObjectVoxelProcessing.flood3d262(img, 0, 0, 0, 100);
+		assertEquals( 4, count(img.pixels, 100) );
+		assertEquals( 0, count(img.pixels, 255) );
+	}
+
+	@Test
+	public void flood3d262FillsShortImage() {
+		ImageShort img = new ImageShort("test", 3, 3, 3);
+		img.pixels[0][0] = 1000;
+		img.pixels[1][4] = 1000;
+		img.pixels[2][8] = 1000;
+		ObjectVoxelProcessing.flood3d262(img, 0, 0, 0, 2000);
+		assertEquals( 2000, img.pixels[0][0] );
+		assertEquals( 2000, img.pixels[1][4] );
+		assertEquals( 2000, img.pixels[2][8] );
+	}
+
+	@Test
+	public void reconstructObj3d262RemovesObject() {
+		ImageByte img = barAndCorner();
+		ObjectVoxelProcessing.reconstructObj3d262(img, 0, 0, 0, 1, 0);
+		assertEquals( 4, ObjectVoxelProcessing.staticFloodFill26.get().getFilledCount() );
+		assertEquals( 0, count(img.pixels, 255) );
+	}
+
+	@Test
+	public void staticFloodFillsAreSharedPerThread() throws Exception {
+		final FloodFill3D fill6 = ObjectVoxelProcessing.staticFloodFill6.get();
+		final FloodFill3D fill26 = ObjectVoxelProcessing.staticFloodFill26.get();
+		assertSame( fill6, ObjectVoxelProcessing.staticFloodFill6.get() );
+		assertSame( fill26, ObjectVoxelProcessing.staticFloodFill26.get() );
+		assertEquals( FloodFill3D.CONNECTED6, fill6.getConnectivity() );
+		assertEquals( FloodFill3D.CONNECTED26, fill26.getConnectivity() );
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			FloodFill3D other = executor.submit( new Callable<FloodFill3D>() {
+				@Override
+				public FloodFill3D call() {
+					return ObjectVoxelProcessing.staticFloodFill26.get();
+				}
+			}).get();
+			assertNotSame( fill26, other );
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void concurrentFloodsAreIndependent() throws Exception {
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Future<?>[] results = new Future<?>[threads * 8];
+			for(int a=0; a<results.length; a++) {
+				final int size = 8 + a;
+				results[a] = executor.submit( new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						// a full image of a size no other task uses - the fill resizes the shared engine:
+						ImageByte img = new ImageByte("test", size, size, 4);
+						for(int z=0; z<4; z++) {
+							java.util.Arrays.fill(img.pixels[z], (byte)255);
+						}
+						ObjectVoxelProcessing.flood3d262(img, 0, 0, 0, 100);
+						assertEquals( size * size * 4, count(img.pixels, 100) );
+						ObjectVoxelProcessing.flood3d62(img, size - 1, size - 1, 3, 50);
+						assertEquals( size * size * 4, count(img.pixels, 50) );
+						return size;
+					}
+				});
+			}
+			for(int a=0; a<results.length; a++) {
+				results[a].get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+}